@@ -0,0 +1,62 @@
+package com.socialising.services.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Facet counts from the in-memory index, compare with FacetSqlBenchmark for the same queries in Postgres
+// Run with: ./gradlew jmh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FacetIndexBenchmark {
+
+    static final String[] POST_TYPES = {"event", "general", "question", "announcement"};
+
+    static final String[] TIME_TYPES = {"now", "later"};
+
+    static final String[] TAGS = {"football", "cricket", "music", "movies", "food", "travel", "books", "gaming",
+            "hiking", "art", "dance", "coding", "yoga", "running", "photography", "chess"};
+
+    @Param({"100000"})
+    public int posts;
+
+    private FacetIndexService facetIndexService;
+
+    @Setup
+    public void setUp() {
+        // The repository is only used to read posts, counts never touch it
+        facetIndexService = new FacetIndexService(null, 5000, 50);
+        Random random = new Random(42);
+        for (long postId = 1; postId <= posts; postId++) {
+            facetIndexService.index(postId, POST_TYPES[random.nextInt(POST_TYPES.length)], TIME_TYPES[random.nextInt(TIME_TYPES.length)],
+                    random.nextInt(5) == 0 ? 'Y' : 'N', new String[]{TAGS[random.nextInt(TAGS.length)], TAGS[random.nextInt(TAGS.length)]});
+        }
+    }
+
+    @Benchmark
+    public Object countWithoutFilters() {
+        return facetIndexService.count(Map.of(), false);
+    }
+
+    @Benchmark
+    public Object countEventsForWomenWithAnyTag() {
+        return facetIndexService.count(Map.of(
+                FacetIndexService.POST_TYPE, List.of("event"),
+                FacetIndexService.ONLY_FOR_WOMEN, List.of("true"),
+                FacetIndexService.TAGS, List.of("football", "cricket")), false);
+    }
+
+    @Benchmark
+    public Object countWithAllTags() {
+        return facetIndexService.count(Map.of(
+                FacetIndexService.TIME_TYPE, List.of("now"),
+                FacetIndexService.TAGS, List.of("football", "music")), true);
+    }
+}
@@ -0,0 +1,89 @@
+package com.socialising.services.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The queries of FacetIndexBenchmark in SQL, against a scratch table filled with the same data
+// Needs a Postgres database: FACET_BENCH_JDBC_URL, FACET_BENCH_USER and FACET_BENCH_PASSWORD
+// Run with: ./gradlew jmh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FacetSqlBenchmark {
+
+    // Total and the counts of every facet, each with the filters of the other facets, as the index computes them
+    private static final String EVENTS_FOR_WOMEN_WITH_ANY_TAG = """
+            SELECT
+              count(*) FILTER (WHERE posttype = 'event' AND onlyforwomen = 'Y' AND tags && ARRAY['football', 'cricket']),
+              (SELECT json_object_agg(posttype, n) FROM (SELECT posttype, count(*) n FROM facet_bench
+                 WHERE onlyforwomen = 'Y' AND tags && ARRAY['football', 'cricket'] GROUP BY posttype) c),
+              (SELECT json_object_agg(timetype, n) FROM (SELECT timetype, count(*) n FROM facet_bench
+                 WHERE posttype = 'event' AND onlyforwomen = 'Y' AND tags && ARRAY['football', 'cricket'] GROUP BY timetype) c),
+              (SELECT json_object_agg(onlyforwomen, n) FROM (SELECT onlyforwomen, count(*) n FROM facet_bench
+                 WHERE posttype = 'event' AND tags && ARRAY['football', 'cricket'] GROUP BY onlyforwomen) c),
+              (SELECT json_object_agg(tag, n) FROM (SELECT tag, count(*) n FROM facet_bench, unnest(tags) tag
+                 WHERE posttype = 'event' AND onlyforwomen = 'Y' GROUP BY tag ORDER BY n DESC LIMIT 50) c)
+            FROM facet_bench
+            """;
+
+    @Param({"100000"})
+    public int posts;
+
+    private Connection connection;
+
+    private PreparedStatement eventsForWomenWithAnyTag;
+
+    @Setup
+    public void setUp() throws SQLException {
+        String url = System.getenv("FACET_BENCH_JDBC_URL");
+        if (url == null) {
+            throw new IllegalStateException("Set FACET_BENCH_JDBC_URL, FACET_BENCH_USER and FACET_BENCH_PASSWORD to run the SQL benchmark");
+        }
+        connection = DriverManager.getConnection(url, System.getenv("FACET_BENCH_USER"), System.getenv("FACET_BENCH_PASSWORD"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMPORARY TABLE facet_bench (postid bigint PRIMARY KEY, posttype varchar(255), timetype varchar(255), onlyforwomen char(1), tags varchar(255)[])");
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO facet_bench VALUES (?, ?, ?, ?, ?)")) {
+            Random random = new Random(42);
+            for (long postId = 1; postId <= posts; postId++) {
+                insert.setLong(1, postId);
+                insert.setString(2, FacetIndexBenchmark.POST_TYPES[random.nextInt(FacetIndexBenchmark.POST_TYPES.length)]);
+                insert.setString(3, FacetIndexBenchmark.TIME_TYPES[random.nextInt(FacetIndexBenchmark.TIME_TYPES.length)]);
+                insert.setString(4, random.nextInt(5) == 0 ? "Y" : "N");
+                insert.setArray(5, connection.createArrayOf("varchar", new String[]{
+                        FacetIndexBenchmark.TAGS[random.nextInt(FacetIndexBenchmark.TAGS.length)],
+                        FacetIndexBenchmark.TAGS[random.nextInt(FacetIndexBenchmark.TAGS.length)]}));
+                insert.addBatch();
+                if (postId % 1000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX ON facet_bench USING gin (tags)");
+            statement.execute("CREATE INDEX ON facet_bench (posttype, onlyforwomen)");
+            statement.execute("ANALYZE facet_bench");
+        }
+        eventsForWomenWithAnyTag = connection.prepareStatement(EVENTS_FOR_WOMEN_WITH_ANY_TAG);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public int countEventsForWomenWithAnyTag() throws SQLException {
+        try (ResultSet resultSet = eventsForWomenWithAnyTag.executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
@@ -42,7 +42,8 @@ public class PersistenceJPAConfig {
 
     Properties additionalProperties() {
         Properties properties = new Properties();
-        properties.setProperty("hibernate.ddl-auto", "auto");
+        // The schema is created and migrated by Flyway from db/migration before Hibernate starts
+        properties.setProperty("hibernate.hbm2ddl.auto", "none");
         properties.setProperty("show-sql", "true");
         properties.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
         properties.put("hibernate.default_schema", "socialise");
@@ -12,6 +12,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import static com.socialising.services.constants.Role.ADMIN;
 
@@ -21,6 +22,7 @@ import static com.socialising.services.constants.Role.ADMIN;
 @EntityScan("com.*")
 @EnableConfigurationProperties
 @EnableAutoConfiguration
+@EnableScheduling
 public class ServicesApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,37 @@
+package com.socialising.services.config;
+
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.util.IdGenerator;
+import com.socialising.services.util.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(IdGeneratorConfig.class);
+
+    // Every running instance needs its own node id, otherwise two instances can issue the same ID
+    // IDs issued before a restart may be ahead of the clock, the generator carries on after the highest one stored
+    @Bean
+    @ConditionalOnMissingBean(IdGenerator.class)
+    public IdGenerator idGenerator(@Value("${application.id-generator.node-id:0}") long nodeId, PostRepository postRepository) {
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(nodeId);
+        try {
+            Long lastIssuedId = postRepository.findLastIssuedId();
+            if (lastIssuedId != null) {
+                idGenerator.seed(lastIssuedId);
+                log.info("Snowflake ID generator seeded after ID {} of {}", lastIssuedId, SnowflakeIdGenerator.timestampOf(lastIssuedId));
+            }
+        } catch (DataAccessException e) {
+            log.info("Snowflake ID generator not seeded: {}", e.getMessage());
+        }
+        log.info("Using Snowflake ID generator with node id {}", nodeId);
+        return idGenerator;
+    }
+}
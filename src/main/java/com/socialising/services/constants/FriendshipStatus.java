@@ -0,0 +1,6 @@
+package com.socialising.services.constants;
+
+public enum FriendshipStatus {
+    REQUESTED,  // username sent friendUsername a friend request
+    FRIEND      // one direction of a friendship, the other one is a row of its own
+}
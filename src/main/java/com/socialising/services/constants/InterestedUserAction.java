@@ -0,0 +1,6 @@
+package com.socialising.services.constants;
+
+public enum InterestedUserAction {
+    ACCEPT,
+    REJECT
+}
@@ -0,0 +1,8 @@
+package com.socialising.services.constants;
+
+public enum InterestedUserResult {
+    ACCEPTED,
+    WAITLISTED,
+    REJECTED,
+    NOT_INTERESTED
+}
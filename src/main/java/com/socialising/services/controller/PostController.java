@@ -1,18 +1,35 @@
 package com.socialising.services.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.socialising.services.dto.CacheStatsDTO;
+import com.socialising.services.dto.CascadeJobDTO;
+import com.socialising.services.dto.FacetIndexStatsDTO;
+import com.socialising.services.dto.FacetSearchDTO;
+import com.socialising.services.dto.HashtagCountDTO;
+import com.socialising.services.dto.InterestedUserResultDTO;
+import com.socialising.services.dto.InterestedUsersBatchDTO;
+import com.socialising.services.dto.LikeSummaryDTO;
 import com.socialising.services.dto.PostDTO;
+import com.socialising.services.dto.PostFeedPage;
+import com.socialising.services.dto.PostStatsDTO;
+import com.socialising.services.dto.PostViewsDTO;
 import com.socialising.services.model.Post;
 import com.socialising.services.model.User;
 import com.socialising.services.service.PostService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,8 +40,12 @@ public class PostController {
 
     private static final Logger log = LoggerFactory.getLogger(PostController.class);
 
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final PostService postService;
 
+    private final ObjectMapper objectMapper;
+
     private boolean checkTokenValidity(String token) {
         if (!token.contains("Bearer ") || token.length() < 8) {
             log.info("It is an invalid token. Pass the valid token!");
@@ -48,19 +69,95 @@ public class PostController {
         return new ResponseEntity<>(this.postService.getAllPosts(), HttpStatus.OK) ;
     }
 
+    // Every post of a page is counted as viewed by the caller
+    private void recordViews(PostFeedPage page, String token, HttpServletRequest request) {
+        if (page != null && page.getPosts() != null && !page.getPosts().isEmpty()) {
+            List<Long> postIds = page.getPosts().stream().map(PostDTO::getPostId).toList();
+            this.postService.recordViews(postIds, token, request.getRemoteAddr());
+        }
+    }
+
+    @GetMapping("feed")
+    public ResponseEntity<PostFeedPage> getFeed(@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "20") int limit,
+                                                @RequestHeader(value = "Authorization", required = false) String token, HttpServletRequest request) {
+        PostFeedPage page = this.postService.getFeed(cursor, limit, token);
+        recordViews(page, token, request);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+    @GetMapping("upcomingEvents")
+    public ResponseEntity<PostFeedPage> getUpcomingEvents(@RequestParam(required = false) String from, @RequestParam(required = false) String to,
+                                                          @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "20") int limit,
+                                                          @RequestHeader(value = "Authorization", required = false) String token, HttpServletRequest request) {
+        PostFeedPage page = this.postService.getUpcomingEvents(from, to, cursor, limit);
+        recordViews(page, token, request);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+    @GetMapping("timeline")
+    public ResponseEntity<PostFeedPage> getTimeline(@RequestHeader("Authorization") String token, @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "20") int limit,
+                                                    HttpServletRequest request) {
+        if (!checkTokenValidity(token)) {
+            return new ResponseEntity<>(null, HttpStatus.UNAUTHORIZED);
+        }
+        PostFeedPage page = this.postService.getTimeline(token, cursor, limit);
+        recordViews(page, token, request);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+    // Streams every post as newline delimited JSON, one page at a time
+    @GetMapping("feed/export")
+    public ResponseEntity<StreamingResponseBody> exportFeed() {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                this.postService.streamAllPosts(postDTO -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(postDTO));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                log.info("Feed export aborted: {}", e.getMessage());
+                throw e.getCause();
+            }
+            outputStream.flush();
+        };
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+
     @GetMapping("getPostsOfUser")
-    public List<Post> getUserPosts(@RequestHeader("Authorization") String token) {
+    public List<PostDTO> getUserPosts(@RequestHeader("Authorization") String token) {
         return postService.getUserPosts(token);
     }
 
     @GetMapping("getPostsByUsername/{username}")
-    public List<Post> getPostsByUsername(@PathVariable String username) {
+    public List<PostDTO> getPostsByUsername(@PathVariable String username) {
         return postService.getPostsByUsername(username);
     }
 
     @GetMapping("getPost/{id}")
-    public Post getPostById(@PathVariable Long id) {
-        return this.postService.getPostById(id);
+    public Post getPostById(@PathVariable Long id, @RequestHeader(value = "Authorization", required = false) String token,
+                            HttpServletRequest request) {
+        Post post = this.postService.getPostById(id);
+        if (post != null) {
+            this.postService.recordViews(List.of(id), token, request.getRemoteAddr());
+        }
+        return post;
+    }
+
+    // Approximate number of distinct users who viewed the post, with its relative standard error
+    @GetMapping("views/{postId}")
+    public PostViewsDTO getUniqueViews(@PathVariable Long postId) {
+        return this.postService.getUniqueViews(postId);
+    }
+
+    // Hit, miss and eviction counts of the post cache
+    @GetMapping("cacheStats")
+    @PreAuthorize("hasAuthority('admin:read')")
+    public CacheStatsDTO getPostCacheStats() {
+        return this.postService.getPostCacheStats();
     }
 
     @PostMapping("updatePost/{id}")
@@ -77,6 +174,14 @@ public class PostController {
         return this.postService.deletePost(postId, token);
     }
 
+    // Progress of a delete running in the background, 404 when no delete of the post ran recently
+    @GetMapping("deletePostJob/{postId}")
+    @PreAuthorize("hasAuthority('admin:read')")
+    public ResponseEntity<CascadeJobDTO> getDeletePostJob(@PathVariable Long postId) {
+        CascadeJobDTO job = this.postService.getDeletePostJob(postId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
     @PostMapping("interestedUserRequest/{postId}")
     public int postUserRequest(@PathVariable("postId") Long postId, @RequestHeader("Authorization") String token) {
         if (!checkTokenValidity(token)) {
@@ -109,11 +214,26 @@ public class PostController {
         return this.postService.rejectInterestedUser(postId, username, token);
     }
 
+    // Accept or reject many interested users at once, e.g. {"action": "ACCEPT", "usernames": ["user1", "user2"]}
+    @PostMapping("interestedUsers/{postId}")
+    public List<InterestedUserResultDTO> updateInterestedUsers(@PathVariable("postId") Long postId, @RequestBody InterestedUsersBatchDTO batch, @RequestHeader("Authorization") String token) {
+        if (!checkTokenValidity(token)) {
+            return null;
+        }
+        return this.postService.updateInterestedUsers(postId, batch, token);
+    }
+
     @GetMapping("getConfirmedUsers/{postId}")
     public List<String> getConfirmedUsers(@PathVariable Long postId) {
         return this.postService.getConfirmedUsers(postId);
     }
 
+    // Users accepted once the event was full, in the order they get the seats freed up
+    @GetMapping("getWaitlist/{postId}")
+    public List<String> getWaitlist(@PathVariable Long postId) {
+        return this.postService.getWaitlist(postId);
+    }
+
     @DeleteMapping("deleteConfirmedUser/{postId}/{username}")
     public int deleteConfirmedUser(@PathVariable("postId") Long postId, @PathVariable("username") String username, @RequestHeader("Authorization") String token) {
         if (!checkTokenValidity(token)) {
@@ -131,8 +251,16 @@ public class PostController {
     }
 
     @GetMapping("getAllLikesOnPost/{postId}")
-    public String[] getAllLikesOnPost(@PathVariable("postId") Long postId) {
-        return this.postService.getAllLikesOnPost(postId);
+    public List<String> getAllLikesOnPost(@PathVariable("postId") Long postId, @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "50") int size) {
+        return this.postService.getAllLikesOnPost(postId, page, size);
+    }
+
+    @GetMapping("likeSummary/{postId}")
+    public LikeSummaryDTO getLikeSummary(@PathVariable("postId") Long postId, @RequestHeader("Authorization") String token) {
+        if (!checkTokenValidity(token)) {
+            return null;
+        }
+        return this.postService.getLikeSummary(postId, token);
     }
 
     @DeleteMapping("removeAlikeOnPost/{postId}")
@@ -162,4 +290,43 @@ public class PostController {
     public int deleteHashtagToPost(@PathVariable Long postId, @RequestBody String hashtag) {
         return this.postService.deleteHashtagsOfPost(postId, hashtag);
     }
+
+    @GetMapping("byHashtag/{hashtag}")
+    public ResponseEntity<PostFeedPage> getPostsByHashtag(@PathVariable String hashtag, @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "20") int limit) {
+        return new ResponseEntity<>(this.postService.getPostsByHashtag(hashtag, cursor, limit), HttpStatus.OK);
+    }
+
+    @GetMapping("search")
+    public ResponseEntity<PostFeedPage> searchPosts(@RequestParam String q, @RequestParam(required = false) String postType,
+                                                    @RequestParam(required = false) String timeType, @RequestParam(required = false) Boolean onlyForWomen,
+                                                    @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "20") int limit) {
+        return new ResponseEntity<>(this.postService.searchPosts(q, postType, timeType, onlyForWomen, cursor, limit), HttpStatus.OK);
+    }
+
+    // Facet values are repeatable, e.g. ?postType=event&postType=general&tags=football&tags=cricket
+    @GetMapping("facets")
+    public ResponseEntity<FacetSearchDTO> searchFacets(@RequestParam(required = false) List<String> postType, @RequestParam(required = false) List<String> timeType,
+                                                       @RequestParam(required = false) Boolean onlyForWomen, @RequestParam(required = false) List<String> tags,
+                                                       @RequestParam(defaultValue = "false") boolean allTags, @RequestParam(required = false) String cursor,
+                                                       @RequestParam(defaultValue = "20") int limit) {
+        return new ResponseEntity<>(this.postService.searchFacets(postType, timeType, onlyForWomen, tags, allTags, cursor, limit), HttpStatus.OK);
+    }
+
+    // Size of the facet index in memory
+    @GetMapping("facets/stats")
+    @PreAuthorize("hasAuthority('admin:read')")
+    public FacetIndexStatsDTO getFacetIndexStats() {
+        return this.postService.getFacetIndexStats();
+    }
+
+    // Like, comment, interested and confirmed user counts of up to 100 posts, e.g. ?ids=1,2,3
+    @GetMapping("stats")
+    public ResponseEntity<List<PostStatsDTO>> getPostStats(@RequestParam List<Long> ids) {
+        return new ResponseEntity<>(this.postService.getPostStats(ids), HttpStatus.OK);
+    }
+
+    @GetMapping("trendingHashtags")
+    public ResponseEntity<List<HashtagCountDTO>> getTrendingHashtags(@RequestParam(defaultValue = "10") int limit) {
+        return new ResponseEntity<>(this.postService.getTrendingHashtags(limit), HttpStatus.OK);
+    }
 }
@@ -1,8 +1,14 @@
 package com.socialising.services.controller;
 
 import com.fasterxml.jackson.databind.util.JSONPObject;
+import com.socialising.services.dto.AutocompleteDTO;
+import com.socialising.services.dto.CascadeJobDTO;
+import com.socialising.services.dto.LookupStatsDTO;
 import com.socialising.services.dto.PostDTO;
+import com.socialising.services.dto.SocialGraphStatsDTO;
 import com.socialising.services.dto.UserDTO;
+import com.socialising.services.dto.UserSuggestionDTO;
+import com.socialising.services.dto.UsernamePage;
 import com.socialising.services.model.ChangePasswordRequest;
 import com.socialising.services.model.Image;
 import com.socialising.services.model.Post;
@@ -103,6 +109,28 @@ public class UserController {
         return this.userDetailsService.deleteUser(userId);
     }
 
+    // Progress of a delete running in the background, 404 when no delete of the user ran recently
+    @GetMapping("deleteUserJob/{userId}")
+    @PreAuthorize("hasAuthority('admin:read')")
+    public ResponseEntity<CascadeJobDTO> getDeleteUserJob(@PathVariable Long userId) {
+        CascadeJobDTO job = this.userDetailsService.getDeleteUserJob(userId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    // User lookups done and saved per endpoint by loading each user once per request
+    @GetMapping("lookupStats")
+    @PreAuthorize("hasAuthority('admin:read')")
+    public List<LookupStatsDTO> getLookupStats() {
+        return this.userDetailsService.getLookupStats();
+    }
+
+    // Size of the friendship graph in memory
+    @GetMapping("socialGraphStats")
+    @PreAuthorize("hasAuthority('admin:read')")
+    public SocialGraphStatsDTO getSocialGraphStats() {
+        return this.userDetailsService.getSocialGraphStats();
+    }
+
     //Search User by Word as username
     @GetMapping("searchUsersByName/{word}")
     public List<User> searchUserByWord(@PathVariable String word) {
@@ -110,15 +138,24 @@ public class UserController {
     }
 
     //Search User by Tag
+    // Pages of users in username order, pass the username of the last user of the previous page as cursor
     @GetMapping("searchUsersByTag/{tag}")
-    public List<User> searchUserByTag(@PathVariable String tag) {
-        return this.userDetailsService.searchUserByTag(tag);
+    public List<User> searchUserByTag(@PathVariable String tag, @RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "20") int limit) {
+        return this.userDetailsService.searchUserByTag(tag, cursor, limit);
     }
 
     //Search User by Tag Keyword
     @GetMapping("searchUsersByTagKey/{keyword}")
-    public List<User> searchUsersByTagContaining(@PathVariable String keyword) {
-        return this.userDetailsService.searchUsersByTagContaining(keyword);
+    public List<User> searchUsersByTagContaining(@PathVariable String keyword, @RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "20") int limit) {
+        return this.userDetailsService.searchUsersByTagContaining(keyword, cursor, limit);
+    }
+
+    // Autocomplete of the search box, users with a username, name or tag word starting with each word of q
+    @GetMapping("autocomplete")
+    public List<AutocompleteDTO> autocomplete(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return this.userDetailsService.autocomplete(q, limit);
     }
 
     // To Send the Friend Request from User to User {toUsername}
@@ -157,28 +194,49 @@ public class UserController {
         return this.userDetailsService.deleteFriendRequest(toUsername, token);
     }
 
+    // Pages of usernames, pass the nextCursor of the previous page to continue after it
     @GetMapping("getFriendRequestUsers")
-    public String[] getFriendRequestUsers(@RequestHeader("Authorization") String token) {
+    public UsernamePage getFriendRequestUsers(@RequestHeader("Authorization") String token, @RequestParam(required = false) String cursor,
+                                              @RequestParam(defaultValue = "20") int limit) {
         if (!checkTokenValidity(token)) {
             return null;
         }
-        return this.userDetailsService.getFriendRequestUsers(token);
+        return this.userDetailsService.getFriendRequestUsers(token, cursor, limit);
     }
 
     @GetMapping("getFriendsRequested")
-    public String[] getFriendsRequestedByUser(@RequestHeader("Authorization") String token) {
+    public UsernamePage getFriendsRequestedByUser(@RequestHeader("Authorization") String token, @RequestParam(required = false) String cursor,
+                                                  @RequestParam(defaultValue = "20") int limit) {
         if (!checkTokenValidity(token)) {
             return null;
         }
-        return this.userDetailsService.getFriendsRequested(token);
+        return this.userDetailsService.getFriendsRequested(token, cursor, limit);
     }
 
     @GetMapping("getFriends")
-    public String[] getFriendsOfUser(@RequestHeader("Authorization") String token) {
+    public UsernamePage getFriendsOfUser(@RequestHeader("Authorization") String token, @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        if (!checkTokenValidity(token)) {
+            return null;
+        }
+        return this.userDetailsService.getFriendsOfUser(token, cursor, limit);
+    }
+
+    @GetMapping("getMutualFriends/{otherUsername}")
+    public List<String> getMutualFriends(@PathVariable("otherUsername") String otherUsername, @RequestHeader("Authorization") String token) {
+        if (!checkTokenValidity(token)) {
+            return null;
+        }
+        return this.userDetailsService.getMutualFriends(otherUsername, token);
+    }
+
+    // People the user may know, from mutual friends, common tags and details
+    @GetMapping("suggestions")
+    public List<UserSuggestionDTO> getSuggestions(@RequestHeader("Authorization") String token, @RequestParam(defaultValue = "20") int limit) {
         if (!checkTokenValidity(token)) {
             return null;
         }
-        return this.userDetailsService.getFriendsOfUser(token);
+        return this.userDetailsService.getSuggestions(token, limit);
     }
 
     @DeleteMapping("deleteFriend/{friendUsername}")
@@ -190,7 +248,7 @@ public class UserController {
     }
 
     @GetMapping("getPosts")
-    public List<Post> getPostsOfUser(@RequestHeader("Authorization") String token) {
+    public List<PostDTO> getPostsOfUser(@RequestHeader("Authorization") String token) {
         if (!checkTokenValidity(token)) {
             return null;
         }
@@ -198,7 +256,7 @@ public class UserController {
     }
 
     @GetMapping("getRequestedPosts")
-    public List<Post> getRequestedPostsOfUser(@RequestHeader("Authorization") String token) {
+    public List<PostDTO> getRequestedPostsOfUser(@RequestHeader("Authorization") String token) {
         if (!checkTokenValidity(token)) {
             return null;
         }
@@ -206,7 +264,7 @@ public class UserController {
     }
 
     @GetMapping("getReminderPosts")
-    public List<Post> getReminderPosts(@RequestHeader("Authorization") String token) {
+    public List<PostDTO> getReminderPosts(@RequestHeader("Authorization") String token) {
         if (!checkTokenValidity(token)) {
             return null;
         }
@@ -214,11 +272,11 @@ public class UserController {
     }
 
     @GetMapping("getUpcomingEvents")
-    public ResponseEntity<ArrayList<PostDTO>> getUpcomingEvents(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<ArrayList<PostDTO>> getUpcomingEvents(@RequestHeader("Authorization") String token, @RequestParam(defaultValue = "20") int limit) {
         if (!checkTokenValidity(token)) {
             return null;
         }
-        return new ResponseEntity<>(this.userDetailsService.getUpcomingEvents(token), HttpStatus.OK);
+        return new ResponseEntity<>(this.userDetailsService.getUpcomingEvents(token, limit), HttpStatus.OK);
     }
 
     @DeleteMapping("deleteReminderPost/{postId}")
@@ -0,0 +1,11 @@
+package com.socialising.services.dto;
+
+// An interested user accepted by a bulk accept, newlyConfirmed is false when the user was already confirmed
+// and seated is false when the post was full and the user was put on its waitlist
+public interface AcceptedUser {
+    String getUsername();
+
+    Boolean getNewlyConfirmed();
+
+    Boolean getSeated();
+}
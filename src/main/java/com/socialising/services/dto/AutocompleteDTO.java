@@ -0,0 +1,16 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AutocompleteDTO {
+    private String username;
+
+    private String firstName;
+
+    private String lastName;
+}
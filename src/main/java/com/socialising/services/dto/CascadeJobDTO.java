@@ -0,0 +1,19 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CascadeJobDTO {
+    private String type;
+    private Long targetId;
+    private String status;
+    private long totalRows;
+    private long processedRows;
+    private String startedTs;
+    private String finishedTs;
+    private String error;
+}
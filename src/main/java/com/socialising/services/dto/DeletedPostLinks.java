@@ -0,0 +1,10 @@
+package com.socialising.services.dto;
+
+// Rows removed along with a post: its interested and confirmed users and its likes
+public interface DeletedPostLinks {
+    Long getInterestedUsers();
+
+    Long getConfirmedUsers();
+
+    Long getLikes();
+}
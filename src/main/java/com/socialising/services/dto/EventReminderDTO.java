@@ -0,0 +1,16 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EventReminderDTO {
+    private Long postId;
+    private String ownerUsername;
+    private String description;
+    private String location;
+    private String postStartTs;
+}
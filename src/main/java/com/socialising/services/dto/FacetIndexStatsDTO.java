@@ -0,0 +1,16 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FacetIndexStatsDTO {
+    private boolean built;
+    private int posts;
+    private int facetValues;
+    private long bitmapBytes;
+    private long postIdBytes;
+}
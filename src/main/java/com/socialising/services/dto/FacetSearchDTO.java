@@ -0,0 +1,24 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FacetSearchDTO {
+    // Number of posts matching all the filters
+    private int total;
+
+    // Per facet, the number of posts each value would match with the filters of the other facets
+    private Map<String, Map<String, Integer>> facets;
+
+    private List<PostDTO> posts;
+
+    // Opaque cursor to pass back for the next page, null when there are no more posts
+    private String nextCursor;
+}
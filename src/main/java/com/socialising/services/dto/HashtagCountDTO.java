@@ -0,0 +1,13 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HashtagCountDTO {
+    private String hashtag;
+    private long count;
+}
@@ -0,0 +1,14 @@
+package com.socialising.services.dto;
+
+import com.socialising.services.constants.InterestedUserResult;
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InterestedUserResultDTO {
+    private String username;
+    private InterestedUserResult result;
+}
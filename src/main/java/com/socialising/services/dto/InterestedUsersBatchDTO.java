@@ -0,0 +1,16 @@
+package com.socialising.services.dto;
+
+import com.socialising.services.constants.InterestedUserAction;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InterestedUsersBatchDTO {
+    private InterestedUserAction action;
+    private List<String> usernames;
+}
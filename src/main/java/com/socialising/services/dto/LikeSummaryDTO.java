@@ -0,0 +1,14 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LikeSummaryDTO {
+    private Long postId;
+    private long likeCount;
+    private boolean likedByMe;
+}
@@ -0,0 +1,19 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LookupStatsDTO {
+    // "METHOD /pattern" of the endpoint
+    private String endpoint;
+
+    // Lookups of users by username done while serving the endpoint
+    private long lookups;
+
+    // Lookups answered by the identity map of the request instead of the DB
+    private long saved;
+}
@@ -0,0 +1,12 @@
+package com.socialising.services.dto;
+
+import java.sql.Timestamp;
+
+// Projection of a confirmed user of a post, used to load event reminders
+public interface PendingReminder {
+    Long getPostId();
+
+    String getUsername();
+
+    Timestamp getPostStartTs();
+}
@@ -22,5 +22,10 @@ public class PostDTO {
     private boolean onlyForWomen;
     private String[] tags;
     private String[] hashtags;
+    private Long likeCount;
+    private Long commentCount;
+    private Long interestedCount;
+    private Long confirmedCount;
+    private Integer capacity;
 }
 
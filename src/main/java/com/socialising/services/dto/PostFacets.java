@@ -0,0 +1,14 @@
+package com.socialising.services.dto;
+
+// Projection of the low-cardinality columns of a Post the discovery screen filters on
+public interface PostFacets {
+    Long getPostId();
+
+    String getPostType();
+
+    String getTimeType();
+
+    Character getOnlyForWomen();
+
+    String[] getTags();
+}
@@ -0,0 +1,17 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PostFeedPage {
+    private List<PostDTO> posts;
+
+    // Opaque cursor to pass back for the next page, null when there are no more posts
+    private String nextCursor;
+}
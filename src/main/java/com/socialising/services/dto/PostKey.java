@@ -0,0 +1,10 @@
+package com.socialising.services.dto;
+
+import java.sql.Timestamp;
+
+// Projection of only the keys a Post is ordered by in feeds and timelines
+public interface PostKey {
+    Long getPostId();
+
+    Timestamp getCreatedTs();
+}
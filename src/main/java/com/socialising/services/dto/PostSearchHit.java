@@ -0,0 +1,8 @@
+package com.socialising.services.dto;
+
+// Projection of a Post matching a search and its rank in millionths, search results are ordered by (rank desc, postId desc)
+public interface PostSearchHit {
+    Long getPostId();
+
+    Long getRank();
+}
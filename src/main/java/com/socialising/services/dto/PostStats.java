@@ -0,0 +1,14 @@
+package com.socialising.services.dto;
+
+// Projection of the engagement counters of a Post
+public interface PostStats {
+    Long getPostId();
+
+    Long getLikeCount();
+
+    Long getCommentCount();
+
+    Long getInterestedCount();
+
+    Long getConfirmedCount();
+}
@@ -0,0 +1,16 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PostStatsDTO {
+    private Long postId;
+    private long likeCount;
+    private long commentCount;
+    private long interestedCount;
+    private long confirmedCount;
+}
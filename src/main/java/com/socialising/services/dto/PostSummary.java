@@ -0,0 +1,41 @@
+package com.socialising.services.dto;
+
+import java.sql.Timestamp;
+
+// Projection of the columns of a Post that PostDTO needs, with the owner username joined in
+// Read instead of the entity for listings, so the user collections and the owner row are never loaded
+public interface PostSummary {
+    Long getPostId();
+
+    String getUsername();
+
+    String getDescription();
+
+    Timestamp getCreatedTs();
+
+    String getPostType();
+
+    String getTimeType();
+
+    Timestamp getPostStartTs();
+
+    Timestamp getPostEndTs();
+
+    String getLocation();
+
+    Character getOnlyForWomen();
+
+    String[] getTags();
+
+    String[] getHashtags();
+
+    Long getLikeCount();
+
+    Long getCommentCount();
+
+    Long getInterestedCount();
+
+    Long getConfirmedCount();
+
+    Integer getCapacity();
+}
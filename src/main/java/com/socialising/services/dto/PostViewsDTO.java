@@ -0,0 +1,18 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PostViewsDTO {
+    private Long postId;
+
+    // Approximate number of distinct users who viewed the post
+    private long uniqueViews;
+
+    // Relative standard error of uniqueViews, the true count is within 3 times this of it 99.7% of the time
+    private double standardError;
+}
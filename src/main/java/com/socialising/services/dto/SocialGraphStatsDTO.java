@@ -0,0 +1,16 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SocialGraphStatsDTO {
+    private boolean built;
+    private int users;
+    private long friendships;
+    private long graphBytes;
+    private double bytesPerFriendship;
+}
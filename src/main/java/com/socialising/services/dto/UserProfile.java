@@ -0,0 +1,18 @@
+package com.socialising.services.dto;
+
+// Projection of the columns of a User that people you may know suggestions are scored on
+public interface UserProfile {
+    Long getUserId();
+
+    String getUsername();
+
+    String[] getTags();
+
+    String getCity();
+
+    String getHomeCity();
+
+    String getEducation();
+
+    String getOccupation();
+}
@@ -0,0 +1,14 @@
+package com.socialising.services.dto;
+
+// Projection of the columns of a User that autocomplete matches
+public interface UserSearchTerms {
+    Long getUserId();
+
+    String getUsername();
+
+    String getFirstName();
+
+    String getLastName();
+
+    String[] getTags();
+}
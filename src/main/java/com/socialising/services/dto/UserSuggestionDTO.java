@@ -0,0 +1,22 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserSuggestionDTO {
+    private String username;
+
+    private int mutualFriends;
+
+    // Tags both users have
+    private int sharedTags;
+
+    // Of city, homeCity, education and occupation, how many both users have the same
+    private int sharedDetails;
+
+    private double score;
+}
@@ -0,0 +1,17 @@
+package com.socialising.services.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UsernamePage {
+    private List<String> usernames;
+
+    // Opaque cursor to pass back for the next page, null when there are no more usernames
+    private String nextCursor;
+}
@@ -3,6 +3,7 @@ package com.socialising.services.exceptionHandler;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.persistence.EntityNotFoundException;
 import org.postgresql.util.PSQLException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -82,6 +83,14 @@ public class GlobalExceptionHandler {
                 .body("Post Update Error: " + exception.getMessage());
     }
 
+    // A post or user kept being updated concurrently through every retry
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<?> handleOptimisticLockingFailureException(OptimisticLockingFailureException exception) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body("Concurrent update, please try again");
+    }
+
     @ExceptionHandler(TagNotFoundException.class)
     public ResponseEntity<?> handleTagNotFoundException(TagNotFoundException exception) {
         return ResponseEntity
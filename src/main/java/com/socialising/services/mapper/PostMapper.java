@@ -1,10 +1,43 @@
 package com.socialising.services.mapper;
 
 import com.socialising.services.dto.PostDTO;
+import com.socialising.services.dto.PostSummary;
+import com.socialising.services.model.ArchivedPost;
 import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class PostMapper {
 
+    private static final DateTimeFormatter EVENT_TS_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Event times are exchanged as "yyyy-MM-dd", "yyyy-MM-dd HH:mm[:ss]" or ISO "yyyy-MM-ddTHH:mm[:ss]"
+    public static Timestamp parseEventTs(String eventTs) {
+        if (eventTs == null || eventTs.isBlank()) {
+            return null;
+        }
+        String value = eventTs.trim();
+        try {
+            if (value.length() == 10) {
+                return Timestamp.valueOf(LocalDate.parse(value).atStartOfDay());
+            }
+            return Timestamp.valueOf(LocalDateTime.parse(value.replace(' ', 'T')));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid event time: " + eventTs);
+        }
+    }
+
+    public static String formatEventTs(Timestamp eventTs) {
+        return eventTs == null ? null : eventTs.toLocalDateTime().format(EVENT_TS_FORMAT);
+    }
+
     // Convert Post entity to PostDTO
     public static PostDTO entityToDto(Post post) {
         if (post == null) {
@@ -18,16 +51,86 @@ public class PostMapper {
         postDTO.setCreatedTs(post.getCreatedTs());
         postDTO.setPostType(post.getPostType());
         postDTO.setTimeType(post.getTimeType());
-        postDTO.setPostStartTs(post.getPostStartTs());
-        postDTO.setPostEndTs(post.getPostEndTs());
+        postDTO.setPostStartTs(formatEventTs(post.getPostStartTs()));
+        postDTO.setPostEndTs(formatEventTs(post.getPostEndTs()));
         postDTO.setLocation(post.getLocation());
         postDTO.setOnlyForWomen(post.getOnlyForWomen() == 'Y');  // Assuming 'Y' denotes true
         postDTO.setTags(post.getTags());
         postDTO.setHashtags(post.getHashtags());
+        postDTO.setLikeCount(post.getLikeCount());
+        postDTO.setCommentCount(post.getCommentCount());
+        postDTO.setInterestedCount(post.getInterestedCount());
+        postDTO.setConfirmedCount(post.getConfirmedCount());
+        postDTO.setCapacity(post.getCapacity());
+
+        return postDTO;
+    }
+
+    // Convert a PostSummary projection to PostDTO
+    public static PostDTO summaryToDto(PostSummary post) {
+        if (post == null) {
+            return null;
+        }
+
+        PostDTO postDTO = new PostDTO();
+        postDTO.setPostId(post.getPostId());
+        postDTO.setUsername(post.getUsername());
+        postDTO.setDescription(post.getDescription());
+        postDTO.setCreatedTs(post.getCreatedTs());
+        postDTO.setPostType(post.getPostType());
+        postDTO.setTimeType(post.getTimeType());
+        postDTO.setPostStartTs(formatEventTs(post.getPostStartTs()));
+        postDTO.setPostEndTs(formatEventTs(post.getPostEndTs()));
+        postDTO.setLocation(post.getLocation());
+        postDTO.setOnlyForWomen(post.getOnlyForWomen() != null && post.getOnlyForWomen() == 'Y');
+        postDTO.setTags(post.getTags());
+        postDTO.setHashtags(post.getHashtags());
+        postDTO.setLikeCount(post.getLikeCount());
+        postDTO.setCommentCount(post.getCommentCount());
+        postDTO.setInterestedCount(post.getInterestedCount());
+        postDTO.setConfirmedCount(post.getConfirmedCount());
+        postDTO.setCapacity(post.getCapacity());
 
         return postDTO;
     }
 
+    public static ArrayList<PostDTO> summariesToDtos(List<PostSummary> posts) {
+        ArrayList<PostDTO> postDTOs = new ArrayList<>(posts.size());
+        for (PostSummary post : posts) {
+            postDTOs.add(summaryToDto(post));
+        }
+        return postDTOs;
+    }
+
+    // Convert an archived post back to a detached Post, without its users
+    public static Post archivedToEntity(ArchivedPost archived) {
+        if (archived == null) {
+            return null;
+        }
+
+        return Post.builder()
+                .postId(archived.getPostId())
+                .version(archived.getVersion())
+                .ownerUser(User.builder().username(archived.getUsername()).build())
+                .description(archived.getDescription())
+                .createdTs(archived.getCreatedTs())
+                .postType(archived.getPostType())
+                .timeType(archived.getTimeType())
+                .postStartTs(archived.getPostStartTs())
+                .postEndTs(archived.getPostEndTs())
+                .location(archived.getLocation())
+                .onlyForWomen(archived.getOnlyForWomen())
+                .tags(archived.getTags())
+                .hashtags(archived.getHashtags())
+                .likeCount(archived.getLikeCount())
+                .commentCount(archived.getCommentCount())
+                .interestedCount(archived.getInterestedCount())
+                .confirmedCount(archived.getConfirmedCount())
+                .capacity(archived.getCapacity())
+                .comments(archived.getComments())
+                .build();
+    }
+
     // Convert PostDTO to Post entity
     public static Post dtoToEntity(PostDTO postDTO) {
         if (postDTO == null) {
@@ -39,12 +142,13 @@ public class PostMapper {
         post.setCreatedTs(postDTO.getCreatedTs());
         post.setPostType(postDTO.getPostType());
         post.setTimeType(postDTO.getTimeType());
-        post.setPostStartTs(postDTO.getPostStartTs());
-        post.setPostEndTs(postDTO.getPostEndTs());
+        post.setPostStartTs(parseEventTs(postDTO.getPostStartTs()));
+        post.setPostEndTs(parseEventTs(postDTO.getPostEndTs()));
         post.setLocation(postDTO.getLocation());
         post.setOnlyForWomen(postDTO.isOnlyForWomen() ? 'Y' : 'N');  // Map boolean to 'Y' or 'N'
         post.setTags(postDTO.getTags());
         post.setHashtags(postDTO.getHashtags());
+        post.setCapacity(postDTO.getCapacity() != null && postDTO.getCapacity() > 0 ? postDTO.getCapacity() : null);
 
         return post;
     }
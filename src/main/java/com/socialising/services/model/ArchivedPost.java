@@ -0,0 +1,59 @@
+package com.socialising.services.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.sql.Timestamp;
+
+// A post whose event ended, moved out of the post table by PostArchiveService and read only by id
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "post_archive", schema = "socialise")
+@Entity
+@Builder
+public class ArchivedPost {
+
+    @Id
+    private Long postId;
+
+    private Long version;
+
+    // Owner username, not a relation so deleting the owner never depends on the archive
+    private String username;
+
+    private String description;
+
+    private Timestamp createdTs;
+
+    private String postType;
+
+    private String timeType;
+
+    private Timestamp postStartTs;
+
+    private Timestamp postEndTs;
+
+    private String location;
+
+    private char onlyForWomen;
+
+    private String[] tags;
+
+    private String[] hashtags;
+
+    private Long likeCount;
+
+    private Long commentCount;
+
+    private Long interestedCount;
+
+    private Long confirmedCount;
+
+    private Integer capacity;
+
+    private Long[] comments;
+
+    private Timestamp archivedTs;
+}
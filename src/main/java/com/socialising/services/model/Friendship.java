@@ -0,0 +1,39 @@
+package com.socialising.services.model;
+
+import com.socialising.services.constants.FriendshipStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+// An edge of the friendship graph: a friend request from username to friendUsername, or one direction of a friendship
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "friendship", schema = "socialise")
+@Entity
+@IdClass(Friendship.FriendshipId.class)
+@Builder
+public class Friendship {
+
+    @Id
+    private String username;
+
+    @Id
+    private String friendUsername;
+
+    @Enumerated(EnumType.STRING)
+    private FriendshipStatus status;
+
+    private Timestamp createdTs;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FriendshipId implements Serializable {
+        private String username;
+        private String friendUsername;
+    }
+}
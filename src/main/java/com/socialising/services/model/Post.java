@@ -21,6 +21,10 @@ public class Post {
     @Column(unique=true, nullable=false)
     private Long postId;
 
+    // Bumped on every update, a write based on an older version fails instead of overwriting the newer one
+    @Version
+    private Long version;
+
     @ManyToOne
     @JoinColumn(name = "username", referencedColumnName = "username", nullable=false)
     @JsonIgnore
@@ -34,9 +38,9 @@ public class Post {
 
     private String timeType;
 
-    private String postStartTs;
+    private Timestamp postStartTs;
 
-    private String postEndTs;
+    private Timestamp postEndTs;
 
     private String location;
 
@@ -52,7 +56,22 @@ public class Post {
 
     private String[] hashtags;
 
-    private String[] likes;
+    // Maintained by PostLikeService with atomic SQL increments, never written through the entity
+    @Column(insertable = false, updatable = false)
+    private Long likeCount;
+
+    // Maintained with atomic SQL increments by the paths adding or removing comments, interested and confirmed users
+    @Column(insertable = false, updatable = false)
+    private Long commentCount;
+
+    @Column(insertable = false, updatable = false)
+    private Long interestedCount;
+
+    @Column(insertable = false, updatable = false)
+    private Long confirmedCount;
+
+    // Seats of the event, null when any number of users can be confirmed
+    private Integer capacity;
 
     private Long[] comments;
 
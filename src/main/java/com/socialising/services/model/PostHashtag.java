@@ -0,0 +1,36 @@
+package com.socialising.services.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+// Inverted index entry, one row per (hashtag, post)
+// createdTs is copied from the post so posts of a hashtag can be paged newest first from the index alone
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "post_hashtag", schema = "socialise")
+@Entity
+@IdClass(PostHashtag.PostHashtagId.class)
+@Builder
+public class PostHashtag {
+
+    @Id
+    private String hashtag;
+
+    @Id
+    private Long postId;
+
+    private Timestamp createdTs;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PostHashtagId implements Serializable {
+        private String hashtag;
+        private Long postId;
+    }
+}
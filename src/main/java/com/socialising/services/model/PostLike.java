@@ -0,0 +1,34 @@
+package com.socialising.services.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "post_like", schema = "socialise")
+@Entity
+@IdClass(PostLike.PostLikeId.class)
+@Builder
+public class PostLike {
+
+    @Id
+    private Long postId;
+
+    @Id
+    private String username;
+
+    private Timestamp likedTs;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PostLikeId implements Serializable {
+        private Long postId;
+        private String username;
+    }
+}
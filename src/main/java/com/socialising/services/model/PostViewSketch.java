@@ -0,0 +1,25 @@
+package com.socialising.services.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.sql.Timestamp;
+
+// HyperLogLog sketch of the users who viewed a post, merged into by PostViewService
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "post_view_sketch", schema = "socialise")
+@Entity
+@Builder
+public class PostViewSketch {
+
+    @Id
+    private Long postId;
+
+    // HyperLogLog.toBytes(), null until the first views are merged
+    private byte[] sketch;
+
+    private Timestamp updatedTs;
+}
@@ -0,0 +1,38 @@
+package com.socialising.services.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "post_waitlist", schema = "socialise")
+@Entity
+@IdClass(PostWaitlist.PostWaitlistId.class)
+@Builder
+public class PostWaitlist {
+
+    @Id
+    private Long postId;
+
+    @Id
+    private String username;
+
+    // Position in the waitlist, assigned by the DB in the order users were waitlisted
+    @Column(insertable = false, updatable = false)
+    private Long seq;
+
+    private Timestamp waitlistedTs;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PostWaitlistId implements Serializable {
+        private Long postId;
+        private String username;
+    }
+}
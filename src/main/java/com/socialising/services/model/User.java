@@ -30,6 +30,10 @@ public class User implements UserDetails {
     @Column(unique=true, nullable=false)
     private Long userId;
 
+    // Bumped on every update, a write based on an older version fails instead of overwriting the newer one
+    @Version
+    private Long version;
+
     @Column(unique=true, nullable=false)
     private String username;
 
@@ -83,12 +87,6 @@ public class User implements UserDetails {
 
     private String occupation;
 
-    private String[] friendsRequested;
-
-    private String[] friendRequests;
-
-    private String[] friends;
-
     private String[] tags;
 
     @OneToMany(mappedBy = "ownerUser")
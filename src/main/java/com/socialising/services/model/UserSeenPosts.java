@@ -0,0 +1,30 @@
+package com.socialising.services.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.sql.Timestamp;
+
+// Posts a user was already served, kept by SeenPostsService as two generations of a ScalableBloomFilter
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "user_seen_posts", schema = "socialise")
+@Entity
+@Builder
+public class UserSeenPosts {
+
+    @Id
+    private String username;
+
+    // ScalableBloomFilter.toBytes() of the posts seen since rotatedTs
+    private byte[] currentFilter;
+
+    // The generation before it, null until the first rotation
+    private byte[] previousFilter;
+
+    private Timestamp rotatedTs;
+
+    private Timestamp updatedTs;
+}
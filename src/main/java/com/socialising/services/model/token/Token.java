@@ -15,7 +15,7 @@ import lombok.*;
 public class Token {
 
     @Id
-    private Integer id;
+    private Long id;
 
     private String token;
 
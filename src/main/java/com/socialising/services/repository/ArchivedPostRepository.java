@@ -0,0 +1,116 @@
+package com.socialising.services.repository;
+
+import com.socialising.services.model.ArchivedPost;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public interface ArchivedPostRepository extends JpaRepository<ArchivedPost, Long> {
+
+    // Move up to limit event posts that ended before endedBefore to the archive in one statement, oldest first, read
+    // through the event end time index. Their confirmed users and likes are archived with them and their comments
+    // stay where they are, listed by the archived post; requests to join them, waitlists, hashtag index rows and view
+    // sketches are deleted, the archive keeps their counts.
+    // The versions of the users are bumped, as the join rows belong to them.
+    // Posts locked by a running update are skipped and picked up by a later sweep. Returns the archived post ids.
+    @Transactional
+    @Query(value = """
+            WITH ended AS (
+                SELECT postid FROM socialise.post
+                WHERE lower(posttype) = 'event' AND postendts < ?1 ORDER BY postendts LIMIT ?2 FOR UPDATE SKIP LOCKED
+            ), confirmed AS (
+                DELETE FROM socialise.user_reminderposts r USING ended e
+                WHERE r.reminderposts_id = e.postid
+                RETURNING r.user_id, r.reminderposts_id
+            ), archived_confirmed AS (
+                INSERT INTO socialise.post_archive_confirmed (postid, user_id)
+                SELECT reminderposts_id, user_id FROM confirmed
+                ON CONFLICT DO NOTHING
+            ), interested AS (
+                DELETE FROM socialise.user_interestedposts r USING ended e
+                WHERE r.interestedposts_id = e.postid
+                RETURNING r.user_id
+            ), versions AS (
+                UPDATE socialise.user SET version = version + 1
+                WHERE userid IN (SELECT user_id FROM confirmed UNION SELECT user_id FROM interested)
+            ), waitlists AS (
+                DELETE FROM socialise.post_waitlist w USING ended e WHERE w.postid = e.postid
+            ), hashtags AS (
+                DELETE FROM socialise.post_hashtag h USING ended e WHERE h.postid = e.postid
+            ), likes AS (
+                DELETE FROM socialise.post_like l USING ended e WHERE l.postid = e.postid
+                RETURNING l.postid, l.username, l.likedts
+            ), archived_likes AS (
+                INSERT INTO socialise.post_archive_like (postid, username, likedts)
+                SELECT postid, username, likedts FROM likes
+                ON CONFLICT DO NOTHING
+            ), views AS (
+                DELETE FROM socialise.post_view_sketch v USING ended e WHERE v.postid = e.postid
+            ), moved AS (
+                DELETE FROM socialise.post p USING ended e WHERE p.postid = e.postid
+                RETURNING p.postid, p.version, p.username, p.description, p.createdts, p.posttype, p.timetype,
+                          p.poststartts, p.postendts, p.location, p.onlyforwomen, p.tags, p.hashtags, p.likecount,
+                          p.commentcount, p.interestedcount, p.confirmedcount, p.capacity, p.comments
+            )
+            INSERT INTO socialise.post_archive (postid, version, username, description, createdts, posttype, timetype,
+                                                poststartts, postendts, location, onlyforwomen, tags, hashtags, likecount,
+                                                commentcount, interestedcount, confirmedcount, capacity, comments, archivedts)
+            SELECT m.*, now() FROM moved m
+            RETURNING postid
+            """, nativeQuery = true)
+    List<Long> archiveEndedPosts(Timestamp endedBefore, int limit);
+
+    // Usernames of the users who were confirmed for an archived post
+    @Query(value = "SELECT u.username FROM socialise.post_archive_confirmed c JOIN socialise.user u ON u.userid = c.user_id " +
+            "WHERE c.postid = ?1", nativeQuery = true)
+    List<String> findConfirmedUsernames(Long postId);
+
+    // Usernames who liked an archived post, most recent first
+    @Query(value = "SELECT username FROM socialise.post_archive_like WHERE postid = ?1 " +
+            "ORDER BY likedts DESC, username LIMIT ?2 OFFSET ?3", nativeQuery = true)
+    List<String> findLikeUsernames(Long postId, int limit, long offset);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM socialise.post_archive_like WHERE postid = ?1 AND username = ?2)",
+            nativeQuery = true)
+    boolean existsLike(Long postId, String username);
+
+    // Delete the archived posts of a user with their confirmations, likes and comments, and take the user off the
+    // other archived posts it was confirmed for or liked, in one statement. A post both confirmed and liked by the
+    // user is counted down by a single update, as a row is updated once per statement.
+    // Returns the number of archived posts deleted.
+    @Transactional
+    @Query(value = """
+            WITH owned AS (
+                DELETE FROM socialise.post_archive WHERE username = ?2 RETURNING postid
+            ), owned_confirmed AS (
+                DELETE FROM socialise.post_archive_confirmed c USING owned o WHERE c.postid = o.postid
+            ), owned_likes AS (
+                DELETE FROM socialise.post_archive_like l USING owned o WHERE l.postid = o.postid
+            ), owned_comments AS (
+                DELETE FROM socialise.comment c USING owned o WHERE c.postid = o.postid
+            ), confirmed AS (
+                DELETE FROM socialise.post_archive_confirmed c
+                WHERE c.user_id = ?1 AND c.postid NOT IN (SELECT postid FROM owned)
+                RETURNING c.postid
+            ), liked AS (
+                DELETE FROM socialise.post_archive_like l
+                WHERE l.username = ?2 AND l.postid NOT IN (SELECT postid FROM owned)
+                RETURNING l.postid
+            ), counts AS (
+                UPDATE socialise.post_archive a SET confirmedcount = greatest(a.confirmedcount - r.confirmed, 0),
+                                                    likecount = greatest(a.likecount - r.liked, 0)
+                FROM (SELECT postid, sum(confirmed) AS confirmed, sum(liked) AS liked
+                      FROM (SELECT postid, 1 AS confirmed, 0 AS liked FROM confirmed
+                            UNION ALL SELECT postid, 0, 1 FROM liked) removed
+                      GROUP BY postid) r
+                WHERE a.postid = r.postid
+            )
+            SELECT count(*) FROM owned
+            """, nativeQuery = true)
+    long deleteArchiveOfUser(Long userId, String username);
+}
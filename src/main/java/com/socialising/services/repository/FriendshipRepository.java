@@ -0,0 +1,85 @@
+package com.socialising.services.repository;
+
+import com.socialising.services.model.Friendship;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface FriendshipRepository extends JpaRepository<Friendship, Friendship.FriendshipId> {
+
+    // Returns 1 if the request was sent, 0 if there already is a request or a friendship in this direction
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO socialise.friendship (username, friendusername, status, createdts) " +
+            "VALUES (?1, ?2, 'REQUESTED', now()) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertRequest(String fromUsername, String toUsername);
+
+    // Turns the request into a friendship in both directions in one statement
+    // Returns 1 if there was a request to accept, 0 otherwise. A request the other way round is accepted along.
+    @Transactional
+    @Modifying
+    @Query(value = "WITH accepted AS (UPDATE socialise.friendship SET status = 'FRIEND', createdts = now() " +
+            "WHERE username = ?1 AND friendusername = ?2 AND status = 'REQUESTED' RETURNING username, friendusername) " +
+            "INSERT INTO socialise.friendship (username, friendusername, status, createdts) " +
+            "SELECT friendusername, username, 'FRIEND', now() FROM accepted " +
+            "ON CONFLICT (username, friendusername) DO UPDATE SET status = 'FRIEND', createdts = now()", nativeQuery = true)
+    int acceptRequest(String fromUsername, String toUsername);
+
+    // Returns 1 if the request was removed, 0 if there was none
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.friendship WHERE username = ?1 AND friendusername = ?2 AND status = 'REQUESTED'", nativeQuery = true)
+    int deleteRequest(String fromUsername, String toUsername);
+
+    // Returns the number of directions removed, 0 if the users were not friends
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.friendship WHERE status = 'FRIEND' " +
+            "AND ((username = ?1 AND friendusername = ?2) OR (username = ?2 AND friendusername = ?1))", nativeQuery = true)
+    int deleteFriendship(String username, String friendUsername);
+
+    // Every friendship and request of the user, in both directions
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.friendship WHERE username = ?1 OR friendusername = ?1", nativeQuery = true)
+    int deleteAllOfUser(String username);
+
+    // At most limit friendships and requests of the user, for cascades run chunk by chunk
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.friendship WHERE ctid IN " +
+            "(SELECT ctid FROM socialise.friendship WHERE username = ?1 OR friendusername = ?1 LIMIT ?2)", nativeQuery = true)
+    int deleteAllOfUser(String username, int limit);
+
+    @Query(value = "SELECT count(*) FROM socialise.friendship WHERE username = ?1 OR friendusername = ?1", nativeQuery = true)
+    long countAllOfUser(String username);
+
+    // Users with more friends than the given number, read once on startup
+    @Query(value = "SELECT username FROM socialise.friendship WHERE status = 'FRIEND' GROUP BY username HAVING count(*) > ?1", nativeQuery = true)
+    List<String> findUsernamesWithMoreFriendsThan(int friendCount);
+
+    // Friends of the user after the given username, in username order
+    @Query(value = "SELECT friendusername FROM socialise.friendship WHERE username = ?1 AND status = 'FRIEND' " +
+            "AND friendusername > ?2 ORDER BY friendusername LIMIT ?3", nativeQuery = true)
+    List<String> findFriendUsernames(String username, String after, int limit);
+
+    // Users the user sent a friend request to, after the given username
+    @Query(value = "SELECT friendusername FROM socialise.friendship WHERE username = ?1 AND status = 'REQUESTED' " +
+            "AND friendusername > ?2 ORDER BY friendusername LIMIT ?3", nativeQuery = true)
+    List<String> findRequestedUsernames(String username, String after, int limit);
+
+    // Users who sent the user a friend request, after the given username
+    @Query(value = "SELECT username FROM socialise.friendship WHERE friendusername = ?1 AND status = 'REQUESTED' " +
+            "AND username > ?2 ORDER BY username LIMIT ?3", nativeQuery = true)
+    List<String> findRequestingUsernames(String username, String after, int limit);
+
+    // Friendships in key order after the given key, both directions of a friendship being rows, to read them all page by page
+    @Query(value = "SELECT * FROM socialise.friendship WHERE status = 'FRIEND' AND (username, friendusername) > (?1, ?2) " +
+            "ORDER BY username, friendusername LIMIT ?3", nativeQuery = true)
+    List<Friendship> findFriendshipsAfter(String username, String friendUsername, int limit);
+}
@@ -0,0 +1,52 @@
+package com.socialising.services.repository;
+
+import com.socialising.services.dto.PostKey;
+import com.socialising.services.model.PostHashtag;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public interface PostHashtagRepository extends JpaRepository<PostHashtag, PostHashtag.PostHashtagId> {
+
+    // Returns the number of hashtags that were not already indexed for the post
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO socialise.post_hashtag (hashtag, postid, createdts)
+            SELECT h.hashtag, ?1, ?3 FROM unnest(?2) AS h(hashtag)
+            ON CONFLICT DO NOTHING
+            """, nativeQuery = true)
+    int insertHashtags(Long postId, String[] hashtags, Timestamp createdTs);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.post_hashtag WHERE postid = ?1 AND hashtag = ANY(?2)", nativeQuery = true)
+    int deleteHashtags(Long postId, String[] hashtags);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.post_hashtag WHERE postid = ?1", nativeQuery = true)
+    int deleteAllByPostId(Long postId);
+
+    @Query("""
+            select h.postId as postId, h.createdTs as createdTs from PostHashtag h
+            where h.hashtag = :hashtag
+            order by h.createdTs desc, h.postId desc
+            """)
+    List<PostKey> findKeysByHashtag(String hashtag, Pageable pageable);
+
+    @Query("""
+            select h.postId as postId, h.createdTs as createdTs from PostHashtag h
+            where h.hashtag = :hashtag
+              and (h.createdTs < :createdTs or (h.createdTs = :createdTs and h.postId < :postId))
+            order by h.createdTs desc, h.postId desc
+            """)
+    List<PostKey> findKeysByHashtagBefore(String hashtag, Timestamp createdTs, Long postId, Pageable pageable);
+}
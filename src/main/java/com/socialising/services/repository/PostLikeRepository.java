@@ -0,0 +1,50 @@
+package com.socialising.services.repository;
+
+import com.socialising.services.model.PostLike;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PostLikeRepository extends JpaRepository<PostLike, PostLike.PostLikeId> {
+
+    // Returns 1 if the like was added, 0 if the user had already liked the post
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO socialise.post_like (postid, username, likedts) VALUES (?1, ?2, now()) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertLike(Long postId, String username);
+
+    // Returns 1 if the like was removed, 0 if the user had not liked the post
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.post_like WHERE postid = ?1 AND username = ?2", nativeQuery = true)
+    int deleteLike(Long postId, String username);
+
+    // Delete every like of the user and take it off the like count of its post in the same statement
+    // There is one like per (post, user), so each post is counted down once. Returns the ids of the posts
+    @Transactional
+    @Query(value = "WITH d AS (DELETE FROM socialise.post_like WHERE username = ?1 RETURNING postid), " +
+            "u AS (UPDATE socialise.post p SET likecount = greatest(p.likecount - 1, 0) FROM d WHERE p.postid = d.postid RETURNING p.postid) " +
+            "SELECT postid FROM u", nativeQuery = true)
+    List<Long> deleteAllByUsername(String username);
+
+    // Chunked version of the delete above for background jobs
+    @Transactional
+    @Query(value = "WITH d AS (DELETE FROM socialise.post_like WHERE ctid IN " +
+            "(SELECT ctid FROM socialise.post_like WHERE username = ?1 LIMIT ?2) RETURNING postid), " +
+            "u AS (UPDATE socialise.post p SET likecount = greatest(p.likecount - 1, 0) FROM d WHERE p.postid = d.postid RETURNING p.postid) " +
+            "SELECT postid FROM u", nativeQuery = true)
+    List<Long> deleteAllByUsername(String username, int limit);
+
+    long countByUsername(String username);
+
+    boolean existsByPostIdAndUsername(Long postId, String username);
+
+    @Query("select l.username from PostLike l where l.postId = :postId order by l.likedTs desc, l.username")
+    List<String> findUsernamesByPostId(Long postId, Pageable pageable);
+}
@@ -1,9 +1,23 @@
 package com.socialising.services.repository;
 
+import com.socialising.services.dto.AcceptedUser;
+import com.socialising.services.dto.DeletedPostLinks;
+import com.socialising.services.dto.PendingReminder;
+import com.socialising.services.dto.PostFacets;
+import com.socialising.services.dto.PostKey;
+import com.socialising.services.dto.PostSearchHit;
+import com.socialising.services.dto.PostStats;
+import com.socialising.services.dto.PostSummary;
 import com.socialising.services.model.Post;
+import org.springframework.data.domain.Pageable;
+import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 // JpaRepository<PostDao, Long> -> PostDao : type of model/data and Long : type of id
@@ -11,5 +25,350 @@ import java.util.List;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
-    List<Post> findByOwnerUserUsername(String username);
+    // Columns of PostSummary, select them from "Post p join p.ownerUser o"
+    String POST_SUMMARY = """
+            select p.postId as postId, o.username as username, p.description as description, p.createdTs as createdTs,
+                   p.postType as postType, p.timeType as timeType, p.postStartTs as postStartTs, p.postEndTs as postEndTs,
+                   p.location as location, p.onlyForWomen as onlyForWomen, p.tags as tags, p.hashtags as hashtags,
+                   p.likeCount as likeCount, p.commentCount as commentCount, p.interestedCount as interestedCount,
+                   p.confirmedCount as confirmedCount, p.capacity as capacity
+            """;
+
+    @Query(POST_SUMMARY + " from Post p join p.ownerUser o order by p.createdTs desc, p.postId desc")
+    List<PostSummary> findAllSummaries();
+
+    @Query(POST_SUMMARY + " from Post p join p.ownerUser o where o.username = :username order by p.createdTs desc, p.postId desc")
+    List<PostSummary> findSummariesByOwner(String username);
+
+    @Query(POST_SUMMARY + " from User u join u.requestedPosts p join p.ownerUser o where u.username = :username")
+    List<PostSummary> findRequestedSummariesOf(String username);
+
+    @Query(POST_SUMMARY + " from User u join u.reminderPosts p join p.ownerUser o where u.username = :username")
+    List<PostSummary> findReminderSummariesOf(String username);
+
+    @Query(POST_SUMMARY + " from Post p join p.ownerUser o where p.postId in :postIds")
+    List<PostSummary> findSummariesByPostIdIn(Collection<Long> postIds);
+
+    // Highest ID any entity was given by the ID generator, archived posts included, read once on startup
+    @Query(value = "SELECT greatest((SELECT max(postid) FROM socialise.post), (SELECT max(postid) FROM socialise.post_archive), " +
+            "(SELECT max(userid) FROM socialise.user), (SELECT max(commentid) FROM socialise.comment), " +
+            "(SELECT max(tagid) FROM socialise.tag), (SELECT max(imageid) FROM socialise.image), " +
+            "(SELECT max(id) FROM socialise.token))", nativeQuery = true)
+    Long findLastIssuedId();
+
+    // Keyset pagination over (createdTs, postId), newest first
+    @Query(POST_SUMMARY + """
+            from Post p join p.ownerUser o
+            where p.createdTs is not null
+            order by p.createdTs desc, p.postId desc
+            """)
+    List<PostSummary> findFeedFirstPage(Pageable pageable);
+
+    @Query(POST_SUMMARY + """
+            from Post p join p.ownerUser o
+            where p.createdTs < :createdTs or (p.createdTs = :createdTs and p.postId < :postId)
+            order by p.createdTs desc, p.postId desc
+            """)
+    List<PostSummary> findFeedAfter(Timestamp createdTs, Long postId, Pageable pageable);
+
+    // Upcoming events are range scans over (postStartTs, postId), soonest first
+    @Query(POST_SUMMARY + """
+            from Post p join p.ownerUser o
+            where o.username = :username and lower(p.postType) = 'event' and p.postStartTs >= :from
+            order by p.postStartTs, p.postId
+            """)
+    List<PostSummary> findUpcomingEventsOwnedBy(String username, Timestamp from, Pageable pageable);
+
+    @Query(POST_SUMMARY + """
+            from User u join u.reminderPosts p join p.ownerUser o
+            where u.userId = :userId and p.postStartTs >= :from
+            order by p.postStartTs, p.postId
+            """)
+    List<PostSummary> findUpcomingRemindersOf(Long userId, Timestamp from, Pageable pageable);
+
+    @Query(POST_SUMMARY + """
+            from Post p join p.ownerUser o
+            where lower(p.postType) = 'event' and p.postStartTs >= :from and p.postStartTs < :to
+            order by p.postStartTs, p.postId
+            """)
+    List<PostSummary> findEventsStartingBetween(Timestamp from, Timestamp to, Pageable pageable);
+
+    @Query(POST_SUMMARY + """
+            from Post p join p.ownerUser o
+            where lower(p.postType) = 'event' and p.postStartTs < :to
+              and (p.postStartTs > :startTs or (p.postStartTs = :startTs and p.postId > :postId))
+            order by p.postStartTs, p.postId
+            """)
+    List<PostSummary> findEventsStartingAfter(Timestamp startTs, Long postId, Timestamp to, Pageable pageable);
+
+    // Confirmed users of the posts starting in [from, to), read through the post start index
+    @Query(value = """
+            SELECT p.postid AS "postId", u.username AS "username", p.poststartts AS "postStartTs"
+            FROM socialise.post p
+            JOIN socialise.user_reminderposts r ON r.reminderposts_id = p.postid
+            JOIN socialise.user u ON u.userid = r.user_id
+            WHERE p.poststartts >= ?1 AND p.poststartts < ?2
+            """, nativeQuery = true)
+    List<PendingReminder> findConfirmedUsersOfPostsStartingBetween(Timestamp from, Timestamp to);
+
+    // Timeline keys of the newest posts of the given owners
+    @Query("""
+            select p.postId as postId, p.createdTs as createdTs from Post p
+            where p.ownerUser.username in :owners and p.createdTs is not null
+            order by p.createdTs desc, p.postId desc
+            """)
+    List<PostKey> findKeysByOwners(Collection<String> owners, Pageable pageable);
+
+    @Query("""
+            select p.postId as postId, p.createdTs as createdTs from Post p
+            where p.ownerUser.username in :owners
+              and (p.createdTs < :createdTs or (p.createdTs = :createdTs and p.postId < :postId))
+            order by p.createdTs desc, p.postId desc
+            """)
+    List<PostKey> findKeysByOwnersBefore(Collection<String> owners, Timestamp createdTs, Long postId, Pageable pageable);
+
+    // Timeline keys of the newest posts having any of the given lowercase tags
+    @Query(value = "SELECT postid AS \"postId\", createdts AS \"createdTs\" FROM socialise.post " +
+            "WHERE socialise.lower_tags(tags) && CAST(?1 AS text[]) AND createdts IS NOT NULL ORDER BY createdts DESC, postid DESC LIMIT ?2", nativeQuery = true)
+    List<PostKey> findKeysWithAnyTag(String[] tags, int limit);
+
+    @Query(value = "SELECT postid AS \"postId\", createdts AS \"createdTs\" FROM socialise.post " +
+            "WHERE socialise.lower_tags(tags) && CAST(?1 AS text[]) AND (createdts < ?2 OR (createdts = ?2 AND postid < ?3)) " +
+            "ORDER BY createdts DESC, postid DESC LIMIT ?4", nativeQuery = true)
+    List<PostKey> findKeysWithAnyTagBefore(String[] tags, Timestamp createdTs, Long postId, int limit);
+
+    // Facets of the posts after the given id, in id order, to build the facet index page by page
+    @Query("""
+            select p.postId as postId, p.postType as postType, p.timeType as timeType, p.onlyForWomen as onlyForWomen, p.tags as tags
+            from Post p where p.postId > :postId order by p.postId
+            """)
+    List<PostFacets> findFacetsAfter(Long postId, Pageable pageable);
+
+    // Full-text search over description and location, read through the GIN index on searchvector
+    // The filters are skipped when null, onlyForWomen is 'Y' or 'N'
+    // Results are ordered by ts_rank in millionths, an integer so the cursor of the next page compares exactly
+    @Query(value = """
+            SELECT p.postid AS "postId", r.rank AS "rank"
+            FROM socialise.post p, to_tsquery('simple', ?1) q,
+                 LATERAL (SELECT CAST(round(CAST(ts_rank(p.searchvector, q) AS double precision) * 1000000) AS bigint) AS rank) r
+            WHERE p.searchvector @@ q
+              AND (CAST(?2 AS text) IS NULL OR lower(p.posttype) = CAST(?2 AS text))
+              AND (CAST(?3 AS text) IS NULL OR lower(p.timetype) = CAST(?3 AS text))
+              AND (CAST(?4 AS text) IS NULL OR p.onlyforwomen = CAST(?4 AS text))
+            ORDER BY "rank" DESC, p.postid DESC
+            LIMIT ?5
+            """, nativeQuery = true)
+    List<PostSearchHit> searchFirstPage(String tsQuery, String postType, String timeType, String onlyForWomen, int limit);
+
+    @Query(value = """
+            SELECT p.postid AS "postId", r.rank AS "rank"
+            FROM socialise.post p, to_tsquery('simple', ?1) q,
+                 LATERAL (SELECT CAST(round(CAST(ts_rank(p.searchvector, q) AS double precision) * 1000000) AS bigint) AS rank) r
+            WHERE p.searchvector @@ q
+              AND (CAST(?2 AS text) IS NULL OR lower(p.posttype) = CAST(?2 AS text))
+              AND (CAST(?3 AS text) IS NULL OR lower(p.timetype) = CAST(?3 AS text))
+              AND (CAST(?4 AS text) IS NULL OR p.onlyforwomen = CAST(?4 AS text))
+              AND (r.rank < ?5 OR (r.rank = ?5 AND p.postid < ?6))
+            ORDER BY "rank" DESC, p.postid DESC
+            LIMIT ?7
+            """, nativeQuery = true)
+    List<PostSearchHit> searchAfter(String tsQuery, String postType, String timeType, String onlyForWomen, Long rank, Long postId, int limit);
+
+    @Query("""
+            select p.postId as postId, p.likeCount as likeCount, p.commentCount as commentCount,
+                   p.interestedCount as interestedCount, p.confirmedCount as confirmedCount
+            from Post p where p.postId in :postIds
+            """)
+    List<PostStats> findStatsByPostIdIn(Collection<Long> postIds);
+
+    // Add to the engagement counters of a post in one statement, counters never go below 0
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE socialise.post SET commentcount = greatest(commentcount + ?2, 0), " +
+            "interestedcount = greatest(interestedcount + ?3, 0), confirmedcount = greatest(confirmedcount + ?4, 0) " +
+            "WHERE postid = ?1", nativeQuery = true)
+    int addToEngagementCounts(Long postId, int comments, int interested, int confirmed);
+
+    // Last post id of the page of posts after the given one, null when there are none
+    @Query(value = "SELECT max(postid) FROM (SELECT postid FROM socialise.post WHERE postid > ?1 ORDER BY postid LIMIT ?2) page",
+            nativeQuery = true)
+    Long findLastPostIdOfPageAfter(Long postId, int limit);
+
+    // Lock the posts in (fromPostId, toPostId] in id order until the end of the transaction, counters changed
+    // meanwhile wait for it and changes committed before are seen by its next statements
+    @Query(value = "SELECT postid FROM socialise.post WHERE postid > ?1 AND postid <= ?2 ORDER BY postid FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockPostsOfPage(Long fromPostId, Long toPostId);
+
+    // Set the counters of the posts in (fromPostId, toPostId] to what the like, comment and join rows say
+    // Runs after lockPostsOfPage in the same transaction, or counts read here may be overwritten by concurrent changes
+    // Returns the ids of the posts whose counters had drifted
+    @Transactional
+    @Query(value = """
+            WITH repaired AS (
+            UPDATE socialise.post p
+            SET likecount = c.likes, commentcount = c.comments, interestedcount = c.interested, confirmedcount = c.confirmed
+            FROM (SELECT q.postid,
+                         (SELECT count(*) FROM socialise.post_like l WHERE l.postid = q.postid) AS likes,
+                         coalesce(cardinality(q.comments), 0) AS comments,
+                         (SELECT count(*) FROM socialise.user_interestedposts r WHERE r.interestedposts_id = q.postid) AS interested,
+                         (SELECT count(*) FROM socialise.user_reminderposts r WHERE r.reminderposts_id = q.postid) AS confirmed
+                  FROM socialise.post q WHERE q.postid > ?1 AND q.postid <= ?2) c
+            WHERE p.postid = c.postid
+              AND (p.likecount, p.commentcount, p.interestedcount, p.confirmedcount)
+                  IS DISTINCT FROM (c.likes, c.comments, c.interested, c.confirmed)
+            RETURNING p.postid
+            )
+            SELECT postid FROM repaired
+            """, nativeQuery = true)
+    List<Long> reconcileEngagementCounts(Long fromPostId, Long toPostId);
+
+    @Query(value = "SELECT u.username FROM socialise.user_interestedposts r JOIN socialise.user u ON u.userid = r.user_id " +
+            "WHERE r.interestedposts_id = ?1", nativeQuery = true)
+    List<String> findInterestedUsernames(Long postId);
+
+    @Query(value = "SELECT u.username FROM socialise.user_reminderposts r JOIN socialise.user u ON u.userid = r.user_id " +
+            "WHERE r.reminderposts_id = ?1", nativeQuery = true)
+    List<String> findConfirmedUsernames(Long postId);
+
+    @Query("select p.likeCount from Post p where p.postId = :postId")
+    Long findLikeCountByPostId(Long postId);
+
+    // Apply a batch of like count deltas, postIds[i] gets deltas[i]
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE socialise.post p SET likecount = p.likecount + d.delta " +
+            "FROM unnest(?1, ?2) AS d(postid, delta) WHERE p.postid = d.postid", nativeQuery = true)
+    int addToLikeCounts(Long[] postIds, Long[] deltas);
+
+    // Rows linking users to a post, as interested or confirmed users
+    @Query(value = "SELECT (SELECT count(*) FROM socialise.user_interestedposts WHERE interestedposts_id = ?1) " +
+            "+ (SELECT count(*) FROM socialise.user_reminderposts WHERE reminderposts_id = ?1)", nativeQuery = true)
+    long countUserLinksOfPost(Long postId);
+
+    // Take a seat of the post for one more confirmed user, compare-and-set on the confirmed count
+    // Returns 0 without changing anything when the post is full
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE socialise.post SET confirmedcount = confirmedcount + 1 " +
+            "WHERE postid = ?1 AND (capacity IS NULL OR confirmedcount < capacity)", nativeQuery = true)
+    int reserveSeat(Long postId);
+
+    // Free seats of the post, locking its row until the end of the transaction so no seat is taken meanwhile
+    // Integer.MAX_VALUE when the post has no capacity, null when it does not exist
+    @Transactional
+    @Query(value = "SELECT CASE WHEN capacity IS NULL THEN 2147483647 " +
+            "ELSE CAST(greatest(capacity - confirmedcount, 0) AS integer) END " +
+            "FROM socialise.post WHERE postid = ?1 FOR UPDATE", nativeQuery = true)
+    Integer lockFreeSeats(Long postId);
+
+    // Confirm a user promoted from the waitlist into a seat already reserved for them
+    // Returns 0 when the user no longer exists or was confirmed meanwhile
+    @Transactional
+    @Query(value = """
+            WITH confirmed AS (
+                INSERT INTO socialise.user_reminderposts (user_id, reminderposts_id)
+                SELECT u.userid, ?1 FROM socialise.user u
+                WHERE u.username = ?2
+                  AND NOT EXISTS (SELECT 1 FROM socialise.user_reminderposts c
+                                  WHERE c.user_id = u.userid AND c.reminderposts_id = ?1)
+                RETURNING user_id
+            ), versions AS (
+                UPDATE socialise.user SET version = version + 1 WHERE userid IN (SELECT user_id FROM confirmed)
+            )
+            SELECT count(*) FROM confirmed
+            """, nativeQuery = true)
+    long confirmWaitlistedUser(Long postId, String username);
+
+    // Accept the given interested users of a post in one statement: their requests are removed and they are
+    // confirmed unless they already were. Users not interested in the post are left out of the result.
+    // Only the first seats users, in the order asked, get a seat, the others are put on the waitlist of the post.
+    // The versions of the users are bumped, as the join rows belong to them.
+    @Transactional
+    @Query(value = """
+            WITH requested AS (
+                DELETE FROM socialise.user_interestedposts r USING socialise.user u
+                WHERE r.user_id = u.userid AND r.interestedposts_id = ?1 AND u.username = ANY(?2)
+                RETURNING u.userid, u.username
+            ), accepted AS (
+                SELECT DISTINCT a.userid, a.username,
+                       EXISTS (SELECT 1 FROM socialise.user_reminderposts c
+                               WHERE c.user_id = a.userid AND c.reminderposts_id = ?1) AS already
+                FROM requested a
+            ), seats AS (
+                SELECT a.userid, a.username, a.already,
+                       (a.already OR row_number() OVER (PARTITION BY a.already
+                                                        ORDER BY array_position(?2, a.username)) <= ?3) AS seated
+                FROM accepted a
+            ), confirmed AS (
+                INSERT INTO socialise.user_reminderposts (user_id, reminderposts_id)
+                SELECT s.userid, ?1 FROM seats s WHERE s.seated AND NOT s.already
+                RETURNING user_id
+            ), waitlisted AS (
+                INSERT INTO socialise.post_waitlist (postid, username, waitlistedts)
+                SELECT ?1, s.username, now() FROM seats s WHERE NOT s.seated
+                ORDER BY array_position(?2, s.username)
+                ON CONFLICT DO NOTHING
+            ), versions AS (
+                UPDATE socialise.user SET version = version + 1 WHERE userid IN (SELECT userid FROM accepted)
+            )
+            SELECT s.username AS "username", (c.user_id IS NOT NULL) AS "newlyConfirmed", s.seated AS "seated"
+            FROM seats s LEFT JOIN confirmed c ON c.user_id = s.userid
+            """, nativeQuery = true)
+    List<AcceptedUser> acceptInterestedUsers(Long postId, String[] usernames, int seats);
+
+    // Remove the requests of the given users to a post in one statement, returns the users who had requested it
+    @Transactional
+    @Query(value = """
+            WITH requested AS (
+                DELETE FROM socialise.user_interestedposts r USING socialise.user u
+                WHERE r.user_id = u.userid AND r.interestedposts_id = ?1 AND u.username = ANY(?2)
+                RETURNING u.userid, u.username
+            ), versions AS (
+                UPDATE socialise.user SET version = version + 1 WHERE userid IN (SELECT userid FROM requested)
+            )
+            SELECT DISTINCT username FROM requested
+            """, nativeQuery = true)
+    List<String> rejectInterestedUsers(Long postId, String[] usernames);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.user_interestedposts WHERE interestedposts_id = ?1", nativeQuery = true)
+    int deleteInterestedUsersOfPost(Long postId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.user_reminderposts WHERE reminderposts_id = ?1", nativeQuery = true)
+    int deleteConfirmedUsersOfPost(Long postId);
+
+    // Chunked versions of the deletes above for background jobs, the join tables have no key so rows are picked by ctid
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.user_interestedposts WHERE ctid IN " +
+            "(SELECT ctid FROM socialise.user_interestedposts WHERE interestedposts_id = ?1 LIMIT ?2)", nativeQuery = true)
+    int deleteInterestedUsersOfPost(Long postId, int limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.user_reminderposts WHERE ctid IN " +
+            "(SELECT ctid FROM socialise.user_reminderposts WHERE reminderposts_id = ?1 LIMIT ?2)", nativeQuery = true)
+    int deleteConfirmedUsersOfPost(Long postId, int limit);
+
+    // Delete a post along with its interested and confirmed user links and its likes in one statement
+    @Transactional
+    @Query(value = """
+            WITH interested AS (
+                DELETE FROM socialise.user_interestedposts WHERE interestedposts_id = ?1 RETURNING 1
+            ), confirmed AS (
+                DELETE FROM socialise.user_reminderposts WHERE reminderposts_id = ?1 RETURNING 1
+            ), likes AS (
+                DELETE FROM socialise.post_like WHERE postid = ?1 RETURNING 1
+            ), post AS (
+                DELETE FROM socialise.post WHERE postid = ?1
+            )
+            SELECT (SELECT count(*) FROM interested) AS "interestedUsers",
+                   (SELECT count(*) FROM confirmed) AS "confirmedUsers",
+                   (SELECT count(*) FROM likes) AS "likes"
+            """, nativeQuery = true)
+    DeletedPostLinks deletePostWithLinks(Long postId);
 }
@@ -0,0 +1,29 @@
+package com.socialising.services.repository;
+
+import com.socialising.services.model.PostViewSketch;
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PostViewSketchRepository extends JpaRepository<PostViewSketch, Long> {
+
+    // Create the empty sketch rows missing for the given posts, so they can all be locked before merging
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO socialise.post_view_sketch (postid) SELECT unnest(?1) ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    int insertMissing(Long[] postIds);
+
+    // Sketches of the given posts, locked until the end of the transaction so concurrent merges do not lose views
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from PostViewSketch s where s.postId in :postIds")
+    List<PostViewSketch> findAllForUpdate(Collection<Long> postIds);
+}
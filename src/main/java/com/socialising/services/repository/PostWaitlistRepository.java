@@ -0,0 +1,45 @@
+package com.socialising.services.repository;
+
+import com.socialising.services.model.PostWaitlist;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PostWaitlistRepository extends JpaRepository<PostWaitlist, PostWaitlist.PostWaitlistId> {
+
+    // Returns 1 if the user was waitlisted, 0 if the user was already waiting
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO socialise.post_waitlist (postid, username, waitlistedts) VALUES (?1, ?2, now()) ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    int insertWaitlisted(Long postId, String username);
+
+    // Take the first user off the waitlist of a post, null when nobody is waiting
+    // Concurrent promotions skip the row locked by each other instead of promoting the same user twice
+    @Transactional
+    @Query(value = """
+            DELETE FROM socialise.post_waitlist w
+            WHERE (w.postid, w.username) = (SELECT f.postid, f.username FROM socialise.post_waitlist f
+                                            WHERE f.postid = ?1 ORDER BY f.seq LIMIT 1 FOR UPDATE SKIP LOCKED)
+            RETURNING w.username
+            """, nativeQuery = true)
+    String popFirst(Long postId);
+
+    @Query("select w.username from PostWaitlist w where w.postId = :postId order by w.seq")
+    List<String> findUsernamesByPostId(Long postId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.post_waitlist WHERE postid = ?1", nativeQuery = true)
+    int deleteAllByPostId(Long postId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM socialise.post_waitlist WHERE username = ?1", nativeQuery = true)
+    int deleteAllByUsername(String username);
+}
@@ -1,7 +1,9 @@
 package com.socialising.services.repository;
 
 import com.socialising.services.model.token.Token;
+import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -9,7 +11,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TokenRepository extends JpaRepository<Token, Integer> {
+public interface TokenRepository extends JpaRepository<Token, Long> {
 
     @Query("""
             select t from Token t inner join User u on t.user.userId = u.userId
@@ -18,4 +20,9 @@ public interface TokenRepository extends JpaRepository<Token, Integer> {
     List<Token> findAllValidTokens(Long userId);
 
     Optional<Token> findByToken(String token);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Token t where t.user.userId = :userId")
+    int deleteAllByUserId(Long userId);
 }
@@ -1,8 +1,13 @@
 package com.socialising.services.repository;
 
 import com.socialising.services.constants.Status;
+import com.socialising.services.dto.UserProfile;
+import com.socialising.services.dto.UserSearchTerms;
 import com.socialising.services.model.User;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -24,7 +29,94 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query(value = "SELECT * FROM socialise.user WHERE username LIKE %?1%", nativeQuery = true)
     List<User> searchUserByWord(String word);
 
+    // Users having any of the lowercase tags, through the tag index
+    @Query(value = "SELECT username FROM socialise.user WHERE socialise.lower_tags(tags) && CAST(?1 AS text[]) LIMIT ?2", nativeQuery = true)
+    List<String> findUsernamesWithAnyTag(String[] tags, int limit);
+
+    // Lowercase tags more users than the given number have, read once on startup
+    @Query(value = "SELECT t.tag FROM socialise.user u CROSS JOIN LATERAL unnest(socialise.lower_tags(u.tags)) AS t(tag) " +
+            "GROUP BY t.tag HAVING count(DISTINCT u.userid) > ?1", nativeQuery = true)
+    List<String> findTagsOfMoreUsersThan(int userCount);
+
+    // Users having the lowercase tag, through the tag index, in username order after the given username
+    @Query(value = "SELECT * FROM socialise.user WHERE socialise.lower_tags(tags) @> ARRAY[CAST(?1 AS text)] " +
+            "AND username > ?2 ORDER BY username LIMIT ?3", nativeQuery = true)
+    List<User> findByTagAfter(String tag, String afterUsername, int limit);
+
+    // Users having any of the lowercase tags, through the tag index, in username order after the given username
+    @Query(value = "SELECT * FROM socialise.user WHERE socialise.lower_tags(tags) && CAST(?1 AS text[]) " +
+            "AND username > ?2 ORDER BY username LIMIT ?3", nativeQuery = true)
+    List<User> findByAnyTagAfter(String[] tags, String afterUsername, int limit);
+
+    @Query(value = "SELECT * FROM socialise.user WHERE username > ?1 ORDER BY username LIMIT ?2", nativeQuery = true)
+    List<User> findUsersAfter(String afterUsername, int limit);
+
+    // Adds the lowercase tags missing from the dictionary of user tags
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO socialise.user_tag (tag) SELECT unnest(CAST(?1 AS text[])) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertDictionaryTags(String[] tags);
+
+    // Tags of the dictionary containing the escaped LIKE pattern
+    @Query(value = "SELECT tag FROM socialise.user_tag WHERE tag LIKE CONCAT('%', ?1, '%') ORDER BY tag LIMIT ?2", nativeQuery = true)
+    List<String> findDictionaryTagsContaining(String pattern, int limit);
+
+    // Profiles of the users after the given user id, to read them all page by page
+    @Query("""
+            select u.userId as userId, u.username as username, u.tags as tags, u.city as city, u.homeCity as homeCity,
+            u.education as education, u.occupation as occupation from User u where u.userId > :userId order by u.userId
+            """)
+    List<UserProfile> findProfilesAfter(Long userId, Pageable pageable);
+
+    // Usernames, names and tags of the users after the given user id, to read them all page by page
+    @Query("""
+            select u.userId as userId, u.username as username, u.firstName as firstName, u.lastName as lastName, u.tags as tags
+            from User u where u.userId > :userId order by u.userId
+            """)
+    List<UserSearchTerms> findSearchTermsAfter(Long userId, Pageable pageable);
+
     List<User> findAllByStatus(Status status);
 
     boolean existsByUsername(String username);
+
+    // Rows linking a user to posts, as interested or confirmed user
+    @Query(value = "SELECT (SELECT count(*) FROM socialise.user_interestedposts WHERE user_id = ?1) " +
+            "+ (SELECT count(*) FROM socialise.user_reminderposts WHERE user_id = ?1)", nativeQuery = true)
+    long countPostLinksOfUser(Long userId);
+
+    @Query(value = "SELECT reminderposts_id FROM socialise.user_reminderposts WHERE user_id = ?1", nativeQuery = true)
+    List<Long> findReminderPostIdsOfUser(Long userId);
+
+    // The deletes below also take the user off the interested and confirmed counters of the posts
+    // There is one join row per (user, post), so the number of posts updated is the number of rows deleted
+    @Transactional
+    @Modifying
+    @Query(value = "WITH d AS (DELETE FROM socialise.user_interestedposts WHERE user_id = ?1 RETURNING interestedposts_id) " +
+            "UPDATE socialise.post p SET interestedcount = greatest(p.interestedcount - 1, 0) FROM d WHERE p.postid = d.interestedposts_id",
+            nativeQuery = true)
+    int deleteRequestedPostsOfUser(Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "WITH d AS (DELETE FROM socialise.user_reminderposts WHERE user_id = ?1 RETURNING reminderposts_id) " +
+            "UPDATE socialise.post p SET confirmedcount = greatest(p.confirmedcount - 1, 0) FROM d WHERE p.postid = d.reminderposts_id",
+            nativeQuery = true)
+    int deleteReminderPostsOfUser(Long userId);
+
+    // Chunked versions of the deletes above for background jobs
+    @Transactional
+    @Modifying
+    @Query(value = "WITH d AS (DELETE FROM socialise.user_interestedposts WHERE ctid IN " +
+            "(SELECT ctid FROM socialise.user_interestedposts WHERE user_id = ?1 LIMIT ?2) RETURNING interestedposts_id) " +
+            "UPDATE socialise.post p SET interestedcount = greatest(p.interestedcount - 1, 0) FROM d WHERE p.postid = d.interestedposts_id",
+            nativeQuery = true)
+    int deleteRequestedPostsOfUser(Long userId, int limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "WITH d AS (DELETE FROM socialise.user_reminderposts WHERE ctid IN " +
+            "(SELECT ctid FROM socialise.user_reminderposts WHERE user_id = ?1 LIMIT ?2) RETURNING reminderposts_id) " +
+            "UPDATE socialise.post p SET confirmedcount = greatest(p.confirmedcount - 1, 0) FROM d WHERE p.postid = d.reminderposts_id",
+            nativeQuery = true)
+    int deleteReminderPostsOfUser(Long userId, int limit);
 }
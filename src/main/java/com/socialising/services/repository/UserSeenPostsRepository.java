@@ -0,0 +1,9 @@
+package com.socialising.services.repository;
+
+import com.socialising.services.model.UserSeenPosts;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserSeenPostsRepository extends JpaRepository<UserSeenPosts, String> {
+}
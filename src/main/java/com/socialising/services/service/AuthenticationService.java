@@ -13,6 +13,7 @@ import com.socialising.services.model.auth.RegisterRequest;
 import com.socialising.services.model.token.Token;
 import com.socialising.services.repository.TokenRepository;
 import com.socialising.services.repository.UserRepository;
+import com.socialising.services.util.IdGenerator;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
@@ -33,11 +34,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 
 import java.io.IOException;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Random;
 
 @Service
 @RequiredArgsConstructor
@@ -52,11 +51,17 @@ public class AuthenticationService {
 
     private final OtpService otpService;
 
+    private final IdGenerator idGenerator;
+
+    private final AutocompleteService autocompleteService;
+
+    private final UserSuggestionService userSuggestionService;
+
     private static final Logger log = LoggerFactory.getLogger(PostController.class);
 
     public AuthenticationResponse register(RegisterRequest request) {
         // Generate a unique user Id
-        Long userId = Long.valueOf(new DecimalFormat("000000").format(new Random().nextInt(999999)));
+        Long userId = idGenerator.nextId();
 
         // Create a new user object
         var user = User.builder()
@@ -72,6 +77,8 @@ public class AuthenticationService {
 
         // Save the user to the Repository
         var savedUser = userRepository.save(user);
+        autocompleteService.index(savedUser);
+        userSuggestionService.profileChanged(savedUser);
 
         // Generate JWT Token
         var jwtToken = jwtService.generateToken(savedUser);
@@ -238,7 +245,7 @@ public class AuthenticationService {
     }
 
     private void saveUserToken(User user, String jwtToken) {
-        Integer tokenId = Integer.valueOf(new DecimalFormat("000000").format(new Random().nextInt(999999)));
+        Long tokenId = idGenerator.nextId();
         var token = Token.builder()
                 .id(tokenId)
                 .user(user)
@@ -0,0 +1,242 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.AutocompleteDTO;
+import com.socialising.services.dto.UserSearchTerms;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.UserRepository;
+import com.socialising.services.util.CompressedTrie;
+import com.socialising.services.util.IndexBuild;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory autocomplete of users by username, first and last name and tags.
+ *
+ * Every user is indexed under its terms, lowercase, in a compressed prefix trie: the username, each word of its
+ * names and each tag along with the words of the tag, so "hop" finds "club-hopping". A query matches the users
+ * having a term starting with it, those with the shortest such terms first; a query of several words matches the
+ * users having a term starting with each word. The index is read from the DB page by page on startup and kept up to
+ * date as users register, update their details or tags and are deleted.
+ */
+@Service
+public class AutocompleteService {
+
+    private static final Logger log = LoggerFactory.getLogger(AutocompleteService.class);
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final int MAX_LIMIT = 20;
+
+    // Users matching the longest word of a query of several words read before checking the other words
+    private static final int CANDIDATES_PER_RESULT = 20;
+
+    private final UserRepository userRepository;
+
+    // Users read per query while building the index
+    private final int buildPageSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final CompressedTrie<String> trie = new CompressedTrie<>();
+
+    // Terms every user is indexed under, to take them out on update
+    private final Map<String, String[]> termsByUsername = new HashMap<>();
+
+    // First and last name of every user, served with the matches
+    private final Map<String, String[]> namesByUsername = new HashMap<>();
+
+    private final IndexBuild indexBuild = new IndexBuild(lock);
+
+    @Autowired
+    public AutocompleteService(UserRepository userRepository,
+                               @Value("${application.autocomplete.build-page-size:5000}") int buildPageSize) {
+        this.userRepository = userRepository;
+        this.buildPageSize = buildPageSize;
+    }
+
+    // Read the terms of every user from the DB on startup, retried on the schedule while the DB can not be read
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${application.autocomplete.build-retry-ms:60000}", fixedDelayString = "${application.autocomplete.build-retry-ms:60000}")
+    public void build() {
+        if (!indexBuild.start()) {
+            return;
+        }
+
+        // Users are read in id order, a page at a time, and searchable as soon as their page is indexed
+        long lastUserId = Long.MIN_VALUE;
+        int indexed = 0;
+        boolean complete = false;
+        try {
+            List<UserSearchTerms> page;
+            do {
+                page = userRepository.findSearchTermsAfter(lastUserId, PageRequest.of(0, buildPageSize));
+                lock.writeLock().lock();
+                try {
+                    for (UserSearchTerms user : page) {
+                        String username = user.getUsername();
+                        if (username != null && !username.isBlank()) {
+                            indexTerms(username, termsOf(username, user.getFirstName(), user.getLastName(), user.getTags()),
+                                    user.getFirstName(), user.getLastName());
+                        }
+                        lastUserId = user.getUserId();
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                indexed += page.size();
+            } while (page.size() == buildPageSize);
+            complete = true;
+        } catch (DataAccessException e) {
+            log.info("Autocomplete index not built after {} users: {}", indexed, e.getMessage());
+        }
+
+        // Users registered or updated during the build are indexed again over the pages
+        indexBuild.finish(complete);
+        if (complete) {
+            lock.readLock().lock();
+            try {
+                log.info("Autocomplete index built with {} users and {} terms", termsByUsername.size(), trie.keyCount());
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    public void index(User user) {
+        index(user.getUsername(), user.getFirstName(), user.getLastName(), user.getTags());
+    }
+
+    public void index(String username, String firstName, String lastName, String[] tags) {
+        if (username == null || username.isBlank()) {
+            return;
+        }
+        String[] terms = termsOf(username, firstName, lastName, tags);
+        indexBuild.change(() -> indexTerms(username, terms, firstName, lastName));
+    }
+
+    public void remove(String username) {
+        indexBuild.change(() -> removeUser(username));
+    }
+
+    // Users having a term starting with each word of the query, shortest matching terms first
+    public List<AutocompleteDTO> complete(String query, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String[] words = words(query);
+        if (words.length == 0) {
+            return List.of();
+        }
+
+        // The longest word is looked up in the trie, it has the fewest matches
+        String longest = words[0];
+        for (String word : words) {
+            if (word.length() > longest.length()) {
+                longest = word;
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            List<String> usernames = trie.prefixMatches(longest, words.length == 1 ? size : size * CANDIDATES_PER_RESULT);
+            List<AutocompleteDTO> matches = new ArrayList<>(Math.min(size, usernames.size()));
+            for (String username : usernames) {
+                if (matches.size() == size) {
+                    break;
+                }
+                if (words.length == 1 || matchesAll(termsByUsername.get(username), words)) {
+                    String[] names = namesByUsername.get(username);
+                    matches.add(AutocompleteDTO.builder()
+                            .username(username)
+                            .firstName(names[0])
+                            .lastName(names[1])
+                            .build());
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Trie and maps are written by the two below alone, from indexBuild changes or a build page
+
+    private void indexTerms(String username, String[] terms, String firstName, String lastName) {
+        removeTerms(username);
+        for (String term : terms) {
+            trie.add(term, username);
+        }
+        termsByUsername.put(username, terms);
+        namesByUsername.put(username, new String[]{firstName, lastName});
+    }
+
+    private void removeUser(String username) {
+        removeTerms(username);
+        namesByUsername.remove(username);
+    }
+
+    private void removeTerms(String username) {
+        String[] terms = termsByUsername.remove(username);
+        if (terms != null) {
+            for (String term : terms) {
+                trie.remove(term, username);
+            }
+        }
+    }
+
+    private static String[] termsOf(String username, String firstName, String lastName, String[] tags) {
+        Set<String> terms = new LinkedHashSet<>();
+        terms.add(username.strip().toLowerCase());
+        addWords(terms, firstName);
+        addWords(terms, lastName);
+        if (tags != null) {
+            for (String tag : tags) {
+                if (tag != null && !tag.isBlank()) {
+                    terms.add(tag.strip().toLowerCase());
+                    addWords(terms, tag);
+                }
+            }
+        }
+        return terms.toArray(new String[0]);
+    }
+
+    private static void addWords(Set<String> terms, String text) {
+        terms.addAll(Arrays.asList(words(text)));
+    }
+
+    private static String[] words(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        return Arrays.stream(WORD_SEPARATOR.split(text.strip().toLowerCase()))
+                .filter(word -> !word.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    private static boolean matchesAll(String[] terms, String[] words) {
+        for (String word : words) {
+            boolean found = false;
+            for (String term : terms) {
+                if (term.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
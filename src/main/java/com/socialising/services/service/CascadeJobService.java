@@ -0,0 +1,182 @@
+package com.socialising.services.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.socialising.services.dto.CascadeJobDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs delete cascades that are too large for one transaction as background jobs.
+ *
+ * A job is a list of steps followed by a final action. Each step is called again and again, each call in its own
+ * transaction, until it reports that nothing is left, so no transaction locks more than a chunk of rows. The final
+ * action runs in one last transaction and removes whatever is left together with the deleted row itself. Jobs run
+ * one at a time, and their progress can be read by target until a day after they finish.
+ */
+@Service
+public class CascadeJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(CascadeJobService.class);
+
+    public static final String RUNNING = "RUNNING";
+
+    public static final String COMPLETED = "COMPLETED";
+
+    public static final String FAILED = "FAILED";
+
+    private final TransactionOperations transactionOperations;
+
+    private final Executor executor;
+
+    // Rows handled per step call, and so per transaction
+    private final int chunkSize;
+
+    // Cascades touching more rows than this run in the background
+    private final long backgroundThreshold;
+
+    private final Cache<String, Job> jobs = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+
+    @Autowired
+    public CascadeJobService(TransactionOperations transactionOperations,
+                             @Value("${application.cascade.chunk-size:1000}") int chunkSize,
+                             @Value("${application.cascade.background-threshold:5000}") long backgroundThreshold) {
+        this(transactionOperations, Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "cascade-job");
+            thread.setDaemon(true);
+            return thread;
+        }), chunkSize, backgroundThreshold);
+    }
+
+    CascadeJobService(TransactionOperations transactionOperations, Executor executor, int chunkSize, long backgroundThreshold) {
+        this.transactionOperations = transactionOperations;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.backgroundThreshold = backgroundThreshold;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public boolean runInBackground(long rows) {
+        return rows > backgroundThreshold;
+    }
+
+    // Step over an array of usernames one chunk at a time, returns the number of usernames handled by each call
+    public IntSupplier inChunks(String[] usernames, ToIntFunction<String[]> update) {
+        AtomicLong offset = new AtomicLong();
+        return () -> {
+            int from = (int) offset.get();
+            if (from >= usernames.length) {
+                return 0;
+            }
+            int to = Math.min(from + chunkSize, usernames.length);
+            update.applyAsInt(Arrays.copyOfRange(usernames, from, to));
+            offset.set(to);
+            return to - from;
+        };
+    }
+
+    // Start a job, or return the one already running for the same target
+    public CascadeJobDTO submit(String type, Long targetId, long totalRows, List<IntSupplier> steps, Runnable finish) {
+        Job job = new Job(type, targetId, totalRows);
+        Job running = jobs.asMap().compute(key(type, targetId),
+                (key, existing) -> existing != null && RUNNING.equals(existing.status) ? existing : job);
+        if (running != job) {
+            return running.toDTO();
+        }
+
+        log.info("Delete of {} [{}] with {} related rows started in the background", type, targetId, totalRows);
+        executor.execute(() -> run(job, steps, finish));
+        return job.toDTO();
+    }
+
+    public CascadeJobDTO getJob(String type, Long targetId) {
+        Job job = jobs.getIfPresent(key(type, targetId));
+        return job != null ? job.toDTO() : null;
+    }
+
+    private void run(Job job, List<IntSupplier> steps, Runnable finish) {
+        try {
+            for (IntSupplier step : steps) {
+                int processed;
+                do {
+                    processed = transactionOperations.execute(status -> step.getAsInt());
+                    job.processedRows.addAndGet(processed);
+                } while (processed > 0);
+            }
+            transactionOperations.executeWithoutResult(status -> finish.run());
+            job.finish(COMPLETED, null);
+            log.info("Delete of {} [{}] completed, {} related rows processed", job.type, job.targetId, job.processedRows.get());
+        } catch (Exception e) {
+            job.finish(FAILED, e.getMessage());
+            log.info("Delete of {} [{}] failed after {} related rows: {}", job.type, job.targetId, job.processedRows.get(), e.getMessage());
+        }
+    }
+
+    private static String key(String type, Long targetId) {
+        return type + ":" + targetId;
+    }
+
+    private static final class Job {
+
+        private final String type;
+
+        private final Long targetId;
+
+        private final long totalRows;
+
+        private final AtomicLong processedRows = new AtomicLong();
+
+        private final Timestamp startedTs = new Timestamp(System.currentTimeMillis());
+
+        private volatile Timestamp finishedTs;
+
+        private volatile String status = RUNNING;
+
+        private volatile String error;
+
+        private Job(String type, Long targetId, long totalRows) {
+            this.type = type;
+            this.targetId = targetId;
+            this.totalRows = totalRows;
+        }
+
+        private void finish(String status, String error) {
+            this.error = error;
+            this.finishedTs = new Timestamp(System.currentTimeMillis());
+            this.status = status;
+        }
+
+        private CascadeJobDTO toDTO() {
+            return CascadeJobDTO.builder()
+                    .type(type)
+                    .targetId(targetId)
+                    .status(status)
+                    .totalRows(totalRows)
+                    .processedRows(processedRows.get())
+                    .startedTs(startedTs.toString())
+                    .finishedTs(finishedTs != null ? finishedTs.toString() : null)
+                    .error(error)
+                    .build();
+        }
+    }
+}
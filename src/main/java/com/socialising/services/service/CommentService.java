@@ -12,16 +12,16 @@ import com.socialising.services.model.User;
 import com.socialising.services.repository.CommentRepository;
 import com.socialising.services.repository.PostRepository;
 import com.socialising.services.repository.UserRepository;
+import com.socialising.services.util.IdGenerator;
 import io.jsonwebtoken.ExpiredJwtException;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
-import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Random;
 
 @Service
 @RequiredArgsConstructor
@@ -35,6 +35,18 @@ public class CommentService {
 
     private final JwtService jwtService;
 
+    private final IdGenerator idGenerator;
+
+    private final PostCacheService postCacheService;
+
+    private final EngagementCounterService engagementCounterService;
+
+    private final OptimisticRetryService optimisticRetryService;
+
+    private final RequestIdentityMap requestIdentityMap;
+
+    private final PostArchiveService postArchiveService;
+
     private static final Logger log = LoggerFactory.getLogger(PostController.class);
 
     private boolean checkCommentExistInDB(Long commentId) {
@@ -47,7 +59,7 @@ public class CommentService {
     }
 
     private boolean checkPostExistInDB(Long postId) {
-        if(this.postRepository.findById(postId).isPresent()) {
+        if(this.postCacheService.get(postId).isPresent()) {
             log.info("Post {} exist in DB", postId);
             return true;
         }
@@ -68,65 +80,70 @@ public class CommentService {
 
     // Add Comment on Post to DB
     public CommentResponseDTO addCommentOnPost(Long postId, CommentDTO commentDTO, String token) {
-        // check if post exists
-        if(!checkPostExistInDB(postId)) {
-            return null;
-        }
+        return optimisticRetryService.run("addCommentOnPost", () -> {
+            // check if post exists
+            if(!checkPostExistInDB(postId)) {
+                return null;
+            }
 
-        // Get the username of the comment user from token
-        String username = getUsernameFromToken(token);
+            // Get the username of the comment user from token
+            String username = getUsernameFromToken(token);
 
-        if (username.isEmpty()) {
-            log.info("User not present");
-            return null;
-        }
+            if (username.isEmpty()) {
+                log.info("User not present");
+                return null;
+            }
 
-        try {
-            Comment newComment = CommentMapper.dtoToEntity(commentDTO);
-            // Set a unique comment id
-            newComment.setCommentId(Long.valueOf(new DecimalFormat("00000000").format(new Random().nextInt(99999999))));
+            try {
+                Comment newComment = CommentMapper.dtoToEntity(commentDTO);
+                // Set a unique comment id
+                newComment.setCommentId(idGenerator.nextId());
 
-            // Set Post ID
-            newComment.setPostId(postId);
+                // Set Post ID
+                newComment.setPostId(postId);
 
-            // Set the comment Owner Username
-            newComment.setUsername(username);
+                // Set the comment Owner Username
+                newComment.setUsername(username);
 
-            // Add New comment to Comment DB
-            commentRepository.save(newComment);
+                // Add New comment to Comment DB
+                commentRepository.save(newComment);
 
-            // Add new Comment to Comments list of the post
-            Post post = postRepository.findById(postId).get();
+                // Add new Comment to Comments list of the post
+                Post post = postRepository.findById(postId).get();
 
-            // Get the current Comment Id list of Comments on Post
-            Long[] comments = post.getComments();
+                // Get the current Comment Id list of Comments on Post
+                Long[] comments = post.getComments();
 
-            // Add the new Comment Id to the list
-            comments = ArrayUtils.add(comments, newComment.getCommentId());
-            post.setComments(comments);
+                // Add the new Comment Id to the list
+                comments = ArrayUtils.add(comments, newComment.getCommentId());
+                post.setComments(comments);
 
-            // Save the updated the comments list and Post to DB
-            postRepository.save(post);
+                // Save the updated the comments list and Post to DB
+                postRepository.save(post);
+                engagementCounterService.commentAdded(post.getPostId());
 
-            log.info("New Comment [{}] has been added to Comments DB", newComment.getDescription());
-            return CommentMapper.entityToDto(newComment);
+                log.info("New Comment [{}] has been added to Comments DB", newComment.getDescription());
+                return CommentMapper.entityToDto(newComment);
 
-        } catch (Exception e) {
-            log.info("Comment [{}] could not be added. Please try again!!", commentDTO.getDescription());
-            log.info("Error Occurred: [{}]", e.getMessage());
-            return null;
-        }
+            } catch (OptimisticLockingFailureException e) {
+                // Retried by the caller with the newer version
+                throw e;
+            } catch (Exception e) {
+                log.info("Comment [{}] could not be added. Please try again!!", commentDTO.getDescription());
+                log.info("Error Occurred: [{}]", e.getMessage());
+                return null;
+            }
+        });
     }
 
     // GET All Comments on Post
     public ArrayList<CommentResponseDTO> getAllCommentsOnPost(Long postId) {
-        // Check if Post exists in DB
-        if(!checkPostExistInDB(postId)) {
+        // Get the Post and its Comments list, posts whose event ended list their comments from the archive
+        Post post = postCacheService.get(postId).or(() -> postArchiveService.getArchivedPost(postId)).orElse(null);
+        if(post == null) {
+            log.info("Post {} does not exist in DB", postId);
             return null;
         }
-
-        // Get the Post and its Comments list from DB
-        Post post = postRepository.findById(postId).get();
         Long[] commentIds = post.getComments();
 
         // Check if the Comments list of Post is empty
@@ -150,67 +167,73 @@ public class CommentService {
 
     // DELETE a Comment (Comment ID) on Post
     public int deleteCommentOnPost(Long postId, Long commentId, String token) {
-        // Check if Post exists in DB
-        if(!checkPostExistInDB(postId)) {
-            return -1;
-        }
-
-        // Get the Post from DB
-        Post post = postRepository.findById(postId).get();
-
-        // Get the list of Comment IDs of Comments on the Post
-        Long[] commentIds = post.getComments();
-
-        // Check if the Comment list is empty or not
-        if(ArrayUtils.isEmpty(commentIds)) {
-            log.info("No comments added to the Post [{}]", postId);
-            return -1;
-        }
-
-        // Check if the comment exists in the post's comment Ids list
-        if(!ArrayUtils.contains(commentIds, commentId)) {
-            log.info("Comment [{}] is not added to the Post [{}]. Please check!!", commentId, postId);
-            return -1;
-        }
+        return optimisticRetryService.run("deleteCommentOnPost", () -> {
+            // Check if Post exists in DB
+            if(!checkPostExistInDB(postId)) {
+                return -1;
+            }
 
-        // Check if the comment exists in the DB
-        if(checkCommentExistInDB(commentId)) {
-            // Get the comment from DB
-            Comment comment = commentRepository.findById(commentId).get();
+            // Get the Post from DB
+            Post post = postRepository.findById(postId).get();
 
-            // Get the username of the comment user from token
-            String username = getUsernameFromToken(token);
-            User user = userRepository.findByUsername(username).get();
+            // Get the list of Comment IDs of Comments on the Post
+            Long[] commentIds = post.getComments();
 
-            // Only the Owner of Comment and ADMIN User can delete a comment
-            if (!username.equals(comment.getUsername()) && !user.getRole().equals(Role.ADMIN)) {
-                log.info("User [{}] is not authorized to Delete the comment [{}]", username, commentId);
+            // Check if the Comment list is empty or not
+            if(ArrayUtils.isEmpty(commentIds)) {
+                log.info("No comments added to the Post [{}]", postId);
                 return -1;
             }
 
-            try {
-                // remove comment from Comment DB
-                commentRepository.deleteById(commentId);
-                log.info("Comment [{}] deleted from DB", commentId);
-
-                // Remove comment from the Post comment's list
-                commentIds = ArrayUtils.removeElement(commentIds, commentId);
-                post.setComments(commentIds);
-
-                // Save the updated Comments list and Post in DB
-                postRepository.save(post);
+            // Check if the comment exists in the post's comment Ids list
+            if(!ArrayUtils.contains(commentIds, commentId)) {
+                log.info("Comment [{}] is not added to the Post [{}]. Please check!!", commentId, postId);
+                return -1;
+            }
 
-                log.info("Comment [{}] has been deleted from the Comments list of the Post {}", commentId, postId);
-                return 1;
-            } catch (Exception e) {
-                log.info("Exception occurred while deleting comment [{}]", commentId);
-                log.info("Error: {}", e.getMessage());
-                return 0;
+            // Check if the comment exists in the DB
+            if(checkCommentExistInDB(commentId)) {
+                // Get the comment from DB
+                Comment comment = commentRepository.findById(commentId).get();
+
+                // Get the username of the comment user from token
+                String username = getUsernameFromToken(token);
+                User user = requestIdentityMap.findUserByUsername(username).get();
+
+                // Only the Owner of Comment and ADMIN User can delete a comment
+                if (!username.equals(comment.getUsername()) && !user.getRole().equals(Role.ADMIN)) {
+                    log.info("User [{}] is not authorized to Delete the comment [{}]", username, commentId);
+                    return -1;
+                }
+
+                try {
+                    // remove comment from Comment DB
+                    commentRepository.deleteById(commentId);
+                    log.info("Comment [{}] deleted from DB", commentId);
+
+                    // Remove comment from the Post comment's list
+                    commentIds = ArrayUtils.removeElement(commentIds, commentId);
+                    post.setComments(commentIds);
+
+                    // Save the updated Comments list and Post in DB
+                    postRepository.save(post);
+                    engagementCounterService.commentDeleted(post.getPostId());
+
+                    log.info("Comment [{}] has been deleted from the Comments list of the Post {}", commentId, postId);
+                    return 1;
+                } catch (OptimisticLockingFailureException e) {
+                    // Retried by the caller with the newer version
+                    throw e;
+                } catch (Exception e) {
+                    log.info("Exception occurred while deleting comment [{}]", commentId);
+                    log.info("Error: {}", e.getMessage());
+                    return 0;
+                }
             }
-        }
 
-        log.info("Comment [{}] Does not Exist in DB", commentId);
-        return -1;
+            log.info("Comment [{}] Does not Exist in DB", commentId);
+            return -1;
+        });
     }
 
     // LIKE a Comment by User
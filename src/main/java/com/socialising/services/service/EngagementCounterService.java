@@ -0,0 +1,166 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.PostStats;
+import com.socialising.services.dto.PostStatsDTO;
+import com.socialising.services.repository.PostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the comment, interested and confirmed user counts of every post on the post row itself, so listings and
+ * stats never count the comments or join tables.
+ *
+ * Each path changing comments or the users of a post adds its change with one atomic UPDATE, and the counters are
+ * repaired from the rows they count by a periodic reconciliation, in case a write failed between the two statements.
+ */
+@Service
+public class EngagementCounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(EngagementCounterService.class);
+
+    private static final int MAX_STATS_IDS = 100;
+
+    private final PostRepository postRepository;
+
+    private final PostCacheService postCacheService;
+
+    private final PostLikeService postLikeService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Posts checked per statement by the reconciliation
+    private final int reconcilePageSize;
+
+    @Autowired
+    public EngagementCounterService(PostRepository postRepository,
+                                    PostCacheService postCacheService,
+                                    PostLikeService postLikeService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${application.engagement.reconcile-page-size:1000}") int reconcilePageSize) {
+        this.postRepository = postRepository;
+        this.postCacheService = postCacheService;
+        this.postLikeService = postLikeService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reconcilePageSize = reconcilePageSize;
+    }
+
+    public void commentAdded(Long postId) {
+        add(postId, 1, 0, 0);
+    }
+
+    public void commentDeleted(Long postId) {
+        add(postId, -1, 0, 0);
+    }
+
+    public void userInterested(Long postId) {
+        add(postId, 0, 1, 0);
+    }
+
+    public void interestedUserRemoved(Long postId) {
+        add(postId, 0, -1, 0);
+    }
+
+    // A batch of interested users is accepted, of which confirmed were not confirmed before
+    public void interestedUsersConfirmed(Long postId, int accepted, int confirmed) {
+        add(postId, 0, -accepted, confirmed);
+    }
+
+    public void interestedUsersRemoved(Long postId, int removed) {
+        add(postId, 0, -removed, 0);
+    }
+
+    // A single confirmed user is counted by SeatReservationService as it grants the seat
+    public void confirmedUserRemoved(Long postId) {
+        add(postId, 0, 0, -1);
+    }
+
+    private void add(Long postId, int comments, int interested, int confirmed) {
+        postRepository.addToEngagementCounts(postId, comments, interested, confirmed);
+        postCacheService.invalidate(postId);
+        log.info("Engagement counts of Post [{}] changed by comments: {}, interested: {}, confirmed: {}",
+                postId, comments, interested, confirmed);
+    }
+
+    // GET the counters of the given posts in the order asked for, missing posts are left out
+    public List<PostStatsDTO> getStats(List<Long> postIds) {
+        List<Long> ids = postIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .limit(MAX_STATS_IDS)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // Likes not flushed yet are read along with the persisted counts, no flush lands in between
+        List<PostStatsDTO> stats = postLikeService.readLikeCounts(() -> statsOf(ids));
+        log.info("Stats of {} posts found for {} ids", stats.size(), ids.size());
+        return stats;
+    }
+
+    private List<PostStatsDTO> statsOf(List<Long> ids) {
+        Map<Long, PostStats> statsById = postRepository.findStatsByPostIdIn(ids).stream()
+                .collect(Collectors.toMap(PostStats::getPostId, Function.identity()));
+        List<PostStatsDTO> stats = new ArrayList<>(statsById.size());
+        for (Long postId : ids) {
+            PostStats postStats = statsById.get(postId);
+            if (postStats != null) {
+                stats.add(PostStatsDTO.builder()
+                        .postId(postId)
+                        // Likes not flushed yet are counted as well
+                        .likeCount(valueOf(postStats.getLikeCount()) + postLikeService.getPendingLikeCount(postId))
+                        .commentCount(valueOf(postStats.getCommentCount()))
+                        .interestedCount(valueOf(postStats.getInterestedCount()))
+                        .confirmedCount(valueOf(postStats.getConfirmedCount()))
+                        .build());
+            }
+        }
+        return stats;
+    }
+
+    // Set the counters of every post to what the likes, comments and join tables say, a page of posts per transaction
+    @Scheduled(initialDelayString = "${application.engagement.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${application.engagement.reconcile-interval-ms:3600000}")
+    public int reconcile() {
+        long lastPostId = Long.MIN_VALUE;
+        int repaired = 0;
+        try {
+            Long pageEnd;
+            while ((pageEnd = postRepository.findLastPostIdOfPageAfter(lastPostId, reconcilePageSize)) != null) {
+                long from = lastPostId;
+                long to = pageEnd;
+                // The page is locked first, so the counts are read after every change holding its posts committed
+                // Likes wait for the page, its like counts are set with no delta pending that the rows already count
+                List<Long> repairedIds = postLikeService.withLikeCountsFlushed(() -> transactionTemplate.execute(status -> {
+                    postRepository.lockPostsOfPage(from, to);
+                    return postRepository.reconcileEngagementCounts(from, to);
+                }));
+                if (repairedIds != null && !repairedIds.isEmpty()) {
+                    postCacheService.invalidateAll(repairedIds);
+                    repaired += repairedIds.size();
+                }
+                lastPostId = pageEnd;
+            }
+        } catch (DataAccessException e) {
+            log.error("Error reconciling engagement counts after Post [{}]: {}", lastPostId, e.getMessage());
+            return repaired;
+        }
+        log.info("Engagement counts reconciled, {} posts repaired", repaired);
+        return repaired;
+    }
+
+    private static long valueOf(Long count) {
+        return count != null ? count : 0L;
+    }
+}
@@ -0,0 +1,189 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.EventReminderDTO;
+import com.socialising.services.dto.PendingReminder;
+import com.socialising.services.dto.PostSummary;
+import com.socialising.services.mapper.PostMapper;
+import com.socialising.services.model.Post;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.util.HierarchicalTimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Reminds confirmed users of a post shortly before it starts, over STOMP on /user/{username}/queue/reminders.
+ *
+ * Pending reminders live in a hierarchical timing wheel. Only reminders due within the load horizon are kept in
+ * memory; they are read from the DB with a range query on the post start time, on startup and then window by
+ * window, so a restart never scans the whole post table. Accepting, removing or rescheduling an attendee updates
+ * the wheel directly.
+ */
+@Service
+public class EventReminderService {
+
+    private static final Logger log = LoggerFactory.getLogger(EventReminderService.class);
+
+    public static final String REMINDER_QUEUE = "/queue/reminders";
+
+    private final PostRepository postRepository;
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    // How long before the start of a post its confirmed users are reminded
+    private final long leadMillis;
+
+    // Reminders due within this long from now are kept in the wheel
+    private final long horizonMillis;
+
+    private final LongSupplier clock;
+
+    private final HierarchicalTimingWheel<ReminderKey> wheel;
+
+    // Reminders due before this time have been loaded into the wheel
+    private volatile long loadedUntil;
+
+    @Autowired
+    public EventReminderService(PostRepository postRepository,
+                                SimpMessagingTemplate messagingTemplate,
+                                @Value("${application.reminders.lead-minutes:60}") long leadMinutes,
+                                @Value("${application.reminders.load-horizon-minutes:1440}") long horizonMinutes,
+                                @Value("${application.reminders.tick-ms:1000}") long tickMillis) {
+        this(postRepository, messagingTemplate, TimeUnit.MINUTES.toMillis(leadMinutes), TimeUnit.MINUTES.toMillis(horizonMinutes),
+                tickMillis, System::currentTimeMillis);
+    }
+
+    EventReminderService(PostRepository postRepository, SimpMessagingTemplate messagingTemplate,
+                         long leadMillis, long horizonMillis, long tickMillis, LongSupplier clock) {
+        this.postRepository = postRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.leadMillis = leadMillis;
+        this.horizonMillis = horizonMillis;
+        this.clock = clock;
+        // 64 slots per level, 4 levels: ~194 days at the default tick of a second
+        this.wheel = new HierarchicalTimingWheel<>(tickMillis, 64, 4, clock.getAsLong());
+        this.loadedUntil = clock.getAsLong();
+    }
+
+    // Read the reminders of the next window from the DB, runs on startup and then every load interval
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${application.reminders.load-interval-ms:600000}", fixedDelayString = "${application.reminders.load-interval-ms:600000}")
+    public void loadUpcomingReminders() {
+        long from = loadedUntil;
+        long until = clock.getAsLong() + horizonMillis;
+        if (until <= from) {
+            return;
+        }
+
+        // Moved first so users confirmed while the window is read are scheduled directly, scheduling twice is harmless
+        loadedUntil = until;
+        List<PendingReminder> reminders;
+        try {
+            reminders = postRepository.findConfirmedUsersOfPostsStartingBetween(
+                    new Timestamp(from + leadMillis), new Timestamp(until + leadMillis));
+        } catch (DataAccessException e) {
+            // Read the same window again on the next run
+            loadedUntil = from;
+            log.info("Event reminders not loaded: {}", e.getMessage());
+            return;
+        }
+        for (PendingReminder reminder : reminders) {
+            wheel.schedule(new ReminderKey(reminder.getPostId(), reminder.getUsername()), reminder.getPostStartTs().getTime() - leadMillis);
+        }
+        log.info("{} event reminders loaded, {} pending", reminders.size(), wheel.size());
+    }
+
+    // Remind a newly confirmed user of the post
+    public void schedule(Post post, String username) {
+        if (post.getPostStartTs() == null) {
+            return;
+        }
+        if (post.getPostStartTs().getTime() <= clock.getAsLong()) {
+            return;
+        }
+        long remindAt = post.getPostStartTs().getTime() - leadMillis;
+        // Reminders past the loaded window are picked up by the loader when their window comes
+        if (remindAt < loadedUntil) {
+            wheel.schedule(new ReminderKey(post.getPostId(), username), remindAt);
+            log.info("Reminder of Post [{}] for User [{}] scheduled at {}", post.getPostId(), username, new Timestamp(remindAt));
+        }
+    }
+
+    public void cancel(Long postId, String username) {
+        if (wheel.cancel(new ReminderKey(postId, username))) {
+            log.info("Reminder of Post [{}] for User [{}] cancelled", postId, username);
+        }
+    }
+
+    // The post start time changed, move the reminders of the given confirmed users
+    public void reschedule(Post post, List<String> usernames) {
+        for (String username : usernames) {
+            cancel(post.getPostId(), username);
+            schedule(post, username);
+        }
+    }
+
+    // The post is deleted, cancel its reminders by post ID without loading its confirmed users
+    public void cancelAll(Long postId) {
+        int cancelled = wheel.cancelIf(key -> key.postId().equals(postId));
+        if (cancelled > 0) {
+            log.info("{} Reminders of Post [{}] cancelled", cancelled, postId);
+        }
+    }
+
+    public int pendingReminders() {
+        return wheel.size();
+    }
+
+    @Scheduled(fixedRateString = "${application.reminders.tick-ms:1000}")
+    public void sendDueReminders() {
+        List<ReminderKey> due = wheel.advance(clock.getAsLong());
+        if (due.isEmpty()) {
+            return;
+        }
+
+        // Posts are read when the reminder is sent, so edits made since it was scheduled are included
+        Set<Long> postIds = due.stream().map(ReminderKey::postId).collect(Collectors.toSet());
+        Map<Long, PostSummary> postsById = postRepository.findSummariesByPostIdIn(postIds).stream()
+                .collect(Collectors.toMap(PostSummary::getPostId, Function.identity()));
+
+        int sent = 0;
+        for (ReminderKey key : due) {
+            PostSummary post = postsById.get(key.postId());
+            if (post == null) {
+                continue;
+            }
+            EventReminderDTO reminder = EventReminderDTO.builder()
+                    .postId(post.getPostId())
+                    .ownerUsername(post.getUsername())
+                    .description(post.getDescription())
+                    .location(post.getLocation())
+                    .postStartTs(PostMapper.formatEventTs(post.getPostStartTs()))
+                    .build();
+            try {
+                messagingTemplate.convertAndSendToUser(key.username(), REMINDER_QUEUE, reminder);
+                sent++;
+            } catch (Exception e) {
+                log.info("Reminder of Post [{}] for User [{}] not sent: {}", key.postId(), key.username(), e.getMessage());
+            }
+        }
+        log.info("{} event reminders sent", sent);
+    }
+
+    record ReminderKey(Long postId, String username) {
+    }
+}
@@ -0,0 +1,370 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.FacetIndexStatsDTO;
+import com.socialising.services.dto.FacetSearchDTO;
+import com.socialising.services.dto.PostDTO;
+import com.socialising.services.dto.PostFacets;
+import com.socialising.services.dto.PostSummary;
+import com.socialising.services.mapper.PostMapper;
+import com.socialising.services.model.Post;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.util.CompressedBitmap;
+import com.socialising.services.util.IndexBuild;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory bitmap index over the facets the discovery screen filters on: postType, timeType, onlyForWomen and tags.
+ *
+ * Every post gets a dense int ordinal, and every facet value a compressed bitmap of the ordinals of the posts having
+ * it. A query ORs the bitmaps of the values selected within a facet, or ANDs them for tags when all tags are asked
+ * for, and ANDs the facets together. Facet counts are computed with the filters of the other facets only, so every
+ * value shows how many posts selecting it would give. The index is read from the DB page by page on startup and kept
+ * up to date by addPost, updatePost and deletePost; values are indexed lowercase.
+ */
+@Service
+public class FacetIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(FacetIndexService.class);
+
+    public static final String POST_TYPE = "postType";
+
+    public static final String TIME_TYPE = "timeType";
+
+    public static final String ONLY_FOR_WOMEN = "onlyForWomen";
+
+    public static final String TAGS = "tags";
+
+    private static final List<String> FACETS = List.of(POST_TYPE, TIME_TYPE, ONLY_FOR_WOMEN, TAGS);
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final PostRepository postRepository;
+
+    // Posts read per query while building the index
+    private final int buildPageSize;
+
+    // Max number of tag values counted per query, the most frequent first
+    private final int maxTagCounts;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+
+    private long[] postIds = new long[1024];
+
+    private int nextOrdinal;
+
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+
+    // Facet values of every ordinal, so an update can take the old ones out
+    private final Map<Integer, List<Map.Entry<String, String>>> valuesByOrdinal = new HashMap<>();
+
+    private final CompressedBitmap live = new CompressedBitmap();
+
+    private final Map<String, Map<String, CompressedBitmap>> bitmaps = new HashMap<>();
+
+    private final IndexBuild indexBuild = new IndexBuild(lock);
+
+    @Autowired
+    public FacetIndexService(PostRepository postRepository,
+                             @Value("${application.facets.build-page-size:5000}") int buildPageSize,
+                             @Value("${application.facets.max-tag-counts:50}") int maxTagCounts) {
+        this.postRepository = postRepository;
+        this.buildPageSize = buildPageSize;
+        this.maxTagCounts = maxTagCounts;
+        FACETS.forEach(facet -> bitmaps.put(facet, new HashMap<>()));
+    }
+
+    // Read the facets of every post from the DB, runs on startup and then until it succeeds once
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${application.facets.build-retry-ms:60000}", fixedDelayString = "${application.facets.build-retry-ms:60000}")
+    public void build() {
+        if (!indexBuild.start()) {
+            return;
+        }
+
+        // Pages are indexed as they are read, posts written meanwhile may be older in a page than in the index
+        long lastPostId = Long.MIN_VALUE;
+        int indexed = 0;
+        boolean complete = false;
+        try {
+            List<PostFacets> page;
+            do {
+                page = postRepository.findFacetsAfter(lastPostId, PageRequest.of(0, buildPageSize));
+                lock.writeLock().lock();
+                try {
+                    for (PostFacets post : page) {
+                        indexValues(post.getPostId(), valuesOf(post.getPostType(), post.getTimeType(), post.getOnlyForWomen(), post.getTags()));
+                        lastPostId = post.getPostId();
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                indexed += page.size();
+            } while (page.size() == buildPageSize);
+            complete = true;
+        } catch (DataAccessException e) {
+            log.info("Facet index not built after {} posts: {}", indexed, e.getMessage());
+        }
+
+        indexBuild.finish(complete);
+
+        if (complete) {
+            FacetIndexStatsDTO stats = getStats();
+            log.info("Facet index built with {} posts and {} facet values in {} bytes", stats.getPosts(), stats.getFacetValues(), stats.getBitmapBytes());
+        }
+    }
+
+    public void index(Post post) {
+        index(post.getPostId(), post.getPostType(), post.getTimeType(), post.getOnlyForWomen(), post.getTags());
+    }
+
+    public void index(Long postId, String postType, String timeType, Character onlyForWomen, String[] tags) {
+        List<Map.Entry<String, String>> values = valuesOf(postType, timeType, onlyForWomen, tags);
+        indexBuild.change(() -> indexValues(postId, values));
+    }
+
+    public void remove(Long postId) {
+        indexBuild.change(() -> removePost(postId));
+    }
+
+    // GET the facet counts and a page of the matching Posts, highest post id, so newest, first
+    // Values selected within a facet are ORed, except tags with allTags, and the facets are ANDed
+    public FacetSearchDTO search(Map<String, List<String>> filters, boolean allTags, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Long before = decodeCursor(cursor);
+
+        FacetSearchDTO result;
+        List<Long> postIds;
+        lock.readLock().lock();
+        try {
+            Map<String, CompressedBitmap> facetMatches = facetMatches(filters, allTags);
+            CompressedBitmap matches = matchingAllBut(facetMatches, null);
+            result = FacetSearchDTO.builder()
+                    .total(matches.getCardinality())
+                    .facets(facetCounts(facetMatches))
+                    .build();
+            postIds = topPostIds(matches, before, pageSize);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<Long, PostSummary> postsById = postIds.isEmpty() ? Map.of() : postRepository.findSummariesByPostIdIn(postIds).stream()
+                .collect(Collectors.toMap(PostSummary::getPostId, Function.identity()));
+        List<PostDTO> posts = new ArrayList<>(postIds.size());
+        for (Long postId : postIds) {
+            PostSummary post = postsById.get(postId);
+            if (post != null) {
+                posts.add(PostMapper.summaryToDto(post));
+            }
+        }
+        result.setPosts(posts);
+        result.setNextCursor(postIds.size() < pageSize ? null : String.valueOf(postIds.get(postIds.size() - 1)));
+        log.info("Facet search {} matched {} posts, {} served", filters, result.getTotal(), posts.size());
+        return result;
+    }
+
+    // Number of posts matching the filters and the facet counts, without reading the posts
+    public FacetSearchDTO count(Map<String, List<String>> filters, boolean allTags) {
+        lock.readLock().lock();
+        try {
+            Map<String, CompressedBitmap> facetMatches = facetMatches(filters, allTags);
+            return FacetSearchDTO.builder()
+                    .total(matchingAllBut(facetMatches, null).getCardinality())
+                    .facets(facetCounts(facetMatches))
+                    .posts(List.of())
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public FacetIndexStatsDTO getStats() {
+        lock.readLock().lock();
+        try {
+            long bitmapBytes = live.sizeInBytes();
+            int facetValues = 0;
+            for (Map<String, CompressedBitmap> values : bitmaps.values()) {
+                facetValues += values.size();
+                for (CompressedBitmap bitmap : values.values()) {
+                    bitmapBytes += bitmap.sizeInBytes();
+                }
+            }
+            return FacetIndexStatsDTO.builder()
+                    .built(indexBuild.isBuilt())
+                    .posts(ordinals.size())
+                    .facetValues(facetValues)
+                    .bitmapBytes(bitmapBytes)
+                    .postIdBytes(postIds.length * 8L)
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Run through indexBuild, under the write lock
+
+    private void indexValues(Long postId, List<Map.Entry<String, String>> values) {
+        Integer ordinal = ordinals.get(postId);
+        if (ordinal == null) {
+            ordinal = newOrdinal(postId);
+        } else {
+            removeValues(ordinal);
+        }
+        for (Map.Entry<String, String> value : values) {
+            bitmaps.get(value.getKey()).computeIfAbsent(value.getValue(), v -> new CompressedBitmap()).add(ordinal);
+        }
+        valuesByOrdinal.put(ordinal, values);
+        live.add(ordinal);
+    }
+
+    private void removePost(Long postId) {
+        Integer ordinal = ordinals.remove(postId);
+        if (ordinal == null) {
+            return;
+        }
+        removeValues(ordinal);
+        valuesByOrdinal.remove(ordinal);
+        live.remove(ordinal);
+        freeOrdinals.push(ordinal);
+    }
+
+    private static List<Map.Entry<String, String>> valuesOf(String postType, String timeType, Character onlyForWomen, String[] tags) {
+        List<Map.Entry<String, String>> values = new ArrayList<>();
+        addValue(values, POST_TYPE, postType);
+        addValue(values, TIME_TYPE, timeType);
+        addValue(values, ONLY_FOR_WOMEN, String.valueOf(onlyForWomen != null && onlyForWomen == 'Y'));
+        if (tags != null) {
+            Arrays.stream(tags).distinct().forEach(tag -> addValue(values, TAGS, tag));
+        }
+        return values;
+    }
+
+    private static void addValue(List<Map.Entry<String, String>> values, String facet, String value) {
+        if (StringUtils.isNotBlank(value)) {
+            values.add(Map.entry(facet, value.strip().toLowerCase()));
+        }
+    }
+
+    private int newOrdinal(Long postId) {
+        int ordinal = freeOrdinals.isEmpty() ? nextOrdinal++ : freeOrdinals.pop();
+        if (ordinal == postIds.length) {
+            postIds = Arrays.copyOf(postIds, postIds.length * 2);
+        }
+        postIds[ordinal] = postId;
+        ordinals.put(postId, ordinal);
+        return ordinal;
+    }
+
+    private void removeValues(int ordinal) {
+        for (Map.Entry<String, String> value : valuesByOrdinal.getOrDefault(ordinal, List.of())) {
+            Map<String, CompressedBitmap> values = bitmaps.get(value.getKey());
+            CompressedBitmap bitmap = values.get(value.getValue());
+            bitmap.remove(ordinal);
+            if (bitmap.isEmpty()) {
+                values.remove(value.getValue());
+            }
+        }
+    }
+
+    // Bitmap of the posts matching each filtered facet, facets without selected values are left out
+    private Map<String, CompressedBitmap> facetMatches(Map<String, List<String>> filters, boolean allTags) {
+        Map<String, CompressedBitmap> facetMatches = new HashMap<>();
+        for (String facet : FACETS) {
+            List<String> selected = filters.getOrDefault(facet, List.of()).stream()
+                    .filter(StringUtils::isNotBlank)
+                    .map(value -> value.strip().toLowerCase())
+                    .distinct()
+                    .toList();
+            if (selected.isEmpty()) {
+                continue;
+            }
+            boolean and = allTags && TAGS.equals(facet);
+            CompressedBitmap match = null;
+            for (String value : selected) {
+                CompressedBitmap bitmap = bitmaps.get(facet).getOrDefault(value, new CompressedBitmap());
+                if (match == null) {
+                    match = bitmap;
+                } else {
+                    match = and ? CompressedBitmap.and(match, bitmap) : CompressedBitmap.or(match, bitmap);
+                }
+            }
+            facetMatches.put(facet, match);
+        }
+        return facetMatches;
+    }
+
+    // Posts matching every filtered facet other than the excluded one
+    private CompressedBitmap matchingAllBut(Map<String, CompressedBitmap> facetMatches, String excluded) {
+        CompressedBitmap matches = live;
+        for (Map.Entry<String, CompressedBitmap> facetMatch : facetMatches.entrySet()) {
+            if (!facetMatch.getKey().equals(excluded)) {
+                matches = CompressedBitmap.and(matches, facetMatch.getValue());
+            }
+        }
+        return matches;
+    }
+
+    private Map<String, Map<String, Integer>> facetCounts(Map<String, CompressedBitmap> facetMatches) {
+        Map<String, Map<String, Integer>> facetCounts = new LinkedHashMap<>();
+        for (String facet : FACETS) {
+            CompressedBitmap base = matchingAllBut(facetMatches, facet);
+            Comparator<Map.Entry<String, Integer>> byCount = Map.Entry.comparingByValue();
+            facetCounts.put(facet, bitmaps.get(facet).entrySet().stream()
+                    .map(value -> Map.entry(value.getKey(), CompressedBitmap.andCardinality(base, value.getValue())))
+                    .filter(count -> count.getValue() > 0)
+                    .sorted(byCount.reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .limit(TAGS.equals(facet) ? maxTagCounts : Long.MAX_VALUE)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new)));
+        }
+        return facetCounts;
+    }
+
+    // The highest post ids of the matches below the cursor, highest first
+    private List<Long> topPostIds(CompressedBitmap matches, Long before, int limit) {
+        PriorityQueue<Long> top = new PriorityQueue<>(limit + 1);
+        matches.forEach(ordinal -> {
+            long postId = postIds[ordinal];
+            if (before != null && postId >= before) {
+                return;
+            }
+            if (top.size() < limit) {
+                top.add(postId);
+            } else if (postId > top.peek()) {
+                top.poll();
+                top.add(postId);
+            }
+        });
+        List<Long> result = new ArrayList<>(top);
+        result.sort(Comparator.reverseOrder());
+        return result;
+    }
+
+    private Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String digits = cursor.startsWith("-") ? cursor.substring(1) : cursor;
+        if (!StringUtils.isNumeric(digits)) {
+            log.info("Invalid facet cursor: [{}]", cursor);
+            throw new IllegalArgumentException("Invalid facet cursor: " + cursor);
+        }
+        return Long.valueOf(cursor);
+    }
+}
@@ -0,0 +1,180 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.HashtagCountDTO;
+import com.socialising.services.dto.PostDTO;
+import com.socialising.services.dto.PostFeedPage;
+import com.socialising.services.dto.PostKey;
+import com.socialising.services.dto.PostSummary;
+import com.socialising.services.mapper.PostMapper;
+import com.socialising.services.model.Post;
+import com.socialising.services.repository.PostHashtagRepository;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.util.AfterCommit;
+import com.socialising.services.util.SlidingWindowCounter;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Inverted index from hashtag to posts, stored in post_hashtag, and the trending hashtags of the last window.
+ *
+ * Hashtags are indexed lowercase and without the leading '#', so "#Soccer" and "soccer" find the same posts.
+ * Trending counts how often a hashtag was added to a post within the window; the ranking is recomputed on a
+ * schedule so reads only copy a precomputed list.
+ */
+@Service
+public class HashtagService {
+
+    private static final Logger log = LoggerFactory.getLogger(HashtagService.class);
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final PostHashtagRepository postHashtagRepository;
+
+    private final PostRepository postRepository;
+
+    private final SlidingWindowCounter hashtagUses;
+
+    // Max number of hashtags kept in the trending ranking
+    private final int trendingSize;
+
+    private volatile List<HashtagCountDTO> trending = List.of();
+
+    public HashtagService(PostHashtagRepository postHashtagRepository,
+                          PostRepository postRepository,
+                          @Value("${application.hashtags.trending-window-minutes:60}") long windowMinutes,
+                          @Value("${application.hashtags.trending-buckets:60}") int buckets,
+                          @Value("${application.hashtags.trending-size:50}") int trendingSize,
+                          @Value("${application.hashtags.max-hashtags-per-bucket:100000}") int maxHashtagsPerBucket) {
+        this.postHashtagRepository = postHashtagRepository;
+        this.postRepository = postRepository;
+        this.trendingSize = trendingSize;
+        this.hashtagUses = new SlidingWindowCounter(TimeUnit.MINUTES.toMillis(windowMinutes), buckets, maxHashtagsPerBucket);
+    }
+
+    public static String normalize(String hashtag) {
+        String trimmed = StringUtils.strip(hashtag);
+        return StringUtils.removeStart(trimmed, "#").toLowerCase();
+    }
+
+    private static String[] normalizeAll(String[] hashtags) {
+        if (hashtags == null) {
+            return new String[]{};
+        }
+        return Arrays.stream(hashtags)
+                .filter(StringUtils::isNotBlank)
+                .map(HashtagService::normalize)
+                .filter(StringUtils::isNotEmpty)
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    // Bring the index of a post in line with its hashtags, only the difference is written
+    public void reindex(Post post, String[] oldHashtags, String[] newHashtags) {
+        Set<String> before = new HashSet<>(Arrays.asList(normalizeAll(oldHashtags)));
+        Set<String> after = new HashSet<>(Arrays.asList(normalizeAll(newHashtags)));
+
+        String[] removed = before.stream().filter(h -> !after.contains(h)).toArray(String[]::new);
+        String[] added = after.stream().filter(h -> !before.contains(h)).toArray(String[]::new);
+
+        if (removed.length > 0) {
+            postHashtagRepository.deleteHashtags(post.getPostId(), removed);
+        }
+        if (added.length > 0) {
+            Timestamp createdTs = post.getCreatedTs() != null ? post.getCreatedTs() : new Timestamp(System.currentTimeMillis());
+            postHashtagRepository.insertHashtags(post.getPostId(), added, createdTs);
+            countUses(added);
+        }
+        log.info("Hashtag index of Post [{}] updated, added: {}, removed: {}", post.getPostId(), added, removed);
+    }
+
+    // A write retried after a conflict must not count its hashtags twice, so uses are counted once it commits
+    private void countUses(String[] hashtags) {
+        AfterCommit.run(() -> addUses(hashtags));
+    }
+
+    private void addUses(String[] hashtags) {
+        for (String hashtag : hashtags) {
+            hashtagUses.add(hashtag, 1);
+        }
+    }
+
+    public void removeAll(Long postId) {
+        int removed = postHashtagRepository.deleteAllByPostId(postId);
+        log.info("{} hashtags of Post [{}] removed from the index", removed, postId);
+    }
+
+    // GET a page of the posts with a hashtag, newest first
+    public PostFeedPage getPostsByHashtag(String hashtag, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Pageable page = PageRequest.of(0, pageSize);
+        String normalized = normalize(hashtag);
+
+        List<PostKey> keys;
+        if (cursor == null || cursor.isBlank()) {
+            keys = postHashtagRepository.findKeysByHashtag(normalized, page);
+        } else {
+            String[] after = decodeCursor(cursor);
+            keys = postHashtagRepository.findKeysByHashtagBefore(normalized, new Timestamp(Long.parseLong(after[0])), Long.valueOf(after[1]), page);
+        }
+
+        List<Long> postIds = keys.stream().map(PostKey::getPostId).toList();
+        Map<Long, PostSummary> postsById = postIds.isEmpty() ? Map.of() : postRepository.findSummariesByPostIdIn(postIds).stream()
+                .collect(Collectors.toMap(PostSummary::getPostId, Function.identity()));
+        List<PostDTO> posts = new ArrayList<>(postIds.size());
+        for (Long postId : postIds) {
+            PostSummary post = postsById.get(postId);
+            if (post != null) {
+                posts.add(PostMapper.summaryToDto(post));
+            }
+        }
+
+        String nextCursor = keys.size() < pageSize ? null : encodeCursor(keys.get(keys.size() - 1));
+        log.info("{} posts served for hashtag [{}], next cursor: [{}]", posts.size(), normalized, nextCursor);
+
+        return PostFeedPage.builder()
+                .posts(posts)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // GET the most used hashtags of the trending window, most used first
+    public List<HashtagCountDTO> getTrendingHashtags(int limit) {
+        List<HashtagCountDTO> current = trending;
+        return current.subList(0, Math.max(0, Math.min(limit, current.size())));
+    }
+
+    @Scheduled(fixedDelayString = "${application.hashtags.trending-refresh-ms:10000}")
+    public void refreshTrending() {
+        trending = hashtagUses.top(trendingSize).stream()
+                .map(entry -> HashtagCountDTO.builder()
+                        .hashtag(entry.getKey())
+                        .count(entry.getValue())
+                        .build())
+                .toList();
+    }
+
+    private String encodeCursor(PostKey key) {
+        return key.getCreatedTs().getTime() + "_" + key.getPostId();
+    }
+
+    private String[] decodeCursor(String cursor) {
+        String[] keys = cursor.split("_");
+        if (keys.length != 2 || !StringUtils.isNumeric(keys[0]) || !StringUtils.isNumeric(keys[1])) {
+            log.info("Invalid hashtag cursor: [{}]", cursor);
+            throw new IllegalArgumentException("Invalid hashtag cursor: " + cursor);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,116 @@
+package com.socialising.services.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs the read-modify-write mutations of posts and users in one transaction each, retried a bounded number of
+ * times when a concurrent write got there first.
+ *
+ * Posts and users carry a @Version, so saving an entity read before someone else's update fails instead of
+ * overwriting it. The mutation is then run again from the start, reading the newer entities. When every attempt
+ * conflicts the OptimisticLockingFailureException is thrown to the caller.
+ */
+@Service
+public class OptimisticRetryService {
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticRetryService.class);
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Mutations run after a commit need a transaction of their own, the committed one can not be joined
+    private final TransactionTemplate newTransactionTemplate;
+
+    private final int maxAttempts;
+
+    // Attempt n waits up to n times this long before it runs, so conflicting writers spread out
+    private final long backoffMs;
+
+    private final AtomicLong conflicts = new AtomicLong();
+
+    @Autowired
+    public OptimisticRetryService(PlatformTransactionManager transactionManager,
+                                  @Value("${application.optimistic-retry.max-attempts:5}") int maxAttempts,
+                                  @Value("${application.optimistic-retry.backoff-ms:10}") long backoffMs) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = Math.max(0, backoffMs);
+    }
+
+    public <T> T run(String operation, Supplier<T> mutation) {
+        return run(transactionTemplate, operation, mutation);
+    }
+
+    // Run the mutation once the current transaction commits, in a new transaction and with the same retries
+    // Runs it right away when there is no transaction. A failure is logged, the first transaction is committed already
+    public void runAfterCommit(String operation, Runnable mutation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            run(operation, () -> {
+                mutation.run();
+                return null;
+            });
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    run(newTransactionTemplate, operation, () -> {
+                        mutation.run();
+                        return null;
+                    });
+                } catch (RuntimeException e) {
+                    log.error("[{}] failed after commit: {}", operation, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private <T> T run(TransactionTemplate template, String operation, Supplier<T> mutation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return template.execute(status -> mutation.get());
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    log.info("[{}] still conflicting after {} attempts, giving up", operation, attempt);
+                    throw e;
+                }
+                log.info("[{}] conflicted with a concurrent update, attempt {} of {}", operation, attempt, maxAttempts);
+                backOff(attempt);
+            }
+        }
+    }
+
+    // Number of attempts that conflicted since startup
+    public long getConflictCount() {
+        return conflicts.get();
+    }
+
+    private void backOff(int attempt) {
+        if (backoffMs == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMs * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a conflicting update", e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.LikeSummaryDTO;
+import com.socialising.services.mapper.PostMapper;
+import com.socialising.services.model.Post;
+import com.socialising.services.repository.ArchivedPostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the posts whose event ended a while ago out of the post table into socialise.post_archive, so the listings
+ * and scans of live posts do not slow down as past events pile up.
+ *
+ * The sweep walks the end time index of event posts oldest first, moving a batch of posts per statement together
+ * with their confirmed users and likes, deleting their view sketches, and stops at the first batch that is not full.
+ * Comments keep their rows. Archived posts are no longer listed, searched or updated, but are still found by id along
+ * with their confirmed users, likes and comments.
+ */
+@Service
+public class PostArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(PostArchiveService.class);
+
+    private final ArchivedPostRepository archivedPostRepository;
+
+    private final PostCacheService postCacheService;
+
+    private final FacetIndexService facetIndexService;
+
+    private final PostLikeService postLikeService;
+
+    private final PostViewService postViewService;
+
+    // Posts are archived this long after their event ended
+    private final long archiveAfterMillis;
+
+    // Posts moved per statement
+    private final int batchSize;
+
+    @Autowired
+    public PostArchiveService(ArchivedPostRepository archivedPostRepository,
+                              PostCacheService postCacheService,
+                              FacetIndexService facetIndexService,
+                              PostLikeService postLikeService,
+                              PostViewService postViewService,
+                              @Value("${application.archive.archive-after-hours:24}") long archiveAfterHours,
+                              @Value("${application.archive.batch-size:500}") int batchSize) {
+        this.archivedPostRepository = archivedPostRepository;
+        this.postCacheService = postCacheService;
+        this.facetIndexService = facetIndexService;
+        this.postLikeService = postLikeService;
+        this.postViewService = postViewService;
+        this.archiveAfterMillis = TimeUnit.HOURS.toMillis(Math.max(0, archiveAfterHours));
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // Archive every post that ended before the cutoff, returns the number of posts archived
+    @Scheduled(initialDelayString = "${application.archive.sweep-interval-ms:600000}",
+            fixedDelayString = "${application.archive.sweep-interval-ms:600000}")
+    public int sweep() {
+        // Like counts still pending would be lost once their post leaves the post table
+        postLikeService.flushLikeCounts();
+
+        Timestamp endedBefore = new Timestamp(System.currentTimeMillis() - archiveAfterMillis);
+        int archived = 0;
+        try {
+            List<Long> postIds;
+            do {
+                postIds = archivedPostRepository.archiveEndedPosts(endedBefore, batchSize);
+                for (Long postId : postIds) {
+                    facetIndexService.remove(postId);
+                    postViewService.forget(postId);
+                    postCacheService.invalidate(postId);
+                }
+                archived += postIds.size();
+            } while (postIds.size() == batchSize);
+        } catch (DataAccessException e) {
+            log.error("Error archiving Posts ended before {}: {}", endedBefore, e.getMessage());
+            return archived;
+        }
+        if (archived > 0) {
+            log.info("{} Posts ended before {} archived", archived, endedBefore);
+        }
+        return archived;
+    }
+
+    public Optional<Post> getArchivedPost(Long postId) {
+        return archivedPostRepository.findById(postId).map(PostMapper::archivedToEntity);
+    }
+
+    // Usernames of the users who were confirmed for an archived post, null when the post is not archived
+    public List<String> getConfirmedUsers(Long postId) {
+        if (!archivedPostRepository.existsById(postId)) {
+            return null;
+        }
+        return archivedPostRepository.findConfirmedUsernames(postId);
+    }
+
+    // Usernames who liked an archived post, most recent first, null when the post is not archived
+    public List<String> getLikes(Long postId, int page, int size) {
+        if (!archivedPostRepository.existsById(postId)) {
+            return null;
+        }
+        int pageSize = Math.max(1, Math.min(size, PostLikeService.MAX_LIKES_PAGE_SIZE));
+        return archivedPostRepository.findLikeUsernames(postId, pageSize, (long) Math.max(page, 0) * pageSize);
+    }
+
+    // Like count of an archived post and whether the user liked it, null when the post is not archived
+    public LikeSummaryDTO getLikeSummary(Long postId, String username) {
+        return archivedPostRepository.findById(postId)
+                .map(post -> LikeSummaryDTO.builder()
+                        .postId(postId)
+                        .likeCount(post.getLikeCount())
+                        .likedByMe(archivedPostRepository.existsLike(postId, username))
+                        .build())
+                .orElse(null);
+    }
+
+    // The user is deleted, so are its archived posts and its confirmations of the others
+    public void removeUser(Long userId, String username) {
+        long archivedPosts = archivedPostRepository.deleteArchiveOfUser(userId, username);
+        log.info("{} Archived Posts of User [{}] deleted", archivedPosts, username);
+    }
+}
@@ -0,0 +1,131 @@
+package com.socialising.services.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.socialising.services.dto.CacheStatsDTO;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of posts by id, bounded in size and expiring a while after each entry is loaded.
+ *
+ * Entries are detached copies holding the columns of the post and the id and username of its owner, never the
+ * managed entity, so they can be shared between requests. The interested and confirmed users are not cached; code
+ * changing them reads the post from the repository. Every path writing a post row invalidates its entry, after the
+ * commit when it runs in a transaction. A load racing with an invalidation is not kept.
+ */
+@Service
+public class PostCacheService {
+
+    private final PostRepository postRepository;
+
+    private final boolean enabled;
+
+    private final Cache<Long, Post> posts;
+
+    // Bumped before every invalidation, a load that saw it change may hold data from before the write
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public PostCacheService(PostRepository postRepository,
+                            @Value("${application.post-cache.enabled:true}") boolean enabled,
+                            @Value("${application.post-cache.maximum-size:10000}") long maximumSize,
+                            @Value("${application.post-cache.expire-after-write-seconds:60}") long expireAfterWriteSeconds) {
+        this.postRepository = postRepository;
+        this.enabled = enabled;
+        this.posts = CacheBuilder.newBuilder()
+                .maximumSize(enabled ? maximumSize : 0)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Post> get(Long postId) {
+        if (!enabled) {
+            return postRepository.findById(postId);
+        }
+
+        Post cached = posts.getIfPresent(postId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long invalidationsBefore = invalidations.get();
+        Optional<Post> loaded = postRepository.findById(postId).map(PostCacheService::detachedCopy);
+        if (loaded.isPresent()) {
+            posts.put(postId, loaded.get());
+            if (invalidations.get() != invalidationsBefore) {
+                posts.invalidate(postId);
+            }
+        }
+        return loaded;
+    }
+
+    public void invalidate(Long postId) {
+        invalidations.incrementAndGet();
+        posts.invalidate(postId);
+
+        // Readers may load the old row again until the transaction commits
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidations.incrementAndGet();
+                    posts.invalidate(postId);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll(Collection<Long> postIds) {
+        postIds.forEach(this::invalidate);
+    }
+
+    public CacheStatsDTO getStats() {
+        CacheStats stats = posts.stats();
+        return CacheStatsDTO.builder()
+                .enabled(enabled)
+                .size(posts.size())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .evictionCount(stats.evictionCount())
+                .hitRate(stats.hitRate())
+                .build();
+    }
+
+    private static Post detachedCopy(Post post) {
+        User ownerUser = post.getOwnerUser();
+        return Post.builder()
+                .postId(post.getPostId())
+                .ownerUser(ownerUser != null ? User.builder().userId(ownerUser.getUserId()).username(ownerUser.getUsername()).build() : null)
+                .description(post.getDescription())
+                .createdTs(post.getCreatedTs())
+                .postType(post.getPostType())
+                .timeType(post.getTimeType())
+                .postStartTs(post.getPostStartTs())
+                .postEndTs(post.getPostEndTs())
+                .location(post.getLocation())
+                .onlyForWomen(post.getOnlyForWomen())
+                .tags(post.getTags())
+                .hashtags(post.getHashtags())
+                .likeCount(post.getLikeCount())
+                .commentCount(post.getCommentCount())
+                .interestedCount(post.getInterestedCount())
+                .confirmedCount(post.getConfirmedCount())
+                .capacity(post.getCapacity())
+                .comments(post.getComments())
+                .build();
+    }
+}
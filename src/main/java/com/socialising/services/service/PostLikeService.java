@@ -0,0 +1,191 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.LikeSummaryDTO;
+import com.socialising.services.repository.PostLikeRepository;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.util.AfterCommit;
+import com.socialising.services.util.StripedDeltaCounter;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Likes are stored one row per (post, user) in post_like, so liking never rewrites the post row.
+ * The like count on the post is maintained from in-memory deltas that are flushed in batches.
+ */
+@Service
+@RequiredArgsConstructor
+public class PostLikeService {
+
+    private static final Logger log = LoggerFactory.getLogger(PostLikeService.class);
+
+    static final int MAX_LIKES_PAGE_SIZE = 100;
+
+    private final PostLikeRepository postLikeRepository;
+
+    private final PostRepository postRepository;
+
+    private final PostCacheService postCacheService;
+
+    private final StripedDeltaCounter likeCountDeltas = new StripedDeltaCounter(16);
+
+    // Read while a like is recorded or a like count is read, written while deltas are persisted or the like counts
+    // reconciled, so no count holds a delta twice and no like is in the rows without its delta
+    private final ReadWriteLock likeCountLock = new ReentrantReadWriteLock();
+
+    // Like a post, returns 1 when liked and 0 when the user had already liked it
+    public int like(Long postId, String username) {
+        likeCountLock.readLock().lock();
+        try {
+            if (postLikeRepository.insertLike(postId, username) == 0) {
+                log.info("User [{}] has already liked the post [{}]", username, postId);
+                return 0;
+            }
+            likeCountDeltas.add(postId, 1);
+        } finally {
+            likeCountLock.readLock().unlock();
+        }
+        log.info("User [{}] has liked the post [{}]", username, postId);
+        return 1;
+    }
+
+    // Remove a like, returns 1 when removed and 0 when the user had not liked the post
+    public int unlike(Long postId, String username) {
+        likeCountLock.readLock().lock();
+        try {
+            if (postLikeRepository.deleteLike(postId, username) == 0) {
+                log.info("User [{}] has NOT liked the post [{}]", username, postId);
+                return 0;
+            }
+            likeCountDeltas.add(postId, -1);
+        } finally {
+            likeCountLock.readLock().unlock();
+        }
+        log.info("User [{}] has dis-liked the post [{}]", username, postId);
+        return 1;
+    }
+
+    // Delete every like of a deleted user along with its count, returns the number of likes deleted
+    public int deleteLikesOfUser(String username) {
+        return likesRemoved(postLikeRepository.deleteAllByUsername(username));
+    }
+
+    public int deleteLikesOfUser(String username, int limit) {
+        return likesRemoved(postLikeRepository.deleteAllByUsername(username, limit));
+    }
+
+    public long countLikesOfUser(String username) {
+        return postLikeRepository.countByUsername(username);
+    }
+
+    private int likesRemoved(List<Long> postIds) {
+        AfterCommit.run(() -> postCacheService.invalidateAll(postIds));
+        return postIds.size();
+    }
+
+    public long getLikeCount(Long postId) {
+        likeCountLock.readLock().lock();
+        try {
+            Long persisted = postRepository.findLikeCountByPostId(postId);
+            return (persisted != null ? persisted : 0L) + likeCountDeltas.pending(postId);
+        } finally {
+            likeCountLock.readLock().unlock();
+        }
+    }
+
+    // Likes and dis-likes not yet flushed to the like count of the post
+    // Called within readLikeCounts when added to a like count read from the DB
+    public long getPendingLikeCount(Long postId) {
+        return likeCountDeltas.pending(postId);
+    }
+
+    // Run a read of persisted like counts and their pending deltas with no flush in between
+    public <T> T readLikeCounts(Supplier<T> reader) {
+        likeCountLock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            likeCountLock.readLock().unlock();
+        }
+    }
+
+    // Flush the pending deltas and run the action before any like is recorded, so the like count of every post is
+    // what its rows say. Throws when the deltas can not be flushed
+    public <T> T withLikeCountsFlushed(Supplier<T> action) {
+        likeCountLock.writeLock().lock();
+        try {
+            flushDeltas();
+            return action.get();
+        } finally {
+            likeCountLock.writeLock().unlock();
+        }
+    }
+
+    public LikeSummaryDTO getLikeSummary(Long postId, String username) {
+        return LikeSummaryDTO.builder()
+                .postId(postId)
+                .likeCount(getLikeCount(postId))
+                .likedByMe(postLikeRepository.existsByPostIdAndUsername(postId, username))
+                .build();
+    }
+
+    // Usernames who liked the post, most recent first
+    public List<String> getLikes(Long postId, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_LIKES_PAGE_SIZE));
+        return postLikeRepository.findUsernamesByPostId(postId, PageRequest.of(Math.max(page, 0), pageSize));
+    }
+
+    // Write the accumulated like count deltas to the posts in one statement
+    @Scheduled(fixedDelayString = "${application.likes.flush-interval-ms:1000}")
+    public void flushLikeCounts() {
+        likeCountLock.writeLock().lock();
+        try {
+            flushDeltas();
+        } catch (Exception e) {
+            log.error("Error flushing like counts, will retry: {}", e.getMessage());
+        } finally {
+            likeCountLock.writeLock().unlock();
+        }
+    }
+
+    private void flushDeltas() {
+        Map<Long, Long> deltas = likeCountDeltas.drain();
+        if (deltas.isEmpty()) {
+            likeCountDeltas.completeDrain();
+            return;
+        }
+
+        Long[] postIds = new Long[deltas.size()];
+        Long[] counts = new Long[deltas.size()];
+        int i = 0;
+        for (Map.Entry<Long, Long> delta : deltas.entrySet()) {
+            postIds[i] = delta.getKey();
+            counts[i++] = delta.getValue();
+        }
+
+        try {
+            postRepository.addToLikeCounts(postIds, counts);
+            likeCountDeltas.completeDrain();
+            postCacheService.invalidateAll(deltas.keySet());
+            log.info("Like counts flushed for {} posts", postIds.length);
+        } catch (RuntimeException e) {
+            likeCountDeltas.restore(deltas);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushLikeCounts();
+    }
+}
@@ -0,0 +1,117 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.PostDTO;
+import com.socialising.services.dto.PostFeedPage;
+import com.socialising.services.dto.PostSearchHit;
+import com.socialising.services.dto.PostSummary;
+import com.socialising.services.mapper.PostMapper;
+import com.socialising.services.repository.PostRepository;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search of posts by description and location, best matches first.
+ *
+ * Postgres keeps a tsvector of every post in the searchvector column, with description words weighted above
+ * location words, and a GIN index over it. Every word of the search text has to match the start of a word of the
+ * post, so "foot kan" finds "Football in Kanpur". Only the words of the search text are passed on, so it can not
+ * carry tsquery syntax.
+ */
+@Service
+@RequiredArgsConstructor
+public class PostSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(PostSearchService.class);
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // Words of the search text beyond this are ignored
+    private static final int MAX_TERMS = 8;
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    private final PostRepository postRepository;
+
+    // GET a page of the Posts matching the search text, best matches first
+    // postType, timeType and onlyForWomen narrow the results down when given
+    public PostFeedPage search(String text, String postType, String timeType, Boolean onlyForWomen, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        String tsQuery = toPrefixQuery(text);
+        if (tsQuery.isEmpty()) {
+            log.info("Nothing to search for in [{}]", text);
+            return PostFeedPage.builder()
+                    .posts(List.of())
+                    .build();
+        }
+
+        String postTypeFilter = StringUtils.isBlank(postType) ? null : postType.strip().toLowerCase();
+        String timeTypeFilter = StringUtils.isBlank(timeType) ? null : timeType.strip().toLowerCase();
+        String onlyForWomenFilter = onlyForWomen == null ? null : (onlyForWomen ? "Y" : "N");
+
+        List<PostSearchHit> hits;
+        if (cursor == null || cursor.isBlank()) {
+            hits = postRepository.searchFirstPage(tsQuery, postTypeFilter, timeTypeFilter, onlyForWomenFilter, pageSize);
+        } else {
+            String[] after = decodeCursor(cursor);
+            hits = postRepository.searchAfter(tsQuery, postTypeFilter, timeTypeFilter, onlyForWomenFilter,
+                    Long.valueOf(after[0]), Long.valueOf(after[1]), pageSize);
+        }
+
+        List<Long> postIds = hits.stream().map(PostSearchHit::getPostId).toList();
+        Map<Long, PostSummary> postsById = postIds.isEmpty() ? Map.of() : postRepository.findSummariesByPostIdIn(postIds).stream()
+                .collect(Collectors.toMap(PostSummary::getPostId, Function.identity()));
+        List<PostDTO> posts = new ArrayList<>(postIds.size());
+        for (Long postId : postIds) {
+            PostSummary post = postsById.get(postId);
+            if (post != null) {
+                posts.add(PostMapper.summaryToDto(post));
+            }
+        }
+
+        String nextCursor = hits.size() < pageSize ? null : encodeCursor(hits.get(hits.size() - 1));
+        log.info("{} posts found for [{}], next cursor: [{}]", posts.size(), tsQuery, nextCursor);
+
+        return PostFeedPage.builder()
+                .posts(posts)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // "Football, Kanpur!" -> "football:* & kanpur:*"
+    static String toPrefixQuery(String text) {
+        if (text == null) {
+            return "";
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        Matcher matcher = WORD.matcher(text.toLowerCase());
+        while (matcher.find() && terms.size() < MAX_TERMS) {
+            terms.add(matcher.group());
+        }
+        return terms.stream()
+                .map(term -> term + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+
+    private String encodeCursor(PostSearchHit hit) {
+        return hit.getRank() + "_" + hit.getPostId();
+    }
+
+    private String[] decodeCursor(String cursor) {
+        String[] keys = cursor.split("_");
+        if (keys.length != 2 || !StringUtils.isNumeric(keys[0]) || !StringUtils.isNumeric(keys[1])) {
+            log.info("Invalid search cursor: [{}]", cursor);
+            throw new IllegalArgumentException("Invalid search cursor: " + cursor);
+        }
+        return keys;
+    }
+}
@@ -1,8 +1,24 @@
 package com.socialising.services.service;
 
 import com.socialising.services.config.JwtService;
+import com.socialising.services.constants.InterestedUserAction;
+import com.socialising.services.constants.InterestedUserResult;
 import com.socialising.services.constants.Role;
+import com.socialising.services.dto.AcceptedUser;
+import com.socialising.services.dto.CacheStatsDTO;
+import com.socialising.services.dto.CascadeJobDTO;
+import com.socialising.services.dto.DeletedPostLinks;
+import com.socialising.services.dto.FacetIndexStatsDTO;
+import com.socialising.services.dto.FacetSearchDTO;
+import com.socialising.services.dto.HashtagCountDTO;
+import com.socialising.services.dto.InterestedUserResultDTO;
+import com.socialising.services.dto.InterestedUsersBatchDTO;
+import com.socialising.services.dto.LikeSummaryDTO;
 import com.socialising.services.dto.PostDTO;
+import com.socialising.services.dto.PostFeedPage;
+import com.socialising.services.dto.PostStatsDTO;
+import com.socialising.services.dto.PostSummary;
+import com.socialising.services.dto.PostViewsDTO;
 import com.socialising.services.exceptionHandler.InvalidDataException;
 import com.socialising.services.exceptionHandler.PostUpdateException;
 import com.socialising.services.exceptionHandler.TagNotFoundException;
@@ -14,22 +30,32 @@ import com.socialising.services.repository.ImageRepository;
 import com.socialising.services.repository.PostRepository;
 import com.socialising.services.repository.TagRepository;
 import com.socialising.services.repository.UserRepository;
+import com.socialising.services.util.AfterCommit;
+import com.socialising.services.util.IdGenerator;
 import io.jsonwebtoken.ExpiredJwtException;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
-import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -37,6 +63,17 @@ public class PostService {
 
     private static final Logger log = LoggerFactory.getLogger(com.socialising.services.controller.PostController.class);
 
+    private static final int MAX_FEED_PAGE_SIZE = 100;
+
+    private static final int DEFAULT_EVENTS_WINDOW_DAYS = 30;
+
+    // Pages read at most to fill a page with posts the user has not seen yet
+    private static final int MAX_SEEN_SKIP_PAGES = 5;
+
+    private static final int MAX_INTERESTED_USERS_BATCH = 1000;
+
+    private static final String POST_CASCADE = "post";
+
     private final PostRepository postRepository;
 
     private final UserRepository userRepository;
@@ -45,8 +82,40 @@ public class PostService {
 
     private final JwtService jwtService;
 
+    private final TimelineService timelineService;
+
+    private final PostLikeService postLikeService;
+
+    private final IdGenerator idGenerator;
+
+    private final HashtagService hashtagService;
+
+    private final EventReminderService eventReminderService;
+
+    private final CascadeJobService cascadeJobService;
+
+    private final PostCacheService postCacheService;
+
+    private final PostSearchService postSearchService;
+
+    private final FacetIndexService facetIndexService;
+
+    private final EngagementCounterService engagementCounterService;
+
+    private final OptimisticRetryService optimisticRetryService;
+
+    private final SeatReservationService seatReservationService;
+
+    private final PostArchiveService postArchiveService;
+
+    private final PostViewService postViewService;
+
+    private final SeenPostsService seenPostsService;
+
+    private final RequestIdentityMap requestIdentityMap;
+
     private boolean checkPostExistInDB(Long postId) {
-        if(postRepository.findById(postId).isPresent()) {
+        if(postCacheService.get(postId).isPresent()) {
             log.info("Post [{}] exist in DB", postId);
             return true;
         }
@@ -69,7 +138,7 @@ public class PostService {
     }
 
     private boolean checkUserExistInDBWithUsername(String username) {
-        if(userRepository.findByUsername(username).isPresent()) {
+        if(requestIdentityMap.findUserByUsername(username).isPresent()) {
             log.info("User [{}] exist in DB", username);
             return true;
         }
@@ -79,7 +148,7 @@ public class PostService {
 
     private boolean checkUserOwnerOfPostAndRole(String token, String ownerUsername) {
         String username = jwtService.extractUsername(token.substring(7));
-        Role userRole = userRepository.findByUsername(username).get().getRole();
+        Role userRole = requestIdentityMap.findUserByUsername(username).get().getRole();
         return username.equals(ownerUsername) || userRole.equals(Role.ADMIN);
     }
 
@@ -91,11 +160,11 @@ public class PostService {
             log.info("Username: {}", username);
 
             // Get the user by username or throw an exception
-            User ownerUser = userRepository.findByUsername(username)
+            User ownerUser = requestIdentityMap.findUserByUsername(username)
                     .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
 
             // Generate a unique Post ID
-            Long postId = Long.valueOf(new DecimalFormat("00000000").format(new Random().nextInt(99999999)));
+            Long postId = idGenerator.nextId();
 
             // Convert the PostDTO to Post Entity using Mapper
             Post post = PostMapper.dtoToEntity(newPostDTO);
@@ -109,6 +178,14 @@ public class PostService {
             postRepository.save(post);
             log.info("Post added to db");
 
+            // Push the new post to the timelines of friends and tag followers
+            timelineService.onPostCreated(post);
+            facetIndexService.index(post);
+
+            if (post.getHashtags() != null && post.getHashtags().length > 0) {
+                hashtagService.reindex(post, null, post.getHashtags());
+            }
+
             // Return the saved Post entity converted back to DTO
             return PostMapper.entityToDto(post);
         } catch (BadCredentialsException e) {
@@ -135,7 +212,6 @@ public class PostService {
 //        }
 //
 //
-//        Long postId = Long.valueOf(new DecimalFormat("00000000").format(new Random().nextInt(99999999)));
 //        var post = Post.builder()
 //                .postId(postId)
 //                .ownerUser(userRepository.findByUsername(username).orElseThrow())
@@ -170,34 +246,186 @@ public class PostService {
         return (ArrayList<Post>) this.postRepository.findAll();
     }
 
+    // Reads the whole table, prefer getFeed for anything user facing
     public ArrayList<PostDTO> getAllPosts() {
 
         log.info("Total number of posts in DB: {}", this.postRepository.count());
-        List<Post> allPosts = this.postRepository.findAll();
-        ArrayList<PostDTO> allPostDTOs = new ArrayList<>();
+        return PostMapper.summariesToDtos(this.postRepository.findAllSummaries());
+    }
+
+    // GET a page of the Post Feed, newest first
+    // Pass the nextCursor of the previous page to continue after it
+    public PostFeedPage getFeed(String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_FEED_PAGE_SIZE));
+        Pageable page = PageRequest.of(0, pageSize);
+
+        List<PostSummary> posts;
+        if (cursor == null || cursor.isBlank()) {
+            posts = postRepository.findFeedFirstPage(page);
+        } else {
+            String[] keys = decodeFeedCursor(cursor);
+            posts = postRepository.findFeedAfter(new Timestamp(Long.parseLong(keys[0])), Long.valueOf(keys[1]), page);
+        }
+
+        List<PostDTO> postDTOs = PostMapper.summariesToDtos(posts);
+
+        // A short page means we have reached the end of the feed
+        String nextCursor = posts.size() < pageSize ? null : encodeFeedCursor(posts.get(posts.size() - 1));
+        log.info("Feed page of {} posts served, next cursor: [{}]", postDTOs.size(), nextCursor);
+
+        return PostFeedPage.builder()
+                .posts(postDTOs)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // GET a page of the Post Feed without the posts the user of the token was already served
+    // Without a valid token every post is served, as by getFeed(cursor, limit)
+    public PostFeedPage getFeed(String cursor, int limit, String token) {
+        String username = token != null && token.startsWith("Bearer ") ? getUsernameFromToken(token) : "";
+        if (username.isEmpty()) {
+            return getFeed(cursor, limit);
+        }
+        return unseenPage(username, cursor, Math.max(1, Math.min(limit, MAX_FEED_PAGE_SIZE)), this::getFeed);
+    }
+
+    // GET a page of the Events starting in [from, to), soonest first
+    // from defaults to now and to defaults to DEFAULT_EVENTS_WINDOW_DAYS after from
+    public PostFeedPage getUpcomingEvents(String from, String to, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_FEED_PAGE_SIZE));
+        Pageable page = PageRequest.of(0, pageSize);
+
+        Timestamp fromTs = from == null || from.isBlank() ? new Timestamp(System.currentTimeMillis()) : PostMapper.parseEventTs(from);
+        Timestamp toTs = to == null || to.isBlank()
+                ? Timestamp.valueOf(fromTs.toLocalDateTime().plusDays(DEFAULT_EVENTS_WINDOW_DAYS))
+                : PostMapper.parseEventTs(to);
+
+        List<PostSummary> posts;
+        if (cursor == null || cursor.isBlank()) {
+            posts = postRepository.findEventsStartingBetween(fromTs, toTs, page);
+        } else {
+            String[] keys = decodeFeedCursor(cursor);
+            posts = postRepository.findEventsStartingAfter(new Timestamp(Long.parseLong(keys[0])), Long.valueOf(keys[1]), toTs, page);
+        }
 
-        for(Post post : allPosts) {
-            allPostDTOs.add(PostMapper.entityToDto(post));
+        List<PostDTO> postDTOs = PostMapper.summariesToDtos(posts);
+
+        String nextCursor = null;
+        if (posts.size() == pageSize) {
+            PostSummary last = posts.get(posts.size() - 1);
+            nextCursor = last.getPostStartTs().getTime() + "_" + last.getPostId();
+        }
+        log.info("{} Events between [{}] and [{}] served, next cursor: [{}]", postDTOs.size(), fromTs, toTs, nextCursor);
+
+        return PostFeedPage.builder()
+                .posts(postDTOs)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // GET a page of the Home Timeline of the authenticated user
+    public PostFeedPage getTimeline(String token, String cursor, int limit) {
+        String username = jwtService.extractUsername(token.substring(7));
+        return unseenPage(username, cursor, Math.max(1, Math.min(limit, MAX_FEED_PAGE_SIZE)),
+                (pageCursor, pageSize) -> timelineService.getTimeline(username, pageCursor, pageSize));
+    }
+
+    // Read pages until pageSize posts the user has not seen are found, or MAX_SEEN_SKIP_PAGES pages were read
+    // The pages must be newest first with createdTs_postId cursors. The posts served are remembered as seen.
+    private PostFeedPage unseenPage(String username, String cursor, int pageSize, BiFunction<String, Integer, PostFeedPage> pages) {
+        List<PostDTO> unseen = new ArrayList<>(pageSize);
+        String nextCursor = cursor;
+        int skipped = 0;
+        for (int read = 0; read < MAX_SEEN_SKIP_PAGES && unseen.size() < pageSize; read++) {
+            PostFeedPage page = pages.apply(nextCursor, pageSize);
+            Set<Long> seen = seenPostsService.seen(username, page.getPosts().stream().map(PostDTO::getPostId).toList());
+            nextCursor = page.getNextCursor();
+            for (PostDTO post : page.getPosts()) {
+                if (seen.contains(post.getPostId())) {
+                    skipped++;
+                } else if (unseen.size() < pageSize) {
+                    unseen.add(post);
+                } else {
+                    // The page is full, the next one starts after the last post served
+                    PostDTO last = unseen.get(unseen.size() - 1);
+                    nextCursor = last.getCreatedTs().getTime() + "_" + last.getPostId();
+                    break;
+                }
+            }
+            if (nextCursor == null) {
+                break;
+            }
         }
+        seenPostsService.markSeen(username, unseen.stream().map(PostDTO::getPostId).toList());
+        log.info("{} posts already seen by User [{}] skipped", skipped, username);
 
-        return allPostDTOs;
+        return PostFeedPage.builder()
+                .posts(unseen)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // Walk the whole Feed page by page and hand every post to the consumer
+    // Only one page is held in memory at a time, so this is safe for exports of the full table
+    public void streamAllPosts(Consumer<PostDTO> consumer) {
+        String cursor = null;
+        do {
+            PostFeedPage page = getFeed(cursor, MAX_FEED_PAGE_SIZE);
+            page.getPosts().forEach(consumer);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+    }
+
+    private String encodeFeedCursor(PostSummary post) {
+        return post.getCreatedTs().getTime() + "_" + post.getPostId();
+    }
+
+    private String[] decodeFeedCursor(String cursor) {
+        String[] keys = cursor.split("_");
+        if (keys.length != 2 || !StringUtils.isNumeric(keys[0]) || !StringUtils.isNumeric(keys[1])) {
+            log.info("Invalid Feed cursor: [{}]", cursor);
+            throw new IllegalArgumentException("Invalid feed cursor: " + cursor);
+        }
+        return keys;
     }
 
     // Get Posts of Authenticated user
-    public List<Post> getUserPosts(String token) {
+    public List<PostDTO> getUserPosts(String token) {
         String username = jwtService.extractUsername(token.substring(7));
-        return postRepository.findByOwnerUserUsername(username);
+        return PostMapper.summariesToDtos(postRepository.findSummariesByOwner(username));
     }
 
     // Get Posts by Username
-    public List<Post> getPostsByUsername(String username) {
-        return postRepository.findByOwnerUserUsername(username);
+    public List<PostDTO> getPostsByUsername(String username) {
+        return PostMapper.summariesToDtos(postRepository.findSummariesByOwner(username));
     }
 
     //  GET Post by ID
     public Post getPostById(Long id) {
+        // Posts whose event ended are found in the archive once moved out of the post table
+        return this.postCacheService.get(id)
+                .or(() -> postArchiveService.getArchivedPost(id))
+                .orElse(null);
+    }
+
+    // Count the posts as seen by the user of the token, or by the client address when there is no valid token
+    public void recordViews(List<Long> postIds, String token, String clientAddress) {
+        String viewer = token != null && token.startsWith("Bearer ") ? getUsernameFromToken(token) : "";
+        postViewService.recordViews(postIds, viewer.isEmpty() ? clientAddress : viewer);
+    }
+
+    // GET the approximate number of distinct users who viewed the post
+    public PostViewsDTO getUniqueViews(Long postId) {
+        return postViewService.getUniqueViews(postId);
+    }
 
-        return checkPostExistInDB(id) ? this.postRepository.findById(id).get() : null;
+    // GET the engagement counters of the given posts
+    public List<PostStatsDTO> getPostStats(List<Long> postIds) {
+        return engagementCounterService.getStats(postIds);
+    }
+
+    public CacheStatsDTO getPostCacheStats() {
+        return postCacheService.getStats();
     }
 
     private String[] getTagEntities(String[] tags) {
@@ -215,48 +443,71 @@ public class PostService {
 
     // Update Post
     public PostDTO updatePost(Long postId, String token, PostDTO postDTO) {
-        try {
-            if (checkPostExistInDB(postId)) {
-                Post post = postRepository.findById(postId).get();
+        return optimisticRetryService.run("updatePost", () -> {
+            try {
+                if (checkPostExistInDB(postId)) {
+                    Post post = postRepository.findById(postId).get();
 
-                String username = jwtService.extractUsername(token.substring(7));
+                    String username = jwtService.extractUsername(token.substring(7));
 
-                // Check if the user updating the details is owner of post
-                if (!post.getOwnerUser().getUsername().equals(username)) {
-                    log.info("Only Owner of the Post can update its details.");
-                    return null;
-                }
+                    // Check if the user updating the details is owner of post
+                    if (!post.getOwnerUser().getUsername().equals(username)) {
+                        log.info("Only Owner of the Post can update its details.");
+                        return null;
+                    }
 
-                // Update fields in the post entity
-                if (postDTO.getDescription() != null) post.setDescription(postDTO.getDescription());
-                if (postDTO.getPostType() != null) post.setPostType(postDTO.getPostType());
-                if (postDTO.getTimeType() != null) post.setTimeType(postDTO.getTimeType());
-                if (postDTO.getPostStartTs() != null) post.setPostStartTs(postDTO.getPostStartTs());
-                if (postDTO.getPostEndTs() != null) post.setPostEndTs(postDTO.getPostEndTs());
-                if (postDTO.getLocation() != null) post.setLocation(postDTO.getLocation());
-                post.setOnlyForWomen(postDTO.isOnlyForWomen() ? 'Y' : 'N');
-
-                if (postDTO.getTags() != null && postDTO.getTags().length > 0) {
-                    post.setTags(getTagEntities(postDTO.getTags()));
-                }
+                    // Update fields in the post entity
+                    if (postDTO.getDescription() != null) post.setDescription(postDTO.getDescription());
+                    if (postDTO.getPostType() != null) post.setPostType(postDTO.getPostType());
+                    if (postDTO.getTimeType() != null) post.setTimeType(postDTO.getTimeType());
+                    Timestamp oldPostStartTs = post.getPostStartTs();
+                    if (postDTO.getPostStartTs() != null) post.setPostStartTs(PostMapper.parseEventTs(postDTO.getPostStartTs()));
+                    if (postDTO.getPostEndTs() != null) post.setPostEndTs(PostMapper.parseEventTs(postDTO.getPostEndTs()));
+                    if (postDTO.getLocation() != null) post.setLocation(postDTO.getLocation());
+                    post.setOnlyForWomen(postDTO.isOnlyForWomen() ? 'Y' : 'N');
+
+                    if (postDTO.getTags() != null && postDTO.getTags().length > 0) {
+                        post.setTags(getTagEntities(postDTO.getTags()));
+                    }
 
-                // Save the updated post
-                Post updatedPost = postRepository.save(post);
-                log.info("Successfully updated Post with ID: [{}]", postId);
-                return PostMapper.entityToDto(updatedPost);
-            } else {
-                return null;
+                    // A capacity of 0 or less removes the limit
+                    Integer oldCapacity = post.getCapacity();
+                    if (postDTO.getCapacity() != null) post.setCapacity(postDTO.getCapacity() > 0 ? postDTO.getCapacity() : null);
+
+                    // Save the updated post
+                    Post updatedPost = postRepository.save(post);
+                    postCacheService.invalidate(postId);
+                    AfterCommit.run(() -> facetIndexService.index(post));
+                    log.info("Successfully updated Post with ID: [{}]", postId);
+
+                    // Reminders and waitlist promotions follow the update once it commits, so a retry does not repeat them
+                    if (!Objects.equals(oldPostStartTs, post.getPostStartTs())) {
+                        List<String> confirmedUsernames = postRepository.findConfirmedUsernames(postId);
+                        AfterCommit.run(() -> eventReminderService.reschedule(post, confirmedUsernames));
+                    }
+                    // Seats added to the event go to the waitlisted users
+                    if (!Objects.equals(oldCapacity, post.getCapacity())) {
+                        optimisticRetryService.runAfterCommit("promote", () -> seatReservationService.promote(post));
+                    }
+                    return PostMapper.entityToDto(updatedPost);
+                } else {
+                    return null;
+                }
+            } catch (IllegalArgumentException e) {
+                log.error("Invalid argument provided: {}", e.getMessage());
+                throw new InvalidDataException("Invalid data provided", e);
+            } catch (OptimisticLockingFailureException e) {
+                // Retried by the caller with the newer version
+                throw e;
+            } catch (Exception e) {
+                log.error("Error occurred while updating post with ID [{}]: {}", postId, e.getMessage());
+                throw new PostUpdateException("Error updating post with ID: " + postId, e);
             }
-        } catch (IllegalArgumentException e) {
-            log.error("Invalid argument provided: {}", e.getMessage());
-            throw new InvalidDataException("Invalid data provided", e);
-        } catch (Exception e) {
-            log.error("Error occurred while updating post with ID [{}]: {}", postId, e.getMessage());
-            throw new PostUpdateException("Error updating post with ID: " + postId, e);
-        }
+        });
     }
 
     // DELETE Post by ID
+    @Transactional
     public int deletePost(Long postId, String token) {
         if(checkPostExistInDB(postId)) {
 
@@ -272,94 +523,91 @@ public class PostService {
                 return -1;
             }
 
-            // Get the Confirmed Users list of Post
-            List<User> confirmedUsers = new ArrayList<>();
-            if (post.getConfirmedUsers() != null) {
-                confirmedUsers  = post.getConfirmedUsers();
-            }
-
-            // Get the Interested Users list of Post
-            List<User> interestedUsers = new ArrayList<>();
-            if (post.getInterestedUsers() != null) {
-                interestedUsers  = post.getInterestedUsers();
-            }
-
-            // Delete the post from Confirmed Users Reminder Posts list
-            if(!confirmedUsers.isEmpty()) {
-                for(User confirmedUser: confirmedUsers) {
-                    List<Post> reminderPosts = confirmedUser.getReminderPosts();
-                    reminderPosts.remove(post);
-                    confirmedUser.setReminderPosts(reminderPosts);
-                    userRepository.save(confirmedUser);
-                    log.info("Post [{}] removed from User [{}'s] Reminder posts list", postId, confirmedUser.getUsername());
-                }
-            }
+            AfterCommit.run(() -> eventReminderService.cancelAll(postId));
 
-            // Delete the post from Interested Users Requested Posts list
-            if(!interestedUsers.isEmpty()) {
-                for(User interestedUser: interestedUsers) {
-                    List<Post> requestedPosts = interestedUser.getRequestedPosts();
-                    requestedPosts.remove(post);
-                    interestedUser.setRequestedPosts(requestedPosts);
-                    userRepository.save(interestedUser);
-                    log.info("Post [{}] removed from User [{}'s] Requested Posts list", postId, interestedUser.getUsername());
-                }
+            // Popular posts are unlinked from their users chunk by chunk in the background
+            long userLinks = postRepository.countUserLinksOfPost(postId);
+            if (cascadeJobService.runInBackground(userLinks)) {
+                int chunkSize = cascadeJobService.getChunkSize();
+                cascadeJobService.submit(POST_CASCADE, postId, userLinks,
+                        List.of(() -> postRepository.deleteInterestedUsersOfPost(postId, chunkSize),
+                                () -> postRepository.deleteConfirmedUsersOfPost(postId, chunkSize)),
+                        () -> deletePostWithUserLinks(postId));
+                return 1;
             }
 
-            // Delete Post from DB
-            postRepository.deleteById(postId);
-            log.info("Post with Post ID: {} deleted from DB", postId);
-
+            deletePostWithUserLinks(postId);
             return 1;
         }
         return -1;
     }
 
+    // Unlink the post from the interested and confirmed users, delete its likes and then the post in one statement
+    private void deletePostWithUserLinks(Long postId) {
+        seatReservationService.deleteWaitlist(postId);
+
+        hashtagService.removeAll(postId);
+        AfterCommit.run(() -> facetIndexService.remove(postId));
+        postViewService.remove(postId);
+        DeletedPostLinks deleted = postRepository.deletePostWithLinks(postId);
+        log.info("Post [{}] removed from {} Interested Users and {} Confirmed Users, {} Likes deleted", postId,
+                deleted.getInterestedUsers(), deleted.getConfirmedUsers(), deleted.getLikes());
+        postCacheService.invalidate(postId);
+        log.info("Post with Post ID: {} deleted from DB", postId);
+    }
+
+    public CascadeJobDTO getDeletePostJob(Long postId) {
+        return cascadeJobService.getJob(POST_CASCADE, postId);
+    }
+
     // Interested User Request for a Post
     public int postUserRequest(Long postId, String token) {
-        if(checkPostExistInDB(postId)) {
+        return optimisticRetryService.run("postUserRequest", () -> {
+            if(checkPostExistInDB(postId)) {
 
-            // Get the interested User
-            String username = jwtService.extractUsername(token.substring(7));
-            User user = userRepository.findByUsername(username).get();
+                // Get the interested User
+                String username = jwtService.extractUsername(token.substring(7));
+                User user = requestIdentityMap.findUserByUsername(username).get();
 
-            // Get the list of current interested users
-            Post post = postRepository.findById(postId).get();
-            List<User> interestedUsers = new ArrayList<>();
-            if (post.getInterestedUsers() != null) {
-                interestedUsers = post.getInterestedUsers() ;
-            }
-            log.info("Interested Users before: {}", interestedUsers);
+                // Get the list of current interested users
+                Post post = postRepository.findById(postId).get();
+                List<User> interestedUsers = new ArrayList<>();
+                if (post.getInterestedUsers() != null) {
+                    interestedUsers = post.getInterestedUsers() ;
+                }
+                log.info("Interested Users before: {}", interestedUsers);
 
-            // Check if user is the owner user of Post
-            if (user.getUsername().equals(post.getOwnerUser().getUsername())) {
-                log.info("User [{}] is the owner of the Post", user.getUsername());
-                return -1;
-            }
+                // Check if user is the owner user of Post
+                if (user.getUsername().equals(post.getOwnerUser().getUsername())) {
+                    log.info("User [{}] is the owner of the Post", user.getUsername());
+                    return -1;
+                }
 
-            // check if User is already in the list of interested users list
-            if (!interestedUsers.isEmpty() && interestedUsers.contains(user)) {
-                log.info("User [{}] already exists in Interested Users list for Post {}", username, postId);
-                return 0;
-            } else {
+                // check if User is already in the list of interested users list
+                if (!interestedUsers.isEmpty() && interestedUsers.contains(user)) {
+                    log.info("User [{}] already exists in Interested Users list for Post {}", username, postId);
+                    return 0;
+                } else {
 
-                List<Post> requestedPosts = new ArrayList<>();
-                if (user.getRequestedPosts() != null) {
-                    requestedPosts = user.getRequestedPosts();
-                }
-                requestedPosts.add(post);
-                user.setRequestedPosts(requestedPosts);
-                userRepository.save(user);
+                    List<Post> requestedPosts = new ArrayList<>();
+                    if (user.getRequestedPosts() != null) {
+                        requestedPosts = user.getRequestedPosts();
+                    }
+                    requestedPosts.add(post);
+                    user.setRequestedPosts(requestedPosts);
+                    userRepository.save(user);
 
-                interestedUsers.add(user);
-                post.setInterestedUsers(interestedUsers);
-                postRepository.save(post);
-                log.info("User [{}] added to Interested Users List for Post [{}]", user.getUsername(), postId);
+                    interestedUsers.add(user);
+                    post.setInterestedUsers(interestedUsers);
+                    postRepository.save(post);
+                    engagementCounterService.userInterested(postId);
+                    log.info("User [{}] added to Interested Users List for Post [{}]", user.getUsername(), postId);
 
-                return 1;
+                    return 1;
+                }
             }
-        }
-        return -1;
+            return -1;
+        });
     }
 
     // Get All Interested Users for a Post
@@ -367,14 +615,15 @@ public class PostService {
     public List<String> getInterestedUsers(Long postId, String token) {
         if(checkPostExistInDB(postId)) {
 
-            Post post = postRepository.findById(postId).get();
+            Post post = postCacheService.get(postId).get();
 
             if (!checkUserOwnerOfPostAndRole(token, post.getOwnerUser().getUsername())) {
                 log.info("User is not authorized to get the interested Users");
                 return null;
             }
 
-            List<User> interestedUsers = post.getInterestedUsers();
+            // Only the usernames are read, not the interested Users
+            List<String> interestedUsers = postRepository.findInterestedUsernames(postId);
 
             if(interestedUsers.isEmpty()) {
                 log.info("No Interested Users for Post {}", postId);
@@ -382,135 +631,219 @@ public class PostService {
                 log.info("Interested Users for Post {} are {}", postId, interestedUsers.size());
             }
 
-            return interestedUsers.stream().map(User::getUsername).collect(Collectors.toList());
+            return interestedUsers;
         }
         return null;
     }
 
     // ACCEPT Interested User for a post
     public int acceptInterestedUser(Long postId, String username, String token) {
+        return optimisticRetryService.run("acceptInterestedUser", () -> {
+            if(!checkPostExistInDB(postId)) {
+                return -1;
+            }
 
-        if(!checkPostExistInDB(postId)) {
-            return -1;
-        }
+            if(!checkUserExistInDBWithUsername(username)) {
+                return -1;
+            }
 
-        if(!checkUserExistInDBWithUsername(username)) {
-            return -1;
-        }
+            Post post = this.postRepository.findById(postId).get();
+            User user = requestIdentityMap.findUserByUsername(username).get();
+            List<User> interestedUsers = post.getInterestedUsers();
+            List<Post> requestedPosts = user.getRequestedPosts();
 
-        Post post = this.postRepository.findById(postId).get();
-        User user = userRepository.findByUsername(username).get();
-        List<User> interestedUsers = post.getInterestedUsers();
-        List<Post> requestedPosts = user.getRequestedPosts();
+            // Check if the User is Authorized to Accept the User
+            // Only ADMIN or Post's Owner User is allowed
+            if (!checkUserOwnerOfPostAndRole(token, post.getOwnerUser().getUsername())) {
+                log.info("User [{}] is NOT Authorized to accept the User Request", jwtService.extractUsername(token.substring(7)));
+                return -1;
+            }
 
-        // Check if the User is Authorized to Accept the User
-        // Only ADMIN or Post's Owner User is allowed
-        if (!checkUserOwnerOfPostAndRole(token, post.getOwnerUser().getUsername())) {
-            log.info("User [{}] is NOT Authorized to accept the User Request", jwtService.extractUsername(token.substring(7)));
-            return -1;
-        }
+            // Check if user already exists
+            if(!interestedUsers.contains(user)) {
+                log.info("User [{}] does not exists in Post interested Users list. Please raise request for the post", user.getUsername());
+                return -1;
+            }
+            else {
+                // delete user from interestedUsers array
+                interestedUsers.remove(user);
+                log.info("User [{}] deleted from the Post [{}] interested Users list", user.getUsername(), postId);
+
+                // delete post from user's requested Post list
+                requestedPosts.remove(post);
+                log.info("Post [{}] deleted from the user [{}] requested Posts list", postId, user.getUsername());
+            }
 
-        // Check if user already exists
-        if(!interestedUsers.contains(user)) {
-            log.info("User [{}] does not exists in Post interested Users list. Please raise request for the post", user.getUsername());
-            return -1;
-        }
-        else {
-            // delete user from interestedUsers array
-            interestedUsers.remove(user);
-            log.info("User [{}] deleted from the Post [{}] interested Users list", user.getUsername(), postId);
-
-            // delete post from user's requested Post list
-            requestedPosts.remove(post);
-            log.info("Post [{}] deleted from the user [{}] requested Posts list", postId, user.getUsername());
-        }
+            List<User> confirmedUsers = post.getConfirmedUsers();
 
-        List<User> confirmedUsers = post.getConfirmedUsers();
+            // Check if user already exists in Post's Confirmed User list
+            if(confirmedUsers.contains(user)) {
+                log.info("User [{}] already exists in confirmed users list for post [{}]. Check again", user.getUsername(), postId);
+            }
+            else if (!seatReservationService.reserve(postId)) {
+                // The event is full, the user waits for a seat to free up
+                post.setInterestedUsers(interestedUsers);
+                user.setRequestedPosts(requestedPosts);
+                postRepository.save(post);
+                userRepository.save(user);
+                engagementCounterService.interestedUserRemoved(postId);
+                seatReservationService.waitlist(postId, username);
 
-        // Check if user already exists in Post's Confirmed User list
-        if(confirmedUsers.contains(user)) {
-            log.info("User [{}] already exists in confirmed users list for post [{}]. Check again", user.getUsername(), postId);
-        }
-        else {
-            // Add user to confirmedUsers array
-            confirmedUsers.add(user);
-            log.info("User [{}] added to Post {} confirmed Users List. See you soon fella!!", user.getUsername(), postId);
-        }
+                log.info("Post [{}] is full, User [{}] added to its waitlist", postId, username);
+                return 0;
+            }
+            else {
+                // Add user to confirmedUsers array
+                confirmedUsers.add(user);
+                log.info("User [{}] added to Post {} confirmed Users List. See you soon fella!!", user.getUsername(), postId);
+            }
 
-        List<Post> reminderPosts = user.getReminderPosts();
+            List<Post> reminderPosts = user.getReminderPosts();
 
-        if (reminderPosts == null) {
-            reminderPosts = new ArrayList<>();
-        }
+            if (reminderPosts == null) {
+                reminderPosts = new ArrayList<>();
+            }
 
-        if(reminderPosts.contains(post)) {
-            log.info("Post [{}] already exists in User [{}] reminder bucket list of posts!!", postId, user.getUsername());
-        }
-        else {
-            // Add post to user's reminder posts list
-            reminderPosts.add(post);
-            log.info("Post [{}] added to User [{}] reminder Posts list", postId, user.getUsername());
-            log.info("Number of Requested Posts for User [{}] are: [{}]", username, user.getRequestedPosts().size());
-        }
+            if(reminderPosts.contains(post)) {
+                log.info("Post [{}] already exists in User [{}] reminder bucket list of posts!!", postId, user.getUsername());
+            }
+            else {
+                // Add post to user's reminder posts list
+                reminderPosts.add(post);
+                log.info("Post [{}] added to User [{}] reminder Posts list", postId, user.getUsername());
+                log.info("Number of Requested Posts for User [{}] are: [{}]", username, user.getRequestedPosts().size());
+            }
+
+            post.setInterestedUsers(interestedUsers);
+            user.setRequestedPosts(requestedPosts);
+            post.setConfirmedUsers(confirmedUsers);
+            user.setReminderPosts(reminderPosts);
 
-        post.setInterestedUsers(interestedUsers);
-        user.setRequestedPosts(requestedPosts);
-        post.setConfirmedUsers(confirmedUsers);
-        user.setReminderPosts(reminderPosts);
+            postRepository.save(post);
+            userRepository.save(user);
+            // The confirmed count was taken along with the seat
+            engagementCounterService.interestedUserRemoved(postId);
 
-        postRepository.save(post);
-        userRepository.save(user);
+            log.info("Number of Reminder Posts for User [{}] are: [{}]", username, user.getReminderPosts().size());
+            log.info("Number of Interested Users for Post [{}] are: [{}]", postId, post.getInterestedUsers().size());
+            log.info("Number of Confirmed Users for Post [{}] are: [{}]", postId, post.getConfirmedUsers().size());
+            // A retried or rolled back accept must not leave a reminder behind
+            AfterCommit.run(() -> eventReminderService.schedule(post, username));
 
-        log.info("Number of Reminder Posts for User [{}] are: [{}]", username, user.getReminderPosts().size());
-        log.info("Number of Interested Users for Post [{}] are: [{}]", postId, post.getInterestedUsers().size());
-        log.info("Number of Confirmed Users for Post [{}] are: [{}]", postId, post.getConfirmedUsers().size());
-        log.info("For Post {}, added User [{}] to Confirmed Users list, removed from Interested Users List",
-                postId, username);
-        return 1;
+            log.info("For Post {}, added User [{}] to Confirmed Users list, removed from Interested Users List",
+                    postId, username);
+            return 1;
+        });
     }
 
     // Reject Interested user of the post
     public int rejectInterestedUser(Long postId, String username, String token) {
-        if(!checkPostExistInDB(postId)) {
-            return -1;
-        }
+        return optimisticRetryService.run("rejectInterestedUser", () -> {
+            if(!checkPostExistInDB(postId)) {
+                return -1;
+            }
+
+            if(!checkUserExistInDBWithUsername(username)) {
+                return -1;
+            }
 
-        if(!checkUserExistInDBWithUsername(username)) {
+            Post post = postRepository.findById(postId).get();
+            User user = requestIdentityMap.findUserByUsername(username).get();
+
+            // Check if the User is Authorized to Reject the User
+            // Only ADMIN or Post's Owner User is allowed
+            if (!checkUserOwnerOfPostAndRole(token, post.getOwnerUser().getUsername())) {
+                log.info("User [{}] is NOT Authorized to reject the User Request", jwtService.extractUsername(token.substring(7)));
+                return -1;
+            }
+
+            List<User> interestedUsers = post.getInterestedUsers();
+            List<Post> requestedPosts = user.getRequestedPosts();
+
+            if (interestedUsers.remove(user) && requestedPosts.remove(post)) {
+                log.info("User [{}] removed from Interested Users list", user.getUsername());
+
+                post.setInterestedUsers(interestedUsers);
+                user.setRequestedPosts(requestedPosts);
+
+                postRepository.save(post);
+                userRepository.save(user);
+                engagementCounterService.interestedUserRemoved(postId);
+
+                return 1;
+            }
+            log.info("User [{}] NOT rejected", username);
             return -1;
+        });
+    }
+
+    // ACCEPT or REJECT many interested users of a post at once, in one transaction
+    // The result has every distinct username asked for, in order, NOT_INTERESTED when it had not requested the post
+    @Transactional
+    public List<InterestedUserResultDTO> updateInterestedUsers(Long postId, InterestedUsersBatchDTO batch, String token) {
+        if (batch == null || batch.getAction() == null || batch.getUsernames() == null) {
+            throw new IllegalArgumentException("An action and the usernames are required");
+        }
+        if (batch.getUsernames().size() > MAX_INTERESTED_USERS_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_INTERESTED_USERS_BATCH + " users can be updated at once");
         }
 
-        Post post = postRepository.findById(postId).get();
-        User user = userRepository.findByUsername(username).get();
+        Post post = postCacheService.get(postId).orElse(null);
+        if (post == null) {
+            log.info("Post {} does not exist in DB", postId);
+            return null;
+        }
 
-        // Check if the User is Authorized to Reject the User
         // Only ADMIN or Post's Owner User is allowed
         if (!checkUserOwnerOfPostAndRole(token, post.getOwnerUser().getUsername())) {
-            log.info("User [{}] is NOT Authorized to reject the User Request", jwtService.extractUsername(token.substring(7)));
-            return -1;
+            log.info("User [{}] is NOT Authorized to update the User Requests", jwtService.extractUsername(token.substring(7)));
+            return null;
         }
 
-        List<User> interestedUsers = post.getInterestedUsers();
-        List<Post> requestedPosts = user.getRequestedPosts();
-
-        if (interestedUsers.remove(user) && requestedPosts.remove(post)) {
-            log.info("User [{}] removed from Interested Users list", user.getUsername());
-
-            post.setInterestedUsers(interestedUsers);
-            user.setRequestedPosts(requestedPosts);
-
-            postRepository.save(post);
-            userRepository.save(user);
+        String[] usernames = batch.getUsernames().stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toArray(String[]::new);
 
-            return 1;
+        Map<String, InterestedUserResult> updated = new HashMap<>();
+        if (batch.getAction() == InterestedUserAction.ACCEPT) {
+            // The post row stays locked until the end of the transaction, no seat is taken by someone else meanwhile
+            Integer freeSeats = postRepository.lockFreeSeats(postId);
+            List<AcceptedUser> accepted = postRepository.acceptInterestedUsers(postId, usernames, freeSeats != null ? freeSeats : 0);
+            int newlyConfirmed = (int) accepted.stream().filter(user -> Boolean.TRUE.equals(user.getNewlyConfirmed())).count();
+            engagementCounterService.interestedUsersConfirmed(postId, accepted.size(), newlyConfirmed);
+
+            for (AcceptedUser user : accepted) {
+                if (Boolean.FALSE.equals(user.getSeated())) {
+                    updated.put(user.getUsername(), InterestedUserResult.WAITLISTED);
+                } else {
+                    updated.put(user.getUsername(), InterestedUserResult.ACCEPTED);
+                    AfterCommit.run(() -> eventReminderService.schedule(post, user.getUsername()));
+                }
+            }
+        } else {
+            for (String username : postRepository.rejectInterestedUsers(postId, usernames)) {
+                updated.put(username, InterestedUserResult.REJECTED);
+            }
+            engagementCounterService.interestedUsersRemoved(postId, updated.size());
         }
-        log.info("User [{}] NOT rejected", username);
-        return -1;
+        log.info("{} of {} Users {} for Post [{}]", updated.size(), usernames.length, batch.getAction(), postId);
+
+        List<InterestedUserResultDTO> results = new ArrayList<>(usernames.length);
+        for (String username : usernames) {
+            results.add(InterestedUserResultDTO.builder()
+                    .username(username)
+                    .result(updated.getOrDefault(username, InterestedUserResult.NOT_INTERESTED))
+                    .build());
+        }
+        return results;
     }
 
     // GET All the confirmed users
     public List<String> getConfirmedUsers(Long postId) {
         if(checkPostExistInDB(postId)) {
-            List<User> confirmedUsers = this.postRepository.findById(postId).get().getConfirmedUsers();
+            // Only the usernames are read, not the confirmed Users
+            List<String> confirmedUsers = postRepository.findConfirmedUsernames(postId);
 
             if(confirmedUsers.isEmpty()) {
                 log.info("No Confirmed Users for Post {}", postId);
@@ -518,51 +851,66 @@ public class PostService {
                 log.info("Confirmed Users for Post {} are {}", postId, confirmedUsers.size());
             }
 
-            return confirmedUsers.stream().map(User::getUsername).collect(Collectors.toList());
+            return confirmedUsers;
+        }
+        // Posts whose event ended keep their confirmed users in the archive
+        return postArchiveService.getConfirmedUsers(postId);
+    }
+
+    // GET the users waiting for a seat of the post, in the order they will be confirmed
+    public List<String> getWaitlist(Long postId) {
+        if (checkPostExistInDB(postId)) {
+            return seatReservationService.getWaitlist(postId);
         }
         return null;
     }
 
     // DELETE a Confirmed User from Post
     public int deleteConfirmedUser(Long postId, String username, String token) {
-        if (!checkPostExistInDB(postId)) {
-            return -1;
-        }
+        return optimisticRetryService.run("deleteConfirmedUser", () -> {
+            if (!checkPostExistInDB(postId)) {
+                return -1;
+            }
 
-        Post post = postRepository.findById(postId).get();
-        if (!checkUserExistInDBWithUsername(username)) {
-            log.info("User [{}] should not be in Confirmed Users list of Post [{}]. Check and Delete!!", username, postId);
-            return -1;
-        }
+            Post post = postRepository.findById(postId).get();
+            if (!checkUserExistInDBWithUsername(username)) {
+                log.info("User [{}] should not be in Confirmed Users list of Post [{}]. Check and Delete!!", username, postId);
+                return -1;
+            }
 
-        // Check if the User is Authorized to Delete the Confirmed User
-        // Only ADMIN or Post's Owner User is allowed
-        if (!checkUserOwnerOfPostAndRole(token, post.getOwnerUser().getUsername())) {
-            log.info("User [{}] is NOT Authorized to delete the User Request", jwtService.extractUsername(token.substring(7)));
-            return -1;
-        }
+            // Check if the User is Authorized to Delete the Confirmed User
+            // Only ADMIN or Post's Owner User is allowed
+            if (!checkUserOwnerOfPostAndRole(token, post.getOwnerUser().getUsername())) {
+                log.info("User [{}] is NOT Authorized to delete the User Request", jwtService.extractUsername(token.substring(7)));
+                return -1;
+            }
 
-        User user = userRepository.findByUsername(username).get();
-        List<User> confirmedUsers = post.getConfirmedUsers();
+            User user = requestIdentityMap.findUserByUsername(username).get();
+            List<User> confirmedUsers = post.getConfirmedUsers();
 
-        if (!confirmedUsers.contains(user)) {
-            log.info("User [{}] does not exist in Confirmed Users List of Post [{}]", username, postId);
-            return 0;
-        }
+            if (!confirmedUsers.contains(user)) {
+                log.info("User [{}] does not exist in Confirmed Users List of Post [{}]", username, postId);
+                return 0;
+            }
 
-        confirmedUsers.remove(user);
-        post.setConfirmedUsers(confirmedUsers);
-        postRepository.save(post);
-        log.info("Post [{}] removed from User [{}] Reminder Posts list", postId, username);
+            confirmedUsers.remove(user);
+            post.setConfirmedUsers(confirmedUsers);
+            postRepository.save(post);
+            log.info("Post [{}] removed from User [{}] Reminder Posts list", postId, username);
+
+            // Delete Post from User's Reminder Posts List
+            List<Post> reminderPosts = user.getReminderPosts();
+            reminderPosts.remove(post);
+            user.setReminderPosts(reminderPosts);
+            userRepository.save(user);
+            AfterCommit.run(() -> eventReminderService.cancel(postId, username));
+            log.info("User [{}] removed from Confirmed Users list [{}]", username, confirmedUsers);
 
-        // Delete Post from User's Reminder Posts List
-        List<Post> reminderPosts = user.getReminderPosts();
-        reminderPosts.remove(post);
-        user.setReminderPosts(reminderPosts);
-        userRepository.save(user);
-        log.info("User [{}] removed from Confirmed Users list [{}]", username, confirmedUsers);
+            // The freed seat goes to the first user on the waitlist
+            seatReservationService.release(post);
 
-        return 1;
+            return 1;
+        });
     }
 
     // Like a Post by User
@@ -572,40 +920,29 @@ public class PostService {
         }
 
         String username = jwtService.extractUsername(token.substring(7));
-
-        Post post = postRepository.findById(postId).get();
-        String[] likes = post.getLikes() != null ? post.getLikes() : new String[]{};
-        if(ArrayUtils.contains(likes, username)) {
-            log.info("User [{}] has already liked the post [{}]", username, postId);
-            return 0;
-        }
-
-        // Add user to likes list of the post
-        likes = ArrayUtils.add(likes, username);
-        post.setLikes(likes);
-        postRepository.save(post);
-
-        log.info("User [{}] has liked the post [{}], and added to LIKES list of the Post", username, postId);
-        return 1;
+        return postLikeService.like(postId, username);
     }
 
-    // GET All Likes on post
-    public String[] getAllLikesOnPost(Long postId) {
+    // GET Likes on post, most recent first
+    public List<String> getAllLikesOnPost(Long postId, int page, int size) {
         if(!checkPostExistInDB(postId)) {
-            return null;
+            // Posts whose event ended keep their likes in the archive
+            return postArchiveService.getLikes(postId, page, size);
         }
 
-        Post post = postRepository.findById(postId).get();
-        String[] likes = post.getLikes();
+        List<String> likes = postLikeService.getLikes(postId, page, size);
+        log.info("Page {} of LIKES on the Post [{}] has [{}] users", page, postId, likes.size());
+        return likes;
+    }
 
-        if(ArrayUtils.isEmpty(likes)) {
-            log.info("No LIKES given to the Post [{}]", postId);
-        }
-        else {
-            log.info("No. of Likes given to the Post [{}] are: [{}]", postId, likes.length);
+    // GET the Like count of a post and whether the requesting user liked it
+    public LikeSummaryDTO getLikeSummary(Long postId, String token) {
+        String username = jwtService.extractUsername(token.substring(7));
+        if(!checkPostExistInDB(postId)) {
+            return postArchiveService.getLikeSummary(postId, username);
         }
 
-        return likes != null ? likes : new String[]{};
+        return postLikeService.getLikeSummary(postId, username);
     }
 
     // Remove a Like on post by user
@@ -615,92 +952,122 @@ public class PostService {
         }
 
         String username = jwtService.extractUsername(token.substring(7));
-
-        Post post = postRepository.findById(postId).get();
-        String[] likes = post.getLikes() != null ? post.getLikes() : new String[]{};
-        if(!ArrayUtils.contains(likes, username)) {
-            log.info("User [{}] has NOT liked the post [{}]", username, postId);
-            return 0;
-        }
-
-        // Remove user from the LIKES list of the post
-        likes = ArrayUtils.removeElement(likes, username);
-        post.setLikes(likes);
-        postRepository.save(post);
-
-        log.info("User [{}] has dis-liked the post [{}], and removed from LIKES list of the Post", username, postId);
-        return 1;
+        return postLikeService.unlike(postId, username);
     }
 
     // ADD Hashtags to Current Hashtags Post
     public String[] addHashtags(Long postId, String[] newHashtags) {
-        if(!checkPostExistInDB(postId)) {
-            return null;
-        }
+        return optimisticRetryService.run("addHashtags", () -> {
+            if(!checkPostExistInDB(postId)) {
+                return null;
+            }
 
-        Post post = postRepository.findById(postId).get();
+            Post post = postRepository.findById(postId).get();
 
-        // Add Hashtags to current Hashtags
-        String[] hashtags = post.getHashtags() != null ? post.getHashtags() : new String[]{};
-        hashtags = ArrayUtils.addAll(hashtags, newHashtags);
-        post.setHashtags(hashtags);
-        postRepository.save(post);
+            // Add Hashtags to current Hashtags
+            String[] oldHashtags = post.getHashtags() != null ? post.getHashtags() : new String[]{};
+            String[] hashtags = ArrayUtils.addAll(oldHashtags, newHashtags);
+            post.setHashtags(hashtags);
+            postRepository.save(post);
+            postCacheService.invalidate(post.getPostId());
+            hashtagService.reindex(post, oldHashtags, hashtags);
 
-        log.info("New Hashtags Added to post [{}] : {}", postId, hashtags);
-        return post.getHashtags();
+            log.info("New Hashtags Added to post [{}] : {}", postId, hashtags);
+            return post.getHashtags();
+        });
     }
 
     // GET Hashtags of Post
     public String[] getHashtagsOfPost(Long postId) {
-        if(!checkPostExistInDB(postId)) {
+        Post post = postCacheService.get(postId).orElse(null);
+        if(post == null) {
+            log.info("Post {} does not exist in DB", postId);
             return null;
         }
 
-        String[] hashtagsOfPost = postRepository.findById(postId).get().getHashtags();
+        String[] hashtagsOfPost = post.getHashtags();
 
         return hashtagsOfPost != null ? hashtagsOfPost : new String[]{};
     }
 
     // UPDATE Hashtags to Current Hashtags Post
     public String[] updateHashtags(Long postId, String[] newHashtags) {
-        if(!checkPostExistInDB(postId)) {
-            return null;
-        }
+        return optimisticRetryService.run("updateHashtags", () -> {
+            if(!checkPostExistInDB(postId)) {
+                return null;
+            }
 
-        Post post = postRepository.findById(postId).get();
+            Post post = postRepository.findById(postId).get();
 
-        // Replace Hashtags
-        String[] OldHashtags = post.getHashtags();
-        post.setHashtags(newHashtags);
-        postRepository.save(post);
+            // Replace Hashtags
+            String[] OldHashtags = post.getHashtags();
+            post.setHashtags(newHashtags);
+            postRepository.save(post);
+            postCacheService.invalidate(post.getPostId());
+            hashtagService.reindex(post, OldHashtags, newHashtags);
 
-        log.info("Old Hashtags: {} of Post {} are removed", OldHashtags, postId);
-        log.info("New Hashtags {} Added to post {}", newHashtags, postId);
-        return post.getHashtags();
+            log.info("Old Hashtags: {} of Post {} are removed", OldHashtags, postId);
+            log.info("New Hashtags {} Added to post {}", newHashtags, postId);
+            return post.getHashtags();
+        });
     }
 
     // DELETE Hashtag from Post
     public int deleteHashtagsOfPost(Long postId, String hashtag) {
-        if(!checkPostExistInDB(postId)) {
-            return -1;
-        }
+        return optimisticRetryService.run("deleteHashtagsOfPost", () -> {
+            if(!checkPostExistInDB(postId)) {
+                return -1;
+            }
 
-        Post post = postRepository.findById(postId).get();
+            Post post = postRepository.findById(postId).get();
 
-        // Delete Hashtag
-        String[] hashtags = post.getHashtags();
+            // Delete Hashtag
+            String[] hashtags = post.getHashtags();
 
-        if (!ArrayUtils.contains(hashtags, hashtag)) {
-            log.info("Hashtag [{}] does not exist for Post [{}]", hashtag, postId);
-            return 0;
-        }
+            if (!ArrayUtils.contains(hashtags, hashtag)) {
+                log.info("Hashtag [{}] does not exist for Post [{}]", hashtag, postId);
+                return 0;
+            }
 
-        hashtags = ArrayUtils.removeElement(hashtags, hashtag);
-        post.setHashtags(hashtags);
-        postRepository.save(post);
+            String[] remainingHashtags = ArrayUtils.removeElement(hashtags, hashtag);
+            post.setHashtags(remainingHashtags);
+            postRepository.save(post);
+            postCacheService.invalidate(post.getPostId());
+            hashtagService.reindex(post, hashtags, remainingHashtags);
+
+            log.info("Hashtag [{}] deleted from Post {}", hashtag, postId);
+            return 1;
+        });
+    }
+
+    // GET a page of the Posts with a Hashtag, newest first
+    public PostFeedPage getPostsByHashtag(String hashtag, String cursor, int limit) {
+        return hashtagService.getPostsByHashtag(hashtag, cursor, limit);
+    }
+
+    // GET a page of the Posts whose description or location match the search text, best matches first
+    public PostFeedPage searchPosts(String text, String postType, String timeType, Boolean onlyForWomen, String cursor, int limit) {
+        return postSearchService.search(text, postType, timeType, onlyForWomen, cursor, limit);
+    }
+
+    // GET the facet counts and a page of the Posts matching the facet filters
+    public FacetSearchDTO searchFacets(List<String> postTypes, List<String> timeTypes, Boolean onlyForWomen, List<String> tags,
+                                       boolean allTags, String cursor, int limit) {
+        Map<String, List<String>> filters = new HashMap<>();
+        if (postTypes != null) filters.put(FacetIndexService.POST_TYPE, postTypes);
+        if (timeTypes != null) filters.put(FacetIndexService.TIME_TYPE, timeTypes);
+        if (onlyForWomen != null) filters.put(FacetIndexService.ONLY_FOR_WOMEN, List.of(onlyForWomen.toString()));
+        if (tags != null) filters.put(FacetIndexService.TAGS, tags);
+        return facetIndexService.search(filters, allTags, cursor, limit);
+    }
+
+    public FacetIndexStatsDTO getFacetIndexStats() {
+        return facetIndexService.getStats();
+    }
 
-        log.info("Hashtag [{}] deleted from Post {}", hashtag, postId);
-        return 1;
+    // GET the Hashtags added to the most Posts recently
+    public List<HashtagCountDTO> getTrendingHashtags(int limit) {
+        return hashtagService.getTrendingHashtags(limit);
     }
 
 //    public void exampleImageUpload() throws Exception {
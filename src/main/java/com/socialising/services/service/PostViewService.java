@@ -0,0 +1,199 @@
+package com.socialising.services.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.socialising.services.dto.PostViewsDTO;
+import com.socialising.services.model.PostViewSketch;
+import com.socialising.services.repository.PostViewSketchRepository;
+import com.socialising.services.util.HyperLogLog;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the distinct users who viewed each post with HyperLogLog sketches, never writing a row per view.
+ *
+ * Views are offered to an in-memory sketch per post, merged periodically into the sketch persisted for the post
+ * under a row lock, so instances flushing at the same time add up. Counts are answered from a bounded cache of the
+ * persisted sketch merged with the views not flushed yet, in O(1). Views of other instances show up once they
+ * flushed and the cached sketch expired.
+ *
+ * Counts are approximate: the relative standard error is about 1.6% (precision 12), so 99.7% of the counts are
+ * within 4.9% of the true number of viewers. Small counts are close to exact.
+ */
+@Service
+public class PostViewService {
+
+    private static final Logger log = LoggerFactory.getLogger(PostViewService.class);
+
+    private static final HashFunction VIEWER_HASH = Hashing.murmur3_128();
+
+    private final PostViewSketchRepository postViewSketchRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Sketches merged per transaction by a flush
+    private final int flushBatchSize;
+
+    // Views since the last flush, per post. Sketches are only changed inside compute/merge of their entry.
+    private final ConcurrentHashMap<Long, HyperLogLog> pendingViews = new ConcurrentHashMap<>();
+
+    // Views being flushed, still counted until they are persisted
+    private volatile Map<Long, HyperLogLog> inFlight = Map.of();
+
+    // Every view of the post seen so far, the persisted sketch merged with the pending views
+    private final Cache<Long, HyperLogLog> sketches;
+
+    @Autowired
+    public PostViewService(PostViewSketchRepository postViewSketchRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${application.views.flush-batch-size:500}") int flushBatchSize,
+                           @Value("${application.views.maximum-sketches:5000}") long maximumSketches,
+                           @Value("${application.views.expire-after-write-seconds:300}") long expireAfterWriteSeconds) {
+        this.postViewSketchRepository = postViewSketchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushBatchSize = Math.max(1, flushBatchSize);
+        this.sketches = CacheBuilder.newBuilder()
+                .maximumSize(maximumSketches)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    // The viewer saw the posts, viewing a post again does not change its count
+    public void recordViews(Collection<Long> postIds, String viewer) {
+        if (viewer == null || viewer.isEmpty()) {
+            return;
+        }
+        long hash = VIEWER_HASH.hashString(viewer, StandardCharsets.UTF_8).asLong();
+        for (Long postId : postIds) {
+            pendingViews.compute(postId, (id, sketch) -> {
+                HyperLogLog views = sketch != null ? sketch : new HyperLogLog();
+                views.offer(hash);
+                return views;
+            });
+            HyperLogLog cached = sketches.getIfPresent(postId);
+            if (cached != null) {
+                synchronized (cached) {
+                    cached.offer(hash);
+                }
+            }
+        }
+    }
+
+    public PostViewsDTO getUniqueViews(Long postId) {
+        HyperLogLog sketch;
+        try {
+            sketch = sketches.get(postId, () -> load(postId));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error loading the views of Post " + postId, e.getCause());
+        }
+        long uniqueViews;
+        synchronized (sketch) {
+            uniqueViews = sketch.estimate();
+        }
+        return PostViewsDTO.builder()
+                .postId(postId)
+                .uniqueViews(uniqueViews)
+                .standardError(sketch.standardError())
+                .build();
+    }
+
+    // Merge the views seen since the last flush into the persisted sketches, a batch of posts per transaction
+    @Scheduled(fixedDelayString = "${application.views.flush-interval-ms:60000}")
+    public void flushViews() {
+        Map<Long, HyperLogLog> drained = new HashMap<>();
+        for (Long postId : pendingViews.keySet()) {
+            HyperLogLog views = pendingViews.remove(postId);
+            if (views != null) {
+                drained.put(postId, views);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        inFlight = drained;
+        List<Long> postIds = new ArrayList<>(drained.keySet());
+        int flushed = 0;
+        try {
+            while (flushed < postIds.size()) {
+                List<Long> batch = postIds.subList(flushed, Math.min(flushed + flushBatchSize, postIds.size()));
+                transactionTemplate.executeWithoutResult(status -> mergeIntoPersisted(batch, drained));
+                flushed += batch.size();
+            }
+            log.info("Views flushed for {} posts", flushed);
+        } catch (Exception e) {
+            // Put back what was not persisted, merged with the views seen meanwhile
+            for (Long postId : postIds.subList(flushed, postIds.size())) {
+                pendingViews.merge(postId, drained.get(postId), (pending, restored) -> {
+                    pending.merge(restored);
+                    return pending;
+                });
+            }
+            log.error("Error flushing views of {} posts, will retry: {}", postIds.size() - flushed, e.getMessage());
+        } finally {
+            inFlight = Map.of();
+        }
+    }
+
+    // Forget the views of a deleted post
+    public void remove(Long postId) {
+        forget(postId);
+        postViewSketchRepository.deleteById(postId);
+    }
+
+    // Drop the views of a post kept in memory, once its sketch row was deleted along with it
+    public void forget(Long postId) {
+        pendingViews.remove(postId);
+        sketches.invalidate(postId);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushViews();
+    }
+
+    private void mergeIntoPersisted(List<Long> postIds, Map<Long, HyperLogLog> views) {
+        postViewSketchRepository.insertMissing(postIds.toArray(new Long[0]));
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<PostViewSketch> rows = postViewSketchRepository.findAllForUpdate(postIds);
+        for (PostViewSketch row : rows) {
+            HyperLogLog merged = row.getSketch() != null ? HyperLogLog.fromBytes(row.getSketch()) : new HyperLogLog();
+            merged.merge(views.get(row.getPostId()));
+            row.setSketch(merged.toBytes());
+            row.setUpdatedTs(now);
+        }
+        postViewSketchRepository.saveAll(rows);
+    }
+
+    private HyperLogLog load(Long postId) {
+        HyperLogLog sketch = postViewSketchRepository.findById(postId)
+                .filter(row -> row.getSketch() != null)
+                .map(row -> HyperLogLog.fromBytes(row.getSketch()))
+                .orElseGet(HyperLogLog::new);
+        HyperLogLog flushing = inFlight.get(postId);
+        if (flushing != null) {
+            sketch.merge(flushing);
+        }
+        pendingViews.computeIfPresent(postId, (id, pending) -> {
+            sketch.merge(pending);
+            return pending;
+        });
+        return sketch;
+    }
+}
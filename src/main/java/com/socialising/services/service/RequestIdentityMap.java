@@ -0,0 +1,139 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.LookupStatsDTO;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads each user at most once per HTTP request, however many times the services look them up by username.
+ *
+ * Lookups by id are already answered by the persistence context, open for the whole request (open-in-view), but a
+ * lookup by username is a query and goes to the DB every time. The users found are kept in a map attached to the
+ * request; being the managed entities of the request's persistence context, they are exactly what the query
+ * would return again. Outside a request, or when no persistence context is open yet (security filters), users are
+ * read from the repository as before. The map is cleared when a transaction rolls back, as the persistence context
+ * is, so a retried mutation reads fresh users.
+ *
+ * Lookups done and saved are counted per endpoint.
+ */
+@Service
+public class RequestIdentityMap {
+
+    private static final String USERS_ATTRIBUTE = RequestIdentityMap.class.getName() + ".users";
+
+    private final UserRepository userRepository;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    // Lookups per "METHOD /pattern" of the endpoints
+    private final ConcurrentHashMap<String, Lookups> lookupsByEndpoint = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RequestIdentityMap(UserRepository userRepository, EntityManagerFactory entityManagerFactory) {
+        this.userRepository = userRepository;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public Optional<User> findUserByUsername(String username) {
+        Map<String, User> users = users(true);
+        if (users == null || username == null) {
+            return userRepository.findByUsername(username);
+        }
+
+        Lookups lookups = lookupsByEndpoint.computeIfAbsent(endpoint(), endpoint -> new Lookups());
+        lookups.done.increment();
+        User user = users.get(username);
+        if (user != null) {
+            lookups.saved.increment();
+            return Optional.of(user);
+        }
+
+        // Users not found are not kept, they may sign up or be created later in the request
+        Optional<User> found = userRepository.findByUsername(username);
+        found.ifPresent(value -> users.put(username, value));
+        return found;
+    }
+
+    // Forget a user deleted during the request
+    public void evict(String username) {
+        Map<String, User> users = users(false);
+        if (users != null) {
+            users.remove(username);
+        }
+    }
+
+    public void clear() {
+        Map<String, User> users = users(false);
+        if (users != null) {
+            users.clear();
+        }
+    }
+
+    // Lookups by username done and saved since startup, per endpoint
+    public List<LookupStatsDTO> getStats() {
+        List<LookupStatsDTO> stats = new ArrayList<>();
+        lookupsByEndpoint.forEach((endpoint, lookups) -> stats.add(LookupStatsDTO.builder()
+                .endpoint(endpoint)
+                .lookups(lookups.done.sum())
+                .saved(lookups.saved.sum())
+                .build()));
+        stats.sort(Comparator.comparing(LookupStatsDTO::getSaved).reversed());
+        return stats;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, User> users(boolean create) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null || !TransactionSynchronizationManager.hasResource(entityManagerFactory)) {
+            return null;
+        }
+        Map<String, User> users = (Map<String, User>) request.getAttribute(USERS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (users == null && create) {
+            users = new HashMap<>();
+            request.setAttribute(USERS_ATTRIBUTE, users, RequestAttributes.SCOPE_REQUEST);
+        }
+        if (users != null && create && TransactionSynchronizationManager.isSynchronizationActive()) {
+            // A rollback clears the persistence context, the users kept are then detached
+            Map<String, User> kept = users;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        kept.clear();
+                    }
+                }
+            });
+        }
+        return users;
+    }
+
+    private String endpoint() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            return request.getMethod() + " " + (pattern != null ? pattern : "unmapped");
+        }
+        return "unknown";
+    }
+
+    private static class Lookups {
+
+        private final LongAdder done = new LongAdder();
+
+        private final LongAdder saved = new LongAdder();
+    }
+}
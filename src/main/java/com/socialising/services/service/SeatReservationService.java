@@ -0,0 +1,99 @@
+package com.socialising.services.service;
+
+import com.socialising.services.model.Post;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.repository.PostWaitlistRepository;
+import com.socialising.services.util.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Grants the seats of capacity-limited events and keeps the waitlist of users accepted once an event was full.
+ *
+ * A seat is taken with one conditional UPDATE of the confirmed count of the post, which only succeeds while the
+ * count is below the capacity, so concurrent accepts can never confirm more users than there are seats. Users who
+ * do not get one wait in the order they were accepted, and the first of them is promoted whenever a seat frees up.
+ */
+@Service
+@RequiredArgsConstructor
+public class SeatReservationService {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatReservationService.class);
+
+    private final PostRepository postRepository;
+
+    private final PostWaitlistRepository postWaitlistRepository;
+
+    private final EngagementCounterService engagementCounterService;
+
+    private final EventReminderService eventReminderService;
+
+    private final PostCacheService postCacheService;
+
+    // Take a seat of the post, counted as a confirmed user. False when the post is full.
+    public boolean reserve(Long postId) {
+        if (postRepository.reserveSeat(postId) == 0) {
+            log.info("No seat left for Post [{}]", postId);
+            return false;
+        }
+        postCacheService.invalidate(postId);
+        return true;
+    }
+
+    // Put the user at the end of the waitlist of the post, unless already waiting
+    public void waitlist(Long postId, String username) {
+        if (postWaitlistRepository.insertWaitlisted(postId, username) == 0) {
+            log.info("User [{}] is already on the waitlist of Post [{}]", username, postId);
+        } else {
+            log.info("User [{}] added to the waitlist of Post [{}]", username, postId);
+        }
+    }
+
+    // A confirmed user left the post, the seat goes to the first user waiting for it
+    public void release(Post post) {
+        engagementCounterService.confirmedUserRemoved(post.getPostId());
+        if (post.getCapacity() != null) {
+            promote(post);
+        }
+    }
+
+    // Move waiting users into the free seats of the post, in the order they were waitlisted
+    // Their reminders are scheduled once the transaction commits. Returns the number of users promoted
+    public int promote(Post post) {
+        Long postId = post.getPostId();
+        int promoted = 0;
+        while (reserve(postId)) {
+            String username = postWaitlistRepository.popFirst(postId);
+            if (username == null) {
+                // Nobody is waiting, give the seat back
+                engagementCounterService.confirmedUserRemoved(postId);
+                break;
+            }
+            if (postRepository.confirmWaitlistedUser(postId, username) == 0) {
+                log.info("Waitlisted User [{}] can not be confirmed for Post [{}], seat goes to the next one", username, postId);
+                engagementCounterService.confirmedUserRemoved(postId);
+                continue;
+            }
+            AfterCommit.run(() -> eventReminderService.schedule(post, username));
+            promoted++;
+            log.info("User [{}] promoted from the waitlist of Post [{}] to its confirmed users", username, postId);
+        }
+        return promoted;
+    }
+
+    public List<String> getWaitlist(Long postId) {
+        return postWaitlistRepository.findUsernamesByPostId(postId);
+    }
+
+    public int deleteWaitlist(Long postId) {
+        return postWaitlistRepository.deleteAllByPostId(postId);
+    }
+
+    public int deleteWaitlistedUser(String username) {
+        return postWaitlistRepository.deleteAllByUsername(username);
+    }
+}
@@ -0,0 +1,234 @@
+package com.socialising.services.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.socialising.services.model.UserSeenPosts;
+import com.socialising.services.repository.UserSeenPostsRepository;
+import com.socialising.services.util.ScalableBloomFilter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers which posts each user was already served, so feeds can skip them.
+ *
+ * The posts of a user are kept in a scalable Bloom filter of a few KB whatever the number of posts, which never
+ * forgets a post but reports about 1% of the other posts as seen too. Filters rotate: every rotation period, or
+ * sooner once a filter is full, the current generation becomes the previous one and the previous one is dropped,
+ * so a post is remembered for one to two rotation periods. Filters of recently active users are cached in memory
+ * and the changed ones are saved periodically; a user served by several instances keeps the filter saved last,
+ * which at worst shows a few posts again.
+ */
+@Service
+public class SeenPostsService {
+
+    private static final Logger log = LoggerFactory.getLogger(SeenPostsService.class);
+
+    private final UserSeenPostsRepository userSeenPostsRepository;
+
+    private final int initialCapacity;
+
+    private final double falsePositiveRate;
+
+    private final int maxSlices;
+
+    private final long rotationMillis;
+
+    private final LongSupplier clock;
+
+    private final Cache<String, SeenPosts> filters;
+
+    // Filters changed since the last flush. Held here until saved, even when evicted from the cache.
+    private final ConcurrentHashMap<String, SeenPosts> dirty = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SeenPostsService(UserSeenPostsRepository userSeenPostsRepository,
+                            @Value("${application.seen-posts.initial-capacity:256}") int initialCapacity,
+                            @Value("${application.seen-posts.false-positive-rate:0.01}") double falsePositiveRate,
+                            @Value("${application.seen-posts.max-slices:4}") int maxSlices,
+                            @Value("${application.seen-posts.rotation-hours:168}") long rotationHours,
+                            @Value("${application.seen-posts.maximum-users:5000}") long maximumUsers) {
+        this(userSeenPostsRepository, initialCapacity, falsePositiveRate, maxSlices, TimeUnit.HOURS.toMillis(rotationHours),
+                maximumUsers, System::currentTimeMillis);
+    }
+
+    SeenPostsService(UserSeenPostsRepository userSeenPostsRepository, int initialCapacity, double falsePositiveRate,
+                     int maxSlices, long rotationMillis, long maximumUsers, LongSupplier clock) {
+        this.userSeenPostsRepository = userSeenPostsRepository;
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxSlices = maxSlices;
+        this.rotationMillis = rotationMillis;
+        this.clock = clock;
+        this.filters = CacheBuilder.newBuilder()
+                .maximumSize(maximumUsers)
+                .build();
+    }
+
+    // The given posts the user was probably already served
+    public Set<Long> seen(String username, Collection<Long> postIds) {
+        SeenPosts seenPosts = get(username);
+        Set<Long> seen = new HashSet<>();
+        synchronized (seenPosts) {
+            rotateIfDue(username, seenPosts);
+            for (Long postId : postIds) {
+                if (seenPosts.mightContain(postId)) {
+                    seen.add(postId);
+                }
+            }
+        }
+        return seen;
+    }
+
+    // Remember that the user was served the posts
+    public void markSeen(String username, Collection<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return;
+        }
+        SeenPosts seenPosts = get(username);
+        boolean changed = false;
+        synchronized (seenPosts) {
+            changed |= rotateIfDue(username, seenPosts);
+            for (Long postId : postIds) {
+                if (seenPosts.current.isFull()) {
+                    rotate(username, seenPosts);
+                }
+                changed |= seenPosts.current.put(postId);
+            }
+        }
+        if (changed) {
+            dirty.put(username, seenPosts);
+        }
+    }
+
+    // Save the filters changed since the last flush
+    @Scheduled(fixedDelayString = "${application.seen-posts.flush-interval-ms:30000}")
+    public void flush() {
+        Map<String, SeenPosts> drained = new HashMap<>();
+        for (String username : dirty.keySet()) {
+            SeenPosts seenPosts = dirty.remove(username);
+            if (seenPosts != null) {
+                drained.put(username, seenPosts);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = new Timestamp(clock.getAsLong());
+        List<UserSeenPosts> rows = new ArrayList<>(drained.size());
+        drained.forEach((username, seenPosts) -> {
+            synchronized (seenPosts) {
+                rows.add(UserSeenPosts.builder()
+                        .username(username)
+                        .currentFilter(seenPosts.current.toBytes())
+                        .previousFilter(seenPosts.previous != null ? seenPosts.previous.toBytes() : null)
+                        .rotatedTs(new Timestamp(seenPosts.rotatedAt))
+                        .updatedTs(now)
+                        .build());
+            }
+        });
+        try {
+            userSeenPostsRepository.saveAll(rows);
+            log.info("Seen posts of {} users saved", rows.size());
+        } catch (Exception e) {
+            // Saved again with the next flush, unless changed meanwhile, then the newer state is saved
+            drained.forEach(dirty::putIfAbsent);
+            log.error("Error saving seen posts of {} users, will retry: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    // Forget the posts seen by a deleted user
+    public void remove(String username) {
+        dirty.remove(username);
+        filters.invalidate(username);
+        userSeenPostsRepository.deleteById(username);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private SeenPosts get(String username) {
+        try {
+            return filters.get(username, () -> {
+                SeenPosts unsaved = dirty.get(username);
+                return unsaved != null ? unsaved : load(username);
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error loading the seen posts of User " + username, e.getCause());
+        }
+    }
+
+    private SeenPosts load(String username) {
+        return userSeenPostsRepository.findById(username)
+                .filter(row -> row.getCurrentFilter() != null)
+                .map(row -> {
+                    try {
+                        return new SeenPosts(ScalableBloomFilter.fromBytes(row.getCurrentFilter()),
+                                row.getPreviousFilter() != null ? ScalableBloomFilter.fromBytes(row.getPreviousFilter()) : null,
+                                row.getRotatedTs().getTime());
+                    } catch (IllegalArgumentException e) {
+                        log.info("Unreadable seen posts of User [{}] are started over: {}", username, e.getMessage());
+                        return null;
+                    }
+                })
+                .orElseGet(() -> new SeenPosts(newFilter(), null, clock.getAsLong()));
+    }
+
+    private boolean rotateIfDue(String username, SeenPosts seenPosts) {
+        if (clock.getAsLong() - seenPosts.rotatedAt < rotationMillis) {
+            return false;
+        }
+        // Idle for two periods or more, the previous generation is too old to keep as well
+        boolean expired = clock.getAsLong() - seenPosts.rotatedAt >= 2 * rotationMillis;
+        rotate(username, seenPosts);
+        if (expired) {
+            seenPosts.previous = null;
+        }
+        return true;
+    }
+
+    private void rotate(String username, SeenPosts seenPosts) {
+        seenPosts.previous = seenPosts.current;
+        seenPosts.current = newFilter();
+        seenPosts.rotatedAt = clock.getAsLong();
+        log.info("Seen posts of User [{}] rotated", username);
+    }
+
+    private ScalableBloomFilter newFilter() {
+        return new ScalableBloomFilter(initialCapacity, falsePositiveRate, maxSlices);
+    }
+
+    // The two generations of the filter of a user, only used while synchronized on it
+    private static class SeenPosts {
+
+        private ScalableBloomFilter current;
+
+        private ScalableBloomFilter previous;
+
+        private long rotatedAt;
+
+        private SeenPosts(ScalableBloomFilter current, ScalableBloomFilter previous, long rotatedAt) {
+            this.current = current;
+            this.previous = previous;
+            this.rotatedAt = rotatedAt;
+        }
+
+        private boolean mightContain(long postId) {
+            return current.mightContain(postId) || previous != null && previous.mightContain(postId);
+        }
+    }
+}
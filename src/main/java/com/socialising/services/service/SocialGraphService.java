@@ -0,0 +1,255 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.SocialGraphStatsDTO;
+import com.socialising.services.model.Friendship;
+import com.socialising.services.repository.FriendshipRepository;
+import com.socialising.services.util.CompressedSocialGraph;
+import com.socialising.services.util.IndexBuild;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory friendship graph answering mutual friends and friends of friends without reading the friendship table.
+ *
+ * Every user with a friend gets a dense int ordinal, and the friendships are kept as a compressed sparse row graph
+ * over the ordinals, about 8 bytes per friendship besides the usernames. The graph is read from the DB page by page
+ * on startup and kept up to date by UserService as friend requests are accepted, friends deleted and users deleted.
+ * Friendships changed through another instance are only seen here once the graph is built again, on restart.
+ */
+@Service
+public class SocialGraphService {
+
+    private static final Logger log = LoggerFactory.getLogger(SocialGraphService.class);
+
+    private final FriendshipRepository friendshipRepository;
+
+    // Friendship rows read per query while building the graph
+    private final int buildPageSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<String, Integer> ordinals = new HashMap<>();
+
+    private String[] usernames = new String[1024];
+
+    private int nextOrdinal;
+
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+
+    private CompressedSocialGraph graph = new CompressedSocialGraph();
+
+    private final IndexBuild indexBuild = new IndexBuild(lock);
+
+    @Autowired
+    public SocialGraphService(FriendshipRepository friendshipRepository,
+                              @Value("${application.social-graph.build-page-size:10000}") int buildPageSize) {
+        this.friendshipRepository = friendshipRepository;
+        this.buildPageSize = buildPageSize;
+    }
+
+    // Read every friendship from the DB into a new graph, on startup and on the retry schedule until one build succeeds
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${application.social-graph.build-retry-ms:60000}", fixedDelayString = "${application.social-graph.build-retry-ms:60000}")
+    public void build() {
+        if (!indexBuild.start()) {
+            return;
+        }
+
+        // Both directions of a friendship are rows, they are read in key order and collected as edges first
+        Map<String, Integer> builtOrdinals = new HashMap<>();
+        List<String> builtUsernames = new ArrayList<>();
+        int[] sources = new int[1024];
+        int[] targets = new int[1024];
+        int edges = 0;
+        String lastUsername = "";
+        String lastFriendUsername = "";
+        try {
+            List<Friendship> page;
+            do {
+                page = friendshipRepository.findFriendshipsAfter(lastUsername, lastFriendUsername, buildPageSize);
+                for (Friendship friendship : page) {
+                    if (edges == sources.length) {
+                        sources = Arrays.copyOf(sources, edges * 2);
+                        targets = Arrays.copyOf(targets, edges * 2);
+                    }
+                    sources[edges] = ordinalOf(friendship.getUsername(), builtOrdinals, builtUsernames);
+                    targets[edges] = ordinalOf(friendship.getFriendUsername(), builtOrdinals, builtUsernames);
+                    edges++;
+                    lastUsername = friendship.getUsername();
+                    lastFriendUsername = friendship.getFriendUsername();
+                }
+            } while (page.size() == buildPageSize);
+        } catch (DataAccessException e) {
+            log.info("Social graph not built after {} friendship rows: {}", edges, e.getMessage());
+            // The graph in use was not replaced and already has the changes
+            indexBuild.abandon();
+            return;
+        }
+
+        // The graph read replaces the one in use, then gets the friendships changed since the build started
+        CompressedSocialGraph builtGraph = CompressedSocialGraph.fromEdges(builtUsernames.size(), sources, targets, edges);
+        indexBuild.finish(true, () -> {
+            ordinals = builtOrdinals;
+            usernames = builtUsernames.toArray(new String[Math.max(1024, builtUsernames.size())]);
+            nextOrdinal = builtUsernames.size();
+            freeOrdinals.clear();
+            graph = builtGraph;
+        });
+
+        SocialGraphStatsDTO stats = getStats();
+        log.info("Social graph built with {} users and {} friendships in {} bytes", stats.getUsers(), stats.getFriendships(), stats.getGraphBytes());
+    }
+
+    public void addFriendship(String username, String friendUsername) {
+        indexBuild.change(() -> addEdgeOf(username, friendUsername));
+    }
+
+    public void removeFriendship(String username, String friendUsername) {
+        indexBuild.change(() -> removeEdgeOf(username, friendUsername));
+    }
+
+    public void removeUser(String username) {
+        indexBuild.change(() -> removeVertexOf(username));
+    }
+
+    public boolean areFriends(String username, String otherUsername) {
+        lock.readLock().lock();
+        try {
+            Integer a = ordinals.get(username);
+            Integer b = ordinals.get(otherUsername);
+            return a != null && b != null && graph.hasEdge(a, b);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Friends both users have, in username order
+    public List<String> mutualFriends(String username, String otherUsername) {
+        lock.readLock().lock();
+        try {
+            Integer a = ordinals.get(username);
+            Integer b = ordinals.get(otherUsername);
+            if (a == null || b == null) {
+                return List.of();
+            }
+            int[] common = graph.commonNeighbors(a, b);
+            List<String> mutualFriends = new ArrayList<>(common.length);
+            for (int ordinal : common) {
+                mutualFriends.add(usernames[ordinal]);
+            }
+            Collections.sort(mutualFriends);
+            return mutualFriends;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int mutualFriendCount(String username, String otherUsername) {
+        lock.readLock().lock();
+        try {
+            Integer a = ordinals.get(username);
+            Integer b = ordinals.get(otherUsername);
+            return a == null || b == null ? 0 : graph.commonNeighborCount(a, b);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Friends of the friends of the user who are not friends of the user, with their number of mutual friends
+    public Map<String, Integer> friendsOfFriends(String username) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(username);
+            if (ordinal == null) {
+                return Map.of();
+            }
+            CompressedSocialGraph.TwoHop twoHop = graph.twoHop(ordinal);
+            Map<String, Integer> friendsOfFriends = new HashMap<>(twoHop.size() * 4 / 3 + 1);
+            for (int i = 0; i < twoHop.size(); i++) {
+                friendsOfFriends.put(usernames[twoHop.vertex(i)], twoHop.commonNeighbors(i));
+            }
+            return friendsOfFriends;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isBuilt() {
+        return indexBuild.isBuilt();
+    }
+
+    public SocialGraphStatsDTO getStats() {
+        lock.readLock().lock();
+        try {
+            long friendships = graph.edgeCount();
+            long graphBytes = graph.sizeInBytes();
+            return SocialGraphStatsDTO.builder()
+                    .built(indexBuild.isBuilt())
+                    .users(ordinals.size())
+                    .friendships(friendships)
+                    .graphBytes(graphBytes)
+                    .bytesPerFriendship(friendships == 0 ? 0 : (double) graphBytes / friendships)
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Graph edits, run by indexBuild with the write lock held
+
+    private void addEdgeOf(String username, String friendUsername) {
+        if (username.equals(friendUsername)) {
+            return;
+        }
+        graph.addEdge(newOrdinal(username), newOrdinal(friendUsername));
+    }
+
+    private void removeEdgeOf(String username, String friendUsername) {
+        Integer a = ordinals.get(username);
+        Integer b = ordinals.get(friendUsername);
+        if (a != null && b != null) {
+            graph.removeEdge(a, b);
+        }
+    }
+
+    private void removeVertexOf(String username) {
+        Integer ordinal = ordinals.remove(username);
+        if (ordinal != null) {
+            graph.removeVertex(ordinal);
+            usernames[ordinal] = null;
+            freeOrdinals.push(ordinal);
+        }
+    }
+
+    private int newOrdinal(String username) {
+        Integer existing = ordinals.get(username);
+        if (existing != null) {
+            return existing;
+        }
+        int ordinal = freeOrdinals.isEmpty() ? nextOrdinal++ : freeOrdinals.pop();
+        if (ordinal == usernames.length) {
+            usernames = Arrays.copyOf(usernames, usernames.length * 2);
+        }
+        usernames[ordinal] = username;
+        ordinals.put(username, ordinal);
+        return ordinal;
+    }
+
+    private static int ordinalOf(String username, Map<String, Integer> ordinals, List<String> usernames) {
+        return ordinals.computeIfAbsent(username, name -> {
+            usernames.add(name);
+            return usernames.size() - 1;
+        });
+    }
+}
@@ -2,15 +2,14 @@ package com.socialising.services.service;
 
 import com.socialising.services.model.Tag;
 import com.socialising.services.repository.TagRepository;
+import com.socialising.services.util.IdGenerator;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Random;
 
 @Service
 @RequiredArgsConstructor
@@ -21,6 +20,8 @@ public class TagService {
     @Autowired
     private final TagRepository tagRepository;
 
+    private final IdGenerator idGenerator;
+
     // Add a tag to DB
     public Tag addTag(Tag tag) {
 
@@ -35,7 +36,7 @@ public class TagService {
             return null;
         }
 
-        tag.setTagId(Long.valueOf(new DecimalFormat("000").format(new Random().nextInt(999))));
+        tag.setTagId(idGenerator.nextId());
         try {
             tagRepository.save(tag);
             log.info("Tag added to db: {}", tag.getTagId());
@@ -0,0 +1,351 @@
+package com.socialising.services.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.socialising.services.dto.PostDTO;
+import com.socialising.services.dto.PostFeedPage;
+import com.socialising.services.dto.PostKey;
+import com.socialising.services.dto.PostSummary;
+import com.socialising.services.mapper.PostMapper;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.FriendshipRepository;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.repository.UserRepository;
+import org.apache.commons.lang3.ArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Precomputed home timelines: the newest posts of a user's friends and of the tags the user follows.
+ *
+ * New posts are pushed into the bounded timeline of every follower (fan-out on write). Authors with more
+ * friends than the fan-out threshold, and tags followed by more users than it, are not pushed; their posts
+ * are pulled and merged in when the timeline is read (fan-out on read). Tags are matched lowercase.
+ *
+ * Timelines are kept only for users who have read theirs recently and are rebuilt from the DB on demand.
+ */
+@Service
+public class TimelineService {
+
+    private static final Logger log = LoggerFactory.getLogger(TimelineService.class);
+
+    private final PostRepository postRepository;
+
+    private final UserRepository userRepository;
+
+    private final FriendshipRepository friendshipRepository;
+
+    // Max number of post ids kept per user timeline
+    private final int capacity;
+
+    // Max number of followers a post is pushed to, above this followers pull the posts on read
+    private final int fanoutThreshold;
+
+    private final Cache<String, Timeline> timelines;
+
+    private final Set<String> highFanoutAuthors = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> highFanoutTags = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean highFanoutLoaded;
+
+    // Users whose friends or tags changed, rebuilt by the scheduled job
+    private final Set<String> staleTimelines = ConcurrentHashMap.newKeySet();
+
+    public TimelineService(PostRepository postRepository,
+                           UserRepository userRepository,
+                           FriendshipRepository friendshipRepository,
+                           @Value("${application.timeline.capacity:500}") int capacity,
+                           @Value("${application.timeline.fanout-threshold:1000}") int fanoutThreshold,
+                           @Value("${application.timeline.max-users:100000}") long maxUsers,
+                           @Value("${application.timeline.expire-after-access-minutes:1440}") long expireAfterAccessMinutes) {
+        this.postRepository = postRepository;
+        this.userRepository = userRepository;
+        this.friendshipRepository = friendshipRepository;
+        this.capacity = capacity;
+        this.fanoutThreshold = fanoutThreshold;
+        this.timelines = CacheBuilder.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(expireAfterAccessMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    // Read the authors and tags already above the fan-out threshold from the DB, runs on startup and then until it succeeds once
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${application.timeline.load-retry-ms:60000}", fixedDelayString = "${application.timeline.load-retry-ms:60000}")
+    public void loadHighFanout() {
+        if (highFanoutLoaded) {
+            return;
+        }
+        try {
+            highFanoutAuthors.addAll(friendshipRepository.findUsernamesWithMoreFriendsThan(fanoutThreshold));
+            highFanoutTags.addAll(userRepository.findTagsOfMoreUsersThan(fanoutThreshold));
+        } catch (DataAccessException e) {
+            log.info("High fan-out authors and tags not loaded: {}", e.getMessage());
+            return;
+        }
+        highFanoutLoaded = true;
+        log.info("{} high fan-out authors and {} high fan-out tags loaded", highFanoutAuthors.size(), highFanoutTags.size());
+    }
+
+    // Push a newly added post to the timelines of the owner's friends and of the users following its tags
+    public void onPostCreated(Post post) {
+        if (post.getCreatedTs() == null) {
+            return;
+        }
+        TimelineEntry entry = new TimelineEntry(post.getCreatedTs().getTime(), post.getPostId());
+        User ownerUser = post.getOwnerUser();
+        int pushed = 0;
+
+        // Owner always sees their own post
+        pushed += push(ownerUser.getUsername(), entry);
+
+        Set<String> friends = new HashSet<>(friendshipRepository.findFriendUsernames(ownerUser.getUsername(), "", fanoutThreshold + 1));
+        if (friends.size() > fanoutThreshold) {
+            highFanoutAuthors.add(ownerUser.getUsername());
+            log.info("User [{}] has more than {} friends, Post [{}] will be pulled on read", ownerUser.getUsername(), fanoutThreshold, post.getPostId());
+        } else {
+            for (String friend : friends) {
+                pushed += push(friend, entry);
+            }
+        }
+
+        String[] tags = lowerCase(post.getTags());
+        if (tags.length > 0) {
+            List<String> tagFollowers = userRepository.findUsernamesWithAnyTag(tags, fanoutThreshold + 1);
+            if (tagFollowers.size() > fanoutThreshold) {
+                highFanoutTags.addAll(Arrays.asList(tags));
+                log.info("Tags {} have too many followers, Post [{}] will be pulled on read", tags, post.getPostId());
+            } else {
+                for (String follower : tagFollowers) {
+                    if (!follower.equals(ownerUser.getUsername()) && !friends.contains(follower)) {
+                        pushed += push(follower, entry);
+                    }
+                }
+            }
+        }
+
+        log.info("Post [{}] pushed to {} timelines", post.getPostId(), pushed);
+    }
+
+    // Only timelines that are already materialized are updated, the rest are built on their first read
+    private int push(String username, TimelineEntry entry) {
+        Timeline timeline = timelines.getIfPresent(username);
+        if (timeline == null) {
+            return 0;
+        }
+        timeline.add(entry);
+        return 1;
+    }
+
+    // GET a page of the user's timeline, newest first
+    public PostFeedPage getTimeline(String username, String cursor, int limit) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+
+        int pageSize = Math.max(1, Math.min(limit, capacity));
+        TimelineEntry after = decodeCursor(cursor);
+        Timeline timeline = timelines.getIfPresent(username);
+        if (timeline == null || staleTimelines.remove(username)) {
+            timeline = rebuildTimeline(user);
+        }
+
+        // Pushed entries plus the posts pulled from high fan-out authors and tags
+        TreeSet<TimelineEntry> merged = new TreeSet<>(timeline.page(after, pageSize));
+        merged.addAll(pullHighFanoutPosts(user, after, pageSize));
+
+        List<Long> postIds = merged.stream()
+                .limit(pageSize)
+                .map(TimelineEntry::postId)
+                .toList();
+
+        // Posts deleted since they were pushed are skipped
+        Map<Long, PostSummary> postsById = postRepository.findSummariesByPostIdIn(postIds).stream()
+                .collect(Collectors.toMap(PostSummary::getPostId, Function.identity()));
+        List<PostDTO> posts = new ArrayList<>(postIds.size());
+        for (Long postId : postIds) {
+            PostSummary post = postsById.get(postId);
+            if (post != null) {
+                posts.add(PostMapper.summaryToDto(post));
+            }
+        }
+
+        String nextCursor = postIds.size() < pageSize ? null : encodeCursor(merged.stream().skip(pageSize - 1).findFirst().orElseThrow());
+        log.info("Timeline page of {} posts served to User [{}]", posts.size(), username);
+
+        return PostFeedPage.builder()
+                .posts(posts)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private List<TimelineEntry> pullHighFanoutPosts(User user, TimelineEntry after, int limit) {
+        boolean firstPage = after.equals(TimelineEntry.HEAD);
+        Timestamp createdTs = new Timestamp(after.createdTs());
+        PageRequest page = PageRequest.of(0, limit);
+        List<TimelineEntry> pulled = new ArrayList<>();
+
+        // Friends are only read when some authors are pulled
+        List<String> authors = highFanoutAuthors.isEmpty()
+                ? List.of()
+                : friendsOf(user).stream().filter(highFanoutAuthors::contains).toList();
+        if (!authors.isEmpty()) {
+            pulled.addAll(toEntries(firstPage
+                    ? postRepository.findKeysByOwners(authors, page)
+                    : postRepository.findKeysByOwnersBefore(authors, createdTs, after.postId(), page)));
+        }
+
+        String[] tags = Arrays.stream(lowerCase(user.getTags())).filter(highFanoutTags::contains).toArray(String[]::new);
+        if (tags.length > 0) {
+            pulled.addAll(toEntries(firstPage
+                    ? postRepository.findKeysWithAnyTag(tags, limit)
+                    : postRepository.findKeysWithAnyTagBefore(tags, createdTs, after.postId(), limit)));
+        }
+
+        return pulled;
+    }
+
+    // Mark the timeline to be rebuilt, called when the friends or tags of the user change
+    public void markStale(String username) {
+        if (timelines.getIfPresent(username) != null) {
+            staleTimelines.add(username);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.timeline.rebuild-interval-ms:60000}")
+    public void rebuildStaleTimelines() {
+        if (staleTimelines.isEmpty()) {
+            return;
+        }
+        int rebuilt = 0;
+        for (String username : new ArrayList<>(staleTimelines)) {
+            staleTimelines.remove(username);
+            Optional<User> user = userRepository.findByUsername(username);
+            if (user.isPresent()) {
+                rebuildTimeline(user.get());
+                rebuilt++;
+            } else {
+                timelines.invalidate(username);
+            }
+        }
+        log.info("Rebuilt {} stale timelines", rebuilt);
+    }
+
+    // Rebuild the timeline from the newest posts of the user, its friends and its tags
+    Timeline rebuildTimeline(User user) {
+        PageRequest page = PageRequest.of(0, capacity);
+        Timeline timeline = new Timeline(capacity);
+
+        List<String> owners = new ArrayList<>(friendsOf(user));
+        owners.add(user.getUsername());
+        owners.removeIf(highFanoutAuthors::contains);
+        toEntries(postRepository.findKeysByOwners(owners, page)).forEach(timeline::add);
+
+        String[] tags = Arrays.stream(lowerCase(user.getTags())).filter(tag -> !highFanoutTags.contains(tag)).toArray(String[]::new);
+        if (tags.length > 0) {
+            toEntries(postRepository.findKeysWithAnyTag(tags, capacity)).forEach(timeline::add);
+        }
+
+        timelines.put(user.getUsername(), timeline);
+        log.info("Timeline of User [{}] rebuilt with {} posts", user.getUsername(), timeline.size());
+        return timeline;
+    }
+
+    private List<String> friendsOf(User user) {
+        return friendshipRepository.findFriendUsernames(user.getUsername(), "", Integer.MAX_VALUE);
+    }
+
+    private static String[] lowerCase(String[] tags) {
+        if (ArrayUtils.isEmpty(tags)) {
+            return new String[]{};
+        }
+        return Arrays.stream(tags)
+                .filter(tag -> tag != null && !tag.isBlank())
+                .map(tag -> tag.strip().toLowerCase())
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    private List<TimelineEntry> toEntries(List<PostKey> keys) {
+        return keys.stream()
+                .filter(key -> key.getCreatedTs() != null)
+                .map(key -> new TimelineEntry(key.getCreatedTs().getTime(), key.getPostId()))
+                .toList();
+    }
+
+    private String encodeCursor(TimelineEntry entry) {
+        return entry.createdTs() + "_" + entry.postId();
+    }
+
+    private TimelineEntry decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return TimelineEntry.HEAD;
+        }
+        String[] keys = cursor.split("_");
+        try {
+            return new TimelineEntry(Long.parseLong(keys[0]), Long.parseLong(keys[1]));
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid timeline cursor: " + cursor);
+        }
+    }
+
+    // Ordered newest first, ties broken by the higher post id
+    record TimelineEntry(long createdTs, long postId) implements Comparable<TimelineEntry> {
+
+        // Sorts before every real entry, used as the cursor of the first page
+        static final TimelineEntry HEAD = new TimelineEntry(Long.MAX_VALUE, Long.MAX_VALUE);
+
+        @Override
+        public int compareTo(TimelineEntry other) {
+            int byTime = Long.compare(other.createdTs, createdTs);
+            return byTime != 0 ? byTime : Long.compare(other.postId, postId);
+        }
+    }
+
+    // Bounded, thread safe set of timeline entries, the oldest entry is dropped when full
+    static class Timeline {
+
+        private final int capacity;
+
+        private final ConcurrentSkipListSet<TimelineEntry> entries = new ConcurrentSkipListSet<>();
+
+        private final AtomicInteger size = new AtomicInteger();
+
+        Timeline(int capacity) {
+            this.capacity = capacity;
+        }
+
+        // Adds are serialized so that the size check and the trim are one step, pages are read without locking
+        synchronized void add(TimelineEntry entry) {
+            if (entries.add(entry) && size.incrementAndGet() > capacity) {
+                entries.pollLast();
+                size.decrementAndGet();
+            }
+        }
+
+        List<TimelineEntry> page(TimelineEntry after, int limit) {
+            return entries.tailSet(after, false).stream().limit(limit).toList();
+        }
+
+        int size() {
+            return size.get();
+        }
+    }
+}
@@ -1,24 +1,37 @@
 package com.socialising.services.service;
 
 import com.socialising.services.config.JwtService;
+import com.socialising.services.constants.FriendshipStatus;
 import com.socialising.services.constants.Role;
 import com.socialising.services.constants.Status;
 import com.socialising.services.controller.UserController;
+import com.socialising.services.dto.AutocompleteDTO;
+import com.socialising.services.dto.CascadeJobDTO;
+import com.socialising.services.dto.LookupStatsDTO;
 import com.socialising.services.dto.PostDTO;
+import com.socialising.services.dto.PostSummary;
+import com.socialising.services.dto.SocialGraphStatsDTO;
 import com.socialising.services.dto.UserDTO;
+import com.socialising.services.dto.UserSuggestionDTO;
+import com.socialising.services.dto.UsernamePage;
 import com.socialising.services.exceptionHandler.UserNotFoundException;
 import com.socialising.services.mapper.PostMapper;
 import com.socialising.services.mapper.UserMapper;
 import com.socialising.services.model.ChangePasswordRequest;
+import com.socialising.services.model.Friendship;
 import com.socialising.services.model.Image;
 import com.socialising.services.model.Post;
 import com.socialising.services.model.User;
 import com.socialising.services.repository.*;
+import com.socialising.services.util.AfterCommit;
+import com.socialising.services.util.IdGenerator;
 import io.jsonwebtoken.ExpiredJwtException;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -28,7 +41,6 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.security.Principal;
 import java.sql.Timestamp;
-import java.text.DecimalFormat;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -37,14 +49,40 @@ import java.util.stream.Collectors;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final FriendshipRepository friendshipRepository;
     private final ImageRepository imageRepository;
     private final PostRepository postRepository;
     private final TokenRepository tokenRepository;
     private final JwtService jwtService;
     private final PasswordEncoder passwordEncoder;
+    private final TimelineService timelineService;
+    private final EventReminderService eventReminderService;
+    private final CascadeJobService cascadeJobService;
+    private final PostCacheService postCacheService;
+    private final IdGenerator idGenerator;
+    private final OptimisticRetryService optimisticRetryService;
+    private final SeatReservationService seatReservationService;
+    private final SeenPostsService seenPostsService;
+    private final RequestIdentityMap requestIdentityMap;
+    private final SocialGraphService socialGraphService;
+    private final UserSuggestionService userSuggestionService;
+    private final AutocompleteService autocompleteService;
+    private final PostArchiveService postArchiveService;
+    private final PostLikeService postLikeService;
 
     private static final Logger log = LoggerFactory.getLogger(UserController.class);
 
+    private static final int MAX_UPCOMING_EVENTS = 100;
+
+    private static final int MAX_FRIENDS_PAGE_SIZE = 100;
+
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+
+    // Tags containing a keyword whose users are searched
+    private static final int MAX_DICTIONARY_TAGS = 100;
+
+    private static final String USER_CASCADE = "user";
+
     private boolean checkUserExistInDB(Long userid) {
         if(this.userRepository.findById(userid).isPresent()) {
             log.info("User [{}] exist in DB", userid);
@@ -55,7 +93,7 @@ public class UserService {
     }
 
     private boolean checkUserExistInDBWithUsername(String username) {
-        if(userRepository.findByUsername(username).isPresent()) {
+        if(requestIdentityMap.findUserByUsername(username).isPresent()) {
             log.info("User [{}] exist in DB", username);
             return true;
         }
@@ -64,7 +102,7 @@ public class UserService {
     }
 
     private boolean checkPostExistInDB(Long postId) {
-        if(this.postRepository.findById(postId).isPresent()) {
+        if(this.postCacheService.get(postId).isPresent()) {
             log.info("Post {} exist in DB", postId);
             return true;
         }
@@ -116,8 +154,6 @@ public class UserService {
 //        // Get User from UserDTO
 //        User user = UserMapper.dtoToEntity(userDto);
 //
-//        // Have new user id
-//        Long userId = Long.valueOf(new DecimalFormat("000000").format(new Random().nextInt(999999)));
 //        // set the userid and user status
 //        user.setUserId(userId);
 //        user.setStatus(Status.ONLINE);
@@ -148,7 +184,7 @@ public class UserService {
                 log.info("User does not exist");
                 return null;
             }
-            return userRepository.findByUsername(username).orElseThrow(() -> new UsernameNotFoundException("User not found"));
+            return requestIdentityMap.findUserByUsername(username).orElseThrow(() -> new UsernameNotFoundException("User not found"));
         } catch (Exception e) {
             log.info("JWT Token Error: {}", e.getMessage());
             return null;
@@ -167,7 +203,7 @@ public class UserService {
     // Get User by username
     public User getUserByUsername(String username) {
         if(checkUserExistInDBWithUsername(username)) {
-            return userRepository.findByUsername(username).get();
+            return requestIdentityMap.findUserByUsername(username).get();
         }
         log.info("No user present in DB with username: {}", username);
         return null;
@@ -191,129 +227,105 @@ public class UserService {
     // this method only updated general fields for the User
     // It does not update: userId, username, password, phoneNumber, role, tags and dp
     public UserDTO updateUserDetailsExceptUsernamePasswordAndDP(UserDTO userDto, String token) {
-        try {
-            // Extract Username from token
-            String username = jwtService.extractUsername(token.substring(7));
-            // Fetch the authenticated User
-            User authUser = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new UserNotFoundException("User not found with username: " + username));
-
-    //        if (authUser == null || (!username.equals(user.getUsername()) && !user.getRole().equals(Role.ADMIN))) {
-    //            log.info("User [{}] is not Authorized to update the details for User [{}]", username, user.getUsername());
-    //            return null;
-    //        }
-
-            // Check if user exists in DB
-            if (authUser == null) {
-                log.info("User does not exist, [{}]", username);
-                return null;
-            }
+        return optimisticRetryService.run("updateUserDetailsExceptUsernamePasswordAndDP", () -> {
+            try {
+                // Extract Username from token
+                String username = jwtService.extractUsername(token.substring(7));
+                // Fetch the authenticated User
+                User authUser = requestIdentityMap.findUserByUsername(username)
+                        .orElseThrow(() -> new UserNotFoundException("User not found with username: " + username));
+
+        //        if (authUser == null || (!username.equals(user.getUsername()) && !user.getRole().equals(Role.ADMIN))) {
+        //            log.info("User [{}] is not Authorized to update the details for User [{}]", username, user.getUsername());
+        //            return null;
+        //        }
+
+                // Check if user exists in DB
+                if (authUser == null) {
+                    log.info("User does not exist, [{}]", username);
+                    return null;
+                }
 
-            // Map fields from DTO to Entity
-            authUser.setFirstName(userDto.getFirstName());
-            authUser.setLastName(userDto.getLastName());
-            authUser.setBio(userDto.getBio());
-            authUser.setDob(userDto.getDob());
-            authUser.setAge(userDto.getAge());
-            authUser.setGender(userDto.getGender());
-            authUser.setReligion(userDto.getReligion());
-            authUser.setEducation(userDto.getEducation());
-            authUser.setOccupation(userDto.getOccupation());
-            authUser.setMaritalStatus(userDto.getMaritalStatus());
-            authUser.setCity(userDto.getCity());
-            authUser.setState(userDto.getState());
-            authUser.setHomeCity(userDto.getHomeCity());
-            authUser.setHomeState(userDto.getHomeState());
-            authUser.setCountry(userDto.getCountry());
-
-            // Save updated user
-            userRepository.save(authUser);
-            log.info("User details updated successfully in the database");
-            return UserMapper.entityToDto(authUser);
-        } catch (UserNotFoundException e) {
-            log.error("User Not Found Error: {}", e.getMessage());
-            throw e;
-        } catch ( Exception e) {
-            log.error("Unexpected Error Occurred: {}", e.getMessage());
-            throw new RuntimeException("An unexpected error occurred while updating user details.");
-        }
+                // Map fields from DTO to Entity
+                authUser.setFirstName(userDto.getFirstName());
+                authUser.setLastName(userDto.getLastName());
+                authUser.setBio(userDto.getBio());
+                authUser.setDob(userDto.getDob());
+                authUser.setAge(userDto.getAge());
+                authUser.setGender(userDto.getGender());
+                authUser.setReligion(userDto.getReligion());
+                authUser.setEducation(userDto.getEducation());
+                authUser.setOccupation(userDto.getOccupation());
+                authUser.setMaritalStatus(userDto.getMaritalStatus());
+                authUser.setCity(userDto.getCity());
+                authUser.setState(userDto.getState());
+                authUser.setHomeCity(userDto.getHomeCity());
+                authUser.setHomeState(userDto.getHomeState());
+                authUser.setCountry(userDto.getCountry());
+
+                // Save updated user
+                userRepository.save(authUser);
+                // A retried attempt must not leave its profile in the suggestions, they follow the committed user
+                AfterCommit.run(() -> userSuggestionService.profileChanged(authUser));
+                AfterCommit.run(() -> autocompleteService.index(authUser));
+                log.info("User details updated successfully in the database");
+                return UserMapper.entityToDto(authUser);
+            } catch (UserNotFoundException e) {
+                log.error("User Not Found Error: {}", e.getMessage());
+                throw e;
+            } catch (OptimisticLockingFailureException e) {
+                // Retried by the caller with the newer version
+                throw e;
+            } catch ( Exception e) {
+                log.error("Unexpected Error Occurred: {}", e.getMessage());
+                throw new RuntimeException("An unexpected error occurred while updating user details.");
+            }
+        });
     }
 
     // Delete USER By ID
+    @Transactional
     public int deleteUser(Long userId) {
         if(checkUserExistInDB(userId)) {
             User user = this.userRepository.findById(userId).get();
             String username = user.getUsername();
 
-            // Delete the tokens of user from Token DB
-            var validUserTokens = tokenRepository.findAllValidTokens(user.getUserId());
-            if (!validUserTokens.isEmpty()) {
-                validUserTokens.forEach(t -> {
-                    log.info("Deleting Token [{}] for User [{}]", t.getId(), username);
-                    tokenRepository.deleteById(t.getId());
-                });
-            }
+            // Log the user out everywhere right away
+            int deletedTokens = tokenRepository.deleteAllByUserId(userId);
+            log.info("{} Tokens of User [{}] deleted", deletedTokens, username);
 
-            // Delete User from the friend requests list of other users
-            String[] friendsRequested = user.getFriendsRequested();
-            if(ArrayUtils.isNotEmpty(friendsRequested)) {
-                for(String friendUsername: friendsRequested) {
-                    Optional<User> friendOpt = userRepository.findByUsername(friendUsername);
-                    if (friendOpt.isPresent()) {
-                        User friend = friendOpt.get();
-                        String[] friendRequestsOfFriend = friend.getFriendRequests();
-                        friendRequestsOfFriend = ArrayUtils.removeElement(friendRequestsOfFriend, user.getUsername());
-                        friend.setFriendRequests(friendRequestsOfFriend);
-                        userRepository.save(friend);
-                        log.info("User [{}] removed from the Friend Requests list of [{}]", username, friendUsername);
-                    }
-                }
-            }
-
-            // Delete User from the friends list of other users
-            String[] friends = user.getFriends();
-            if(ArrayUtils.isNotEmpty(friends)) {
-                for(String friendUsername: friends) {
-                    Optional<User> friendOpt = userRepository.findByUsername(friendUsername);
-                    if (friendOpt.isPresent()) {
-                        User friend = friendOpt.get();
-                        String[] friendsOfFriend = friend.getFriends();
-                        friendsOfFriend = ArrayUtils.removeElement(friendsOfFriend, user.getUsername());
-                        friend.setFriends(friendsOfFriend);
-                        userRepository.save(friend);
-                        log.info("User [{}] removed from the Friend [{}] friends list", username, friendUsername);
-                    }
-                }
-            }
-
-            // Delete the user from Requested Posts, interested Users list
-            List<Post> requestedPosts = user.getRequestedPosts();
-            if(requestedPosts != null && !requestedPosts.isEmpty()) {
-                for(Post requestedPost: requestedPosts) {
-                    List<User> interestedUsers = requestedPost.getInterestedUsers();
-                    interestedUsers.remove(user);
-                    requestedPost.setInterestedUsers(interestedUsers);
-                    postRepository.save(requestedPost);
-                    log.info("User [{}] removed from the Post [{}] Interested Users list", username, requestedPost.getPostId());
-                }
-            }
-
-            // Delete the user from reminder Posts, confirmed Users list
-            List<Post> reminderPosts = user.getReminderPosts();
-            if(reminderPosts != null && !reminderPosts.isEmpty()) {
-                for(Post reminderPost: reminderPosts) {
-                    List<User> confirmedUsers = reminderPost.getConfirmedUsers();
-                    confirmedUsers.remove(user);
-                    reminderPost.setConfirmedUsers(confirmedUsers);
-                    postRepository.save(reminderPost);
-                    log.info("User [{}] removed from the Post's [{}] confirmed Users list", username, reminderPost.getPostId());
+            List<Long> reminderPostIds = userRepository.findReminderPostIdsOfUser(userId);
+            AfterCommit.run(() -> {
+                for (Long reminderPostId : reminderPostIds) {
+                    eventReminderService.cancel(reminderPostId, username);
                 }
+                socialGraphService.removeUser(username);
+                userSuggestionService.removeUser(username);
+                autocompleteService.remove(username);
+            });
+            seatReservationService.deleteWaitlistedUser(username);
+            seenPostsService.remove(username);
+            requestIdentityMap.evict(username);
+
+            // Well connected users are removed from the friendship graph and from posts chunk by chunk in the background
+            long relatedRows = friendshipRepository.countAllOfUser(username) + userRepository.countPostLinksOfUser(userId)
+                    + postLikeService.countLikesOfUser(username);
+            if (cascadeJobService.runInBackground(relatedRows)) {
+                int chunkSize = cascadeJobService.getChunkSize();
+                cascadeJobService.submit(USER_CASCADE, userId, relatedRows,
+                        List.of(() -> friendshipRepository.deleteAllOfUser(username, chunkSize),
+                                () -> userRepository.deleteRequestedPostsOfUser(userId, chunkSize),
+                                () -> userRepository.deleteReminderPostsOfUser(userId, chunkSize),
+                                () -> postLikeService.deleteLikesOfUser(username, chunkSize)),
+                        () -> deleteUserWithPostLinks(userId, username, reminderPostIds));
+                return 1;
             }
 
-            // Delete the User from DB
-            userRepository.deleteById(userId);
-            log.info("User [{}] deleted from DB", userId);
+            // Delete the friendships and friend requests of the User, with one statement
+            int friendships = friendshipRepository.deleteAllOfUser(username);
+            log.info("{} Friendships and Friend Requests of User [{}] deleted", friendships, username);
 
+            deleteUserWithPostLinks(userId, username, reminderPostIds);
             return 1;
         } else {
             log.info("No user with userid {} present in DB", userId);
@@ -321,6 +333,34 @@ public class UserService {
         }
     }
 
+    // Unlink the user from the requested, reminder and archived posts, delete its likes, then delete it
+    // The seats it held on its reminder posts go to their waitlists once the delete commits
+    private void deleteUserWithPostLinks(Long userId, String username, List<Long> reminderPostIds) {
+        int requestedPosts = userRepository.deleteRequestedPostsOfUser(userId);
+        int reminderPosts = userRepository.deleteReminderPostsOfUser(userId);
+        log.info("User [{}] removed from {} Requested Posts and {} Reminder Posts", userId, requestedPosts, reminderPosts);
+        int likes = postLikeService.deleteLikesOfUser(username);
+        log.info("{} Likes of User [{}] deleted", likes, userId);
+        postArchiveService.removeUser(userId, username);
+        for (Long postId : reminderPostIds) {
+            optimisticRetryService.runAfterCommit("promote", () -> postRepository.findById(postId)
+                    .filter(post -> post.getCapacity() != null)
+                    .ifPresent(seatReservationService::promote));
+        }
+
+        userRepository.deleteById(userId);
+        log.info("User [{}] deleted from DB", userId);
+    }
+
+    public CascadeJobDTO getDeleteUserJob(Long userId) {
+        return cascadeJobService.getJob(USER_CASCADE, userId);
+    }
+
+    // Lookups of users by username done and saved by the per-request identity map, per endpoint
+    public List<LookupStatsDTO> getLookupStats() {
+        return requestIdentityMap.getStats();
+    }
+
     // Search User by Word as Usernames
     public List<User> searchUserByWord(String word) {
         // Returning all users for empty username search
@@ -331,53 +371,47 @@ public class UserService {
         return this.userRepository.searchUserByWord(word);
     }
 
-    // Search User by Tag
-    public List<User> searchUserByTag(String tag) {
-
-        List<User> allUsers = this.userRepository.findAll();
-        List<User> filteredUsers = new ArrayList<>();
-        for(User user : allUsers) {
-            if(ArrayUtils.contains(user.getTags(), tag)) {
-                filteredUsers.add(user);
-            }
-        }
+    // Search a page of the Users having the Tag, whatever its case, in username order after the cursor
+    public List<User> searchUserByTag(String tag, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_PAGE_SIZE));
+        String normalizedTag = tag.strip().toLowerCase();
 
-        log.info("No. of users matching tag: {} are {}", tag, filteredUsers.size());
-        return filteredUsers;
+        List<User> users = this.userRepository.findByTagAfter(normalizedTag, afterCursor(cursor), pageSize);
+        log.info("No. of users matching tag: {} are {}", normalizedTag, users.size());
+        return users;
     }
 
-    // Search User by Tag Keyword
-    public List<User> searchUsersByTagContaining(String keyword) {
-        // Returning all users for empty tag search
-        if(keyword.isEmpty()) {
-            return this.userRepository.findAll();
+    // Search a page of the Users having a Tag containing the Keyword, in username order after the cursor
+    public List<User> searchUsersByTagContaining(String keyword, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_PAGE_SIZE));
+        // Returning all users, page by page, for empty tag search
+        if(keyword.isBlank()) {
+            return this.userRepository.findUsersAfter(afterCursor(cursor), pageSize);
         }
-        // Convert the keyword to lowercase
-        String lowerCaseKeyword = keyword.toLowerCase();
-        List<User> allUsers = this.userRepository.findAll();
-        List<User> filteredUsers = new ArrayList<>();
-
-        for (User user : allUsers) {
-            if (user.getTags() != null) {
-                // Check if any tag contains the lowerCaseKeyword, also convert tags to lowercase
-                boolean matches = Arrays.stream(user.getTags())
-                        .map(String::toLowerCase) // Convert each tag to lowercase
-                        .anyMatch(tag -> tag.contains(lowerCaseKeyword));
 
-                if (matches) {
-                    filteredUsers.add(user);
-                }
-            }
+        // The tags containing the keyword are looked up in the dictionary first, then their users through the tag index
+        String lowerCaseKeyword = keyword.strip().toLowerCase();
+        List<String> tags = this.userRepository.findDictionaryTagsContaining(escapeLikePattern(lowerCaseKeyword), MAX_DICTIONARY_TAGS);
+        if (tags.isEmpty()) {
+            log.info("No tag containing '{}'", lowerCaseKeyword);
+            return List.of();
         }
+        List<User> users = this.userRepository.findByAnyTagAfter(tags.toArray(new String[0]), afterCursor(cursor), pageSize);
 
-        log.info("No. of users matching tag containing '{}': {}", lowerCaseKeyword, filteredUsers.size());
-        return filteredUsers;
+        log.info("No. of users matching {} tags containing '{}': {}", tags.size(), lowerCaseKeyword, users.size());
+        return users;
+    }
+
+    // Users whose username, names or tags have words starting with the words of the query, for the search box
+    public List<AutocompleteDTO> autocomplete(String query, int limit) {
+        List<AutocompleteDTO> matches = autocompleteService.complete(query, limit);
+        log.info("{} Users matching '{}' for autocomplete", matches.size(), query);
+        return matches;
     }
 
     // To Send the Friend Request from User {userRequestId} to User {userid}
     /** fromUser is the current user **/
     public String sendFriendRequest(String toUsername, String token) {
-
         // Get the username of the user who is sending the request
         String fromUsername = getUsernameFromToken(token);
 
@@ -386,108 +420,41 @@ public class UserService {
             return "User [" + toUsername + "] does not exist in DB";
         }
 
-        // Get the fromUser from DB
-        User fromUser = userRepository.findByUsername(fromUsername).get();
-
-        // Get the user and friends of toUser
-        User toUser = userRepository.findByUsername(toUsername).get();
-        String[] friendsOfToUser = toUser.getFriends();
-
-        // Check if the toUser is already friends with fromUser
-        if(ArrayUtils.contains(friendsOfToUser, fromUsername)) {
-            log.info("User [{}] is already friends with User [{}]", toUsername, fromUsername);
-            return "User [" + toUsername + "] is already friends with User [" + fromUsername + "]";
-        }
-
-        // Get the friend requests of the toUser
-        String[] friendRequestsOfToUser = toUser.getFriendRequests();
-
-        // Get the friends Requested by fromUser
-        String[] friendsRequestedByFromUser = fromUser.getFriendsRequested();
-
-        // Check if the friend request is already sent from fromUser to toUser
-        // So, check if the fromUsername already exists in friend requests list of toUser
-        if(ArrayUtils.contains(friendRequestsOfToUser, fromUsername) || ArrayUtils.contains(friendsRequestedByFromUser, toUsername)) {
+        // Nothing is written when there already is a request or a friendship between them in this direction
+        if (friendshipRepository.insertRequest(fromUsername, toUsername) == 0) {
+            if (isFriend(fromUsername, toUsername)) {
+                log.info("User [{}] is already friends with User [{}]", toUsername, fromUsername);
+                return "User [" + toUsername + "] is already friends with User [" + fromUsername + "]";
+            }
             log.info("Friend Request is already sent from User [{}] to User [{}]", fromUsername, toUsername);
             return "Friend Request Already Sent";
         }
 
-        // Add the user to the friend request list of the toUser
-        friendRequestsOfToUser = ArrayUtils.add(friendRequestsOfToUser, fromUsername);
-        toUser.setFriendRequests(friendRequestsOfToUser);
-        userRepository.save(toUser);
-        log.info("User [{}] added to User [{}'s] Friend Request list: {}", fromUsername, toUsername, toUser.getFriendRequests());
-
-        // Add the toUser in the friendsRequested list of fromUser
-        friendsRequestedByFromUser = ArrayUtils.add(friendsRequestedByFromUser, toUsername);
-        fromUser.setFriendsRequested(friendsRequestedByFromUser);
-        userRepository.save(fromUser);
-        log.info("User [{}] added to User [{}'s] Friends Requested list: {}", toUsername, fromUsername, toUser.getFriendRequests());
-
+        log.info("Friend Request sent from User [{}] to User [{}]", fromUsername, toUsername);
         return "Friend request Sent";
     }
 
     // To Accept the Friend Request of User {fromUsername} to User
     /** toUser is the current user **/
     public String acceptFriendRequest(String fromUsername, String token) {
-
         // Get the toUser who has to accept the friend Request
         String toUsername = getUsernameFromToken(token);
-        User toUser = userRepository.findByUsername(toUsername).get();
 
-        // Get the friend Request list and friends list of TO_USER
-        String[] friendRequestsOfToUser = toUser.getFriendRequests();
-        String[] friendsOfToUser = toUser.getFriends();
-
-        // Check if fromUsername already exists in friends list of TO_USER
-        if(ArrayUtils.contains(friendsOfToUser, fromUsername)) {
-            log.info("User [{}] is already friends with to user [{}]", fromUsername, toUsername);
-            return "Already Friends";
-        }
-
-        // Check if fromUsername exists in friend Requests list of TO_USER
-        if(!ArrayUtils.contains(friendRequestsOfToUser, fromUsername)) {
+        // The request becomes a friendship both ways in one statement, only if it is still pending
+        if (friendshipRepository.acceptRequest(fromUsername, toUsername) == 0) {
+            if (isFriend(toUsername, fromUsername)) {
+                log.info("User [{}] is already friends with to user [{}]", fromUsername, toUsername);
+                return "Already Friends";
+            }
             log.info("Friend Request is NOT sent from user [{}] to user [{}]", fromUsername, toUsername);
             return "Friend Request NOT Sent";
         }
 
-        // Remove the FROM_USER username from friend Requests list of TO_USER
-        friendRequestsOfToUser = ArrayUtils.removeElement(friendRequestsOfToUser, fromUsername);
-        toUser.setFriendRequests(friendRequestsOfToUser);
-
-        // Check if fromUser exists in DB
-        if(!checkUserExistInDBWithUsername(fromUsername)) {
-            // Save updated friend Requests list of TO_USER in DB
-            userRepository.save(toUser);
-            return "User [" + fromUsername + "] does not exist in DB";
-        }
-
-        // Get the fromUser whose friend Request has to be accepted
-        User fromUser = userRepository.findByUsername(fromUsername).get();
-
-        // Get the friends Requested List of FROM_USER
-        String[] friendsRequestedByFromUser = fromUser.getFriendsRequested();
-
-        // Remove the TO_USER username from Friends Requested List of FROM_USER
-        friendsRequestedByFromUser = ArrayUtils.removeElement(friendsRequestedByFromUser, toUsername);
-
-        // Save updated friends Requested list of FROM_USER
-        fromUser.setFriendsRequested(friendsRequestedByFromUser);
-
-        // Get the friends of fromUser
-        String[] friendsOfFromUser = fromUser.getFriends();
-
-        // Add FROM_USER to TO_USER's friends list
-        friendsOfToUser = ArrayUtils.add(friendsOfToUser, fromUsername);
-        toUser.setFriends(friendsOfToUser);
-
-        // Add the TO_USER to FROM_USER's friends list also
-        friendsOfFromUser = ArrayUtils.add(friendsOfFromUser, toUsername);
-        fromUser.setFriends(friendsOfFromUser);
-
-        // Save the users back to DB
-        userRepository.save(toUser);
-        userRepository.save(fromUser);
+        // Both timelines now include the posts of the new friend
+        timelineService.markStale(toUsername);
+        timelineService.markStale(fromUsername);
+        socialGraphService.addFriendship(fromUsername, toUsername);
+        userSuggestionService.friendshipChanged(fromUsername, toUsername);
 
         log.info("User [{}] is now Friends with [{}]", toUsername, fromUsername);
         return "Friend request accepted";
@@ -496,149 +463,128 @@ public class UserService {
     // To Reject the Friend Request from User {fromUsername}
     /** toUser is the current user **/
     public String rejectFriendRequest(String fromUsername, String token) {
-
         // Get the toUser who has to reject the friend Request
         String toUsername = getUsernameFromToken(token);
-        User toUser = userRepository.findByUsername(toUsername).get();
 
-        // Get the friend Request list of TO_USER
-        String[] friendRequestsOfToUser = toUser.getFriendRequests();
-
-        // Check if FROM_USER has sent the request to TO_USER
-        if(!ArrayUtils.contains(friendRequestsOfToUser, fromUsername)) {
+        // Check if FROM_USER has sent the request to TO_USER, and remove it
+        if (friendshipRepository.deleteRequest(fromUsername, toUsername) == 0) {
             log.info("Friend Request is NOT sent from User [{}] to User [{}]", fromUsername, toUsername);
             return "Friend Request NOT Sent";
         }
 
-        // Remove the FROM_USER from the friend request list of the TO_USER
-        friendRequestsOfToUser = ArrayUtils.removeElement(friendRequestsOfToUser, fromUsername);
-        toUser.setFriendRequests(friendRequestsOfToUser);
-        userRepository.save(toUser);
-
-        if (checkUserExistInDBWithUsername(fromUsername)) {
-            // Get the FROM_USER whose friends request is rejected
-            User fromUser = userRepository.findByUsername(fromUsername).get();
-
-            // Get the friends Requested list of FROM_USER
-            String[] friendsRequestedByFromUser = fromUser.getFriendsRequested();
-
-            // Remove the TO_USER from the friends requested list of the FROM_USER
-            friendsRequestedByFromUser = ArrayUtils.removeElement(friendsRequestedByFromUser, toUsername);
-            fromUser.setFriendsRequested(friendsRequestedByFromUser);
-
-            userRepository.save(fromUser);
-        }
-
-        log.info("User [{}] removed from User [{}'s] Friend Request list: [{}]", fromUsername, toUsername, toUser.getFriendRequests());
+        log.info("User [{}] removed from User [{}'s] Friend Requests", fromUsername, toUsername);
         return "Friend request Deleted";
     }
 
     // To Delete the Friend Request sent to User {toUsername}
     /** fromUser is the current user **/
     public String deleteFriendRequest(String toUsername, String token) {
-
         // Get the fromUser who has to delete the friend Request
         String fromUsername = getUsernameFromToken(token);
-        User fromUser = userRepository.findByUsername(fromUsername).get();
-
-        // Get the friends Requested list of FROM_USER
-        String[] friendsRequestedByFromUser = fromUser.getFriendsRequested();
 
-        // Check if TO_USER has received the request from FROM_USER
-        if(!ArrayUtils.contains(friendsRequestedByFromUser, toUsername)) {
+        // Check if TO_USER has received the request from FROM_USER, and remove it
+        if (friendshipRepository.deleteRequest(fromUsername, toUsername) == 0) {
             log.info("Friend Request is NOT Sent from User [{}] to User [{}]", fromUsername, toUsername);
             return "Friend Request NOT Sent";
         }
 
-        // Remove the TO_USER from the friends requested list of the FROM_USER
-        friendsRequestedByFromUser = ArrayUtils.removeElement(friendsRequestedByFromUser, toUsername);
-        fromUser.setFriendsRequested(friendsRequestedByFromUser);
-        userRepository.save(fromUser);
-
-        if (checkUserExistInDBWithUsername(toUsername)) {
-            // Get the TO_USER whose friends request is deleted
-            User toUser = userRepository.findByUsername(toUsername).get();
-
-            // Get the friend Requests list of TO_USER
-            String[] friendRequestsOfToUser = toUser.getFriendRequests();
-
-            // Remove the TO_USER from the friends requested list of the FROM_USER
-            friendRequestsOfToUser = ArrayUtils.removeElement(friendRequestsOfToUser, fromUsername);
-            toUser.setFriendRequests(friendRequestsOfToUser);
-
-            userRepository.save(toUser);
-        }
-
-        log.info("User [{}] deleted User [{}'s] from its Friends Requested list: [{}]", fromUsername, toUsername, fromUser.getFriendsRequested());
+        log.info("User [{}] deleted User [{}] from its Friends Requested", fromUsername, toUsername);
         return "Friend request Deleted";
     }
 
-    // Get all the Friend Requests of the USER
-    public String[] getFriendRequestUsers(String token) {
-
+    // Get a page of the users who sent a Friend Request to the USER
+    public UsernamePage getFriendRequestUsers(String token, String cursor, int limit) {
         String username = getUsernameFromToken(token);
-        User user = userRepository.findByUsername(username).get();
-        log.info("Friend Requests for User [{}] are: {}", username, user.getFriendRequests());
-        return user.getFriendRequests() != null ? user.getFriendRequests() : new String[]{};
+        int pageSize = Math.max(1, Math.min(limit, MAX_FRIENDS_PAGE_SIZE));
+        UsernamePage page = toUsernamePage(friendshipRepository.findRequestingUsernames(username, afterCursor(cursor), pageSize), pageSize);
+        log.info("{} Friend Requests of User [{}] served", page.getUsernames().size(), username);
+        return page;
     }
 
-    // GET all the Friends Requested of User
-    public String[] getFriendsRequested(String token) {
+    // GET a page of the users the User sent a Friend Request to
+    public UsernamePage getFriendsRequested(String token, String cursor, int limit) {
         String username = getUsernameFromToken(token);
-        User user = userRepository.findByUsername(username).get();
-        log.info("Friends Requested for User [{}] are: {}", username, user.getFriendsRequested());
-        return user.getFriendsRequested() != null ? user.getFriendsRequested() : new String[]{};
+        int pageSize = Math.max(1, Math.min(limit, MAX_FRIENDS_PAGE_SIZE));
+        UsernamePage page = toUsernamePage(friendshipRepository.findRequestedUsernames(username, afterCursor(cursor), pageSize), pageSize);
+        log.info("{} Friends Requested by User [{}] served", page.getUsernames().size(), username);
+        return page;
     }
 
-    // GET all Friends of USER
-    public String[] getFriendsOfUser(String token) {
-
+    // GET a page of the Friends of USER, in username order
+    public UsernamePage getFriendsOfUser(String token, String cursor, int limit) {
         String username = getUsernameFromToken(token);
-        User user = userRepository.findByUsername(username).get();
-        log.info("Friends for User [{}] are: {}", username, user.getFriends());
-        return user.getFriends() != null ? user.getFriends() :  new String[]{};
+        int pageSize = Math.max(1, Math.min(limit, MAX_FRIENDS_PAGE_SIZE));
+        UsernamePage page = toUsernamePage(friendshipRepository.findFriendUsernames(username, afterCursor(cursor), pageSize), pageSize);
+        log.info("{} Friends of User [{}] served", page.getUsernames().size(), username);
+        return page;
     }
 
     // DELETE a Friend (friendID) from User (User Id)
     public int deleteFriend(String friendUsername, String token) {
-
         String username = getUsernameFromToken(token);
-        User user = userRepository.findByUsername(username).get();
 
-        // Get the friend's list of the user
-        String[] friendsOfUser = user.getFriends();
-
-        // check if both the users are friend or not
-        if(!ArrayUtils.contains(friendsOfUser, friendUsername)) {
+        // Both directions of the friendship are removed in one statement
+        if (friendshipRepository.deleteFriendship(username, friendUsername) == 0) {
             log.info("Friend User [{}] is not friends with User [{}]", friendUsername, username);
             return -1;
         }
 
-        // Remove friend Username from Friend's list of User
-        friendsOfUser = ArrayUtils.removeElement(friendsOfUser, friendUsername);
-        user.setFriends(friendsOfUser);
-        userRepository.save(user);
-        log.info("Friend User [{}] removed from user [{}'s] friends list", friendUsername, username);
+        timelineService.markStale(username);
+        timelineService.markStale(friendUsername);
+        socialGraphService.removeFriendship(username, friendUsername);
+        userSuggestionService.friendshipChanged(username, friendUsername);
+        log.info("User [{}] and User [{}] are no longer friends", username, friendUsername);
+        return 1;
+    }
 
-        // Remove username from Friend's list of Friend User
-        if(checkUserExistInDBWithUsername(friendUsername)) {
-            User friendUser = userRepository.findByUsername(friendUsername).get();
-            String[] friendsOfFriendUser = friendUser.getFriends();
-            friendsOfFriendUser = ArrayUtils.removeElement(friendsOfFriendUser, username);
-            friendUser.setFriends(friendsOfFriendUser);
-            userRepository.save(friendUser);
-            log.info("User [{}] removed from Friend user [{}'s] friends list", username, friendUsername);
-        }  else {
-            log.info("Friend User [{}] does not exist in DB", friendUsername);
-        }
+    // GET the Friends the USER has in common with User {otherUsername}, in username order
+    public List<String> getMutualFriends(String otherUsername, String token) {
+        String username = getUsernameFromToken(token);
+        List<String> mutualFriends = socialGraphService.mutualFriends(username, otherUsername);
+        log.info("User [{}] has {} Mutual Friends with User [{}]", username, mutualFriends.size(), otherUsername);
+        return mutualFriends;
+    }
 
-        return 1;
+    // GET the people the USER may know, best suggestions first
+    public List<UserSuggestionDTO> getSuggestions(String token, int limit) {
+        String username = getUsernameFromToken(token);
+        List<UserSuggestionDTO> suggestions = userSuggestionService.getSuggestions(username, limit);
+        log.info("{} Suggestions served to User [{}]", suggestions.size(), username);
+        return suggestions;
+    }
+
+    public SocialGraphStatsDTO getSocialGraphStats() {
+        return socialGraphService.getStats();
+    }
+
+    private boolean isFriend(String username, String friendUsername) {
+        return friendshipRepository.findById(new Friendship.FriendshipId(username, friendUsername))
+                .map(friendship -> friendship.getStatus() == FriendshipStatus.FRIEND)
+                .orElse(false);
+    }
+
+    // Usernames are listed in order, the cursor is the last username of the previous page
+    private String afterCursor(String cursor) {
+        return cursor == null ? "" : cursor;
+    }
+
+    // Keywords are matched literally, LIKE wildcards in them are escaped
+    private static String escapeLikePattern(String keyword) {
+        return keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // A short page means there are no more usernames
+    private UsernamePage toUsernamePage(List<String> usernames, int pageSize) {
+        return UsernamePage.builder()
+                .usernames(usernames)
+                .nextCursor(usernames.size() < pageSize ? null : usernames.get(usernames.size() - 1))
+                .build();
     }
 
-    public List<Post> getPostsOfUser(String token) {
+    public List<PostDTO> getPostsOfUser(String token) {
 
         String username = getUsernameFromToken(token);
-        List<Post> posts = userRepository.findByUsername(username).get().getPosts();
+        List<PostDTO> posts = PostMapper.summariesToDtos(postRepository.findSummariesByOwner(username));
         if (posts != null && !posts.isEmpty()) {
             log.info("Number of Posts for User [{}] are {}", username, posts.size());
             return posts;
@@ -648,10 +594,10 @@ public class UserService {
         return null;
     }
 
-    public List<Post> getRequestedPostsOfUser(String token) {
+    public List<PostDTO> getRequestedPostsOfUser(String token) {
         String username = getUsernameFromToken(token);
-        List<Post> requestedPosts = userRepository.findByUsername(username).get().getRequestedPosts();
-        if (requestedPosts == null || requestedPosts.isEmpty()) {
+        List<PostDTO> requestedPosts = PostMapper.summariesToDtos(postRepository.findRequestedSummariesOf(username));
+        if (requestedPosts.isEmpty()) {
             log.info("User [{}] has not requested for any post", username);
             return null;
         }
@@ -660,47 +606,43 @@ public class UserService {
     }
 
     // Get all the reminder posts
-    public List<Post> getReminderPosts(String token) {
+    public List<PostDTO> getReminderPosts(String token) {
 
         String username = getUsernameFromToken(token);
-        List<Post> reminderPosts = userRepository.findByUsername(username).get().getReminderPosts();
+        List<PostDTO> reminderPosts = PostMapper.summariesToDtos(postRepository.findReminderSummariesOf(username));
 
-        if(reminderPosts == null || reminderPosts.isEmpty()) {
+        if(reminderPosts.isEmpty()) {
             log.info("No Reminder Posts for User [{}]", username);
-        } else {
-            log.info("Reminder Posts for User [{}] are {}", username, reminderPosts.size());
+            return null;
         }
 
+        log.info("Reminder Posts for User [{}] are {}", username, reminderPosts.size());
         return reminderPosts;
     }
 
-    private List<Post> getMyPostEvents(User user) {
-        Timestamp currentTime = new Timestamp(System.currentTimeMillis());
-
-        return user.getPosts().stream()
-                .filter(post -> "event".equalsIgnoreCase(post.getPostType()))
-                .filter(post -> post.getPostStartTs() != null && Timestamp.valueOf(post.getPostStartTs()).after(currentTime))
-                .toList();
-    }
-
-    // get all Events For User
-    public ArrayList<PostDTO> getUpcomingEvents(String token) {
+    // get the next Events For User, the user's own event posts and the posts the user is confirmed for, soonest first
+    public ArrayList<PostDTO> getUpcomingEvents(String token, int limit) {
 
         String username = getUsernameFromToken(token);
-        User user = userRepository.findByUsername(username).get();
-        List<Post> reminderPosts = user.getReminderPosts();
+        User user = requestIdentityMap.findUserByUsername(username).get();
 
-        List<Post> myEventPosts = getMyPostEvents(user);
+        int pageSize = Math.max(1, Math.min(limit, MAX_UPCOMING_EVENTS));
+        Timestamp currentTime = new Timestamp(System.currentTimeMillis());
+        PageRequest page = PageRequest.of(0, pageSize);
 
-        List<Post> combinedPosts = new ArrayList<>();
-        if(!myEventPosts.isEmpty()) {
-            combinedPosts.addAll(myEventPosts);
+        // Each query returns at most pageSize events in start order, so merging the two is enough
+        TreeMap<Long, PostSummary> byPostId = new TreeMap<>();
+        for (PostSummary post : postRepository.findUpcomingEventsOwnedBy(username, currentTime, page)) {
+            byPostId.put(post.getPostId(), post);
         }
-        if(!reminderPosts.isEmpty()) {
-            combinedPosts.addAll(reminderPosts);
+        for (PostSummary post : postRepository.findUpcomingRemindersOf(user.getUserId(), currentTime, page)) {
+            byPostId.putIfAbsent(post.getPostId(), post);
         }
 
-        combinedPosts.sort(Comparator.comparing(Post::getPostStartTs));
+        List<PostSummary> combinedPosts = byPostId.values().stream()
+                .sorted(Comparator.comparing(PostSummary::getPostStartTs).thenComparing(PostSummary::getPostId))
+                .limit(pageSize)
+                .toList();
 
         if(combinedPosts.isEmpty()) {
             log.info("No Upcoming Events for User [{}]", username);
@@ -708,81 +650,92 @@ public class UserService {
             log.info("Total Upcoming Events for the User [{}] are {}", username, combinedPosts.size());
         }
 
-        ArrayList<PostDTO> allEvents = new ArrayList<>();
-
-        for(Post post : combinedPosts) {
-            allEvents.add(PostMapper.entityToDto(post));
-        }
-
-        return allEvents;
+        return PostMapper.summariesToDtos(combinedPosts);
     }
 
     // DELETE a Reminder Post from User
     public List<Post> deleteReminderPostsOfUser(Long postId, String token) {
-        String username = getUsernameFromToken(token);
+        return optimisticRetryService.run("deleteReminderPostsOfUser", () -> {
+            String username = getUsernameFromToken(token);
 
-        // Get the user from DB
-        User user = userRepository.findByUsername(username).get();
+            // Get the user from DB
+            User user = requestIdentityMap.findUserByUsername(username).get();
 
-        // Check if Post exists in DB
-        if(!checkPostExistInDB(postId)) {
-            return user.getReminderPosts();
-        }
-        Post post = this.postRepository.findById(postId).get();
+            // Check if Post exists in DB
+            if(!checkPostExistInDB(postId)) {
+                return user.getReminderPosts();
+            }
+            Post post = this.postRepository.findById(postId).get();
 
-        List<Post> reminderPosts = user.getReminderPosts();
-        List<User> confirmedUsers = post.getConfirmedUsers();
+            List<Post> reminderPosts = user.getReminderPosts();
+            List<User> confirmedUsers = post.getConfirmedUsers();
 
-        // Check if post exists in reminderBucket of user
-        if(reminderPosts == null || !reminderPosts.contains(post)) {
-            log.info("Post {} does not exists in user [{}] reminder Posts list", postId, user.getUsername());
-            return reminderPosts;
-        }
+            // Check if post exists in reminderBucket of user
+            if(reminderPosts == null || !reminderPosts.contains(post)) {
+                log.info("Post {} does not exists in user [{}] reminder Posts list", postId, user.getUsername());
+                return reminderPosts;
+            }
 
-        // Check if user exists in confirmedUser of post
-        if(confirmedUsers == null || !confirmedUsers.contains(user)) {
-            log.info("User [{}] does not exists in post {} Confirmed User list", user.getUsername(), postId);
-            log.info("But Post [{}] exists in User's [{}] reminder posts list. CHECK!!!!!!", postId, user.getUsername());
-            return null;
-        }
+            // Check if user exists in confirmedUser of post
+            if(confirmedUsers == null || !confirmedUsers.contains(user)) {
+                log.info("User [{}] does not exists in post {} Confirmed User list", user.getUsername(), postId);
+                log.info("But Post [{}] exists in User's [{}] reminder posts list. CHECK!!!!!!", postId, user.getUsername());
+                return null;
+            }
 
-        // Delete post from User's reminder Post list
-        reminderPosts.remove(post);
-        user.setReminderPosts(reminderPosts);
-        userRepository.save(user);
+            // Delete post from User's reminder Post list
+            reminderPosts.remove(post);
+            user.setReminderPosts(reminderPosts);
+            userRepository.save(user);
 
-        // Delete user from Post's confirmed users list
-        confirmedUsers.remove(user);
-        post.setConfirmedUsers(confirmedUsers);
-        postRepository.save(post);
+            // Delete user from Post's confirmed users list
+            confirmedUsers.remove(user);
+            post.setConfirmedUsers(confirmedUsers);
+            postRepository.save(post);
+            AfterCommit.run(() -> eventReminderService.cancel(postId, username));
 
-        log.info("User [{}] Updated Reminder Posts List: {}", username, user.getReminderPosts());
-        log.info("Post [{}] Updated Confirmed Users List: {}", postId, post.getConfirmedUsers());
+            // The freed seat goes to the first user on the waitlist
+            seatReservationService.release(post);
 
-        return user.getReminderPosts();
+            log.info("User [{}] Updated Reminder Posts List: {}", username, user.getReminderPosts());
+            log.info("Post [{}] Updated Confirmed Users List: {}", postId, post.getConfirmedUsers());
+
+            return user.getReminderPosts();
+        });
     }
 
     // Get all TAGS of the User
     public String[] getTagsOfUser(String token) {
         String username = getUsernameFromToken(token);
-        String[] tags = userRepository.findByUsername(username).get().getTags();
+        String[] tags = requestIdentityMap.findUserByUsername(username).get().getTags();
         log.info("User [{}] has following tags: [{}]", username, tags);
         return tags != null ? tags : new String[]{};
     }
 
     // UPDATE the TAGS of User
     public String[] updateTagsOfUser(String[] newTags, String token) {
+        return optimisticRetryService.run("updateTagsOfUser", () -> {
+            String username = getUsernameFromToken(token);
+            User user = requestIdentityMap.findUserByUsername(username).get();
+            String[] currentTags = user.getTags();
+            user.setTags(newTags);
+            userRepository.save(user);
+            if (newTags != null && newTags.length > 0) {
+                userRepository.insertDictionaryTags(Arrays.stream(newTags)
+                        .filter(tag -> tag != null && !tag.isBlank())
+                        .map(tag -> tag.strip().toLowerCase())
+                        .distinct()
+                        .toArray(String[]::new));
+            }
+            timelineService.markStale(username);
+            AfterCommit.run(() -> userSuggestionService.profileChanged(user));
+            AfterCommit.run(() -> autocompleteService.index(user));
 
-        String username = getUsernameFromToken(token);
-        User user = userRepository.findByUsername(username).get();
-        String[] currentTags = user.getTags();
-        user.setTags(newTags);
-        userRepository.save(user);
-
-        log.info("Old tags of User [{}]: {}", username, currentTags);
-        log.info("New Tags of user [{}]: {}", username, user.getTags());
+            log.info("Old tags of User [{}]: {}", username, currentTags);
+            log.info("New Tags of user [{}]: {}", username, user.getTags());
 
-        return user.getTags();
+            return user.getTags();
+        });
     }
 
     // Add User Display Picture to DB
@@ -798,7 +751,7 @@ public class UserService {
         try {
             // Create Image from File
             String fileName = StringUtils.cleanPath(file.getOriginalFilename());
-            Long imageId = Long.valueOf(new DecimalFormat("000000").format(new Random().nextInt(999999)));
+            Long imageId = idGenerator.nextId();
 
             // Create New Image
             Image image = new Image(imageId, fileName, file.getContentType(), file.getBytes());
@@ -811,7 +764,7 @@ public class UserService {
             imageRepository.save(image);
 
             // Save New ImageId to User - DP ID
-            User user = this.userRepository.findByUsername(username).get();
+            User user = this.requestIdentityMap.findUserByUsername(username).get();
             Long oldUserDpId = user.getUserDPId();
             user.setUserDPId(image.getImageId());
             userRepository.save(user);
@@ -841,7 +794,7 @@ public class UserService {
         log.info("DP Requested for USER: [{}]", username);
 
         try {
-            User user = userRepository.findByUsername(username).get();
+            User user = requestIdentityMap.findUserByUsername(username).get();
 //            userDP.setFile(ImageUtil.decompressImage(userDP.getFile()));
 
             if(!checkImageExistInDB(user.getUserDPId())) {
@@ -864,7 +817,7 @@ public class UserService {
     // Remove user DP
     public int removeUserDP(String token) {
         String username = getUsernameFromToken(token);
-        User user = userRepository.findByUsername(username).get();
+        User user = requestIdentityMap.findUserByUsername(username).get();
         Long userDpId = user.getUserDPId();
         try {
             if (userDpId != null) {
@@ -0,0 +1,381 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.UserProfile;
+import com.socialising.services.dto.UserSuggestionDTO;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * People you may know: the users each user is most likely to befriend, precomputed so they are served as a list.
+ *
+ * Candidates are the friends of the friends of the user, from the social graph, and users sharing one of its tags.
+ * A candidate scores its number of mutual friends, the Jaccard similarity of both users' tags and how many of city,
+ * homeCity, education and occupation they share, each weighted; friends and the user are never suggested. The top
+ * suggestions of every user are kept in a bounded heap and computed by a fork-join batch over all users, scheduled
+ * periodically, which also reads the profiles of all users. In between, the suggestions of a user are computed again
+ * when their friends, tags or details change; the suggestions of other users listing them are left until the next
+ * batch.
+ */
+@Service
+public class UserSuggestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSuggestionService.class);
+
+    private static final int MAX_LIMIT = 100;
+
+    private final UserRepository userRepository;
+
+    private final SocialGraphService socialGraphService;
+
+    private final ForkJoinPool pool;
+
+    // Runs the computations of single users following a change
+    private final Executor refreshExecutor;
+
+    // Suggestions kept per user
+    private final int topK;
+
+    // Users scored by a leaf task of the batch
+    private final int batchSize;
+
+    // Profiles read per query by the batch
+    private final int profilePageSize;
+
+    // Users of a tag considered as candidates, a common tag makes a weak suggestion anyway
+    private final int maxUsersPerTag;
+
+    private final double mutualFriendWeight;
+
+    private final double tagWeight;
+
+    private final double detailWeight;
+
+    private volatile Map<String, Profile> profiles = new ConcurrentHashMap<>();
+
+    // Guards the changes of the profiles against the swap of the map by refreshAll
+    private final Object profilesLock = new Object();
+
+    // Profile changes made while refreshAll reads the profiles, applied again to the profiles read before the swap
+    private List<Consumer<Map<String, Profile>>> changedWhileLoading;
+
+    // Usernames having each tag, up to maxUsersPerTag, as of the last batch
+    private volatile Map<String, String[]> usersByTag = Map.of();
+
+    private final ConcurrentHashMap<String, List<UserSuggestionDTO>> suggestions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UserSuggestionService(UserRepository userRepository, SocialGraphService socialGraphService,
+                                 @Value("${application.suggestions.parallelism:0}") int parallelism,
+                                 @Value("${application.suggestions.top-k:20}") int topK,
+                                 @Value("${application.suggestions.batch-size:256}") int batchSize,
+                                 @Value("${application.suggestions.profile-page-size:5000}") int profilePageSize,
+                                 @Value("${application.suggestions.max-users-per-tag:200}") int maxUsersPerTag,
+                                 @Value("${application.suggestions.mutual-friend-weight:1.0}") double mutualFriendWeight,
+                                 @Value("${application.suggestions.tag-weight:4.0}") double tagWeight,
+                                 @Value("${application.suggestions.detail-weight:0.5}") double detailWeight) {
+        this(userRepository, socialGraphService, newPool(parallelism), null, topK, batchSize, profilePageSize,
+                maxUsersPerTag, mutualFriendWeight, tagWeight, detailWeight);
+    }
+
+    UserSuggestionService(UserRepository userRepository, SocialGraphService socialGraphService, ForkJoinPool pool,
+                          Executor refreshExecutor, int topK, int batchSize, int profilePageSize, int maxUsersPerTag,
+                          double mutualFriendWeight, double tagWeight, double detailWeight) {
+        this.userRepository = userRepository;
+        this.socialGraphService = socialGraphService;
+        this.pool = pool;
+        this.refreshExecutor = refreshExecutor != null ? refreshExecutor : pool;
+        this.topK = topK;
+        this.batchSize = batchSize;
+        this.profilePageSize = profilePageSize;
+        this.maxUsersPerTag = maxUsersPerTag;
+        this.mutualFriendWeight = mutualFriendWeight;
+        this.tagWeight = tagWeight;
+        this.detailWeight = detailWeight;
+    }
+
+    private static ForkJoinPool newPool(int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("user-suggestions-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    // Compute the suggestions of every user, once the social graph is built
+    @Scheduled(initialDelayString = "${application.suggestions.initial-delay-ms:300000}", fixedDelayString = "${application.suggestions.refresh-interval-ms:21600000}")
+    public void refreshAll() {
+        if (!socialGraphService.isBuilt()) {
+            log.info("Suggestions not computed, the social graph is not built yet");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, Profile> loaded = new ConcurrentHashMap<>();
+        synchronized (profilesLock) {
+            changedWhileLoading = new ArrayList<>();
+        }
+        try {
+            long lastUserId = Long.MIN_VALUE;
+            List<UserProfile> page;
+            do {
+                page = userRepository.findProfilesAfter(lastUserId, PageRequest.of(0, profilePageSize));
+                for (UserProfile profile : page) {
+                    loaded.put(profile.getUsername(), Profile.of(profile.getTags(), profile.getCity(), profile.getHomeCity(),
+                            profile.getEducation(), profile.getOccupation()));
+                    lastUserId = profile.getUserId();
+                }
+            } while (page.size() == profilePageSize);
+        } catch (DataAccessException e) {
+            log.info("Suggestions not computed after reading {} profiles: {}", loaded.size(), e.getMessage());
+            synchronized (profilesLock) {
+                changedWhileLoading = null;
+            }
+            return;
+        }
+
+        // Profiles changed or removed after their page was read would otherwise be lost with the swap
+        synchronized (profilesLock) {
+            List<Consumer<Map<String, Profile>>> changes = changedWhileLoading;
+            changedWhileLoading = null;
+            changes.forEach(change -> change.accept(loaded));
+            profiles = loaded;
+        }
+
+        Map<String, List<String>> byTag = new HashMap<>();
+        loaded.forEach((username, profile) -> {
+            for (String tag : profile.tags) {
+                List<String> users = byTag.computeIfAbsent(tag, t -> new ArrayList<>());
+                if (users.size() < maxUsersPerTag) {
+                    users.add(username);
+                }
+            }
+        });
+        Map<String, String[]> tagIndex = new HashMap<>(byTag.size() * 4 / 3 + 1);
+        byTag.forEach((tag, users) -> tagIndex.put(tag, users.toArray(new String[0])));
+
+        usersByTag = tagIndex;
+        String[] usernames = loaded.keySet().toArray(new String[0]);
+        pool.invoke(new ScoreTask(usernames, 0, usernames.length));
+        suggestions.keySet().retainAll(loaded.keySet());
+        log.info("Suggestions of {} users computed in {} ms", usernames.length, System.currentTimeMillis() - start);
+    }
+
+    // Top suggestions of the user, computed now if the user has none yet
+    public List<UserSuggestionDTO> getSuggestions(String username, int limit) {
+        List<UserSuggestionDTO> top = suggestions.get(username);
+        if (top == null) {
+            top = refresh(username);
+        }
+        int size = Math.max(1, Math.min(limit, MAX_LIMIT));
+        Map<String, Profile> current = profiles;
+        List<UserSuggestionDTO> served = new ArrayList<>(Math.min(size, top.size()));
+        for (UserSuggestionDTO suggestion : top) {
+            if (served.size() == size) {
+                break;
+            }
+            // Users deleted since the suggestions were computed are left out
+            if (current.containsKey(suggestion.getUsername())) {
+                served.add(suggestion);
+            }
+        }
+        return served;
+    }
+
+    // Friends added or removed, both users get new suggestions
+    public void friendshipChanged(String username, String friendUsername) {
+        refreshExecutor.execute(() -> {
+            refresh(username);
+            refresh(friendUsername);
+        });
+    }
+
+    // Tags or details of the user changed
+    public void profileChanged(User user) {
+        Profile profile = Profile.of(user.getTags(), user.getCity(), user.getHomeCity(), user.getEducation(),
+                user.getOccupation());
+        changeProfiles(current -> current.put(user.getUsername(), profile));
+        refreshExecutor.execute(() -> refresh(user.getUsername()));
+    }
+
+    public void removeUser(String username) {
+        changeProfiles(current -> current.remove(username));
+        suggestions.remove(username);
+    }
+
+    private void changeProfiles(Consumer<Map<String, Profile>> change) {
+        synchronized (profilesLock) {
+            change.accept(profiles);
+            if (changedWhileLoading != null) {
+                changedWhileLoading.add(change);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private List<UserSuggestionDTO> refresh(String username) {
+        List<UserSuggestionDTO> top = compute(username);
+        if (profiles.containsKey(username)) {
+            suggestions.put(username, top);
+        }
+        return top;
+    }
+
+    private List<UserSuggestionDTO> compute(String username) {
+        Map<String, Profile> current = profiles;
+        Profile own = current.get(username);
+        if (own == null) {
+            return List.of();
+        }
+
+        // Friends of friends come with their mutual friends, users sharing a tag are checked not to be friends
+        Map<String, Integer> candidates = new HashMap<>(socialGraphService.friendsOfFriends(username));
+        Map<String, String[]> tagIndex = usersByTag;
+        for (String tag : own.tags) {
+            for (String candidate : tagIndex.getOrDefault(tag, new String[0])) {
+                if (!candidates.containsKey(candidate) && !candidate.equals(username)
+                        && !socialGraphService.areFriends(username, candidate)) {
+                    candidates.put(candidate, 0);
+                }
+            }
+        }
+
+        // Min-heap of the best suggestions so far, the weakest on top
+        Comparator<UserSuggestionDTO> byScore = Comparator.comparingDouble(UserSuggestionDTO::getScore)
+                .thenComparing(UserSuggestionDTO::getUsername, Comparator.reverseOrder());
+        PriorityQueue<UserSuggestionDTO> heap = new PriorityQueue<>(topK + 1, byScore);
+        candidates.forEach((candidate, mutualFriends) -> {
+            Profile profile = current.get(candidate);
+            if (profile == null) {
+                return;
+            }
+            int sharedTags = sharedCount(own.tags, profile.tags);
+            int unionTags = own.tags.length + profile.tags.length - sharedTags;
+            int sharedDetails = own.sharedDetails(profile);
+            double score = mutualFriendWeight * mutualFriends
+                    + tagWeight * (unionTags == 0 ? 0 : (double) sharedTags / unionTags)
+                    + detailWeight * sharedDetails;
+            if (score <= 0) {
+                return;
+            }
+            UserSuggestionDTO suggestion = UserSuggestionDTO.builder()
+                    .username(candidate)
+                    .mutualFriends(mutualFriends)
+                    .sharedTags(sharedTags)
+                    .sharedDetails(sharedDetails)
+                    .score(score)
+                    .build();
+            if (heap.size() < topK) {
+                heap.add(suggestion);
+            } else if (byScore.compare(suggestion, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(suggestion);
+            }
+        });
+
+        List<UserSuggestionDTO> top = new ArrayList<>(heap);
+        top.sort(byScore.reversed());
+        return List.copyOf(top);
+    }
+
+    // Number of values both sorted arrays have
+    private static int sharedCount(String[] a, String[] b) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            int comparison = a[i].compareTo(b[j]);
+            if (comparison < 0) {
+                i++;
+            } else if (comparison > 0) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    // Computes the suggestions of a range of users, split in halves down to batchSize users
+    private class ScoreTask extends RecursiveAction {
+
+        private final String[] usernames;
+
+        private final int from;
+
+        private final int to;
+
+        private ScoreTask(String[] usernames, int from, int to) {
+            this.usernames = usernames;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        refresh(usernames[i]);
+                    } catch (RuntimeException e) {
+                        log.info("Suggestions of User [{}] not computed: {}", usernames[i], e.getMessage());
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ScoreTask(usernames, from, middle), new ScoreTask(usernames, middle, to));
+        }
+    }
+
+    // What a user is scored on, tags sorted and details lowercase
+    private record Profile(String[] tags, String city, String homeCity, String education, String occupation) {
+
+        private static Profile of(String[] tags, String city, String homeCity, String education, String occupation) {
+            String[] normalized = tags == null ? new String[0] : Arrays.stream(tags)
+                    .filter(StringUtils::isNotBlank)
+                    .map(tag -> tag.strip().toLowerCase())
+                    .distinct()
+                    .sorted()
+                    .toArray(String[]::new);
+            return new Profile(normalized, normalize(city), normalize(homeCity), normalize(education), normalize(occupation));
+        }
+
+        private static String normalize(String detail) {
+            return StringUtils.isBlank(detail) ? null : detail.strip().toLowerCase();
+        }
+
+        private int sharedDetails(Profile other) {
+            return same(city, other.city) + same(homeCity, other.homeCity) + same(education, other.education)
+                    + same(occupation, other.occupation);
+        }
+
+        private static int same(String a, String b) {
+            return a != null && a.equals(b) ? 1 : 0;
+        }
+    }
+}
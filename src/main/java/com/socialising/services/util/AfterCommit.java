@@ -0,0 +1,30 @@
+package com.socialising.services.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers in-memory side effects of a write until its transaction commits.
+ *
+ * A write retried after a conflict, or rolled back, must not leave its effects on caches, indexes and timers behind,
+ * so they are registered to run once the transaction commits and are dropped when it rolls back. Outside of a
+ * transaction they run right away. The actions must not touch the DB, it would join the committed transaction.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.socialising.services.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Undirected graph over int vertices, kept as compressed sparse rows.
+ *
+ * The neighbors of every vertex are a sorted run of one shared int array, offsets[v] to offsets[v + 1], so an edge
+ * takes 8 bytes, 4 in the row of each end, and a vertex 4 bytes of offset. Rows changed since the last compaction
+ * are held as their own sorted arrays and replace the compacted row of their vertex; once they hold more than an
+ * eighth of the neighbors they are compacted back into the shared array. Common neighbors are found by merging the
+ * two sorted rows, galloping through the longer one when the rows are of very different lengths. Not thread safe.
+ */
+public final class CompressedSocialGraph {
+
+    private static final int[] EMPTY = new int[0];
+
+    // Changed rows are compacted once they hold this many neighbors and more than an eighth of all of them
+    private static final int MIN_COMPACTION_NEIGHBORS = 1024;
+
+    // Rows this many times longer than the other are galloped through rather than merged
+    private static final int GALLOP_RATIO = 32;
+
+    // Estimated heap taken by a changed row besides its neighbors: the map entry, the boxed vertex and the array header
+    private static final int CHANGED_ROW_OVERHEAD = 64;
+
+    private int[] offsets = new int[1];
+
+    private int[] targets = EMPTY;
+
+    private final Map<Integer, int[]> changedRows = new HashMap<>();
+
+    // Neighbors held in the changed rows
+    private long changedNeighbors;
+
+    private int vertexCount;
+
+    // Sum of the degrees, twice the number of edges
+    private long neighborCount;
+
+    public CompressedSocialGraph() {
+    }
+
+    /**
+     * Builds the graph from the first length edges of the sources and targets, each edge (sources[i], targets[i])
+     * connecting both vertices. Edges given twice, in either direction, and loops are ignored.
+     */
+    public static CompressedSocialGraph fromEdges(int vertexCount, int[] sources, int[] targets, int length) {
+        CompressedSocialGraph graph = new CompressedSocialGraph();
+        int vertices = vertexCount;
+        for (int i = 0; i < length; i++) {
+            checkVertex(sources[i]);
+            checkVertex(targets[i]);
+            vertices = Math.max(vertices, Math.max(sources[i], targets[i]) + 1);
+        }
+
+        // Counting sort of both directions of every edge by their first vertex
+        int[] offsets = new int[vertices + 1];
+        for (int i = 0; i < length; i++) {
+            if (sources[i] != targets[i]) {
+                offsets[sources[i] + 1]++;
+                offsets[targets[i] + 1]++;
+            }
+        }
+        for (int v = 0; v < vertices; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] neighbors = new int[offsets[vertices]];
+        int[] next = Arrays.copyOf(offsets, vertices);
+        for (int i = 0; i < length; i++) {
+            if (sources[i] != targets[i]) {
+                neighbors[next[sources[i]]++] = targets[i];
+                neighbors[next[targets[i]]++] = sources[i];
+            }
+        }
+
+        // Rows are sorted and their duplicates dropped, moving them down over the space freed
+        int write = 0;
+        for (int v = 0; v < vertices; v++) {
+            int from = offsets[v];
+            int to = offsets[v + 1];
+            Arrays.sort(neighbors, from, to);
+            offsets[v] = write;
+            for (int i = from; i < to; i++) {
+                if (i == from || neighbors[i] != neighbors[i - 1]) {
+                    neighbors[write++] = neighbors[i];
+                }
+            }
+        }
+        offsets[vertices] = write;
+
+        graph.offsets = offsets;
+        graph.targets = write == neighbors.length ? neighbors : Arrays.copyOf(neighbors, write);
+        graph.vertexCount = vertices;
+        graph.neighborCount = write;
+        return graph;
+    }
+
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    public long edgeCount() {
+        return neighborCount / 2;
+    }
+
+    // Returns true if the edge was added, false if the vertices already were neighbors
+    public boolean addEdge(int a, int b) {
+        checkVertex(a);
+        checkVertex(b);
+        if (a == b || hasEdge(a, b)) {
+            return false;
+        }
+        vertexCount = Math.max(vertexCount, Math.max(a, b) + 1);
+        insert(a, b);
+        insert(b, a);
+        neighborCount += 2;
+        compactIfDue();
+        return true;
+    }
+
+    // Returns true if the edge was removed, false if the vertices were not neighbors
+    public boolean removeEdge(int a, int b) {
+        if (a == b || !hasEdge(a, b)) {
+            return false;
+        }
+        delete(a, b);
+        delete(b, a);
+        neighborCount -= 2;
+        compactIfDue();
+        return true;
+    }
+
+    // Removes every edge of the vertex, returns how many there were
+    public int removeVertex(int v) {
+        int[] neighbors = neighbors(v);
+        for (int neighbor : neighbors) {
+            delete(neighbor, v);
+        }
+        if (neighbors.length > 0) {
+            setRow(v, EMPTY);
+            neighborCount -= 2L * neighbors.length;
+            compactIfDue();
+        }
+        return neighbors.length;
+    }
+
+    public int degree(int v) {
+        if (v < 0 || v >= vertexCount) {
+            return 0;
+        }
+        int[] changed = changedRows.get(v);
+        return changed != null ? changed.length : baseTo(v) - baseFrom(v);
+    }
+
+    public boolean hasEdge(int a, int b) {
+        if (a < 0 || a >= vertexCount || b < 0 || b >= vertexCount) {
+            return false;
+        }
+        int[] changed = changedRows.get(a);
+        if (changed != null) {
+            return Arrays.binarySearch(changed, b) >= 0;
+        }
+        return Arrays.binarySearch(targets, baseFrom(a), baseTo(a), b) >= 0;
+    }
+
+    // Sorted neighbors of the vertex
+    public int[] neighbors(int v) {
+        if (v < 0 || v >= vertexCount) {
+            return EMPTY;
+        }
+        int[] changed = changedRows.get(v);
+        return changed != null ? changed.clone() : Arrays.copyOfRange(targets, baseFrom(v), baseTo(v));
+    }
+
+    // Sorted neighbors both vertices have
+    public int[] commonNeighbors(int a, int b) {
+        Row rowA = row(a);
+        Row rowB = row(b);
+        int[] common = new int[Math.min(rowA.length(), rowB.length())];
+        int count = intersect(rowA, rowB, common);
+        return count == common.length ? common : Arrays.copyOf(common, count);
+    }
+
+    public int commonNeighborCount(int a, int b) {
+        return intersect(row(a), row(b), null);
+    }
+
+    /**
+     * Vertices two edges away from v, neither v nor one of its neighbors, with the number of neighbors of v each one
+     * is a neighbor of, in vertex order.
+     */
+    public TwoHop twoHop(int v) {
+        Row own = row(v);
+        if (own.length() == 0) {
+            return new TwoHop(EMPTY, EMPTY, 0);
+        }
+
+        long reached = 0;
+        for (int i = own.from; i < own.to; i++) {
+            reached += degree(own.array[i]);
+        }
+        if (reached > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Two hop neighborhood of vertex " + v + " is too large: " + reached);
+        }
+        int[] all = new int[(int) reached];
+        int length = 0;
+        for (int i = own.from; i < own.to; i++) {
+            Row neighborRow = row(own.array[i]);
+            System.arraycopy(neighborRow.array, neighborRow.from, all, length, neighborRow.length());
+            length += neighborRow.length();
+        }
+        Arrays.sort(all, 0, length);
+
+        // Runs of the same vertex are counted in place, the vertices and counts are written over the start of the array
+        int[] counts = new int[Math.min(length, vertexCount)];
+        int size = 0;
+        for (int i = 0; i < length; ) {
+            int vertex = all[i];
+            int run = i;
+            while (run < length && all[run] == vertex) {
+                run++;
+            }
+            if (vertex != v && Arrays.binarySearch(own.array, own.from, own.to, vertex) < 0) {
+                all[size] = vertex;
+                counts[size++] = run - i;
+            }
+            i = run;
+        }
+        return new TwoHop(Arrays.copyOf(all, size), Arrays.copyOf(counts, size), size);
+    }
+
+    // Estimated heap taken by the graph
+    public long sizeInBytes() {
+        long bytes = 16L + offsets.length * 4L + 16L + targets.length * 4L;
+        for (int[] row : changedRows.values()) {
+            bytes += CHANGED_ROW_OVERHEAD + row.length * 4L;
+        }
+        return bytes;
+    }
+
+    // Moves the changed rows back into the shared array
+    public void compact() {
+        if (changedRows.isEmpty() && offsets.length == vertexCount + 1) {
+            return;
+        }
+        int[] newOffsets = new int[vertexCount + 1];
+        int[] newTargets = new int[(int) neighborCount];
+        int write = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            newOffsets[v] = write;
+            int[] changed = changedRows.get(v);
+            if (changed != null) {
+                System.arraycopy(changed, 0, newTargets, write, changed.length);
+                write += changed.length;
+            } else {
+                int from = baseFrom(v);
+                int length = baseTo(v) - from;
+                System.arraycopy(targets, from, newTargets, write, length);
+                write += length;
+            }
+        }
+        newOffsets[vertexCount] = write;
+        offsets = newOffsets;
+        targets = newTargets;
+        changedRows.clear();
+        changedNeighbors = 0;
+    }
+
+    private void compactIfDue() {
+        if (changedNeighbors >= MIN_COMPACTION_NEIGHBORS && changedNeighbors * 8 > neighborCount) {
+            compact();
+        }
+    }
+
+    private void insert(int v, int neighbor) {
+        Row current = row(v);
+        int at = -Arrays.binarySearch(current.array, current.from, current.to, neighbor) - 1 - current.from;
+        int[] row = new int[current.length() + 1];
+        System.arraycopy(current.array, current.from, row, 0, at);
+        row[at] = neighbor;
+        System.arraycopy(current.array, current.from + at, row, at + 1, current.length() - at);
+        setRow(v, row);
+    }
+
+    private void delete(int v, int neighbor) {
+        Row current = row(v);
+        int at = Arrays.binarySearch(current.array, current.from, current.to, neighbor) - current.from;
+        if (at < 0) {
+            return;
+        }
+        int[] row = new int[current.length() - 1];
+        System.arraycopy(current.array, current.from, row, 0, at);
+        System.arraycopy(current.array, current.from + at + 1, row, at, current.length() - at - 1);
+        setRow(v, row);
+    }
+
+    private void setRow(int v, int[] row) {
+        int[] previous = changedRows.put(v, row);
+        changedNeighbors += row.length - (previous != null ? previous.length : 0);
+    }
+
+    private Row row(int v) {
+        if (v < 0 || v >= vertexCount) {
+            return new Row(EMPTY, 0, 0);
+        }
+        int[] changed = changedRows.get(v);
+        return changed != null ? new Row(changed, 0, changed.length) : new Row(targets, baseFrom(v), baseTo(v));
+    }
+
+    // Vertices added since the last compaction have no compacted row
+    private int baseFrom(int v) {
+        return v + 1 < offsets.length ? offsets[v] : offsets[offsets.length - 1];
+    }
+
+    private int baseTo(int v) {
+        return v + 1 < offsets.length ? offsets[v + 1] : offsets[offsets.length - 1];
+    }
+
+    // Number of values both rows have, written to out when given
+    private static int intersect(Row a, Row b, int[] out) {
+        if (a.length() > b.length()) {
+            Row swap = a;
+            a = b;
+            b = swap;
+        }
+        if (a.length() == 0) {
+            return 0;
+        }
+        int count = 0;
+        if ((long) a.length() * GALLOP_RATIO < b.length()) {
+            // Few values in a, each one is searched for in what is left of b
+            int from = b.from;
+            for (int i = a.from; i < a.to && from < b.to; i++) {
+                int at = gallop(b.array, from, b.to, a.array[i]);
+                if (at >= 0) {
+                    if (out != null) {
+                        out[count] = a.array[i];
+                    }
+                    count++;
+                    from = at + 1;
+                } else {
+                    from = -at - 1;
+                }
+            }
+            return count;
+        }
+        int i = a.from;
+        int j = b.from;
+        while (i < a.to && j < b.to) {
+            int x = a.array[i];
+            int y = b.array[j];
+            if (x < y) {
+                i++;
+            } else if (x > y) {
+                j++;
+            } else {
+                if (out != null) {
+                    out[count] = x;
+                }
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    // Binary search of the value in array[from, to), doubling the step from from first, as Arrays.binarySearch returns
+    private static int gallop(int[] array, int from, int to, int value) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < to && array[high] < value) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        return Arrays.binarySearch(array, low, Math.min(high + 1, to), value);
+    }
+
+    private static void checkVertex(int v) {
+        if (v < 0) {
+            throw new IllegalArgumentException("Negative vertex: " + v);
+        }
+    }
+
+    private record Row(int[] array, int from, int to) {
+
+        private int length() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Vertices two edges away from a vertex and their number of common neighbors with it, in vertex order.
+     */
+    public static final class TwoHop {
+
+        private final int[] vertices;
+
+        private final int[] commonNeighbors;
+
+        private final int size;
+
+        private TwoHop(int[] vertices, int[] commonNeighbors, int size) {
+            this.vertices = vertices;
+            this.commonNeighbors = commonNeighbors;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int vertex(int i) {
+            return vertices[i];
+        }
+
+        public int commonNeighbors(int i) {
+            return commonNeighbors[i];
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.socialising.services.util;
+
+import java.util.*;
+
+/**
+ * Compressed prefix trie, or radix tree, from String keys to sets of values.
+ *
+ * Chains of nodes with a single child are merged into one node labelled with the whole chain, so a key takes at most
+ * one node, plus one split node where it branches off another key. The children of a node are kept sorted by the
+ * first char of their label and found by binary search. Prefix queries return the values of the shortest keys first
+ * and stop as soon as enough distinct values are found, so they visit about as many nodes as they return values,
+ * however many keys share the prefix. Not thread safe.
+ */
+public final class CompressedTrie<T> {
+
+    private final Node<T> root = new Node<>("");
+
+    private int keyCount;
+
+    public int keyCount() {
+        return keyCount;
+    }
+
+    public void add(String key, T value) {
+        Node<T> node = root;
+        String rest = key;
+        while (!rest.isEmpty()) {
+            int i = node.indexOf(rest.charAt(0));
+            if (i < 0) {
+                Node<T> leaf = new Node<>(rest);
+                node.insertChild(-i - 1, leaf);
+                node = leaf;
+                break;
+            }
+            Node<T> child = node.children[i];
+            int common = commonPrefixLength(child.label, rest);
+            if (common < child.label.length()) {
+                // The key branches off inside the label, which is split at the branch
+                Node<T> split = new Node<>(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.insertChild(0, child);
+                node.children[i] = split;
+                child = split;
+            }
+            node = child;
+            rest = rest.substring(common);
+        }
+        if (node.values == null) {
+            node.values = new LinkedHashSet<>(2);
+            keyCount++;
+        }
+        node.values.add(value);
+    }
+
+    // Returns true if the value was found under the key and removed
+    public boolean remove(String key, T value) {
+        List<Node<T>> path = new ArrayList<>();
+        Node<T> node = root;
+        String rest = key;
+        path.add(node);
+        while (!rest.isEmpty()) {
+            int i = node.indexOf(rest.charAt(0));
+            if (i < 0 || !rest.startsWith(node.children[i].label)) {
+                return false;
+            }
+            node = node.children[i];
+            rest = rest.substring(node.label.length());
+            path.add(node);
+        }
+        if (node.values == null || !node.values.remove(value)) {
+            return false;
+        }
+        if (node.values.isEmpty()) {
+            node.values = null;
+            keyCount--;
+            prune(path);
+        }
+        return true;
+    }
+
+    // Values of the keys starting with the prefix, shortest keys first, each value once
+    public List<T> prefixMatches(String prefix, int limit) {
+        List<T> matches = new ArrayList<>();
+        if (limit <= 0) {
+            return matches;
+        }
+
+        // Node whose keys all start with the prefix, and the length of its key
+        Node<T> node = root;
+        String rest = prefix;
+        int keyLength = 0;
+        while (!rest.isEmpty()) {
+            int i = node.indexOf(rest.charAt(0));
+            if (i < 0) {
+                return matches;
+            }
+            Node<T> child = node.children[i];
+            int common = commonPrefixLength(child.label, rest);
+            if (common < rest.length() && common < child.label.length()) {
+                return matches;
+            }
+            node = child;
+            keyLength += child.label.length();
+            rest = rest.substring(common);
+        }
+
+        // Best first through the subtree by key length, ties in the order the nodes were reached
+        Set<T> seen = new LinkedHashSet<>();
+        PriorityQueue<Reached<T>> queue = new PriorityQueue<>();
+        long order = 0;
+        queue.add(new Reached<>(node, keyLength, order++));
+        while (!queue.isEmpty() && seen.size() < limit) {
+            Reached<T> reached = queue.poll();
+            if (reached.node.values != null) {
+                for (T value : reached.node.values) {
+                    if (seen.add(value) && seen.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            for (int i = 0; i < reached.node.childCount; i++) {
+                Node<T> child = reached.node.children[i];
+                queue.add(new Reached<>(child, reached.keyLength + child.label.length(), order++));
+            }
+        }
+        matches.addAll(seen);
+        return matches;
+    }
+
+    // Removes the nodes left without values nor children, and merges the nodes left with a single child into it
+    private void prune(List<Node<T>> path) {
+        for (int depth = path.size() - 1; depth > 0; depth--) {
+            Node<T> node = path.get(depth);
+            Node<T> parent = path.get(depth - 1);
+            if (node.values == null && node.childCount == 0) {
+                parent.removeChild(parent.indexOf(node.label.charAt(0)));
+            } else if (node.values == null && node.childCount == 1) {
+                Node<T> child = node.children[0];
+                child.label = node.label + child.label;
+                parent.children[parent.indexOf(node.label.charAt(0))] = child;
+                return;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Node<T> {
+
+        private String label;
+
+        // Null when no key ends here
+        private Set<T> values;
+
+        @SuppressWarnings("unchecked")
+        private Node<T>[] children = new Node[0];
+
+        private int childCount;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        // Index of the child whose label starts with c, or -(insertion point) - 1
+        private int indexOf(char c) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char first = children[middle].label.charAt(0);
+                if (first < c) {
+                    low = middle + 1;
+                } else if (first > c) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private void insertChild(int at, Node<T> child) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(2, childCount * 2));
+            }
+            System.arraycopy(children, at, children, at + 1, childCount - at);
+            children[at] = child;
+            childCount++;
+        }
+
+        private void removeChild(int at) {
+            System.arraycopy(children, at + 1, children, at, childCount - at - 1);
+            children[--childCount] = null;
+        }
+    }
+
+    private record Reached<T>(Node<T> node, int keyLength, long order) implements Comparable<Reached<T>> {
+
+        @Override
+        public int compareTo(Reached<T> other) {
+            return keyLength != other.keyLength ? Integer.compare(keyLength, other.keyLength) : Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.socialising.services.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical timing wheel holding one timer per key.
+ *
+ * Level 0 has {@code wheelSize} slots of one tick each, level 1 has {@code wheelSize} slots of {@code wheelSize}
+ * ticks each, and so on. A timer is put in the finest level whose span covers its deadline. Every time a level
+ * completes a revolution, the next slot of the level above is emptied and its timers are put back into finer
+ * levels. Timers beyond the span of the top level wait in the top level and are re-placed each revolution.
+ *
+ * Slots are intrusive doubly linked lists and timers are found by key through a hash map, so
+ * {@link #schedule(Object, long)} and {@link #cancel(Object)} are O(1) no matter how many timers are pending.
+ * {@link #advance(long)} costs one step per elapsed tick plus the work for the timers that expire or cascade.
+ *
+ * All methods are synchronized; callers should act on expired keys outside of any lock of their own.
+ */
+public class HierarchicalTimingWheel<K> {
+
+    private final long tickMillis;
+
+    private final int slotBits;
+
+    private final int slotMask;
+
+    private final Slot[][] levels;
+
+    private final Map<K, Timer<K>> timers = new HashMap<>();
+
+    // Timers whose deadline had already passed when they were scheduled, expired on the next advance
+    private final Slot due = new Slot();
+
+    // Last tick that has been processed
+    private long currentTick;
+
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, int levelCount, long startMillis) {
+        if (tickMillis < 1 || Integer.bitCount(wheelSize) != 1 || wheelSize < 2 || levelCount < 1
+                || Integer.numberOfTrailingZeros(wheelSize) * levelCount > 62) {
+            throw new IllegalArgumentException("Invalid timing wheel: tick " + tickMillis + "ms, "
+                    + wheelSize + " slots, " + levelCount + " levels");
+        }
+        this.tickMillis = tickMillis;
+        this.slotBits = Integer.numberOfTrailingZeros(wheelSize);
+        this.slotMask = wheelSize - 1;
+        this.levels = new Slot[levelCount][wheelSize];
+        for (Slot[] level : levels) {
+            for (int i = 0; i < wheelSize; i++) {
+                level[i] = new Slot();
+            }
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    // Schedule, or move, the timer of a key
+    public synchronized void schedule(K key, long deadlineMillis) {
+        Timer<K> timer = timers.get(key);
+        if (timer == null) {
+            timer = new Timer<>(key);
+            timers.put(key, timer);
+        } else {
+            timer.unlink();
+        }
+        // Round up so a timer never fires before its deadline
+        timer.deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        place(timer);
+    }
+
+    // Returns false when the key had no pending timer
+    public synchronized boolean cancel(K key) {
+        Timer<K> timer = timers.remove(key);
+        if (timer == null) {
+            return false;
+        }
+        timer.unlink();
+        return true;
+    }
+
+    // Cancel the timers of every key matching the filter, O(pending timers); returns the number cancelled
+    public synchronized int cancelIf(Predicate<? super K> filter) {
+        int cancelled = 0;
+        Iterator<Timer<K>> it = timers.values().iterator();
+        while (it.hasNext()) {
+            Timer<K> timer = it.next();
+            if (filter.test(timer.key)) {
+                timer.unlink();
+                it.remove();
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    public synchronized boolean contains(K key) {
+        return timers.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return timers.size();
+    }
+
+    // Move the wheel forward to the given time and return the keys whose deadline has been reached
+    public synchronized List<K> advance(long nowMillis) {
+        List<K> expired = new ArrayList<>();
+        drain(due, expired);
+
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+
+            // Cascade every level whose lower neighbour has just completed a revolution
+            for (int level = 1; level < levels.length; level++) {
+                long lowerSpanMask = (1L << (slotBits * level)) - 1;
+                if ((currentTick & lowerSpanMask) != 0) {
+                    break;
+                }
+                drain(levels[level][slotIndex(currentTick, level)], expired);
+            }
+
+            drain(levels[0][slotIndex(currentTick, 0)], expired);
+        }
+        return expired;
+    }
+
+    private int slotIndex(long tick, int level) {
+        return (int) ((tick >>> (slotBits * level)) & slotMask);
+    }
+
+    // Empty a slot, expiring timers that are due and placing the others in finer levels
+    private void drain(Slot slot, List<K> expired) {
+        @SuppressWarnings("unchecked")
+        Timer<K> timer = slot.head.next;
+        while (timer != slot.head) {
+            Timer<K> next = timer.next;
+            timer.unlink();
+            if (timer.deadlineTick <= currentTick) {
+                timers.remove(timer.key);
+                expired.add(timer.key);
+            } else {
+                place(timer);
+            }
+            timer = next;
+        }
+    }
+
+    private void place(Timer<K> timer) {
+        long delay = timer.deadlineTick - currentTick;
+        if (delay <= 0) {
+            due.add(timer);
+            return;
+        }
+        int topLevel = levels.length - 1;
+        for (int level = 0; level < topLevel; level++) {
+            if (delay < (1L << (slotBits * (level + 1)))) {
+                levels[level][slotIndex(timer.deadlineTick, level)].add(timer);
+                return;
+            }
+        }
+        // Deadlines past the span of the top level are re-placed every time their slot comes round
+        if (delay < (1L << (slotBits * (topLevel + 1)))) {
+            levels[topLevel][slotIndex(timer.deadlineTick, topLevel)].add(timer);
+        } else {
+            levels[topLevel][slotIndex(currentTick - 1, topLevel)].add(timer);
+        }
+    }
+
+    private static final class Timer<K> {
+
+        private final K key;
+
+        private long deadlineTick;
+
+        private Timer<K> prev;
+
+        private Timer<K> next;
+
+        private Timer(K key) {
+            this.key = key;
+        }
+
+        private void unlink() {
+            if (prev != null) {
+                prev.next = next;
+                next.prev = prev;
+                prev = null;
+                next = null;
+            }
+        }
+    }
+
+    // Circular list with a sentinel head
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final class Slot {
+
+        private final Timer head = new Timer<>(null);
+
+        private Slot() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        private void add(Timer timer) {
+            timer.prev = head.prev;
+            timer.next = head;
+            head.prev.next = timer;
+            head.prev = timer;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.socialising.services.util;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct 64-bit hashes offered to it, in a fixed 2^precision
+ * registers whatever the number of hashes.
+ *
+ * The relative standard error of the estimate is 1.04 / sqrt(2^precision), about 1.6% at precision 12: two
+ * estimates out of three are within 1.6% of the true count, and 99.7% are within 4.9%. Small counts are
+ * estimated by linear counting of the empty registers, which is close to exact. The harmonic sum of the
+ * registers is kept up to date on every change, so {@link #estimate()} is O(1).
+ *
+ * Sketches of the same precision merge by taking the larger of each register; the result is the sketch of the
+ * union of what both saw. {@link #toBytes()} packs the 6-bit registers for storage. Not thread safe.
+ */
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 12;
+
+    private static final int REGISTER_BITS = 6;
+
+    private final int precision;
+
+    private final byte[] registers;
+
+    // Sum of 2^-register over all registers, and the number of registers still 0
+    private double inverseSum;
+
+    private int zeros;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+        this.inverseSum = registers.length;
+        this.zeros = registers.length;
+    }
+
+    // Offer a hash, returns true when the sketch changed
+    public boolean offer(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Position of the first 1 bit after the index bits, capped when they are all 0
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+        return update(index, rank);
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double raw = alpha(m) * m * m / inverseSum;
+        if (raw <= 2.5 * m && zeros > 0) {
+            return Math.round(m * Math.log((double) m / zeros));
+        }
+        return Math.round(raw);
+    }
+
+    // Relative standard error of the estimate
+    public double standardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    // Add everything the other sketch saw to this one
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Can not merge sketches of precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            update(i, other.registers[i]);
+        }
+    }
+
+    public boolean isEmpty() {
+        return zeros == registers.length;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        copy.merge(this);
+        return copy;
+    }
+
+    // The precision, then the registers packed 6 bits each
+    public byte[] toBytes() {
+        byte[] bytes = new byte[1 + (registers.length * REGISTER_BITS + 7) / 8];
+        bytes[0] = (byte) precision;
+        int bit = 0;
+        for (byte register : registers) {
+            for (int b = REGISTER_BITS - 1; b >= 0; b--, bit++) {
+                if ((register >>> b & 1) != 0) {
+                    bytes[1 + bit / 8] |= (byte) (0x80 >>> (bit % 8));
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("Empty sketch");
+        }
+        HyperLogLog sketch = new HyperLogLog(bytes[0]);
+        if (bytes.length != 1 + (sketch.registers.length * REGISTER_BITS + 7) / 8) {
+            throw new IllegalArgumentException("Sketch of precision " + bytes[0] + " can not be " + bytes.length + " bytes");
+        }
+        int bit = 0;
+        for (int i = 0; i < sketch.registers.length; i++) {
+            int register = 0;
+            for (int b = 0; b < REGISTER_BITS; b++, bit++) {
+                register = register << 1 | (bytes[1 + bit / 8] >>> (7 - bit % 8) & 1);
+            }
+            sketch.update(i, register);
+        }
+        return sketch;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HyperLogLog other && Arrays.equals(registers, other.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(registers);
+    }
+
+    private boolean update(int index, int rank) {
+        int current = registers[index];
+        if (rank <= current) {
+            return false;
+        }
+        registers[index] = (byte) rank;
+        inverseSum += Math.scalb(1.0, -rank) - Math.scalb(1.0, -current);
+        if (current == 0) {
+            zeros--;
+        }
+        return true;
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+}
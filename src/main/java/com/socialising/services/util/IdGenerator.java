@@ -0,0 +1,11 @@
+package com.socialising.services.util;
+
+/**
+ * Hands out unique IDs for new entities.
+ *
+ * Implementations must be thread safe and never return the same ID twice for the lifetime of the cluster.
+ */
+public interface IdGenerator {
+
+    long nextId();
+}
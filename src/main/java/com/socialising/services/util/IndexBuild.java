@@ -0,0 +1,84 @@
+package com.socialising.services.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Keeps an in-memory index consistent while it is read from the DB page by page and changed by writes at the same time.
+ *
+ * Every change runs under the write lock of the index. While a build is running the changes are also recorded, and
+ * once the build has read its pages they are run again over them, in order: a page may have been read before a change
+ * was committed, so the recorded changes are the newer state. The changes must give the same result when run twice.
+ */
+public final class IndexBuild {
+
+    private final ReadWriteLock lock;
+
+    private List<Runnable> changedWhileBuilding;
+
+    private volatile boolean built;
+
+    public IndexBuild(ReadWriteLock lock) {
+        this.lock = lock;
+    }
+
+    public boolean isBuilt() {
+        return built;
+    }
+
+    // Start recording the changes, returns false when the index is already built
+    public boolean start() {
+        if (built) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            changedWhileBuilding = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    public void change(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (changedWhileBuilding != null) {
+                changedWhileBuilding.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Stop recording and replay the changes over the pages indexed, the index is built only when every page was read
+    public void finish(boolean complete) {
+        finish(complete, () -> {});
+    }
+
+    // Same as above, installing what the build read first, under the same write lock as the replay
+    public void finish(boolean complete, Runnable install) {
+        lock.writeLock().lock();
+        try {
+            List<Runnable> changes = changedWhileBuilding;
+            changedWhileBuilding = null;
+            install.run();
+            changes.forEach(Runnable::run);
+            built = complete;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Stop recording without replaying, for a build that left the index as it was
+    public void abandon() {
+        lock.writeLock().lock();
+        try {
+            changedWhileBuilding = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.socialising.services.util;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bloom filter of longs that grows with what is added to it, up to a bounded size.
+ *
+ * It starts as one Guava BloomFilter slice sized for initialCapacity keys. When the last slice is full, a slice of
+ * twice the capacity is added, with half the false positive rate of the previous one, so the false positive rate
+ * of the whole filter stays below falsePositiveRate however many slices it has. After maxSlices slices the filter
+ * is full: keys are still added to the last slice but its false positive rate degrades, callers should rotate it.
+ *
+ * Never reports a key that was added as missing. Not thread safe.
+ */
+public class ScalableBloomFilter {
+
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private final int initialCapacity;
+
+    private final double falsePositiveRate;
+
+    private final int maxSlices;
+
+    private final List<BloomFilter<Long>> slices = new ArrayList<>();
+
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate, int maxSlices) {
+        if (initialCapacity < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1 || maxSlices < 1 || maxSlices > 16) {
+            throw new IllegalArgumentException("Invalid Bloom filter: capacity " + initialCapacity
+                    + ", false positive rate " + falsePositiveRate + ", slices " + maxSlices);
+        }
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxSlices = maxSlices;
+        this.slices.add(newSlice(0));
+    }
+
+    // Returns true when the key was not in the filter yet
+    public boolean put(long key) {
+        if (mightContain(key)) {
+            return false;
+        }
+        if (lastSliceFull() && slices.size() < maxSlices) {
+            slices.add(newSlice(slices.size()));
+        }
+        slices.get(slices.size() - 1).put(key);
+        return true;
+    }
+
+    public boolean mightContain(long key) {
+        for (BloomFilter<Long> slice : slices) {
+            if (slice.mightContain(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Every slice is used up, adding more keys raises the false positive rate above falsePositiveRate
+    public boolean isFull() {
+        return slices.size() == maxSlices && lastSliceFull();
+    }
+
+    public long approximateElementCount() {
+        long count = 0;
+        for (BloomFilter<Long> slice : slices) {
+            count += slice.approximateElementCount();
+        }
+        return count;
+    }
+
+    public int sliceCount() {
+        return slices.size();
+    }
+
+    // The parameters of the filter, then every slice in Guava's serialized form
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(initialCapacity);
+            out.writeDouble(falsePositiveRate);
+            out.writeByte(maxSlices);
+            out.writeByte(slices.size());
+            for (BloomFilter<Long> slice : slices) {
+                slice.writeTo(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ScalableBloomFilter fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            ScalableBloomFilter filter = new ScalableBloomFilter(in.readInt(), in.readDouble(), in.readByte());
+            int sliceCount = in.readByte();
+            if (sliceCount < 1 || sliceCount > filter.maxSlices) {
+                throw new IllegalArgumentException("Invalid number of Bloom filter slices: " + sliceCount);
+            }
+            filter.slices.clear();
+            for (int i = 0; i < sliceCount; i++) {
+                filter.slices.add(BloomFilter.readFrom(in, Funnels.longFunnel()));
+            }
+            return filter;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid Bloom filter bytes", e);
+        }
+    }
+
+    private boolean lastSliceFull() {
+        int last = slices.size() - 1;
+        return slices.get(last).approximateElementCount() >= capacity(last);
+    }
+
+    private long capacity(int slice) {
+        return (long) initialCapacity << slice;
+    }
+
+    private BloomFilter<Long> newSlice(int slice) {
+        double sliceRate = falsePositiveRate * (1 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, slice);
+        return BloomFilter.create(Funnels.longFunnel(), capacity(slice), sliceRate);
+    }
+}
@@ -0,0 +1,116 @@
+package com.socialising.services.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts occurrences of keys over a sliding time window, e.g. hashtag uses over the last hour.
+ *
+ * The window is split into a ring of fixed size buckets. A bucket is replaced by an empty one the first time it
+ * is written after its time slot has passed, so old counts fall out of the window without a cleanup job.
+ * Each bucket keeps at most {@code maxKeysPerBucket} distinct keys; new keys beyond that are dropped, which only
+ * affects the long tail and keeps memory bounded under a flood of one-off keys.
+ */
+public class SlidingWindowCounter {
+
+    private final long bucketMillis;
+
+    private final int bucketCount;
+
+    private final int maxKeysPerBucket;
+
+    private final LongSupplier clock;
+
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    public SlidingWindowCounter(long windowMillis, int bucketCount, int maxKeysPerBucket) {
+        this(windowMillis, bucketCount, maxKeysPerBucket, System::currentTimeMillis);
+    }
+
+    public SlidingWindowCounter(long windowMillis, int bucketCount, int maxKeysPerBucket, LongSupplier clock) {
+        if (bucketCount < 1 || windowMillis < bucketCount) {
+            throw new IllegalArgumentException("Window of " + windowMillis + "ms cannot be split into " + bucketCount + " buckets");
+        }
+        this.bucketMillis = windowMillis / bucketCount;
+        this.bucketCount = bucketCount;
+        this.maxKeysPerBucket = maxKeysPerBucket;
+        this.clock = clock;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    public void add(String key, long count) {
+        long slot = clock.getAsLong() / bucketMillis;
+        int index = (int) Math.floorMod(slot, (long) bucketCount);
+        Bucket bucket = buckets.get(index);
+        if (bucket == null || bucket.slot < slot) {
+            Bucket fresh = new Bucket(slot);
+            bucket = buckets.compareAndSet(index, bucket, fresh) ? fresh : buckets.get(index);
+        }
+
+        LongAdder counter = bucket.counts.get(key);
+        if (counter == null) {
+            if (bucket.counts.size() >= maxKeysPerBucket) {
+                return;
+            }
+            counter = bucket.counts.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.add(count);
+    }
+
+    // Total count of a key over the window
+    public long count(String key) {
+        long oldestSlot = clock.getAsLong() / bucketMillis - bucketCount + 1;
+        long total = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.slot >= oldestSlot) {
+                LongAdder counter = bucket.counts.get(key);
+                total += counter == null ? 0 : counter.sum();
+            }
+        }
+        return total;
+    }
+
+    // The k keys with the highest counts over the window, highest first
+    public List<Map.Entry<String, Long>> top(int k) {
+        long oldestSlot = clock.getAsLong() / bucketMillis - bucketCount + 1;
+        Map<String, Long> totals = new HashMap<>();
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.slot >= oldestSlot) {
+                bucket.counts.forEach((key, counter) -> totals.merge(key, counter.sum(), Long::sum));
+            }
+        }
+
+        // Min-heap of the best k seen so far
+        Comparator<Map.Entry<String, Long>> byCount = Map.Entry.<String, Long>comparingByValue()
+                .thenComparing(Map.Entry.<String, Long>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(byCount);
+        for (Map.Entry<String, Long> entry : totals.entrySet()) {
+            if (heap.size() < k) {
+                heap.add(entry);
+            } else if (k > 0 && byCount.compare(entry, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        List<Map.Entry<String, Long>> top = new ArrayList<>(heap);
+        top.sort(byCount.reversed());
+        return top;
+    }
+
+    private static final class Bucket {
+
+        private final long slot;
+
+        private final ConcurrentHashMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+        private Bucket(long slot) {
+            this.slot = slot;
+        }
+    }
+}
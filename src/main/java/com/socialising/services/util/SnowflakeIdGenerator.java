@@ -0,0 +1,79 @@
+package com.socialising.services.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake style 63 bit IDs: 41 bits of milliseconds since {@link #EPOCH}, 10 bits of node id and a 12 bit
+ * per-millisecond sequence.
+ *
+ * IDs from one node are strictly increasing and IDs across nodes are roughly time ordered, so new rows are
+ * appended at the right edge of the primary key index instead of landing on random pages.
+ *
+ * The last (timestamp, sequence) pair is kept in a single {@link AtomicLong} and advanced with CAS, so there is
+ * no lock on the hot path. When the sequence of a millisecond is used up, or the clock moves backwards, the
+ * generator carries on from the last issued value and borrows ahead of the wall clock instead of blocking.
+ * That state is lost on restart, so the generator is seeded on startup with the highest ID already stored and only
+ * issues IDs of later milliseconds.
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    // 2024-01-01T00:00:00Z, gives us ~69 years of IDs
+    public static final long EPOCH = 1704067200000L;
+
+    static final int NODE_BITS = 10;
+
+    static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeBits;
+
+    private final LongSupplier clock;
+
+    // (millis since EPOCH << SEQUENCE_BITS) | sequence of the last issued ID
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    public SnowflakeIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    @Override
+    public long nextId() {
+        long now = (clock.getAsLong() - EPOCH) << SEQUENCE_BITS;
+        long prev;
+        long next;
+        do {
+            prev = lastState.get();
+            // An exhausted sequence carries into the timestamp bits, i.e. we move on to the next millisecond
+            next = Math.max(now, prev + 1);
+        } while (!lastState.compareAndSet(prev, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+    }
+
+    // Carry on after every ID of the millisecond of the given one, even when that millisecond is ahead of the clock
+    public void seed(long lastIssuedId) {
+        long state = ((lastIssuedId >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS) | SEQUENCE_MASK;
+        lastState.accumulateAndGet(state, Math::max);
+    }
+
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    public static long nodeIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+}
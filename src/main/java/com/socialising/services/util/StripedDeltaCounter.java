@@ -0,0 +1,107 @@
+package com.socialising.services.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Accumulates per-key counter deltas in memory so they can be written to the DB in batches.
+ *
+ * Increments are spread over stripes chosen by the calling thread, so concurrent increments of the same
+ * hot key rarely contend on the same lock. {@link #drain()} swaps every stripe for an empty one and returns
+ * the merged deltas; until {@link #completeDrain()} is called those deltas are still reported by
+ * {@link #pending(Long)}. Draining, restoring and reading the pending delta hold every stripe lock, so a read
+ * sees each delta exactly once. Callers adding the pending delta to a persisted count must not read between
+ * persisting the drained deltas and {@link #completeDrain()}, or they count the deltas twice.
+ */
+public class StripedDeltaCounter {
+
+    private final Stripe[] stripes;
+
+    private final int mask;
+
+    private volatile Map<Long, Long> inFlight = Map.of();
+
+    public StripedDeltaCounter(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Stripe[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public void add(Long key, long delta) {
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & mask];
+        stripe.lock.lock();
+        try {
+            stripe.deltas.merge(key, delta, Long::sum);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // Delta not yet written to the DB for the key, including the batch currently being flushed
+    public long pending(Long key) {
+        lockAll();
+        try {
+            long total = inFlight.getOrDefault(key, 0L);
+            for (Stripe stripe : stripes) {
+                total += stripe.deltas.getOrDefault(key, 0L);
+            }
+            return total;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    // Take every accumulated delta, keys whose deltas cancel out are left out
+    public synchronized Map<Long, Long> drain() {
+        Map<Long, Long> merged = new HashMap<>();
+        lockAll();
+        try {
+            for (Stripe stripe : stripes) {
+                stripe.deltas.forEach((key, delta) -> merged.merge(key, delta, Long::sum));
+                stripe.deltas = new HashMap<>();
+            }
+            merged.values().removeIf(delta -> delta == 0L);
+            inFlight = merged;
+        } finally {
+            unlockAll();
+        }
+        return merged;
+    }
+
+    // Called once the drained deltas are persisted
+    public synchronized void completeDrain() {
+        inFlight = Map.of();
+    }
+
+    // Put drained deltas back when they could not be persisted
+    public synchronized void restore(Map<Long, Long> deltas) {
+        lockAll();
+        try {
+            deltas.forEach((key, delta) -> stripes[0].deltas.merge(key, delta, Long::sum));
+            inFlight = Map.of();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private Map<Long, Long> deltas = new HashMap<>();
+    }
+}
@@ -0,0 +1,14 @@
+-- Engagement counters, maintained by the paths changing comments and the interested and confirmed users of a post
+do $$
+begin
+    if not exists (select 1 from information_schema.columns
+                   where table_schema = 'socialise' and table_name = 'post' and column_name = 'confirmedcount') then
+        alter table socialise.post add column commentcount bigint not null default 0;
+        alter table socialise.post add column interestedcount bigint not null default 0;
+        alter table socialise.post add column confirmedcount bigint not null default 0;
+        update socialise.post p set
+            commentcount = coalesce(cardinality(p.comments), 0),
+            interestedcount = (select count(*) from socialise.user_interestedposts r where r.interestedposts_id = p.postid),
+            confirmedcount = (select count(*) from socialise.user_reminderposts r where r.reminderposts_id = p.postid);
+    end if;
+end $$;
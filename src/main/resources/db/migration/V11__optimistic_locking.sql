@@ -0,0 +1,3 @@
+-- Optimistic locking versions of posts and users
+alter table socialise.post add column if not exists version bigint not null default 0;
+alter table socialise.user add column if not exists version bigint not null default 0;
@@ -0,0 +1,10 @@
+-- Capacity-limited events, users accepted past the capacity wait for a seat in the order they were accepted
+alter table socialise.post add column if not exists capacity integer;
+create table if not exists socialise.post_waitlist (
+    postid bigint not null,
+    username varchar(255) not null,
+    seq bigserial,
+    waitlistedts timestamp not null default now(),
+    primary key (postid, username)
+);
+create index if not exists post_waitlist_order_idx on socialise.post_waitlist (postid, seq);
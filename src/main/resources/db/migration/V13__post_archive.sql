@@ -0,0 +1,31 @@
+-- Ended events are moved out of the post table into an archive, walking the end time index batch by batch
+create index if not exists post_end_idx on socialise.post (postendts);
+create table if not exists socialise.post_archive (
+    postid bigint primary key,
+    version bigint not null default 0,
+    username varchar(255) not null,
+    description varchar(255),
+    createdts timestamp,
+    posttype varchar(255),
+    timetype varchar(255),
+    poststartts timestamp,
+    postendts timestamp not null,
+    location varchar(255),
+    onlyforwomen char(1),
+    tags varchar(255)[],
+    hashtags varchar(255)[],
+    likecount bigint not null default 0,
+    commentcount bigint not null default 0,
+    interestedcount bigint not null default 0,
+    confirmedcount bigint not null default 0,
+    capacity integer,
+    comments bigint[],
+    archivedts timestamp not null default now()
+);
+create index if not exists post_archive_end_idx on socialise.post_archive (postendts);
+create table if not exists socialise.post_archive_confirmed (
+    postid bigint not null,
+    user_id bigint not null,
+    primary key (postid, user_id)
+);
+create index if not exists post_archive_confirmed_user_idx on socialise.post_archive_confirmed (user_id);
@@ -0,0 +1,6 @@
+-- Unique viewers of posts, one HyperLogLog sketch per post merged from memory periodically
+create table if not exists socialise.post_view_sketch (
+    postid bigint primary key,
+    sketch bytea,
+    updatedts timestamp not null default now()
+);
@@ -0,0 +1,8 @@
+-- Posts each user was already served, two generations of a scalable Bloom filter rotated by SeenPostsService
+create table if not exists socialise.user_seen_posts (
+    username varchar(255) primary key,
+    currentfilter bytea,
+    previousfilter bytea,
+    rotatedts timestamp not null default now(),
+    updatedts timestamp not null default now()
+);
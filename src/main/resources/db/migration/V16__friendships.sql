@@ -0,0 +1,36 @@
+-- Friendship graph, one row per edge: a friend request from username to friendusername, or one direction of a
+-- friendship, which is always stored both ways
+create table if not exists socialise.friendship (
+    username varchar(255) not null,
+    friendusername varchar(255) not null,
+    status varchar(16) not null,
+    createdts timestamp not null default now(),
+    primary key (username, friendusername)
+);
+-- Friend requests received by a user, and the edges to remove when a user is deleted
+create index if not exists friendship_friend_idx on socialise.friendship (friendusername, status, username);
+
+-- One-off migration of the old user.friends, friendrequests and friendsrequested array columns
+do $$
+begin
+    if exists (select 1 from information_schema.columns
+               where table_schema = 'socialise' and table_name = 'user' and column_name = 'friends') then
+        insert into socialise.friendship (username, friendusername, status)
+            select u.username, f.friend, 'FRIEND' from socialise.user u, unnest(u.friends) as f(friend)
+            where f.friend in (select username from socialise.user)
+            union
+            select f.friend, u.username, 'FRIEND' from socialise.user u, unnest(u.friends) as f(friend)
+            where f.friend in (select username from socialise.user)
+            on conflict do nothing;
+        insert into socialise.friendship (username, friendusername, status)
+            select u.username, r.requested, 'REQUESTED' from socialise.user u, unnest(u.friendsrequested) as r(requested)
+            where r.requested in (select username from socialise.user) and r.requested <> u.username
+            union
+            select r.requesting, u.username, 'REQUESTED' from socialise.user u, unnest(u.friendrequests) as r(requesting)
+            where r.requesting in (select username from socialise.user) and r.requesting <> u.username
+            on conflict do nothing;
+        alter table socialise.user drop column friends;
+        alter table socialise.user drop column friendrequests;
+        alter table socialise.user drop column friendsrequested;
+    end if;
+end $$;
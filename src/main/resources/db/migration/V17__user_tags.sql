@@ -0,0 +1,22 @@
+-- Tag search over users, tags are matched lowercase through a GIN index on the lowercased array
+create or replace function socialise.lower_tags(tags varchar[]) returns text[]
+    language sql immutable parallel safe
+    as $$ select array(select lower(trim(t)) from unnest(tags) as t) $$;
+create index if not exists user_tags_idx on socialise.user using gin (socialise.lower_tags(tags));
+-- Timeline posts of the tags users have, matched lowercase as well
+create index if not exists post_tags_idx on socialise.post using gin (socialise.lower_tags(tags));
+
+-- Dictionary of the tags users have, lowercase, to find the tags containing a keyword without reading the users
+create table if not exists socialise.user_tag (
+    tag varchar(255) primary key
+);
+-- One-off seed from the tags of every user, skipped once the dictionary has rows, new tags are added as users save them
+do $$
+begin
+    if not exists (select 1 from socialise.user_tag) then
+        insert into socialise.user_tag (tag)
+            select distinct lower(trim(t)) from socialise.user u, unnest(u.tags) as t
+            where trim(t) <> ''
+            on conflict do nothing;
+    end if;
+end $$;
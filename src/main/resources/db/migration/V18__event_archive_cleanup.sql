@@ -0,0 +1,7 @@
+-- Only event posts are archived, the sweep walks the end times of events alone
+create index if not exists post_event_end_idx on socialise.post (postendts) where lower(posttype) = 'event';
+drop index if exists socialise.post_end_idx;
+-- Comments are deleted along with the post they belong to when it is archived
+create index if not exists comment_post_idx on socialise.comment (postid);
+-- Archived posts of a user are deleted with the user
+create index if not exists post_archive_owner_idx on socialise.post_archive (username);
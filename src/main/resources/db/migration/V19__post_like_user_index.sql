@@ -0,0 +1,2 @@
+-- The likes of a deleted user are removed in bulk
+create index if not exists post_like_username_idx on socialise.post_like (username);
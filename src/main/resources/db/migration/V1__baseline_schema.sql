@@ -0,0 +1,108 @@
+-- Tables of the entities as Hibernate mapped them before the schema was migrated by Flyway, created on a new database
+-- Databases that already have them are baselined at version 0 and only see "if not exists" here
+create table if not exists socialise.test (
+    id serial primary key,
+    data bytea
+);
+
+create table if not exists socialise.user (
+    userid bigint primary key,
+    username varchar(255) not null unique,
+    password varchar(255),
+    email varchar(255),
+    phonenumber varchar(255) unique,
+    role varchar(255),
+    firstname varchar(255),
+    lastname varchar(255),
+    bio varchar(255),
+    userdpid bigint,
+    status varchar(255),
+    dob varchar(255),
+    age integer,
+    gender varchar(255),
+    religion varchar(255),
+    maritalstatus varchar(255),
+    city varchar(255),
+    state varchar(255),
+    homecity varchar(255),
+    homestate varchar(255),
+    country varchar(255),
+    education varchar(255),
+    occupation varchar(255),
+    friendsrequested varchar(255)[],
+    friendrequests varchar(255)[],
+    friends varchar(255)[],
+    tags varchar(255)[]
+);
+
+create table if not exists socialise.post (
+    postid bigint primary key,
+    username varchar(255) not null,
+    description varchar(255),
+    createdts timestamp(6),
+    posttype varchar(255),
+    timetype varchar(255),
+    poststartts varchar(255),
+    postendts varchar(255),
+    location varchar(255),
+    onlyforwomen char(1) not null,
+    tags varchar(255)[],
+    hashtags varchar(255)[],
+    likes varchar(255)[],
+    comments bigint[]
+);
+
+-- Interested and confirmed users of posts
+create table if not exists socialise.user_interestedposts (
+    user_id bigint not null,
+    interestedposts_id bigint not null
+);
+create table if not exists socialise.user_reminderposts (
+    user_id bigint not null,
+    reminderposts_id bigint not null
+);
+
+create table if not exists socialise.token (
+    id integer primary key,
+    token varchar(255),
+    tokentype varchar(255),
+    expired boolean not null,
+    revoked boolean not null,
+    userid bigint
+);
+
+create table if not exists socialise.comment (
+    commentid bigint primary key,
+    username varchar(255),
+    postid bigint,
+    description varchar(255),
+    commentlikes varchar(255)[]
+);
+
+create table if not exists socialise.image (
+    imageid bigint primary key,
+    filename varchar(255),
+    mimetype varchar(255),
+    file oid
+);
+
+create table if not exists socialise.tag (
+    tagid bigint primary key,
+    tag varchar(255) unique
+);
+
+create table if not exists socialise.chatroom (
+    id varchar(255) primary key,
+    chatid varchar(255),
+    senderid varchar(255),
+    recipientid varchar(255)
+);
+
+create table if not exists socialise.chatmessage (
+    id varchar(255) primary key,
+    chatid varchar(255),
+    senderid varchar(255),
+    recipientid varchar(255),
+    content varchar(255),
+    timestamp timestamp(6)
+);
@@ -0,0 +1,10 @@
+-- Likes of archived posts move out of post_like with their post, comment rows stay in socialise.comment
+create table if not exists socialise.post_archive_like (
+    postid bigint not null,
+    username varchar(255) not null,
+    likedts timestamp not null,
+    primary key (postid, username)
+);
+create index if not exists post_archive_like_recent_idx on socialise.post_archive_like (postid, likedts desc);
+-- The archived likes of a deleted user are removed in bulk
+create index if not exists post_archive_like_username_idx on socialise.post_archive_like (username);
@@ -0,0 +1,2 @@
+-- Keyset pagination for the Post Feed
+create index if not exists post_feed_idx on socialise.post (createdts desc, postid desc);
@@ -0,0 +1,23 @@
+-- Likes, one row per (post, user), with a like counter on the post
+create table if not exists socialise.post_like (
+    postid bigint not null,
+    username varchar(255) not null,
+    likedts timestamp not null default now(),
+    primary key (postid, username)
+);
+create index if not exists post_like_recent_idx on socialise.post_like (postid, likedts desc);
+
+alter table socialise.post add column if not exists likecount bigint not null default 0;
+
+-- One-off migration of the old post.likes array column
+do $$
+begin
+    if exists (select 1 from information_schema.columns
+               where table_schema = 'socialise' and table_name = 'post' and column_name = 'likes') then
+        insert into socialise.post_like (postid, username)
+            select p.postid, l.username from socialise.post p, unnest(p.likes) as l(username)
+            on conflict do nothing;
+        update socialise.post p set likecount = (select count(*) from socialise.post_like l where l.postid = p.postid);
+        alter table socialise.post drop column likes;
+    end if;
+end $$;
@@ -0,0 +1,2 @@
+-- Snowflake IDs do not fit in an int
+alter table if exists socialise.token alter column id type bigint;
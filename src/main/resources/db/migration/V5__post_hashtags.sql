@@ -0,0 +1,21 @@
+-- Hashtag inverted index, hashtags are stored lowercase without the leading '#'
+create table if not exists socialise.post_hashtag (
+    hashtag varchar(255) not null,
+    postid bigint not null,
+    createdts timestamp not null,
+    primary key (hashtag, postid)
+);
+create index if not exists post_hashtag_recent_idx on socialise.post_hashtag (hashtag, createdts desc, postid desc);
+create index if not exists post_hashtag_postid_idx on socialise.post_hashtag (postid);
+
+-- One-off backfill from the post.hashtags arrays, skipped once the index has rows, new posts are indexed as they are saved
+do $$
+begin
+    if not exists (select 1 from socialise.post_hashtag) then
+        insert into socialise.post_hashtag (hashtag, postid, createdts)
+            select distinct lower(ltrim(trim(h.hashtag), '#')), p.postid, coalesce(p.createdts, now())
+            from socialise.post p, unnest(p.hashtags) as h(hashtag)
+            where trim(h.hashtag) <> '' and ltrim(trim(h.hashtag), '#') <> ''
+            on conflict do nothing;
+    end if;
+end $$;
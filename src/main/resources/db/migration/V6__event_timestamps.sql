@@ -0,0 +1,12 @@
+-- Event start/end times were stored as text, make them real timestamps so they can be range scanned
+do $$
+begin
+    if exists (select 1 from information_schema.columns
+               where table_schema = 'socialise' and table_name = 'post' and column_name = 'poststartts' and data_type <> 'timestamp without time zone') then
+        alter table socialise.post alter column poststartts type timestamp using nullif(trim(poststartts), '')::timestamp;
+        alter table socialise.post alter column postendts type timestamp using nullif(trim(postendts), '')::timestamp;
+    end if;
+end $$;
+-- Upcoming events of a user, and all events in a time window
+create index if not exists post_owner_event_start_idx on socialise.post (username, poststartts, postid) where lower(posttype) = 'event';
+create index if not exists post_event_start_idx on socialise.post (poststartts, postid) where lower(posttype) = 'event';
@@ -0,0 +1,3 @@
+-- Event reminders are loaded window by window from the confirmed users of posts starting soon
+create index if not exists post_start_idx on socialise.post (poststartts);
+create index if not exists user_reminderposts_post_idx on socialise.user_reminderposts (reminderposts_id);
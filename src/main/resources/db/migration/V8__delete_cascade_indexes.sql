@@ -0,0 +1,4 @@
+-- Delete cascades remove the join rows of a post or of a user in bulk
+create index if not exists user_interestedposts_post_idx on socialise.user_interestedposts (interestedposts_id);
+create index if not exists user_interestedposts_user_idx on socialise.user_interestedposts (user_id);
+create index if not exists user_reminderposts_user_idx on socialise.user_reminderposts (user_id);
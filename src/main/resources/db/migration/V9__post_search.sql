@@ -0,0 +1,6 @@
+-- Full-text search over post descriptions and locations, kept in sync by Postgres on every write
+-- The 'simple' configuration only lowercases, so prefix queries match place names and words alike
+alter table socialise.post add column if not exists searchvector tsvector
+    generated always as (setweight(to_tsvector('simple', coalesce(description, '')), 'A')
+                         || setweight(to_tsvector('simple', coalesce(location, '')), 'B')) stored;
+create index if not exists post_search_idx on socialise.post using gin (searchvector);
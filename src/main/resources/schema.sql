@@ -1,4 +0,0 @@
-create table if not exists socialise.test (
-    id serial primary key,
-    data bytea
-);
\ No newline at end of file
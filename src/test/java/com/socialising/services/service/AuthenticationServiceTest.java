@@ -10,6 +10,7 @@ import com.socialising.services.model.auth.RegisterRequest;
 import com.socialising.services.model.token.Token;
 import com.socialising.services.repository.TokenRepository;
 import com.socialising.services.repository.UserRepository;
+import com.socialising.services.util.IdGenerator;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -54,6 +55,15 @@ class AuthenticationServiceTest {
     @Mock
     private OtpService otpService;
 
+    @Mock
+    private IdGenerator idGenerator;
+
+    @Mock
+    private AutocompleteService autocompleteService;
+
+    @Mock
+    private UserSuggestionService userSuggestionService;
+
     @InjectMocks
     private AuthenticationService authenticationService;
 
@@ -104,6 +114,8 @@ class AuthenticationServiceTest {
         verify(jwtService, times(1)).generateToken(user);
         verify(jwtService, times(1)).generateRefreshToken(user);
         verify(passwordEncoder, times(1)).encode(request.getPassword());
+        verify(autocompleteService, times(1)).index(user);
+        verify(userSuggestionService, times(1)).profileChanged(user);
     }
 
     // authenticate
@@ -0,0 +1,194 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.AutocompleteDTO;
+import com.socialising.services.dto.UserSearchTerms;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class AutocompleteServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private AutocompleteService autocompleteService;
+
+    private final List<UserSearchTerms> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // Pages of 2 users while building
+        autocompleteService = new AutocompleteService(userRepository, 2);
+
+        when(userRepository.findSearchTermsAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            return users.stream().filter(user -> user.getUserId() > after).limit(2).toList();
+        });
+    }
+
+    private void addUser(Long userId, String username, String firstName, String lastName, String[] tags) {
+        users.add(new UserSearchTerms() {
+            public Long getUserId() { return userId; }
+            public String getUsername() { return username; }
+            public String getFirstName() { return firstName; }
+            public String getLastName() { return lastName; }
+            public String[] getTags() { return tags; }
+        });
+    }
+
+    private List<String> usernames(List<AutocompleteDTO> matches) {
+        return matches.stream().map(AutocompleteDTO::getUsername).toList();
+    }
+
+    @Test
+    public void should_build_index_page_by_page() {
+        // Given
+        addUser(1L, "johnDoe", "John", "Doe", new String[]{"football"});
+        addUser(2L, "janeRoe", "Jane", "Roe", null);
+        addUser(3L, "mike", "Mike", "Johnson", new String[]{"club-hopping"});
+
+        // When
+        autocompleteService.build();
+
+        // Then
+        List<AutocompleteDTO> matches = autocompleteService.complete("JOHN", 10);
+        assertEquals(List.of("johnDoe", "mike"), usernames(matches));
+        assertEquals("John", matches.get(0).getFirstName());
+        assertEquals("Johnson", matches.get(1).getLastName());
+        verify(userRepository, times(2)).findSearchTermsAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void should_match_words_of_tags_and_names() {
+        // Given
+        addUser(1L, "alice", "Alice", "Mary Smith", new String[]{"club-hopping"});
+        autocompleteService.build();
+
+        // Then
+        assertEquals(List.of("alice"), usernames(autocompleteService.complete("hop", 10)));
+        assertEquals(List.of("alice"), usernames(autocompleteService.complete("club-h", 10)));
+        assertEquals(List.of("alice"), usernames(autocompleteService.complete("mar", 10)));
+        assertTrue(autocompleteService.complete("lice", 10).isEmpty());
+        assertTrue(autocompleteService.complete("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void should_match_every_word_of_query() {
+        // Given
+        addUser(1L, "johnDoe", "John", "Doe", null);
+        addUser(2L, "johnny", "Johnny", "Smith", null);
+        addUser(3L, "dora", "Dora", "Lee", null);
+        autocompleteService.build();
+
+        // Then
+        assertEquals(List.of("johnDoe"), usernames(autocompleteService.complete("john do", 10)));
+        assertEquals(List.of("johnny"), usernames(autocompleteService.complete("smi jo", 10)));
+    }
+
+    @Test
+    public void should_limit_matches() {
+        // Given
+        for (long i = 1; i <= 30; i++) {
+            addUser(i, "user" + i, null, null, null);
+        }
+        autocompleteService.build();
+
+        // Then
+        assertEquals(2, autocompleteService.complete("user", 2).size());
+        assertEquals(20, autocompleteService.complete("user", 100).size());
+        assertEquals(List.of("user1"), usernames(autocompleteService.complete("user", 0)));
+    }
+
+    @Test
+    public void should_update_terms_of_user_incrementally() {
+        // Given
+        User user = User.builder().username("alice").firstName("Alice").tags(new String[]{"chess"}).build();
+        autocompleteService.index(user);
+
+        // When
+        user.setTags(new String[]{"football"});
+        autocompleteService.index(user);
+
+        // Then
+        assertTrue(autocompleteService.complete("che", 10).isEmpty());
+        assertEquals(List.of("alice"), usernames(autocompleteService.complete("foot", 10)));
+    }
+
+    @Test
+    public void should_forget_removed_users() {
+        // Given
+        autocompleteService.index(User.builder().username("alice").firstName("Alice").build());
+        autocompleteService.index(User.builder().username("alicia").firstName("Alicia").build());
+
+        // When
+        autocompleteService.remove("alice");
+
+        // Then
+        assertEquals(List.of("alicia"), usernames(autocompleteService.complete("ali", 10)));
+    }
+
+    @Test
+    public void should_keep_changes_made_while_building_over_older_pages() {
+        // Given
+        addUser(1L, "alice", "Alice", null, new String[]{"chess"});
+        addUser(2L, "bob", "Bob", null, null);
+
+        // Mock
+        // alice is updated and bob deleted after the page holding them was read
+        when(userRepository.findSearchTermsAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            List<UserSearchTerms> page = users.stream().filter(user -> user.getUserId() > after).limit(2).toList();
+            if (after == Long.MIN_VALUE) {
+                autocompleteService.index(User.builder().username("alice").firstName("Alice").tags(new String[]{"football"}).build());
+                autocompleteService.remove("bob");
+            }
+            return page;
+        });
+
+        // When
+        autocompleteService.build();
+
+        // Then
+        assertTrue(autocompleteService.complete("che", 10).isEmpty());
+        assertEquals(List.of("alice"), usernames(autocompleteService.complete("foot", 10)));
+        assertTrue(autocompleteService.complete("bob", 10).isEmpty());
+    }
+
+    @Test
+    public void should_build_again_when_db_is_unreachable() {
+        // Given
+        addUser(1L, "alice", "Alice", null, null);
+
+        // Mock
+        when(userRepository.findSearchTermsAfter(anyLong(), any(Pageable.class)))
+                .thenThrow(new DataAccessResourceFailureException("DB down"))
+                .thenReturn(users);
+
+        // When
+        autocompleteService.build();
+        autocompleteService.build();
+        autocompleteService.build();
+
+        // Then
+        assertEquals(List.of("alice"), usernames(autocompleteService.complete("al", 10)));
+        verify(userRepository, times(2)).findSearchTermsAfter(anyLong(), any(Pageable.class));
+    }
+}
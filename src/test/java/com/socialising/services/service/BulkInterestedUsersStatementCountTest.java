@@ -0,0 +1,154 @@
+package com.socialising.services.service;
+
+import com.socialising.services.config.JwtService;
+import com.socialising.services.constants.InterestedUserAction;
+import com.socialising.services.constants.InterestedUserResult;
+import com.socialising.services.constants.Role;
+import com.socialising.services.dto.InterestedUserResultDTO;
+import com.socialising.services.dto.InterestedUsersBatchDTO;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Counts the statements sent to the database by a bulk accept or reject of 500 interested users
+// Needs the Postgres database of the application and is skipped when it can not be reached
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.datasource.hikari.connection-timeout=1000"
+})
+@RunWith(SpringRunner.class)
+class BulkInterestedUsersStatementCountTest {
+
+    private static final int USERS = 500;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    private Statistics statistics;
+
+    private User ownerUser;
+
+    private Post post;
+
+    private final List<User> interestedUsers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Assumptions.assumeTrue(databaseReachable(), "Postgres is not reachable");
+
+        long base = System.nanoTime();
+        ownerUser = userRepository.save(User.builder().userId(base).username("bulk" + base).role(Role.USER).build());
+        post = postRepository.save(Post.builder()
+                .postId(base)
+                .ownerUser(ownerUser)
+                .description("Bulk post")
+                .createdTs(new Timestamp(System.currentTimeMillis()))
+                .postType("event")
+                .onlyForWomen('N')
+                .build());
+        for (int i = 0; i < USERS; i++) {
+            interestedUsers.add(User.builder()
+                    .userId(base + 1 + i)
+                    .username("bulk" + (base + 1 + i))
+                    .role(Role.USER)
+                    .requestedPosts(new ArrayList<>(List.of(post)))
+                    .build());
+        }
+        userRepository.saveAll(interestedUsers);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ownerUser == null) {
+            return;
+        }
+        postRepository.deleteInterestedUsersOfPost(post.getPostId());
+        postRepository.deleteConfirmedUsersOfPost(post.getPostId());
+        postRepository.deleteById(post.getPostId());
+        userRepository.deleteAll(interestedUsers);
+        userRepository.deleteById(ownerUser.getUserId());
+    }
+
+    @Test
+    public void should_accept_500_users_in_a_few_statements() {
+        // When
+        List<InterestedUserResultDTO> results = postService.updateInterestedUsers(post.getPostId(),
+                batch(InterestedUserAction.ACCEPT), "Bearer " + jwtService.generateToken(ownerUser));
+
+        // Then
+        long statements = statistics.getPrepareStatementCount();
+        assertEquals(USERS, results.size());
+        assertTrue(results.stream().allMatch(result -> result.getResult() == InterestedUserResult.ACCEPTED));
+        assertTrue(statements < 10, statements + " statements");
+        assertEquals(USERS, postRepository.findConfirmedUsernames(post.getPostId()).size());
+        assertEquals(0, postRepository.findInterestedUsernames(post.getPostId()).size());
+    }
+
+    @Test
+    public void should_reject_500_users_in_a_few_statements() {
+        // When
+        List<InterestedUserResultDTO> results = postService.updateInterestedUsers(post.getPostId(),
+                batch(InterestedUserAction.REJECT), "Bearer " + jwtService.generateToken(ownerUser));
+
+        // Then
+        long statements = statistics.getPrepareStatementCount();
+        assertEquals(USERS, results.size());
+        assertTrue(results.stream().allMatch(result -> result.getResult() == InterestedUserResult.REJECTED));
+        assertTrue(statements < 10, statements + " statements");
+        assertEquals(0, postRepository.findInterestedUsernames(post.getPostId()).size());
+        assertEquals(0, postRepository.findConfirmedUsernames(post.getPostId()).size());
+    }
+
+    private InterestedUsersBatchDTO batch(InterestedUserAction action) {
+        return InterestedUsersBatchDTO.builder()
+                .action(action)
+                .usernames(interestedUsers.stream().map(User::getUsername).toList())
+                .build();
+    }
+
+    private boolean databaseReachable() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isValid(1);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
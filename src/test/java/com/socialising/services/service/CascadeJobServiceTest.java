@@ -0,0 +1,127 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.CascadeJobDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class CascadeJobServiceTest {
+
+    // Jobs are run when the test says so
+    private final List<Runnable> pendingJobs = new ArrayList<>();
+
+    // Chunks of 2 rows, background above 5 rows
+    private final CascadeJobService cascadeJobService =
+            new CascadeJobService(TransactionOperations.withoutTransaction(), pendingJobs::add, 2, 5);
+
+    // Step deleting up to a chunk of the given rows per call
+    private IntSupplier deleting(AtomicInteger rows) {
+        return () -> {
+            int deleted = Math.min(2, rows.get());
+            rows.addAndGet(-deleted);
+            return deleted;
+        };
+    }
+
+    @Test
+    public void should_run_in_background_above_threshold() {
+        assertFalse(cascadeJobService.runInBackground(5));
+        assertTrue(cascadeJobService.runInBackground(6));
+    }
+
+    @Test
+    public void should_run_each_step_until_nothing_is_left_then_finish() {
+        // Given
+        AtomicInteger interestedRows = new AtomicInteger(5);
+        AtomicInteger confirmedRows = new AtomicInteger(3);
+        AtomicBoolean finished = new AtomicBoolean();
+
+        // When
+        CascadeJobDTO submitted = cascadeJobService.submit("post", 10L, 8,
+                List.of(deleting(interestedRows), deleting(confirmedRows)), () -> finished.set(true));
+        pendingJobs.forEach(Runnable::run);
+
+        // Then
+        assertEquals(CascadeJobService.RUNNING, submitted.getStatus());
+        CascadeJobDTO job = cascadeJobService.getJob("post", 10L);
+        assertEquals(CascadeJobService.COMPLETED, job.getStatus());
+        assertEquals(8, job.getTotalRows());
+        assertEquals(8, job.getProcessedRows());
+        assertNotNull(job.getFinishedTs());
+        assertEquals(0, interestedRows.get());
+        assertEquals(0, confirmedRows.get());
+        assertTrue(finished.get());
+    }
+
+    @Test
+    public void should_report_failed_job_and_not_finish() {
+        // Given
+        AtomicBoolean finished = new AtomicBoolean();
+        IntSupplier failing = () -> {
+            throw new IllegalStateException("Connection refused");
+        };
+
+        // When
+        cascadeJobService.submit("user", 1L, 10, List.of(failing), () -> finished.set(true));
+        pendingJobs.forEach(Runnable::run);
+
+        // Then
+        CascadeJobDTO job = cascadeJobService.getJob("user", 1L);
+        assertEquals(CascadeJobService.FAILED, job.getStatus());
+        assertEquals("Connection refused", job.getError());
+        assertFalse(finished.get());
+    }
+
+    @Test
+    public void should_not_start_second_job_for_same_target_while_running() {
+        // When
+        cascadeJobService.submit("post", 10L, 8, List.of(), () -> {});
+        CascadeJobDTO second = cascadeJobService.submit("post", 10L, 8, List.of(), () -> {});
+
+        // Then
+        assertEquals(1, pendingJobs.size());
+        assertEquals(CascadeJobService.RUNNING, second.getStatus());
+    }
+
+    @Test
+    public void should_step_over_usernames_in_chunks() {
+        // Given
+        String[] friends = new String[]{"a", "b", "c", "d", "e"};
+        List<String[]> chunks = new ArrayList<>();
+        IntSupplier step = cascadeJobService.inChunks(friends, chunk -> {
+            chunks.add(chunk);
+            return 0;
+        });
+
+        // When
+        int total = 0;
+        int processed;
+        while ((processed = step.getAsInt()) > 0) {
+            total += processed;
+        }
+
+        // Then
+        assertEquals(5, total);
+        assertEquals(3, chunks.size());
+        assertArrayEquals(new String[]{"e"}, chunks.get(2));
+    }
+
+    @Test
+    public void should_give_no_job_for_unknown_target() {
+        assertNull(cascadeJobService.getJob("post", 99L));
+    }
+}
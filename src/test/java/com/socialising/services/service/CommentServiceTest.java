@@ -12,6 +12,7 @@ import com.socialising.services.model.User;
 import com.socialising.services.repository.CommentRepository;
 import com.socialising.services.repository.PostRepository;
 import com.socialising.services.repository.UserRepository;
+import com.socialising.services.util.IdGenerator;
 import org.junit.jupiter.api.*;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -21,8 +22,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.apache.commons.lang3.ArrayUtils;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -47,6 +50,24 @@ class CommentServiceTest {
     @Mock
     private CommentMapper commentMapper;
 
+    @Mock
+    private IdGenerator idGenerator;
+
+    @Mock
+    private PostCacheService postCacheService;
+
+    @Mock
+    private EngagementCounterService engagementCounterService;
+
+    @Mock
+    private OptimisticRetryService optimisticRetryService;
+
+    @Mock
+    private RequestIdentityMap requestIdentityMap;
+
+    @Mock
+    private PostArchiveService postArchiveService;
+
     @InjectMocks
     private CommentService commentService;
 
@@ -67,6 +88,13 @@ class CommentServiceTest {
 
     @BeforeEach
     public void setUp() {
+        // The post cache is disabled, reads go straight to the repository
+        when(postCacheService.get(any())).thenAnswer(invocation -> postRepository.findById(invocation.getArgument(0)));
+        // Mutations run once, as they do when nothing conflicts
+        when(optimisticRetryService.run(anyString(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        // Users are read from the repository on every lookup, as outside a request
+        when(requestIdentityMap.findUserByUsername(any())).thenAnswer(invocation -> userRepository.findByUsername(invocation.getArgument(0)));
+
         testCommentId = 1L;
         secondTestCommentId = 4L;
         testUserId = 2L;
@@ -96,8 +124,8 @@ class CommentServiceTest {
                 .description("This is test post")
                 .postType("general")
                 .timeType("later")
-                .postStartTs("2024-07-13")
-                .postEndTs("2024-08-15")
+                .postStartTs(Timestamp.valueOf("2024-07-13 00:00:00"))
+                .postEndTs(Timestamp.valueOf("2024-08-15 00:00:00"))
                 .location("Amity")
                 .onlyForWomen('N')
                 .build();
@@ -192,6 +220,7 @@ class CommentServiceTest {
         assertEquals(testUsername, responseCommentDTO.getUsername());
         verify(postRepository, times(1)).save(any(Post.class));
         verify(commentRepository, times(1)).save(any(Comment.class));
+        verify(engagementCounterService, times(1)).commentAdded(testPostId);
     }
 
 //    @Test
@@ -240,7 +269,7 @@ class CommentServiceTest {
 
         // Then
         assertNull(responseCommentList);
-        verify(postRepository, times(2)).findById(testPostId);
+        verify(postRepository, times(1)).findById(testPostId);
         verify(commentRepository, never()).findById(anyLong());
     }
 
@@ -262,10 +291,29 @@ class CommentServiceTest {
         assertEquals(2, responseCommentList.size());
         assertEquals("This is a test comment", responseCommentList.get(0).getDescription());
         assertEquals("This is second test comment", responseCommentList.get(1).getDescription());
-        verify(postRepository, times(2)).findById(testPostId);
+        verify(postRepository, times(1)).findById(testPostId);
         verify(commentRepository, times(2)).findById(anyLong());
     }
 
+    @Test
+    public void should_get_comments_of_archived_post() {
+        // Given
+        testPost.setComments(new Long[]{testCommentId});
+
+        // Mock
+        when(postRepository.findById(testPostId)).thenReturn(Optional.empty());
+        when(postArchiveService.getArchivedPost(testPostId)).thenReturn(Optional.of(testPost));
+        when(commentRepository.findById(testCommentId)).thenReturn(Optional.of(testComment));
+
+        // When
+        ArrayList<CommentResponseDTO> responseCommentList = commentService.getAllCommentsOnPost(testPostId);
+
+        // Then
+        assertNotNull(responseCommentList);
+        assertEquals(1, responseCommentList.size());
+        assertEquals("This is a test comment", responseCommentList.get(0).getDescription());
+    }
+
     // deleteCommentOnPost
 
     @Test
@@ -348,6 +396,7 @@ class CommentServiceTest {
         verify(commentRepository, times(2)).findById(testCommentId);
         verify(postRepository, times(1)).save(testPost);
         verify(commentRepository, times(1)).deleteById(testCommentId);
+        verify(engagementCounterService, times(1)).commentDeleted(testPostId);
     }
     @Test
     public void test_delete_comment_when_exception_occurs() {
@@ -0,0 +1,206 @@
+package com.socialising.services.service;
+
+import com.socialising.services.config.JwtService;
+import com.socialising.services.constants.Role;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.FriendshipRepository;
+import com.socialising.services.repository.PostHashtagRepository;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Fires parallel updates at one post and one user and checks none of them is lost
+// Needs the Postgres database of the application and is skipped when it can not be reached
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.connection-timeout=1000",
+        "application.optimistic-retry.max-attempts=50"
+})
+@RunWith(SpringRunner.class)
+class ConcurrentUpdateStressTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentUpdateStressTest.class);
+
+    private static final int THREADS = 8;
+
+    private static final int UPDATES_PER_THREAD = 10;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PostHashtagRepository postHashtagRepository;
+
+    @Autowired
+    private FriendshipRepository friendshipRepository;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private OptimisticRetryService optimisticRetryService;
+
+    private User ownerUser;
+
+    private Post post;
+
+    private final List<User> requestingUsers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Assumptions.assumeTrue(databaseReachable(), "Postgres is not reachable");
+
+        long base = System.nanoTime();
+        ownerUser = userRepository.save(User.builder().userId(base).username("stress" + base).role(Role.USER).build());
+        for (int i = 0; i < THREADS * UPDATES_PER_THREAD; i++) {
+            requestingUsers.add(userRepository.save(User.builder()
+                    .userId(base + 1 + i)
+                    .username("stress" + (base + 1 + i))
+                    .role(Role.USER)
+                    .build()));
+        }
+        post = postRepository.save(Post.builder()
+                .postId(base)
+                .ownerUser(ownerUser)
+                .description("Stress post")
+                .createdTs(new Timestamp(System.currentTimeMillis()))
+                .postType("general")
+                .onlyForWomen('N')
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ownerUser == null) {
+            return;
+        }
+        postHashtagRepository.deleteAllByPostId(post.getPostId());
+        friendshipRepository.deleteAllOfUser(ownerUser.getUsername());
+        postRepository.deleteById(post.getPostId());
+        userRepository.deleteAll(requestingUsers);
+        userRepository.deleteById(ownerUser.getUserId());
+    }
+
+    @Test
+    public void should_keep_every_hashtag_added_in_parallel_to_a_post() throws Exception {
+        // Given
+        long conflictsBefore = optimisticRetryService.getConflictCount();
+
+        // When
+        long nanos = runInParallel(update -> postService.addHashtags(post.getPostId(), new String[]{"stress" + update}));
+
+        // Then
+        int updates = THREADS * UPDATES_PER_THREAD;
+        assertEquals(updates, postRepository.findById(post.getPostId()).get().getHashtags().length);
+        log.info("addHashtags: {} updates/s, {} conflicts retried", updates * 1_000_000_000L / nanos,
+                optimisticRetryService.getConflictCount() - conflictsBefore);
+    }
+
+    @Test
+    public void should_keep_every_friend_request_sent_in_parallel_to_a_user() throws Exception {
+        // When
+        long nanos = runInParallel(update -> userService.sendFriendRequest(ownerUser.getUsername(),
+                "Bearer " + jwtService.generateToken(requestingUsers.get(update))));
+
+        // Then
+        int updates = THREADS * UPDATES_PER_THREAD;
+        assertEquals(updates, friendshipRepository.findRequestingUsernames(ownerUser.getUsername(), "", Integer.MAX_VALUE).size());
+        log.info("sendFriendRequest: {} updates/s", updates * 1_000_000_000L / nanos);
+    }
+
+    // Load-modify-save without the retry, the way posts were updated before: every conflict was a lost update
+    @Test
+    public void should_fail_instead_of_overwriting_when_updates_are_not_retried() throws Exception {
+        // Given
+        AtomicInteger conflicts = new AtomicInteger();
+
+        // When
+        long nanos = runInParallel(update -> {
+            try {
+                Post stored = postRepository.findById(post.getPostId()).get();
+                String[] hashtags = stored.getHashtags() != null ? stored.getHashtags() : new String[]{};
+                String[] updated = Arrays.copyOf(hashtags, hashtags.length + 1);
+                updated[hashtags.length] = "stress" + update;
+                stored.setHashtags(updated);
+                postRepository.save(stored);
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.incrementAndGet();
+            }
+        });
+
+        // Then
+        int updates = THREADS * UPDATES_PER_THREAD;
+        assertEquals(updates - conflicts.get(), postRepository.findById(post.getPostId()).get().getHashtags().length);
+        log.info("Unretried: {} updates/s, {} of {} updates rejected as conflicts", updates * 1_000_000_000L / nanos,
+                conflicts.get(), updates);
+    }
+
+    private long runInParallel(Update update) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                    update.apply(thread * UPDATES_PER_THREAD + i);
+                }
+                return null;
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        executor.shutdown();
+        return Math.max(1, elapsed);
+    }
+
+    private interface Update {
+        void apply(int update) throws Exception;
+    }
+
+    private boolean databaseReachable() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isValid(1);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
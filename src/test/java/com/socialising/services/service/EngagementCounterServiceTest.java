@@ -0,0 +1,198 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.PostStats;
+import com.socialising.services.dto.PostStatsDTO;
+import com.socialising.services.repository.PostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class EngagementCounterServiceTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private PostCacheService postCacheService;
+
+    @Mock
+    private PostLikeService postLikeService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private EngagementCounterService engagementCounterService;
+
+    private final Long postId = 10L;
+
+    @BeforeEach
+    void setUp() {
+        // 2 posts per reconciliation page
+        engagementCounterService = new EngagementCounterService(postRepository, postCacheService, postLikeService, transactionManager, 2);
+
+        when(postLikeService.readLikeCounts(any())).thenAnswer(invocation -> invocation.getArgument(0, Supplier.class).get());
+        when(postLikeService.withLikeCountsFlushed(any())).thenAnswer(invocation -> invocation.getArgument(0, Supplier.class).get());
+    }
+
+    @Test
+    public void should_move_accepted_interested_users_to_confirmed_in_one_update() {
+        // When
+        engagementCounterService.interestedUsersConfirmed(postId, 3, 2);
+
+        // Then
+        verify(postRepository, times(1)).addToEngagementCounts(postId, 0, -3, 2);
+        verify(postCacheService, times(1)).invalidate(postId);
+    }
+
+    @Test
+    public void should_count_confirmed_user_removed() {
+        // When
+        engagementCounterService.confirmedUserRemoved(postId);
+
+        // Then
+        verify(postRepository, times(1)).addToEngagementCounts(postId, 0, 0, -1);
+    }
+
+    @Test
+    public void should_count_comments_added_and_deleted() {
+        // When
+        engagementCounterService.commentAdded(postId);
+        engagementCounterService.commentDeleted(postId);
+
+        // Then
+        verify(postRepository, times(1)).addToEngagementCounts(postId, 1, 0, 0);
+        verify(postRepository, times(1)).addToEngagementCounts(postId, -1, 0, 0);
+        verify(postCacheService, times(2)).invalidate(postId);
+    }
+
+    @Test
+    public void should_get_stats_in_order_asked_with_pending_likes() {
+        // Mock
+        when(postRepository.findStatsByPostIdIn(List.of(11L, 10L, 12L)))
+                .thenReturn(List.of(stats(10L, 3L, 2L, 1L, 4L), stats(11L, 0L, 0L, 0L, 0L)));
+        when(postLikeService.getPendingLikeCount(10L)).thenReturn(2L);
+
+        // When
+        List<PostStatsDTO> stats = engagementCounterService.getStats(List.of(11L, 10L, 12L, 10L));
+
+        // Then
+        assertEquals(2, stats.size());
+        assertEquals(11L, stats.get(0).getPostId());
+        PostStatsDTO postStats = stats.get(1);
+        assertEquals(10L, postStats.getPostId());
+        assertEquals(5L, postStats.getLikeCount());
+        assertEquals(2L, postStats.getCommentCount());
+        assertEquals(1L, postStats.getInterestedCount());
+        assertEquals(4L, postStats.getConfirmedCount());
+    }
+
+    @Test
+    public void should_get_stats_of_at_most_100_posts() {
+        // Given
+        List<Long> postIds = new ArrayList<>();
+        for (long id = 1; id <= 150; id++) {
+            postIds.add(id);
+        }
+
+        // When
+        engagementCounterService.getStats(postIds);
+
+        // Then
+        verify(postRepository, times(1)).findStatsByPostIdIn(argThat(ids -> ids.size() == 100));
+    }
+
+    @Test
+    public void should_not_query_stats_without_ids() {
+        // When
+        List<PostStatsDTO> stats = engagementCounterService.getStats(List.of());
+
+        // Then
+        assertTrue(stats.isEmpty());
+        verify(postRepository, never()).findStatsByPostIdIn(any());
+    }
+
+    @Test
+    public void should_reconcile_posts_page_by_page_with_likes_flushed() {
+        // Mock
+        when(postRepository.findLastPostIdOfPageAfter(Long.MIN_VALUE, 2)).thenReturn(20L);
+        when(postRepository.findLastPostIdOfPageAfter(20L, 2)).thenReturn(30L);
+        when(postRepository.findLastPostIdOfPageAfter(30L, 2)).thenReturn(null);
+        when(postRepository.reconcileEngagementCounts(Long.MIN_VALUE, 20L)).thenReturn(List.of(20L));
+        when(postRepository.reconcileEngagementCounts(20L, 30L)).thenReturn(List.of(25L, 30L));
+
+        // When
+        int repaired = engagementCounterService.reconcile();
+
+        // Then
+        assertEquals(3, repaired);
+        InOrder inOrder = inOrder(postLikeService, postRepository, transactionManager, postCacheService);
+        inOrder.verify(postLikeService).withLikeCountsFlushed(any());
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(postRepository).lockPostsOfPage(Long.MIN_VALUE, 20L);
+        inOrder.verify(postRepository).reconcileEngagementCounts(Long.MIN_VALUE, 20L);
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(postCacheService).invalidateAll(List.of(20L));
+        inOrder.verify(postLikeService).withLikeCountsFlushed(any());
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(postRepository).lockPostsOfPage(20L, 30L);
+        inOrder.verify(postRepository).reconcileEngagementCounts(20L, 30L);
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(postCacheService).invalidateAll(List.of(25L, 30L));
+    }
+
+    @Test
+    public void should_stop_reconciling_when_database_fails() {
+        // Mock
+        when(postRepository.findLastPostIdOfPageAfter(Long.MIN_VALUE, 2)).thenReturn(20L);
+        when(postRepository.findLastPostIdOfPageAfter(20L, 2)).thenThrow(new DataAccessResourceFailureException("down"));
+        when(postRepository.reconcileEngagementCounts(Long.MIN_VALUE, 20L)).thenReturn(List.of(20L));
+
+        // When
+        int repaired = engagementCounterService.reconcile();
+
+        // Then
+        assertEquals(1, repaired);
+    }
+
+    @Test
+    public void should_not_reconcile_page_when_likes_cannot_be_flushed() {
+        // Mock
+        when(postRepository.findLastPostIdOfPageAfter(Long.MIN_VALUE, 2)).thenReturn(20L);
+        doThrow(new DataAccessResourceFailureException("down")).when(postLikeService).withLikeCountsFlushed(any());
+
+        // When
+        int repaired = engagementCounterService.reconcile();
+
+        // Then
+        assertEquals(0, repaired);
+        verify(postRepository, never()).reconcileEngagementCounts(anyLong(), anyLong());
+    }
+
+    private static PostStats stats(Long postId, Long likes, Long comments, Long interested, Long confirmed) {
+        return new PostStats() {
+            public Long getPostId() { return postId; }
+            public Long getLikeCount() { return likes; }
+            public Long getCommentCount() { return comments; }
+            public Long getInterestedCount() { return interested; }
+            public Long getConfirmedCount() { return confirmed; }
+        };
+    }
+}
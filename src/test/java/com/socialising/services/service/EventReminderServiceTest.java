@@ -0,0 +1,260 @@
+package com.socialising.services.service;
+
+import com.socialising.services.constants.Role;
+import com.socialising.services.dto.EventReminderDTO;
+import com.socialising.services.dto.PendingReminder;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.PostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.socialising.services.service.PostSummaries.summariesOf;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class EventReminderServiceTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private static final long HOUR = 60 * MINUTE;
+
+    private static final long START = 1_720_000_000_000L;
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    private final AtomicLong clock = new AtomicLong(START);
+
+    private EventReminderService eventReminderService;
+
+    private Post testPost;
+
+    private final String otherUsername = "otherUser";
+
+    @BeforeEach
+    void setUp() {
+        // Remind an hour before the start, keep a day of reminders in memory
+        eventReminderService = new EventReminderService(postRepository, messagingTemplate, HOUR, 24 * HOUR, 1000, clock::get);
+
+        User ownerUser = User.builder()
+                .userId(1L)
+                .username("ownerUser")
+                .role(Role.USER)
+                .build();
+
+        User otherUser = User.builder()
+                .userId(2L)
+                .username(otherUsername)
+                .role(Role.USER)
+                .build();
+
+        testPost = Post.builder()
+                .postId(10L)
+                .ownerUser(ownerUser)
+                .description("Football at the park")
+                .location("Delhi")
+                .postStartTs(new Timestamp(START + 3 * HOUR))
+                .confirmedUsers(new ArrayList<>(List.of(otherUser)))
+                .onlyForWomen('N')
+                .build();
+    }
+
+    private PendingReminder pending(Long postId, String username, long postStartTs) {
+        return new PendingReminder() {
+            public Long getPostId() { return postId; }
+            public String getUsername() { return username; }
+            public Timestamp getPostStartTs() { return new Timestamp(postStartTs); }
+        };
+    }
+
+    private void loadFirstWindow() {
+        when(postRepository.findConfirmedUsersOfPostsStartingBetween(any(), any())).thenReturn(List.of());
+        eventReminderService.loadUpcomingReminders();
+    }
+
+    @Test
+    public void should_load_reminders_of_next_window_and_send_them_before_start() {
+        // Mock
+        when(postRepository.findConfirmedUsersOfPostsStartingBetween(any(), any()))
+                .thenReturn(List.of(pending(10L, otherUsername, START + 3 * HOUR)));
+        when(postRepository.findSummariesByPostIdIn(any())).thenReturn(summariesOf(testPost));
+
+        // When
+        eventReminderService.loadUpcomingReminders();
+        clock.set(START + 2 * HOUR - 1000);
+        eventReminderService.sendDueReminders();
+        clock.set(START + 2 * HOUR);
+        eventReminderService.sendDueReminders();
+
+        // Then
+        ArgumentCaptor<EventReminderDTO> reminder = ArgumentCaptor.forClass(EventReminderDTO.class);
+        verify(postRepository, times(1)).findConfirmedUsersOfPostsStartingBetween(
+                new Timestamp(START + HOUR), new Timestamp(START + 25 * HOUR));
+        verify(messagingTemplate, times(1)).convertAndSendToUser(eq(otherUsername), eq("/queue/reminders"), reminder.capture());
+        assertEquals(10L, reminder.getValue().getPostId());
+        assertEquals("ownerUser", reminder.getValue().getOwnerUsername());
+        assertEquals("Delhi", reminder.getValue().getLocation());
+        assertEquals(0, eventReminderService.pendingReminders());
+    }
+
+    @Test
+    public void should_only_read_new_part_of_window_on_next_load() {
+        // Given
+        loadFirstWindow();
+
+        // When
+        clock.set(START + 10 * MINUTE);
+        eventReminderService.loadUpcomingReminders();
+
+        // Then
+        verify(postRepository, times(1)).findConfirmedUsersOfPostsStartingBetween(
+                new Timestamp(START + 25 * HOUR), new Timestamp(START + 25 * HOUR + 10 * MINUTE));
+    }
+
+    @Test
+    public void should_read_window_again_when_load_fails() {
+        // Mock
+        when(postRepository.findConfirmedUsersOfPostsStartingBetween(any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(List.of());
+
+        // When
+        eventReminderService.loadUpcomingReminders();
+        eventReminderService.loadUpcomingReminders();
+
+        // Then
+        verify(postRepository, times(2)).findConfirmedUsersOfPostsStartingBetween(
+                new Timestamp(START + HOUR), new Timestamp(START + 25 * HOUR));
+    }
+
+    @Test
+    public void should_schedule_reminder_of_confirmed_user_within_loaded_window() {
+        // Given
+        loadFirstWindow();
+
+        // When
+        eventReminderService.schedule(testPost, otherUsername);
+
+        // Then
+        assertEquals(1, eventReminderService.pendingReminders());
+    }
+
+    @Test
+    public void should_leave_reminder_beyond_loaded_window_to_loader() {
+        // Given
+        loadFirstWindow();
+        testPost.setPostStartTs(new Timestamp(START + 48 * HOUR));
+
+        // When
+        eventReminderService.schedule(testPost, otherUsername);
+
+        // Then
+        assertEquals(0, eventReminderService.pendingReminders());
+    }
+
+    @Test
+    public void should_not_schedule_reminder_of_started_post() {
+        // Given
+        loadFirstWindow();
+        testPost.setPostStartTs(new Timestamp(START - MINUTE));
+
+        // When
+        eventReminderService.schedule(testPost, otherUsername);
+
+        // Then
+        assertEquals(0, eventReminderService.pendingReminders());
+    }
+
+    @Test
+    public void should_not_send_cancelled_reminder() {
+        // Given
+        loadFirstWindow();
+        eventReminderService.schedule(testPost, otherUsername);
+
+        // When
+        eventReminderService.cancel(10L, otherUsername);
+        clock.set(START + 3 * HOUR);
+        eventReminderService.sendDueReminders();
+
+        // Then
+        assertEquals(0, eventReminderService.pendingReminders());
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
+    }
+
+    @Test
+    public void should_move_reminders_when_post_is_rescheduled() {
+        // Given
+        loadFirstWindow();
+        eventReminderService.schedule(testPost, otherUsername);
+
+        // Mock
+        when(postRepository.findSummariesByPostIdIn(any())).thenReturn(summariesOf(testPost));
+
+        // When
+        testPost.setPostStartTs(new Timestamp(START + 5 * HOUR));
+        eventReminderService.reschedule(testPost, List.of(otherUsername));
+        clock.set(START + 2 * HOUR);
+        eventReminderService.sendDueReminders();
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
+        clock.set(START + 4 * HOUR);
+        eventReminderService.sendDueReminders();
+
+        // Then
+        verify(messagingTemplate, times(1)).convertAndSendToUser(eq(otherUsername), eq("/queue/reminders"), any(EventReminderDTO.class));
+    }
+
+    @Test
+    public void should_skip_reminder_of_deleted_post() {
+        // Given
+        loadFirstWindow();
+        eventReminderService.schedule(testPost, otherUsername);
+
+        // Mock
+        when(postRepository.findSummariesByPostIdIn(any())).thenReturn(List.of());
+
+        // When
+        clock.set(START + 2 * HOUR);
+        eventReminderService.sendDueReminders();
+
+        // Then
+        assertEquals(0, eventReminderService.pendingReminders());
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
+    }
+
+    @Test
+    public void should_cancel_reminders_of_all_confirmed_users_of_post() {
+        // Given
+        loadFirstWindow();
+        eventReminderService.schedule(testPost, otherUsername);
+        eventReminderService.schedule(testPost, "thirdUser");
+        Post otherPost = Post.builder().postId(11L).postStartTs(new Timestamp(START + 3 * HOUR)).build();
+        eventReminderService.schedule(otherPost, otherUsername);
+
+        // When
+        eventReminderService.cancelAll(testPost.getPostId());
+
+        // Then
+        assertEquals(1, eventReminderService.pendingReminders());
+    }
+}
@@ -0,0 +1,248 @@
+package com.socialising.services.service;
+
+import com.socialising.services.constants.Role;
+import com.socialising.services.dto.FacetIndexStatsDTO;
+import com.socialising.services.dto.FacetSearchDTO;
+import com.socialising.services.dto.PostFacets;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.PostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.socialising.services.service.PostSummaries.summariesOf;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class FacetIndexServiceTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    private FacetIndexService facetIndexService;
+
+    private User ownerUser;
+
+    @BeforeEach
+    void setUp() {
+        // Pages of 2 posts while building, 2 tag counts per query
+        facetIndexService = new FacetIndexService(postRepository, 2, 2);
+
+        ownerUser = User.builder()
+                .userId(1L)
+                .username("ownerUser")
+                .role(Role.USER)
+                .build();
+
+        facetIndexService.index(1L, "event", "now", 'N', new String[]{"football", "outdoor"});
+        facetIndexService.index(2L, "Event", "later", 'Y', new String[]{"football"});
+        facetIndexService.index(3L, "general", "now", 'N', new String[]{"music"});
+        facetIndexService.index(4L, "event", "now", 'Y', new String[]{"outdoor", "music"});
+    }
+
+    private PostFacets facets(Long postId, String postType, String[] tags) {
+        return new PostFacets() {
+            public Long getPostId() { return postId; }
+            public String getPostType() { return postType; }
+            public String getTimeType() { return "now"; }
+            public Character getOnlyForWomen() { return 'N'; }
+            public String[] getTags() { return tags; }
+        };
+    }
+
+    @Test
+    public void should_or_values_of_a_facet_and_and_facets() {
+        // When
+        FacetSearchDTO result = facetIndexService.count(Map.of(
+                FacetIndexService.POST_TYPE, List.of("EVENT"),
+                FacetIndexService.TAGS, List.of("outdoor", "music")), false);
+
+        // Then
+        assertEquals(2, result.getTotal());
+    }
+
+    @Test
+    public void should_and_tags_when_all_tags_are_asked_for() {
+        // When
+        FacetSearchDTO result = facetIndexService.count(Map.of(FacetIndexService.TAGS, List.of("outdoor", "music")), true);
+
+        // Then
+        assertEquals(1, result.getTotal());
+    }
+
+    @Test
+    public void should_count_each_facet_with_the_filters_of_the_other_facets() {
+        // When
+        FacetSearchDTO result = facetIndexService.count(Map.of(
+                FacetIndexService.POST_TYPE, List.of("event"),
+                FacetIndexService.ONLY_FOR_WOMEN, List.of("true")), false);
+
+        // Then
+        assertEquals(2, result.getTotal());
+        // postType counts only filter on onlyForWomen
+        assertEquals(Map.of("event", 2), result.getFacets().get(FacetIndexService.POST_TYPE));
+        // onlyForWomen counts only filter on postType
+        assertEquals(Map.of("false", 1, "true", 2), result.getFacets().get(FacetIndexService.ONLY_FOR_WOMEN));
+        assertEquals(Map.of("later", 1, "now", 1), result.getFacets().get(FacetIndexService.TIME_TYPE));
+    }
+
+    @Test
+    public void should_count_only_most_frequent_tags() {
+        // When
+        FacetSearchDTO result = facetIndexService.count(Map.of(), false);
+
+        // Then
+        assertEquals(4, result.getTotal());
+        assertEquals(List.of("football", "music"), List.copyOf(result.getFacets().get(FacetIndexService.TAGS).keySet()));
+    }
+
+    @Test
+    public void should_move_post_to_new_values_on_update_and_drop_it_on_remove() {
+        // When
+        facetIndexService.index(3L, "event", "now", 'N', null);
+        facetIndexService.remove(4L);
+        facetIndexService.remove(99L);
+
+        // Then
+        FacetSearchDTO result = facetIndexService.count(Map.of(FacetIndexService.POST_TYPE, List.of("event")), false);
+        assertEquals(3, result.getTotal());
+        assertFalse(result.getFacets().get(FacetIndexService.POST_TYPE).containsKey("general"));
+        assertEquals(0, facetIndexService.count(Map.of(FacetIndexService.TAGS, List.of("music")), false).getTotal());
+        assertEquals(3, facetIndexService.getStats().getPosts());
+    }
+
+    @Test
+    public void should_reuse_ordinal_of_removed_post() {
+        // When
+        facetIndexService.remove(1L);
+        facetIndexService.index(5L, "general", "later", 'N', new String[]{});
+
+        // Then
+        FacetSearchDTO result = facetIndexService.count(Map.of(FacetIndexService.POST_TYPE, List.of("general")), false);
+        assertEquals(2, result.getTotal());
+        assertEquals(4, facetIndexService.getStats().getPosts());
+    }
+
+    @Test
+    public void should_get_page_of_matching_posts_highest_id_first() {
+        // Given
+        Post post4 = Post.builder().postId(4L).ownerUser(ownerUser).onlyForWomen('Y').build();
+        Post post2 = Post.builder().postId(2L).ownerUser(ownerUser).onlyForWomen('Y').build();
+
+        // Mock
+        when(postRepository.findSummariesByPostIdIn(List.of(4L, 2L))).thenReturn(summariesOf(post2, post4));
+
+        // When
+        FacetSearchDTO page = facetIndexService.search(Map.of(FacetIndexService.ONLY_FOR_WOMEN, List.of("true")), false, null, 2);
+
+        // Then
+        assertEquals(2, page.getTotal());
+        assertEquals(List.of(4L, 2L), page.getPosts().stream().map(post -> post.getPostId()).toList());
+        assertEquals("2", page.getNextCursor());
+    }
+
+    @Test
+    public void should_continue_after_cursor_and_end_on_short_page() {
+        // Mock
+        when(postRepository.findSummariesByPostIdIn(List.of(1L))).thenReturn(List.of());
+
+        // When
+        FacetSearchDTO page = facetIndexService.search(Map.of(FacetIndexService.POST_TYPE, List.of("event")), false, "2", 2);
+
+        // Then
+        assertEquals(3, page.getTotal());
+        assertNull(page.getNextCursor());
+        verify(postRepository, times(1)).findSummariesByPostIdIn(List.of(1L));
+    }
+
+    @Test
+    public void should_not_search_when_cursor_is_invalid() {
+        // When
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> facetIndexService.search(Map.of(), false, "abc", 20));
+
+        // Then
+        assertEquals("Invalid facet cursor: abc", exception.getMessage());
+    }
+
+    @Test
+    public void should_build_index_page_by_page_from_db() {
+        // Given
+        FacetIndexService emptyIndex = new FacetIndexService(postRepository, 2, 2);
+
+        // Mock
+        when(postRepository.findFacetsAfter(Long.MIN_VALUE, PageRequest.of(0, 2)))
+                .thenReturn(List.of(facets(10L, "event", new String[]{"football"}), facets(11L, "general", null)));
+        when(postRepository.findFacetsAfter(11L, PageRequest.of(0, 2))).thenReturn(List.of(facets(12L, "event", null)));
+
+        // When
+        emptyIndex.build();
+        emptyIndex.build();
+
+        // Then
+        FacetIndexStatsDTO stats = emptyIndex.getStats();
+        assertTrue(stats.isBuilt());
+        assertEquals(3, stats.getPosts());
+        assertTrue(stats.getBitmapBytes() > 0);
+        assertEquals(2, emptyIndex.count(Map.of(FacetIndexService.POST_TYPE, List.of("event")), false).getTotal());
+        verify(postRepository, times(2)).findFacetsAfter(anyLong(), any());
+    }
+
+    @Test
+    public void should_keep_changes_made_while_building_over_older_pages() {
+        // Given
+        FacetIndexService emptyIndex = new FacetIndexService(postRepository, 2, 2);
+
+        // Mock
+        // Post 10 is updated and post 11 deleted after the page holding them was read
+        when(postRepository.findFacetsAfter(Long.MIN_VALUE, PageRequest.of(0, 2))).thenAnswer(invocation -> {
+            List<PostFacets> page = List.of(facets(10L, "event", null), facets(11L, "general", null));
+            emptyIndex.index(10L, "general", "now", 'N', null);
+            emptyIndex.remove(11L);
+            return page;
+        });
+        when(postRepository.findFacetsAfter(11L, PageRequest.of(0, 2))).thenReturn(List.of());
+
+        // When
+        emptyIndex.build();
+
+        // Then
+        assertEquals(1, emptyIndex.getStats().getPosts());
+        assertEquals(0, emptyIndex.count(Map.of(FacetIndexService.POST_TYPE, List.of("event")), false).getTotal());
+        assertEquals(1, emptyIndex.count(Map.of(FacetIndexService.POST_TYPE, List.of("general")), false).getTotal());
+    }
+
+    @Test
+    public void should_retry_build_when_db_is_not_reachable() {
+        // Given
+        FacetIndexService emptyIndex = new FacetIndexService(postRepository, 2, 2);
+
+        // Mock
+        when(postRepository.findFacetsAfter(anyLong(), any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(List.of());
+
+        // When
+        emptyIndex.build();
+        boolean builtAfterFailure = emptyIndex.getStats().isBuilt();
+        emptyIndex.build();
+
+        // Then
+        assertFalse(builtAfterFailure);
+        assertTrue(emptyIndex.getStats().isBuilt());
+    }
+}
@@ -0,0 +1,164 @@
+package com.socialising.services.service;
+
+import com.socialising.services.constants.Role;
+import com.socialising.services.dto.HashtagCountDTO;
+import com.socialising.services.dto.PostFeedPage;
+import com.socialising.services.dto.PostKey;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.PostHashtagRepository;
+import com.socialising.services.repository.PostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.socialising.services.service.PostSummaries.summariesOf;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class HashtagServiceTest {
+
+    @Mock
+    private PostHashtagRepository postHashtagRepository;
+
+    @Mock
+    private PostRepository postRepository;
+
+    private HashtagService hashtagService;
+
+    private Post testPost;
+
+    @BeforeEach
+    void setUp() {
+        // 60 minute window in 60 buckets, top 2 trending
+        hashtagService = new HashtagService(postHashtagRepository, postRepository, 60, 60, 2, 1000);
+
+        User ownerUser = User.builder()
+                .userId(1L)
+                .username("ownerUser")
+                .role(Role.USER)
+                .build();
+
+        testPost = Post.builder()
+                .postId(10L)
+                .ownerUser(ownerUser)
+                .createdTs(new Timestamp(5000))
+                .onlyForWomen('N')
+                .build();
+    }
+
+    private PostKey key(Long postId, long createdTs) {
+        return new PostKey() {
+            public Long getPostId() { return postId; }
+            public Timestamp getCreatedTs() { return new Timestamp(createdTs); }
+        };
+    }
+
+    @Test
+    public void should_index_normalized_hashtags_of_new_post() {
+        // When
+        hashtagService.reindex(testPost, null, new String[]{"#Soccer", "soccer", " Fun ", ""});
+
+        // Then
+        ArgumentCaptor<String[]> added = ArgumentCaptor.forClass(String[].class);
+        verify(postHashtagRepository, times(1)).insertHashtags(eq(10L), added.capture(), eq(testPost.getCreatedTs()));
+        assertEquals(List.of("fun", "soccer"), Arrays.stream(added.getValue()).sorted().toList());
+        verify(postHashtagRepository, never()).deleteHashtags(anyLong(), any());
+    }
+
+    @Test
+    public void should_only_write_difference_when_hashtags_change() {
+        // When
+        hashtagService.reindex(testPost, new String[]{"viru", "rohirat"}, new String[]{"Viru", "partytime"});
+
+        // Then
+        verify(postHashtagRepository, times(1)).deleteHashtags(10L, new String[]{"rohirat"});
+        verify(postHashtagRepository, times(1)).insertHashtags(10L, new String[]{"partytime"}, testPost.getCreatedTs());
+    }
+
+    @Test
+    public void should_not_touch_index_when_hashtags_unchanged() {
+        // When
+        hashtagService.reindex(testPost, new String[]{"viru"}, new String[]{"#viru"});
+
+        // Then
+        verifyNoInteractions(postHashtagRepository);
+    }
+
+    @Test
+    public void should_remove_all_hashtags_of_post() {
+        // When
+        hashtagService.removeAll(10L);
+
+        // Then
+        verify(postHashtagRepository, times(1)).deleteAllByPostId(10L);
+    }
+
+    @Test
+    public void should_get_first_page_of_posts_by_hashtag() {
+        // Mock
+        when(postHashtagRepository.findKeysByHashtag(eq("soccer"), any(Pageable.class))).thenReturn(List.of(key(10L, 5000)));
+        when(postRepository.findSummariesByPostIdIn(List.of(10L))).thenReturn(summariesOf(testPost));
+
+        // When
+        PostFeedPage page = hashtagService.getPostsByHashtag("#Soccer", null, 1);
+
+        // Then
+        assertEquals(1, page.getPosts().size());
+        assertEquals(10L, page.getPosts().get(0).getPostId());
+        assertEquals("5000_10", page.getNextCursor());
+    }
+
+    @Test
+    public void should_continue_after_cursor_and_end_on_short_page() {
+        // Mock
+        when(postHashtagRepository.findKeysByHashtagBefore(eq("soccer"), eq(new Timestamp(5000)), eq(10L), any(Pageable.class))).thenReturn(List.of());
+
+        // When
+        PostFeedPage page = hashtagService.getPostsByHashtag("soccer", "5000_10", 20);
+
+        // Then
+        assertTrue(page.getPosts().isEmpty());
+        assertNull(page.getNextCursor());
+        verify(postRepository, never()).findSummariesByPostIdIn(any());
+    }
+
+    @Test
+    public void should_throw_on_invalid_cursor() {
+        assertThrows(IllegalArgumentException.class, () -> hashtagService.getPostsByHashtag("soccer", "abc", 20));
+    }
+
+    @Test
+    public void should_rank_trending_hashtags_by_uses() {
+        // Given
+        hashtagService.reindex(testPost, null, new String[]{"soccer", "fun", "music"});
+        hashtagService.reindex(Post.builder().postId(11L).createdTs(new Timestamp(6000)).build(), null, new String[]{"soccer", "music"});
+        hashtagService.reindex(Post.builder().postId(12L).createdTs(new Timestamp(7000)).build(), null, new String[]{"soccer"});
+
+        // When
+        hashtagService.refreshTrending();
+        List<HashtagCountDTO> trending = hashtagService.getTrendingHashtags(10);
+
+        // Then
+        assertEquals(2, trending.size());
+        assertEquals("soccer", trending.get(0).getHashtag());
+        assertEquals(3, trending.get(0).getCount());
+        assertEquals("music", trending.get(1).getHashtag());
+        assertEquals(2, trending.get(1).getCount());
+        assertEquals(1, hashtagService.getTrendingHashtags(1).size());
+    }
+}
@@ -0,0 +1,229 @@
+package com.socialising.services.service;
+
+import com.socialising.services.model.Post;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class OptimisticRetryServiceTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticRetryServiceTest.class);
+
+    private static final int THREADS = 8;
+
+    private static final int UPDATES_PER_THREAD = 250;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OptimisticRetryService optimisticRetryService;
+
+    @BeforeEach
+    void setUp() {
+        // 3 attempts, no waiting between them
+        optimisticRetryService = new OptimisticRetryService(transactionManager, 3, 0);
+    }
+
+    @Test
+    public void should_run_mutation_once_in_a_transaction_when_nothing_conflicts() {
+        // Given
+        AtomicInteger runs = new AtomicInteger();
+
+        // When
+        int result = optimisticRetryService.run("test", () -> runs.incrementAndGet());
+
+        // Then
+        assertEquals(1, result);
+        assertEquals(1, runs.get());
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(transactionManager, times(1)).commit(any());
+        assertEquals(0, optimisticRetryService.getConflictCount());
+    }
+
+    @Test
+    public void should_run_mutation_again_after_a_conflict() {
+        // Given
+        AtomicInteger runs = new AtomicInteger();
+
+        // When
+        int result = optimisticRetryService.run("test", () -> {
+            if (runs.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException(Post.class, 1L);
+            }
+            return 1;
+        });
+
+        // Then
+        assertEquals(1, result);
+        assertEquals(3, runs.get());
+        verify(transactionManager, times(2)).rollback(any());
+        assertEquals(2, optimisticRetryService.getConflictCount());
+    }
+
+    @Test
+    public void should_give_up_after_max_attempts() {
+        // Given
+        AtomicInteger runs = new AtomicInteger();
+
+        // When
+        assertThrows(OptimisticLockingFailureException.class, () -> optimisticRetryService.run("test", () -> {
+            runs.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(Post.class, 1L);
+        }));
+
+        // Then
+        assertEquals(3, runs.get());
+    }
+
+    @Test
+    public void should_not_retry_other_failures() {
+        // Given
+        AtomicInteger runs = new AtomicInteger();
+
+        // When
+        assertThrows(DataAccessResourceFailureException.class, () -> optimisticRetryService.run("test", () -> {
+            runs.incrementAndGet();
+            throw new DataAccessResourceFailureException("down");
+        }));
+
+        // Then
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void should_run_mutation_after_commit_in_a_new_transaction() {
+        // Given
+        AtomicInteger runs = new AtomicInteger();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            optimisticRetryService.runAfterCommit("test", runs::incrementAndGet);
+            int runsBeforeCommit = runs.get();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            // Then
+            assertEquals(0, runsBeforeCommit);
+            assertEquals(1, runs.get());
+            verify(transactionManager, times(1)).getTransaction(
+                    argThat(definition -> definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // Parallel hashtag additions to one post, with and without a version check on write
+    @Test
+    public void should_not_lose_concurrent_updates_to_the_same_post() throws Exception {
+        // Given
+        OptimisticRetryService retryingService = new OptimisticRetryService(transactionManager, 1000, 1);
+        VersionedHashtags versioned = new VersionedHashtags();
+        VersionedHashtags unversioned = new VersionedHashtags();
+
+        // When
+        long versionedNanos = runInParallel(hashtag -> retryingService.run("addHashtag", () -> {
+            VersionedHashtags.Snapshot read = versioned.read();
+            versioned.write(read, hashtag);
+            return 1;
+        }));
+        long unversionedNanos = runInParallel(hashtag -> {
+            VersionedHashtags.Snapshot read = unversioned.read();
+            unversioned.overwrite(read, hashtag);
+        });
+
+        // Then
+        int updates = THREADS * UPDATES_PER_THREAD;
+        assertEquals(updates, versioned.read().hashtags().size());
+        assertEquals(updates, versioned.read().version());
+        log.info("Versioned: {} updates/s, {} conflicts retried, no updates lost",
+                updates * 1_000_000_000L / versionedNanos, retryingService.getConflictCount());
+        log.info("Unversioned: {} updates/s, {} of {} updates lost",
+                updates * 1_000_000_000L / unversionedNanos, updates - unversioned.read().hashtags().size(), updates);
+    }
+
+    private long runInParallel(ThrowingConsumer update) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                    update.accept("tag" + thread + "_" + i);
+                }
+                return null;
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        executor.shutdown();
+        return Math.max(1, elapsed);
+    }
+
+    private interface ThrowingConsumer {
+        void accept(String hashtag) throws Exception;
+    }
+
+    // Stands in for a post row: a write based on an older version fails, as it does with @Version
+    private static final class VersionedHashtags {
+
+        record Snapshot(long version, List<String> hashtags) {
+        }
+
+        private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(0, List.of()));
+
+        Snapshot read() {
+            return current.get();
+        }
+
+        void write(Snapshot read, String hashtag) {
+            Thread.yield();
+            if (!current.compareAndSet(read, next(read, hashtag))) {
+                throw new ObjectOptimisticLockingFailureException(Post.class, 1L);
+            }
+        }
+
+        // Saves without looking at the version, the way posts were saved before
+        void overwrite(Snapshot read, String hashtag) {
+            Thread.yield();
+            current.set(next(read, hashtag));
+        }
+
+        private static Snapshot next(Snapshot read, String hashtag) {
+            List<String> hashtags = new ArrayList<>(read.hashtags());
+            hashtags.add(hashtag);
+            return new Snapshot(read.version() + 1, hashtags);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.LikeSummaryDTO;
+import com.socialising.services.model.ArchivedPost;
+import com.socialising.services.model.Post;
+import com.socialising.services.repository.ArchivedPostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class PostArchiveServiceTest {
+
+    @Mock
+    private ArchivedPostRepository archivedPostRepository;
+
+    @Mock
+    private PostCacheService postCacheService;
+
+    @Mock
+    private FacetIndexService facetIndexService;
+
+    @Mock
+    private PostLikeService postLikeService;
+
+    @Mock
+    private PostViewService postViewService;
+
+    private PostArchiveService postArchiveService;
+
+    @BeforeEach
+    void setUp() {
+        // Posts archived 24 hours after they end, 2 posts per statement
+        postArchiveService = new PostArchiveService(archivedPostRepository, postCacheService, facetIndexService,
+                postLikeService, postViewService, 24, 2);
+    }
+
+    @Test
+    public void should_archive_batch_by_batch_until_a_batch_is_not_full() {
+        // Mock
+        when(archivedPostRepository.archiveEndedPosts(any(), eq(2)))
+                .thenReturn(List.of(1L, 2L), List.of(3L, 4L), List.of(5L));
+
+        // When
+        int archived = postArchiveService.sweep();
+
+        // Then
+        assertEquals(5, archived);
+        verify(archivedPostRepository, times(3)).archiveEndedPosts(any(), eq(2));
+        verify(facetIndexService, times(1)).remove(5L);
+        verify(postViewService, times(1)).forget(5L);
+        verify(postCacheService, times(1)).invalidate(5L);
+    }
+
+    @Test
+    public void should_flush_pending_likes_before_archiving() {
+        // Mock
+        when(archivedPostRepository.archiveEndedPosts(any(), anyInt())).thenReturn(List.of());
+
+        // When
+        int archived = postArchiveService.sweep();
+
+        // Then
+        assertEquals(0, archived);
+        InOrder inOrder = inOrder(postLikeService, archivedPostRepository);
+        inOrder.verify(postLikeService).flushLikeCounts();
+        inOrder.verify(archivedPostRepository).archiveEndedPosts(any(), anyInt());
+    }
+
+    @Test
+    public void should_only_archive_posts_ended_before_the_grace_period() {
+        // Given
+        ArgumentCaptor<Timestamp> endedBefore = ArgumentCaptor.forClass(Timestamp.class);
+        long dayAgo = System.currentTimeMillis() - 24 * 60 * 60 * 1000L;
+
+        // Mock
+        when(archivedPostRepository.archiveEndedPosts(endedBefore.capture(), anyInt())).thenReturn(List.of());
+
+        // When
+        postArchiveService.sweep();
+
+        // Then
+        assertTrue(Math.abs(endedBefore.getValue().getTime() - dayAgo) < 60_000);
+    }
+
+    @Test
+    public void should_stop_sweeping_when_database_fails() {
+        // Mock
+        when(archivedPostRepository.archiveEndedPosts(any(), anyInt()))
+                .thenReturn(List.of(1L, 2L))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        // When
+        int archived = postArchiveService.sweep();
+
+        // Then
+        assertEquals(2, archived);
+        verify(archivedPostRepository, times(2)).archiveEndedPosts(any(), anyInt());
+    }
+
+    @Test
+    public void should_get_archived_post_with_its_owner() {
+        // Given
+        ArchivedPost archived = ArchivedPost.builder()
+                .postId(7L)
+                .username("owner")
+                .postType("event")
+                .onlyForWomen('N')
+                .confirmedCount(3L)
+                .build();
+
+        // Mock
+        when(archivedPostRepository.findById(7L)).thenReturn(Optional.of(archived));
+
+        // When
+        Optional<Post> post = postArchiveService.getArchivedPost(7L);
+
+        // Then
+        assertTrue(post.isPresent());
+        assertEquals(7L, post.get().getPostId());
+        assertEquals("owner", post.get().getOwnerUser().getUsername());
+        assertEquals(3L, post.get().getConfirmedCount());
+    }
+
+    @Test
+    public void should_get_confirmed_users_of_archived_post_only() {
+        // Mock
+        when(archivedPostRepository.existsById(7L)).thenReturn(true);
+        when(archivedPostRepository.existsById(8L)).thenReturn(false);
+        when(archivedPostRepository.findConfirmedUsernames(7L)).thenReturn(List.of("alice", "bob"));
+
+        // Then
+        assertEquals(List.of("alice", "bob"), postArchiveService.getConfirmedUsers(7L));
+        assertNull(postArchiveService.getConfirmedUsers(8L));
+        verify(archivedPostRepository, never()).findConfirmedUsernames(8L);
+    }
+
+    @Test
+    public void should_get_likes_of_archived_post_only() {
+        // Mock
+        when(archivedPostRepository.existsById(7L)).thenReturn(true);
+        when(archivedPostRepository.existsById(8L)).thenReturn(false);
+        when(archivedPostRepository.findLikeUsernames(7L, 50, 50L)).thenReturn(List.of("alice"));
+
+        // Then
+        assertEquals(List.of("alice"), postArchiveService.getLikes(7L, 1, 50));
+        assertNull(postArchiveService.getLikes(8L, 0, 50));
+        verify(archivedPostRepository, never()).findLikeUsernames(eq(8L), anyInt(), anyLong());
+    }
+
+    @Test
+    public void should_get_like_summary_of_archived_post() {
+        // Given
+        ArchivedPost archived = ArchivedPost.builder()
+                .postId(7L)
+                .username("owner")
+                .likeCount(4L)
+                .build();
+
+        // Mock
+        when(archivedPostRepository.findById(7L)).thenReturn(Optional.of(archived));
+        when(archivedPostRepository.existsLike(7L, "alice")).thenReturn(true);
+
+        // When
+        LikeSummaryDTO summary = postArchiveService.getLikeSummary(7L, "alice");
+
+        // Then
+        assertEquals(4L, summary.getLikeCount());
+        assertTrue(summary.isLikedByMe());
+        assertNull(postArchiveService.getLikeSummary(8L, "alice"));
+    }
+
+    @Test
+    public void should_delete_archive_of_removed_user() {
+        // Mock
+        when(archivedPostRepository.deleteArchiveOfUser(3L, "owner")).thenReturn(2L);
+
+        // When
+        postArchiveService.removeUser(3L, "owner");
+
+        // Then
+        verify(archivedPostRepository, times(1)).deleteArchiveOfUser(3L, "owner");
+    }
+}
@@ -0,0 +1,179 @@
+package com.socialising.services.service;
+
+import com.socialising.services.constants.Role;
+import com.socialising.services.dto.CacheStatsDTO;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.PostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class PostCacheServiceTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    private PostCacheService postCacheService;
+
+    private Post testPost;
+
+    private final Long postId = 10L;
+
+    @BeforeEach
+    void setUp() {
+        // 2 posts, a minute each
+        postCacheService = new PostCacheService(postRepository, true, 2, 60);
+
+        User ownerUser = User.builder()
+                .userId(1L)
+                .username("ownerUser")
+                .role(Role.USER)
+                .email("owner@example.com")
+                .build();
+
+        testPost = Post.builder()
+                .postId(postId)
+                .ownerUser(ownerUser)
+                .description("Football at the park")
+                .createdTs(Timestamp.valueOf("2024-07-10 00:00:00"))
+                .hashtags(new String[]{"football"})
+                .likeCount(3L)
+                .confirmedUsers(new ArrayList<>(List.of(ownerUser)))
+                .onlyForWomen('N')
+                .build();
+    }
+
+    @Test
+    public void should_read_post_once_and_then_serve_it_from_cache() {
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+
+        // When
+        Optional<Post> first = postCacheService.get(postId);
+        Optional<Post> second = postCacheService.get(postId);
+
+        // Then
+        assertTrue(first.isPresent());
+        assertSame(first.get(), second.get());
+        verify(postRepository, times(1)).findById(postId);
+        CacheStatsDTO stats = postCacheService.getStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    public void should_cache_copy_of_post_without_user_lists() {
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+
+        // When
+        Post cached = postCacheService.get(postId).get();
+
+        // Then
+        assertNotSame(testPost, cached);
+        assertEquals("Football at the park", cached.getDescription());
+        assertArrayEquals(new String[]{"football"}, cached.getHashtags());
+        assertEquals(3L, cached.getLikeCount());
+        assertEquals("ownerUser", cached.getOwnerUser().getUsername());
+        assertNull(cached.getOwnerUser().getEmail());
+        assertNull(cached.getConfirmedUsers());
+    }
+
+    @Test
+    public void should_read_post_again_after_invalidation() {
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+
+        // When
+        postCacheService.get(postId);
+        postCacheService.invalidate(postId);
+        testPost.setDescription("Cricket at the park");
+        Post reloaded = postCacheService.get(postId).get();
+
+        // Then
+        assertEquals("Cricket at the park", reloaded.getDescription());
+        verify(postRepository, times(2)).findById(postId);
+    }
+
+    @Test
+    public void should_not_keep_post_loaded_while_it_was_invalidated() {
+        // Mock: the post is written and invalidated while it is being read
+        when(postRepository.findById(postId)).thenAnswer(invocation -> {
+            postCacheService.invalidate(postId);
+            return Optional.of(testPost);
+        });
+
+        // When
+        postCacheService.get(postId);
+
+        // Then
+        assertEquals(0, postCacheService.getStats().getSize());
+    }
+
+    @Test
+    public void should_not_cache_missing_post() {
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.empty());
+
+        // When
+        Optional<Post> first = postCacheService.get(postId);
+        Optional<Post> second = postCacheService.get(postId);
+
+        // Then
+        assertTrue(first.isEmpty());
+        assertTrue(second.isEmpty());
+        verify(postRepository, times(2)).findById(postId);
+    }
+
+    @Test
+    public void should_evict_posts_over_maximum_size() {
+        // Mock
+        when(postRepository.findById(anyLong())).thenAnswer(invocation ->
+                Optional.of(Post.builder().postId(invocation.getArgument(0)).build()));
+
+        // When
+        postCacheService.get(1L);
+        postCacheService.get(2L);
+        postCacheService.get(3L);
+
+        // Then
+        CacheStatsDTO stats = postCacheService.getStats();
+        assertEquals(2, stats.getSize());
+        assertEquals(1, stats.getEvictionCount());
+    }
+
+    @Test
+    public void should_read_every_post_from_repository_when_disabled() {
+        // Given
+        PostCacheService disabledCache = new PostCacheService(postRepository, false, 2, 60);
+
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+
+        // When
+        Post first = disabledCache.get(postId).get();
+        disabledCache.get(postId);
+
+        // Then
+        assertSame(testPost, first);
+        verify(postRepository, times(2)).findById(postId);
+        assertFalse(disabledCache.getStats().isEnabled());
+    }
+}
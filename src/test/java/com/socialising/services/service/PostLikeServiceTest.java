@@ -0,0 +1,240 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.LikeSummaryDTO;
+import com.socialising.services.repository.PostLikeRepository;
+import com.socialising.services.repository.PostRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class PostLikeServiceTest {
+
+    @Mock
+    private PostLikeRepository postLikeRepository;
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private PostCacheService postCacheService;
+
+    @InjectMocks
+    private PostLikeService postLikeService;
+
+    private final Long postId = 1L;
+    private final String username = "testUser";
+
+    @Test
+    public void should_like_post_and_count_pending_like() {
+        // Mock
+        when(postLikeRepository.insertLike(postId, username)).thenReturn(1);
+        when(postRepository.findLikeCountByPostId(postId)).thenReturn(4L);
+
+        // When
+        int result = postLikeService.like(postId, username);
+
+        // Then
+        assertEquals(1, result);
+        assertEquals(5L, postLikeService.getLikeCount(postId));
+    }
+
+    @Test
+    public void should_not_count_like_when_already_liked() {
+        // Mock
+        when(postLikeRepository.insertLike(postId, username)).thenReturn(0);
+        when(postRepository.findLikeCountByPostId(postId)).thenReturn(4L);
+
+        // When
+        int result = postLikeService.like(postId, username);
+
+        // Then
+        assertEquals(0, result);
+        assertEquals(4L, postLikeService.getLikeCount(postId));
+    }
+
+    @Test
+    public void should_unlike_post_and_decrement_count() {
+        // Mock
+        when(postLikeRepository.deleteLike(postId, username)).thenReturn(1);
+        when(postRepository.findLikeCountByPostId(postId)).thenReturn(4L);
+
+        // When
+        int result = postLikeService.unlike(postId, username);
+
+        // Then
+        assertEquals(1, result);
+        assertEquals(3L, postLikeService.getLikeCount(postId));
+    }
+
+    @Test
+    public void should_not_decrement_count_when_user_has_not_liked() {
+        // Mock
+        when(postLikeRepository.deleteLike(postId, username)).thenReturn(0);
+
+        // When
+        int result = postLikeService.unlike(postId, username);
+
+        // Then
+        assertEquals(0, result);
+        postLikeService.flushLikeCounts();
+        verify(postRepository, never()).addToLikeCounts(any(), any());
+    }
+
+    @Test
+    public void should_get_like_summary() {
+        // Mock
+        when(postRepository.findLikeCountByPostId(postId)).thenReturn(7L);
+        when(postLikeRepository.existsByPostIdAndUsername(postId, username)).thenReturn(true);
+
+        // When
+        LikeSummaryDTO summary = postLikeService.getLikeSummary(postId, username);
+
+        // Then
+        assertEquals(postId, summary.getPostId());
+        assertEquals(7L, summary.getLikeCount());
+        assertTrue(summary.isLikedByMe());
+    }
+
+    @Test
+    public void should_get_paginated_likes_with_capped_page_size() {
+        // Mock
+        when(postLikeRepository.findUsernamesByPostId(postId, PageRequest.of(2, 100))).thenReturn(List.of(username));
+
+        // When
+        List<String> likes = postLikeService.getLikes(postId, 2, 5000);
+
+        // Then
+        assertEquals(List.of(username), likes);
+    }
+
+    @Test
+    public void should_flush_concurrent_likes_in_one_batch_without_losing_any() throws Exception {
+        // Given
+        int users = 1000;
+        when(postLikeRepository.insertLike(any(), any())).thenReturn(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Runnable> likes = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            String liker = "user" + i;
+            likes.add(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                postLikeService.like(postId, liker);
+                postLikeService.like(2L, liker);
+            });
+        }
+
+        // When
+        likes.forEach(executor::submit);
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        postLikeService.flushLikeCounts();
+
+        // Then
+        ArgumentCaptor<Long[]> postIds = ArgumentCaptor.forClass(Long[].class);
+        ArgumentCaptor<Long[]> deltas = ArgumentCaptor.forClass(Long[].class);
+        verify(postRepository, times(1)).addToLikeCounts(postIds.capture(), deltas.capture());
+        assertEquals(2, postIds.getValue().length);
+        assertEquals((long) users, deltas.getValue()[0]);
+        assertEquals((long) users, deltas.getValue()[1]);
+        verify(postCacheService, times(1)).invalidateAll(any());
+    }
+
+    @Test
+    public void should_keep_pending_likes_when_flush_fails() {
+        // Mock
+        when(postLikeRepository.insertLike(postId, username)).thenReturn(1);
+        when(postRepository.addToLikeCounts(any(), any())).thenThrow(new RuntimeException("Database error"));
+        when(postRepository.findLikeCountByPostId(postId)).thenReturn(0L);
+
+        // When
+        postLikeService.like(postId, username);
+        postLikeService.flushLikeCounts();
+
+        // Then
+        assertEquals(1L, postLikeService.getLikeCount(postId));
+        verify(postCacheService, never()).invalidateAll(any());
+    }
+
+    @Test
+    public void should_not_count_flushed_likes_twice_while_flushing() throws Exception {
+        // Mock
+        AtomicLong persisted = new AtomicLong();
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        List<Future<Long>> reads = new ArrayList<>();
+        when(postLikeRepository.insertLike(postId, username)).thenReturn(1);
+        when(postRepository.findLikeCountByPostId(postId)).thenAnswer(invocation -> persisted.get());
+        when(postRepository.addToLikeCounts(any(), any())).thenAnswer(invocation -> {
+            persisted.addAndGet(1);
+            // The count is read after the flush is persisted and before its deltas are cleared
+            reads.add(reader.submit(() -> postLikeService.getLikeCount(postId)));
+            Thread.sleep(50);
+            return 1;
+        });
+
+        // When
+        postLikeService.like(postId, username);
+        postLikeService.flushLikeCounts();
+
+        // Then
+        assertEquals(1L, reads.get(0).get(5, TimeUnit.SECONDS));
+        reader.shutdown();
+    }
+
+    @Test
+    public void should_flush_pending_likes_before_running_action() {
+        // Mock
+        when(postLikeRepository.insertLike(postId, username)).thenReturn(1);
+
+        // When
+        postLikeService.like(postId, username);
+        long pendingSeen = postLikeService.withLikeCountsFlushed(() -> postLikeService.getPendingLikeCount(postId));
+
+        // Then
+        assertEquals(0L, pendingSeen);
+        verify(postRepository, times(1)).addToLikeCounts(any(), any());
+    }
+
+    @Test
+    public void should_not_run_action_when_likes_cannot_be_flushed() {
+        // Mock
+        when(postLikeRepository.insertLike(postId, username)).thenReturn(1);
+        when(postRepository.addToLikeCounts(any(), any())).thenThrow(new RuntimeException("Database error"));
+        List<String> ran = new ArrayList<>();
+
+        // When
+        postLikeService.like(postId, username);
+
+        // Then
+        assertThrows(RuntimeException.class, () -> postLikeService.withLikeCountsFlushed(() -> ran.add("action")));
+        assertTrue(ran.isEmpty());
+        assertEquals(1L, postLikeService.getPendingLikeCount(postId));
+    }
+}
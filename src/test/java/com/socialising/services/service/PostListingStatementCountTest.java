@@ -0,0 +1,140 @@
+package com.socialising.services.service;
+
+import com.socialising.services.constants.Role;
+import com.socialising.services.dto.PostDTO;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Counts the statements sent to the database by the post listings, so the user lists of the posts are not loaded again
+// Needs the Postgres database of the application and is skipped when it can not be reached
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.datasource.hikari.connection-timeout=1000"
+})
+@RunWith(SpringRunner.class)
+class PostListingStatementCountTest {
+
+    private static final int POSTS = 20;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PostService postService;
+
+    private Statistics statistics;
+
+    private User ownerUser;
+
+    private final List<User> otherUsers = new ArrayList<>();
+
+    private final List<Post> posts = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Assumptions.assumeTrue(databaseReachable(), "Postgres is not reachable");
+
+        long base = System.nanoTime();
+        ownerUser = userRepository.save(User.builder().userId(base).username("listing" + base).role(Role.USER).build());
+
+        // Every post has interested and confirmed users, which a listing must not load
+        for (int i = 0; i < 3; i++) {
+            otherUsers.add(User.builder().userId(base + 1 + i).username("listing" + (base + 1 + i)).role(Role.USER).build());
+        }
+        for (int i = 0; i < POSTS; i++) {
+            posts.add(postRepository.save(Post.builder()
+                    .postId(base + 100 + i)
+                    .ownerUser(ownerUser)
+                    .description("Listing post " + i)
+                    .createdTs(new Timestamp(System.currentTimeMillis() + i))
+                    .postType("general")
+                    .onlyForWomen('N')
+                    .build()));
+        }
+        for (User user : otherUsers) {
+            user.setRequestedPosts(new ArrayList<>(posts));
+            user.setReminderPosts(new ArrayList<>(posts));
+            userRepository.save(user);
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ownerUser == null) {
+            return;
+        }
+        for (Post post : posts) {
+            postRepository.deleteInterestedUsersOfPost(post.getPostId());
+            postRepository.deleteConfirmedUsersOfPost(post.getPostId());
+        }
+        postRepository.deleteAll(posts);
+        userRepository.deleteAll(otherUsers);
+        userRepository.delete(ownerUser);
+    }
+
+    @Test
+    public void should_list_posts_of_user_in_one_statement() {
+        // When
+        List<PostDTO> listed = postService.getPostsByUsername(ownerUser.getUsername());
+
+        // Then
+        assertEquals(POSTS, listed.size());
+        assertEquals(ownerUser.getUsername(), listed.get(0).getUsername());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Test
+    public void should_serve_feed_page_in_one_statement() {
+        // When
+        List<PostDTO> listed = postService.getFeed(null, POSTS).getPosts();
+
+        // Then
+        assertEquals(POSTS, listed.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    private boolean databaseReachable() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isValid(1);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.socialising.services.service;
+
+import com.socialising.services.constants.Role;
+import com.socialising.services.dto.PostFeedPage;
+import com.socialising.services.dto.PostSearchHit;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.PostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static com.socialising.services.service.PostSummaries.summariesOf;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class PostSearchServiceTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    private PostSearchService postSearchService;
+
+    private Post testPost;
+
+    private Post secondTestPost;
+
+    @BeforeEach
+    void setUp() {
+        postSearchService = new PostSearchService(postRepository);
+
+        User ownerUser = User.builder()
+                .userId(1L)
+                .username("ownerUser")
+                .role(Role.USER)
+                .build();
+
+        testPost = Post.builder()
+                .postId(10L)
+                .ownerUser(ownerUser)
+                .description("Football at the park")
+                .location("Kanpur")
+                .createdTs(new Timestamp(5000))
+                .onlyForWomen('N')
+                .build();
+
+        secondTestPost = Post.builder()
+                .postId(11L)
+                .ownerUser(ownerUser)
+                .description("Football after work")
+                .createdTs(new Timestamp(6000))
+                .onlyForWomen('N')
+                .build();
+    }
+
+    private PostSearchHit hit(Long postId, long rank) {
+        return new PostSearchHit() {
+            public Long getPostId() { return postId; }
+            public Long getRank() { return rank; }
+        };
+    }
+
+    @Test
+    public void should_build_prefix_query_from_words_of_search_text() {
+        assertEquals("football:* & kanpur:*", PostSearchService.toPrefixQuery("  Football, KANPUR! football"));
+        assertEquals("a:* & b:*", PostSearchService.toPrefixQuery("a:* | !b & ("));
+        assertEquals("", PostSearchService.toPrefixQuery("!!! ..."));
+        assertEquals("", PostSearchService.toPrefixQuery(null));
+    }
+
+    @Test
+    public void should_keep_only_first_terms_of_long_search_text() {
+        assertEquals(8, PostSearchService.toPrefixQuery("a b c d e f g h i j").split(" & ").length);
+    }
+
+    @Test
+    public void should_get_first_page_of_search_results_in_rank_order() {
+        // Mock
+        when(postRepository.searchFirstPage("foot:*", null, null, null, 2)).thenReturn(List.of(hit(11L, 600000L), hit(10L, 300000L)));
+        when(postRepository.findSummariesByPostIdIn(List.of(11L, 10L))).thenReturn(summariesOf(testPost, secondTestPost));
+
+        // When
+        PostFeedPage page = postSearchService.search("foot", null, null, null, null, 2);
+
+        // Then
+        assertEquals(2, page.getPosts().size());
+        assertEquals(11L, page.getPosts().get(0).getPostId());
+        assertEquals(10L, page.getPosts().get(1).getPostId());
+        assertEquals("300000_10", page.getNextCursor());
+    }
+
+    @Test
+    public void should_pass_normalized_filters() {
+        // Mock
+        when(postRepository.searchFirstPage(anyString(), any(), any(), any(), anyInt())).thenReturn(List.of());
+
+        // When
+        postSearchService.search("football", " Event ", "", true, null, 20);
+
+        // Then
+        verify(postRepository, times(1)).searchFirstPage("football:*", "event", null, "Y", 20);
+    }
+
+    @Test
+    public void should_continue_after_cursor_and_end_on_short_page() {
+        // Mock
+        when(postRepository.searchAfter("foot:*", null, null, "N", 300000L, 10L, 20)).thenReturn(List.of(hit(12L, 100000L)));
+        when(postRepository.findSummariesByPostIdIn(List.of(12L))).thenReturn(List.of());
+
+        // When
+        PostFeedPage page = postSearchService.search("foot", null, null, false, "300000_10", 20);
+
+        // Then
+        assertTrue(page.getPosts().isEmpty());
+        assertNull(page.getNextCursor());
+        verify(postRepository, never()).searchFirstPage(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    public void should_not_search_when_search_text_has_no_words() {
+        // When
+        PostFeedPage page = postSearchService.search(" ?! ", null, null, null, null, 20);
+
+        // Then
+        assertTrue(page.getPosts().isEmpty());
+        assertNull(page.getNextCursor());
+        verifyNoInteractions(postRepository);
+    }
+
+    @Test
+    public void should_not_search_when_cursor_is_invalid() {
+        // When
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> postSearchService.search("foot", null, null, null, "abc_10", 20));
+
+        // Then
+        assertEquals("Invalid search cursor: abc_10", exception.getMessage());
+    }
+}
@@ -1,6 +1,14 @@
 package com.socialising.services.service;
 
+import com.socialising.services.dto.AcceptedUser;
+import com.socialising.services.dto.DeletedPostLinks;
+import com.socialising.services.dto.HashtagCountDTO;
+import com.socialising.services.dto.InterestedUserResultDTO;
+import com.socialising.services.dto.InterestedUsersBatchDTO;
+import com.socialising.services.dto.LikeSummaryDTO;
 import com.socialising.services.dto.PostDTO;
+import com.socialising.services.dto.PostFeedPage;
+import com.socialising.services.exceptionHandler.InvalidDataException;
 import com.socialising.services.exceptionHandler.PostUpdateException;
 import com.socialising.services.mapper.PostMapper;
 import com.socialising.services.model.Tag;
@@ -8,12 +16,15 @@ import com.socialising.services.repository.TagRepository;
 import org.apache.commons.lang3.ArrayUtils;
 
 import com.socialising.services.config.JwtService;
+import com.socialising.services.constants.InterestedUserAction;
+import com.socialising.services.constants.InterestedUserResult;
 import com.socialising.services.constants.Role;
 import com.socialising.services.model.Post;
 import com.socialising.services.model.User;
 import com.socialising.services.repository.ImageRepository;
 import com.socialising.services.repository.PostRepository;
 import com.socialising.services.repository.UserRepository;
+import com.socialising.services.util.IdGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -21,15 +32,23 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
+import static com.socialising.services.service.PostSummaries.summariesOf;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -54,6 +73,54 @@ class PostServiceTest {
     @Mock
     private PostMapper postMapper;
 
+    @Mock
+    private TimelineService timelineService;
+
+    @Mock
+    private PostLikeService postLikeService;
+
+    @Mock
+    private IdGenerator idGenerator;
+
+    @Mock
+    private HashtagService hashtagService;
+
+    @Mock
+    private EventReminderService eventReminderService;
+
+    @Mock
+    private CascadeJobService cascadeJobService;
+
+    @Mock
+    private PostCacheService postCacheService;
+
+    @Mock
+    private PostSearchService postSearchService;
+
+    @Mock
+    private FacetIndexService facetIndexService;
+
+    @Mock
+    private EngagementCounterService engagementCounterService;
+
+    @Mock
+    private OptimisticRetryService optimisticRetryService;
+
+    @Mock
+    private SeatReservationService seatReservationService;
+
+    @Mock
+    private PostArchiveService postArchiveService;
+
+    @Mock
+    private PostViewService postViewService;
+
+    @Mock
+    private SeenPostsService seenPostsService;
+
+    @Mock
+    private RequestIdentityMap requestIdentityMap;
+
     @InjectMocks
     private PostService postService;
 
@@ -115,8 +182,32 @@ class PostServiceTest {
 //        }
 //    }
 
+    private DeletedPostLinks deletedLinks(long interestedUsers, long confirmedUsers, long likes) {
+        return new DeletedPostLinks() {
+            public Long getInterestedUsers() { return interestedUsers; }
+            public Long getConfirmedUsers() { return confirmedUsers; }
+            public Long getLikes() { return likes; }
+        };
+    }
+
     @BeforeEach
     void setUp() {
+        // The post cache is disabled, reads go straight to the repository
+        when(postCacheService.get(any())).thenAnswer(invocation -> postRepository.findById(invocation.getArgument(0)));
+        // Mutations run once, as they do when nothing conflicts
+        when(optimisticRetryService.run(anyString(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(optimisticRetryService).runAfterCommit(anyString(), any());
+        // Users are read from the repository on every lookup, as outside a request
+        when(requestIdentityMap.findUserByUsername(any())).thenAnswer(invocation -> userRepository.findByUsername(invocation.getArgument(0)));
+        // Posts have no capacity unless a test sets one
+        when(seatReservationService.reserve(any())).thenReturn(true);
+        when(postRepository.lockFreeSeats(any())).thenReturn(Integer.MAX_VALUE);
+        // Deleted posts had no user links or likes unless a test sets them
+        when(postRepository.deletePostWithLinks(any())).thenReturn(deletedLinks(0, 0, 0));
+
 
         postId = 1L;
         secondPostId = 6L;
@@ -165,8 +256,8 @@ class PostServiceTest {
                 .description("This is test post")
                 .postType("general")
                 .timeType("later")
-                .postStartTs("2024-07-13")
-                .postEndTs("2024-08-15")
+                .postStartTs(Timestamp.valueOf("2024-07-13 00:00:00"))
+                .postEndTs(Timestamp.valueOf("2024-08-15 00:00:00"))
                 .location("Amity")
                 .onlyForWomen('N')
                 .confirmedUsers(new ArrayList<>())
@@ -179,8 +270,8 @@ class PostServiceTest {
                 .description("This is second test post")
                 .postType("general")
                 .timeType("later")
-                .postStartTs("2024-06-21")
-                .postEndTs("2024-06-22")
+                .postStartTs(Timestamp.valueOf("2024-06-21 00:00:00"))
+                .postEndTs(Timestamp.valueOf("2024-06-22 00:00:00"))
                 .location("Srinagar")
                 .onlyForWomen('Y')
                 .confirmedUsers(new ArrayList<>())
@@ -230,6 +321,7 @@ class PostServiceTest {
 
         // Mock saving of post
         when(postRepository.save(any(Post.class))).thenReturn(testPost);
+        when(idGenerator.nextId()).thenReturn(postId);
 
         // When
         PostDTO addedPostDTO = postService.addPost(testPostDTO, "Bearer " + mockJwtToken);
@@ -242,7 +334,9 @@ class PostServiceTest {
         verify(jwtService, times(1)).extractUsername(anyString());
         verify(jwtService, times(1)).extractUsername(anyString());
         verify(userRepository, times(1)).findByUsername(ownerUsername);
-        verify(postRepository, times(1)).save(any());
+        verify(postRepository, times(1)).save(argThat(post -> postId.equals(post.getPostId())));
+        verify(timelineService, times(1)).onPostCreated(any(Post.class));
+        verify(facetIndexService, times(1)).index(any(Post.class));
     }
 
     @Test
@@ -325,8 +419,8 @@ class PostServiceTest {
                 .ownerUser(ownerUser)
                 .postType("general")
                 .timeType("later")
-                .postStartTs("2024-06-11")
-                .postEndTs("2024-06-15")
+                .postStartTs(Timestamp.valueOf("2024-06-11 00:00:00"))
+                .postEndTs(Timestamp.valueOf("2024-06-15 00:00:00"))
                 .location("Kanpur")
                 .onlyForWomen('Y')
                 .build());
@@ -336,14 +430,14 @@ class PostServiceTest {
                 .ownerUser(otherUser)
                 .postType("event")
                 .timeType("now")
-                .postStartTs("2024-07-13")
-                .postEndTs("2024-08-15")
+                .postStartTs(Timestamp.valueOf("2024-07-13 00:00:00"))
+                .postEndTs(Timestamp.valueOf("2024-08-15 00:00:00"))
                 .location("Amity")
                 .onlyForWomen('N')
                 .build());
 
         // Mock
-        when(postRepository.findAll()).thenReturn(mockPosts);
+        when(postRepository.findAllSummaries()).thenReturn(summariesOf(mockPosts));
         when(postRepository.count()).thenReturn((long) mockPosts.size());
 
         // When
@@ -357,7 +451,138 @@ class PostServiceTest {
         assertEquals(allPosts.get(1).getUsername(), otherUsername);
 
         verify(postRepository).count();
-        verify(postRepository).findAll();
+        verify(postRepository).findAllSummaries();
+    }
+
+    // getFeed
+
+    @Test
+    public void should_get_first_feed_page_with_next_cursor_when_page_is_full() {
+        // Given
+        testPost.setCreatedTs(Timestamp.valueOf("2024-07-13 10:00:00"));
+        secondTestPost.setCreatedTs(Timestamp.valueOf("2024-07-12 10:00:00"));
+
+        // Mock
+        when(postRepository.findFeedFirstPage(any(Pageable.class))).thenReturn(summariesOf(testPost, secondTestPost));
+
+        // When
+        PostFeedPage feedPage = postService.getFeed(null, 2);
+
+        // Then
+        assertEquals(2, feedPage.getPosts().size());
+        assertEquals(postId, feedPage.getPosts().get(0).getPostId());
+        assertEquals(ownerUsername, feedPage.getPosts().get(0).getUsername());
+        assertEquals(secondTestPost.getCreatedTs().getTime() + "_" + secondPostId, feedPage.getNextCursor());
+        verify(postRepository).findFeedFirstPage(PageRequest.of(0, 2));
+        verify(postRepository, never()).findAll();
+    }
+
+    @Test
+    public void should_get_feed_page_after_cursor_and_end_feed_when_page_is_short() {
+        // Given
+        Timestamp createdTs = Timestamp.valueOf("2024-07-13 10:00:00");
+        secondTestPost.setCreatedTs(Timestamp.valueOf("2024-07-12 10:00:00"));
+
+        // Mock
+        when(postRepository.findFeedAfter(eq(createdTs), eq(postId), any(Pageable.class))).thenReturn(summariesOf(secondTestPost));
+
+        // When
+        PostFeedPage feedPage = postService.getFeed(createdTs.getTime() + "_" + postId, 20);
+
+        // Then
+        assertEquals(1, feedPage.getPosts().size());
+        assertEquals(secondPostId, feedPage.getPosts().get(0).getPostId());
+        assertNull(feedPage.getNextCursor());
+        verify(postRepository, never()).findFeedFirstPage(any());
+    }
+
+    @Test
+    public void should_cap_feed_page_size() {
+        // Mock
+        when(postRepository.findFeedFirstPage(any(Pageable.class))).thenReturn(new ArrayList<>());
+
+        // When
+        PostFeedPage feedPage = postService.getFeed("", 10000);
+
+        // Then
+        assertTrue(feedPage.getPosts().isEmpty());
+        assertNull(feedPage.getNextCursor());
+        verify(postRepository).findFeedFirstPage(PageRequest.of(0, 100));
+    }
+
+    @Test
+    public void should_not_get_feed_when_cursor_is_invalid() {
+        // When
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> postService.getFeed("not-a-cursor", 20));
+
+        // Then
+        assertEquals("Invalid feed cursor: not-a-cursor", exception.getMessage());
+        verify(postRepository, never()).findFeedAfter(any(), any(), any());
+    }
+
+    @Test
+    public void should_skip_posts_already_seen_and_fill_page_from_next_one() {
+        // Given
+        String token = "Bearer mock.jwt.token";
+        testPost.setCreatedTs(Timestamp.valueOf("2024-07-13 10:00:00"));
+        secondTestPost.setCreatedTs(Timestamp.valueOf("2024-07-12 10:00:00"));
+
+        // Mock
+        when(jwtService.extractUsername(token.substring(7))).thenReturn(otherUsername);
+        when(postRepository.findFeedFirstPage(any(Pageable.class))).thenReturn(summariesOf(testPost));
+        when(postRepository.findFeedAfter(eq(testPost.getCreatedTs()), eq(postId), any(Pageable.class))).thenReturn(summariesOf(secondTestPost));
+        when(seenPostsService.seen(otherUsername, List.of(postId))).thenReturn(Set.of(postId));
+        when(seenPostsService.seen(otherUsername, List.of(secondPostId))).thenReturn(Set.of());
+
+        // When
+        PostFeedPage feedPage = postService.getFeed(null, 1, token);
+
+        // Then
+        assertEquals(1, feedPage.getPosts().size());
+        assertEquals(secondPostId, feedPage.getPosts().get(0).getPostId());
+        assertEquals(secondTestPost.getCreatedTs().getTime() + "_" + secondPostId, feedPage.getNextCursor());
+        verify(seenPostsService, times(1)).markSeen(otherUsername, List.of(secondPostId));
+    }
+
+    @Test
+    public void should_serve_every_post_of_feed_without_token() {
+        // Mock
+        when(postRepository.findFeedFirstPage(any(Pageable.class))).thenReturn(summariesOf(testPost, secondTestPost));
+
+        // When
+        PostFeedPage feedPage = postService.getFeed(null, 20, null);
+
+        // Then
+        assertEquals(2, feedPage.getPosts().size());
+        verify(seenPostsService, never()).seen(any(), any());
+        verify(seenPostsService, never()).markSeen(any(), any());
+    }
+
+    @Test
+    public void should_stream_all_posts_page_by_page() {
+        // Given
+        List<Post> fullPage = new ArrayList<>();
+        for (long i = 100; i > 0; i--) {
+            fullPage.add(Post.builder()
+                    .postId(i + 100)
+                    .ownerUser(ownerUser)
+                    .createdTs(new Timestamp(i * 1000))
+                    .build());
+        }
+
+        // Mock
+        when(postRepository.findFeedFirstPage(any(Pageable.class))).thenReturn(summariesOf(fullPage));
+        when(postRepository.findFeedAfter(eq(new Timestamp(1000)), eq(101L), any(Pageable.class))).thenReturn(summariesOf(testPost));
+
+        // When
+        List<PostDTO> streamed = new ArrayList<>();
+        postService.streamAllPosts(streamed::add);
+
+        // Then
+        assertEquals(101, streamed.size());
+        assertEquals(postId, streamed.get(100).getPostId());
+        verify(postRepository, times(1)).findFeedFirstPage(any(Pageable.class));
+        verify(postRepository, times(1)).findFeedAfter(any(), any(), any());
     }
 
     // getPostById
@@ -389,7 +614,49 @@ class PostServiceTest {
         // Then
         assertNotNull(responsePost);
         assertEquals(postId, responsePost.getPostId());
-        verify(postRepository, times(2)).findById(postId);
+        verify(postRepository, times(1)).findById(postId);
+    }
+
+    @Test
+    public void should_get_archived_post_when_it_left_post_table() {
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.empty());
+        when(postArchiveService.getArchivedPost(postId)).thenReturn(Optional.of(testPost));
+
+        // When
+        Post responsePost = postService.getPostById(postId);
+
+        // Then
+        assertNotNull(responsePost);
+        assertEquals(postId, responsePost.getPostId());
+        verify(postArchiveService, times(1)).getArchivedPost(postId);
+    }
+
+    // recordViews
+
+    @Test
+    public void should_count_views_of_the_user_of_the_token() {
+        // Given
+        String token = "Bearer mock.jwt.token";
+
+        // Mock
+        when(jwtService.extractUsername(token.substring(7))).thenReturn(otherUsername);
+
+        // When
+        postService.recordViews(List.of(postId, secondPostId), token, "10.0.0.1");
+
+        // Then
+        verify(postViewService, times(1)).recordViews(List.of(postId, secondPostId), otherUsername);
+    }
+
+    @Test
+    public void should_count_views_of_the_client_address_without_token() {
+        // When
+        postService.recordViews(List.of(postId), null, "10.0.0.1");
+
+        // Then
+        verify(postViewService, times(1)).recordViews(List.of(postId), "10.0.0.1");
+        verify(jwtService, never()).extractUsername(any());
     }
 
     // update Post
@@ -449,6 +716,50 @@ class PostServiceTest {
         assertEquals("private", result.getPostType());
         verify(postRepository, times(2)).findById(postId);
         verify(postRepository, times(1)).save(any(Post.class));
+        verify(eventReminderService, never()).reschedule(any(), any());
+        verify(seatReservationService, never()).promote(any());
+        verify(postCacheService, times(1)).invalidate(postId);
+    }
+
+    @Test
+    public void should_reschedule_reminders_when_post_start_changes() {
+        // Mock JWT token
+        String mockJwtToken = "Bearer mock.jwt.token";
+        testUpdatePostDTO.setPostStartTs("2024-07-20 18:00");
+
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(ownerUsername);
+        when(postRepository.save(any(Post.class))).thenReturn(testPost);
+        when(tagRepository.findByTagName("Tech")).thenReturn(tag);
+        when(postRepository.findConfirmedUsernames(postId)).thenReturn(List.of(otherUsername));
+
+        // When
+        PostDTO result = postService.updatePost(postId, mockJwtToken, testUpdatePostDTO);
+
+        // Then
+        assertEquals("2024-07-20 18:00:00", result.getPostStartTs());
+        verify(eventReminderService, times(1)).reschedule(testPost, List.of(otherUsername));
+    }
+
+    @Test
+    public void should_promote_waitlisted_users_when_post_capacity_changes() {
+        // Mock JWT token
+        String mockJwtToken = "Bearer mock.jwt.token";
+        testUpdatePostDTO.setCapacity(10);
+
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(ownerUsername);
+        when(postRepository.save(any(Post.class))).thenReturn(testPost);
+        when(tagRepository.findByTagName("Tech")).thenReturn(tag);
+
+        // When
+        postService.updatePost(postId, mockJwtToken, testUpdatePostDTO);
+
+        // Then
+        verify(optimisticRetryService, times(1)).runAfterCommit(eq("promote"), any());
+        verify(seatReservationService, times(1)).promote(testPost);
     }
 
 //    @Test
@@ -488,7 +799,7 @@ class PostServiceTest {
         // Then
         assertEquals(-1, result);
         verify(postRepository, times(1)).findById(postId);
-        verify(postRepository, never()).deleteById(postId);
+        verify(postRepository, never()).deletePostWithLinks(postId);
     }
 
     @Test
@@ -507,7 +818,11 @@ class PostServiceTest {
         // Then
         assertEquals(1, result);
         verify(postRepository, times(2)).findById(postId);
-        verify(postRepository).deleteById(postId);
+        verify(postRepository).deletePostWithLinks(postId);
+        verify(hashtagService, times(1)).removeAll(postId);
+        verify(facetIndexService, times(1)).remove(postId);
+        verify(eventReminderService, times(1)).cancelAll(postId);
+        verify(postCacheService, times(1)).invalidate(postId);
 //        assertEquals(log.info()).info("Post with Post ID: {} deleted from DB", postId);
     }
 
@@ -527,7 +842,9 @@ class PostServiceTest {
         // Then
         assertEquals(1, result);
         verify(postRepository, times(2)).findById(postId);
-        verify(postRepository).deleteById(postId);
+        verify(postRepository).deletePostWithLinks(postId);
+        verify(hashtagService, times(1)).removeAll(postId);
+        verify(facetIndexService, times(1)).remove(postId);
 //        assertEquals(log.info()).info("Post with Post ID: {} deleted from DB", postId);
     }
 
@@ -547,7 +864,7 @@ class PostServiceTest {
         // Then
         assertEquals(-1, result);
         verify(postRepository, times(2)).findById(postId);
-        verify(postRepository, never()).deleteById(postId);
+        verify(postRepository, never()).deletePostWithLinks(postId);
     }
 
     // Test for deleting post from confirmed users reminder posts list & interested users requested posts list, when a post is deleted
@@ -570,6 +887,7 @@ class PostServiceTest {
         when(jwtService.extractUsername(token.substring(7))).thenReturn(ownerUsername);
         when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
         when(userRepository.findByUsername(ownerUsername)).thenReturn(Optional.of(ownerUser));
+        when(postRepository.deletePostWithLinks(postId)).thenReturn(deletedLinks(1, 1, 3));
 
         // When
         int result = postService.deletePost(postId, token);
@@ -577,11 +895,33 @@ class PostServiceTest {
         // Then
         assertEquals(1, result);
         verify(postRepository, times(2)).findById(postId);
-        verify(postRepository).deleteById(postId);
-        verify(userRepository).save(otherUser);
-        verify(userRepository).save(secondOtherUser);
-        assertEquals(0, otherUser.getRequestedPosts().size());
-        assertEquals(0, secondOtherUser.getReminderPosts().size());
+        verify(postRepository).deletePostWithLinks(postId);
+        verify(userRepository, never()).save(any());
+        verify(cascadeJobService, never()).submit(any(), any(), anyLong(), any(), any());
+    }
+
+    @Test
+    public void should_delete_post_with_many_users_in_background() {
+        // Given
+        String token = "Bearer mock.jwt.token";
+
+        // Mock
+        when(jwtService.extractUsername(token.substring(7))).thenReturn(ownerUsername);
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(userRepository.findByUsername(ownerUsername)).thenReturn(Optional.of(ownerUser));
+        when(postRepository.countUserLinksOfPost(postId)).thenReturn(20000L);
+        when(cascadeJobService.runInBackground(20000L)).thenReturn(true);
+        when(cascadeJobService.getChunkSize()).thenReturn(1000);
+
+        // When
+        int result = postService.deletePost(postId, token);
+
+        // Then
+        assertEquals(1, result);
+        verify(cascadeJobService, times(1)).submit(eq("post"), eq(postId), eq(20000L), anyList(), any(Runnable.class));
+        verify(eventReminderService, times(1)).cancelAll(postId);
+        verify(postRepository, never()).deleteInterestedUsersOfPost(postId);
+        verify(postRepository, never()).deletePostWithLinks(postId);
     }
 
 
@@ -616,6 +956,7 @@ class PostServiceTest {
         assertEquals(expectedInterestedUsers, testPost.getInterestedUsers());
         verify(userRepository, times(1)).save(otherUser);
         verify(postRepository, times(1)).save(testPost);
+        verify(engagementCounterService, times(1)).userInterested(postId);
     }
 
     @Test
@@ -764,23 +1105,22 @@ class PostServiceTest {
     public void should_get_interested_users_when_users_exist() {
         // Given
         String token = "Bearer mock.jwt.token";
-        List<User> interestedUsers = new ArrayList<>();
-        interestedUsers.add(otherUser);
-        testPost.setInterestedUsers(interestedUsers);
 
         // Mock
         when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
         when(jwtService.extractUsername(token.substring(7))).thenReturn(ownerUsername);
         when(userRepository.findByUsername(ownerUsername)).thenReturn(Optional.of(ownerUser));
+        when(postRepository.findInterestedUsernames(postId)).thenReturn(List.of(otherUsername));
 
         // When
         List<String> responseInterestedUsers = postService.getInterestedUsers(postId, token);
 
         // Then
         assertNotNull(responseInterestedUsers);
-        assertEquals(interestedUsers.size(), responseInterestedUsers.size());
-        assertEquals(interestedUsers.get(0).getUsername(), responseInterestedUsers.get(0));
+        assertEquals(1, responseInterestedUsers.size());
+        assertEquals(otherUsername, responseInterestedUsers.get(0));
         verify(postRepository, times(2)).findById(postId);
+        verify(userRepository, never()).findByUsername(otherUsername);
     }
 
     @Test
@@ -792,6 +1132,7 @@ class PostServiceTest {
         when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
         when(jwtService.extractUsername(token.substring(7))).thenReturn(ownerUsername);
         when(userRepository.findByUsername(ownerUsername)).thenReturn(Optional.of(ownerUser));
+        when(postRepository.findInterestedUsernames(postId)).thenReturn(List.of());
 
         // When
         List<String> responseInterestedUsers = postService.getInterestedUsers(postId, token);
@@ -850,6 +1191,42 @@ class PostServiceTest {
         assertEquals(0, testPost.getInterestedUsers().size());
         assertEquals(1, otherUser.getReminderPosts().size());
         assertEquals(1, testPost.getConfirmedUsers().size());
+        verify(eventReminderService, times(1)).schedule(testPost, otherUsername);
+        verify(seatReservationService, times(1)).reserve(postId);
+        verify(engagementCounterService, times(1)).interestedUserRemoved(postId);
+    }
+
+    @Test
+    public void should_waitlist_user_when_post_is_full() {
+        // Given
+        List<User> interestedUsers = new ArrayList<>();
+        interestedUsers.add(otherUser);
+        testPost.setInterestedUsers(interestedUsers);
+
+        List<Post> requestedPosts = new ArrayList<>();
+        requestedPosts.add(testPost);
+        otherUser.setRequestedPosts(requestedPosts);
+
+        String token = "Bearer mock.jwt.token";
+
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(userRepository.findByUsername(otherUsername)).thenReturn(Optional.of(otherUser));
+        when(jwtService.extractUsername(token.substring(7))).thenReturn(ownerUsername);
+        when(userRepository.findByUsername(ownerUsername)).thenReturn(Optional.of(ownerUser));
+        when(seatReservationService.reserve(postId)).thenReturn(false);
+
+        // When
+        int result = postService.acceptInterestedUser(postId, otherUsername, token);
+
+        // Then
+        assertEquals(0, result);
+        assertEquals(0, otherUser.getRequestedPosts().size());
+        assertEquals(0, testPost.getInterestedUsers().size());
+        assertEquals(0, testPost.getConfirmedUsers().size());
+        verify(seatReservationService, times(1)).waitlist(postId, otherUsername);
+        verify(engagementCounterService, times(1)).interestedUserRemoved(postId);
+        verify(eventReminderService, never()).schedule(any(), any());
     }
 
     @Test
@@ -953,6 +1330,7 @@ class PostServiceTest {
         assertEquals(0, testPost.getConfirmedUsers().size());
         verify(userRepository, never()).save(otherUser);
         verify(postRepository, never()).save(testPost);
+        verify(eventReminderService, never()).schedule(any(), any());
     }
 
     @Test
@@ -1071,6 +1449,7 @@ class PostServiceTest {
         assertEquals(0, testPost.getConfirmedUsers().size());
         verify(userRepository, times(1)).save(otherUser);
         verify(postRepository, times(1)).save(testPost);
+        verify(engagementCounterService, times(1)).interestedUserRemoved(postId);
     }
 
     @Test
@@ -1181,32 +1560,178 @@ class PostServiceTest {
         verify(postRepository, never()).save(testPost);
     }
 
-    // getConfirmedUsers
+    // updateInterestedUsers
 
     @Test
-    public void should_get_confirmed_users_when_users_exist() {
+    public void should_accept_interested_users_in_one_statement_and_report_each_user() {
         // Given
-        List<User> confirmedUsers = new ArrayList<>();
-        confirmedUsers.add(otherUser);
-        testPost.setConfirmedUsers(confirmedUsers);
+        String token = "Bearer mock.jwt.token";
+        InterestedUsersBatchDTO batch = InterestedUsersBatchDTO.builder()
+                .action(InterestedUserAction.ACCEPT)
+                .usernames(List.of(otherUsername, secondOtherUsername, otherUsername))
+                .build();
+
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(jwtService.extractUsername(token.substring(7))).thenReturn(ownerUsername);
+        when(userRepository.findByUsername(ownerUsername)).thenReturn(Optional.of(ownerUser));
+        when(postRepository.acceptInterestedUsers(postId, new String[]{otherUsername, secondOtherUsername}, Integer.MAX_VALUE))
+                .thenReturn(List.of(acceptedUser(otherUsername, true, true)));
+
+        // When
+        List<InterestedUserResultDTO> results = postService.updateInterestedUsers(postId, batch, token);
+
+        // Then
+        assertEquals(2, results.size());
+        assertEquals(otherUsername, results.get(0).getUsername());
+        assertEquals(InterestedUserResult.ACCEPTED, results.get(0).getResult());
+        assertEquals(secondOtherUsername, results.get(1).getUsername());
+        assertEquals(InterestedUserResult.NOT_INTERESTED, results.get(1).getResult());
+        verify(engagementCounterService, times(1)).interestedUsersConfirmed(postId, 1, 1);
+        verify(eventReminderService, times(1)).schedule(testPost, otherUsername);
+        verify(userRepository, never()).findByUsername(otherUsername);
+        verify(postRepository, never()).save(any(Post.class));
+    }
+
+    @Test
+    public void should_waitlist_accepted_users_past_the_free_seats_of_post() {
+        // Given
+        testPost.setCapacity(5);
+        String token = "Bearer mock.jwt.token";
+        InterestedUsersBatchDTO batch = InterestedUsersBatchDTO.builder()
+                .action(InterestedUserAction.ACCEPT)
+                .usernames(List.of(otherUsername, secondOtherUsername))
+                .build();
 
         // Mock
         when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(jwtService.extractUsername(token.substring(7))).thenReturn(ownerUsername);
+        when(userRepository.findByUsername(ownerUsername)).thenReturn(Optional.of(ownerUser));
+        when(postRepository.lockFreeSeats(postId)).thenReturn(1);
+        when(postRepository.acceptInterestedUsers(postId, new String[]{otherUsername, secondOtherUsername}, 1))
+                .thenReturn(List.of(acceptedUser(otherUsername, true, true), acceptedUser(secondOtherUsername, false, false)));
+
+        // When
+        List<InterestedUserResultDTO> results = postService.updateInterestedUsers(postId, batch, token);
+
+        // Then
+        assertEquals(InterestedUserResult.ACCEPTED, results.get(0).getResult());
+        assertEquals(InterestedUserResult.WAITLISTED, results.get(1).getResult());
+        verify(engagementCounterService, times(1)).interestedUsersConfirmed(postId, 2, 1);
+        verify(eventReminderService, times(1)).schedule(testPost, otherUsername);
+        verify(eventReminderService, never()).schedule(testPost, secondOtherUsername);
+    }
+
+    @Test
+    public void should_reject_interested_users_in_one_statement() {
+        // Given
+        String token = "Bearer mock.jwt.token";
+        InterestedUsersBatchDTO batch = InterestedUsersBatchDTO.builder()
+                .action(InterestedUserAction.REJECT)
+                .usernames(List.of(otherUsername, secondOtherUsername))
+                .build();
+
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(jwtService.extractUsername(token.substring(7))).thenReturn(ownerUsername);
+        when(userRepository.findByUsername(ownerUsername)).thenReturn(Optional.of(ownerUser));
+        when(postRepository.rejectInterestedUsers(postId, new String[]{otherUsername, secondOtherUsername}))
+                .thenReturn(List.of(otherUsername, secondOtherUsername));
+
+        // When
+        List<InterestedUserResultDTO> results = postService.updateInterestedUsers(postId, batch, token);
+
+        // Then
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(result -> result.getResult() == InterestedUserResult.REJECTED));
+        verify(engagementCounterService, times(1)).interestedUsersRemoved(postId, 2);
+        verify(eventReminderService, never()).schedule(any(), any());
+    }
+
+    @Test
+    public void should_not_update_interested_users_when_user_is_not_owner_of_post() {
+        // Given
+        String token = "Bearer mock.jwt.token";
+        InterestedUsersBatchDTO batch = InterestedUsersBatchDTO.builder()
+                .action(InterestedUserAction.ACCEPT)
+                .usernames(List.of(secondOtherUsername))
+                .build();
+
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(jwtService.extractUsername(token.substring(7))).thenReturn(otherUsername);
+        when(userRepository.findByUsername(otherUsername)).thenReturn(Optional.of(otherUser));
+
+        // When
+        List<InterestedUserResultDTO> results = postService.updateInterestedUsers(postId, batch, token);
+
+        // Then
+        assertNull(results);
+        verify(postRepository, never()).acceptInterestedUsers(any(), any(), anyInt());
+        verify(engagementCounterService, never()).interestedUsersConfirmed(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void should_get_null_when_updating_interested_users_of_missing_post() {
+        // Given
+        String token = "Bearer mock.jwt.token";
+        InterestedUsersBatchDTO batch = InterestedUsersBatchDTO.builder()
+                .action(InterestedUserAction.REJECT)
+                .usernames(List.of(otherUsername))
+                .build();
+
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.empty());
+
+        // When
+        List<InterestedUserResultDTO> results = postService.updateInterestedUsers(postId, batch, token);
+
+        // Then
+        assertNull(results);
+        verify(postRepository, never()).rejectInterestedUsers(any(), any());
+    }
+
+    @Test
+    public void should_not_update_more_interested_users_than_the_batch_limit() {
+        // Given
+        String token = "Bearer mock.jwt.token";
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i <= 1000; i++) {
+            usernames.add("user" + i);
+        }
+        InterestedUsersBatchDTO batch = InterestedUsersBatchDTO.builder()
+                .action(InterestedUserAction.ACCEPT)
+                .usernames(usernames)
+                .build();
+
+        // When, Then
+        assertThrows(IllegalArgumentException.class, () -> postService.updateInterestedUsers(postId, batch, token));
+        verify(postRepository, never()).acceptInterestedUsers(any(), any(), anyInt());
+    }
+
+    // getConfirmedUsers
+
+    @Test
+    public void should_get_confirmed_users_when_users_exist() {
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(postRepository.findConfirmedUsernames(postId)).thenReturn(List.of(otherUsername));
 
         // When
         List<String> responseConfirmedUsers = postService.getConfirmedUsers(postId);
 
         // Then
         assertNotNull(responseConfirmedUsers);
-        assertEquals(confirmedUsers.size(), responseConfirmedUsers.size());
-        assertEquals(confirmedUsers.get(0).getUsername(), responseConfirmedUsers.get(0));
-        verify(postRepository, times(2)).findById(postId);
+        assertEquals(1, responseConfirmedUsers.size());
+        assertEquals(otherUsername, responseConfirmedUsers.get(0));
+        verify(postRepository, times(1)).findById(postId);
     }
 
     @Test
     public void should_get_zero_confirmed_users_when_users_does_not_exist() {
         // Mock
         when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(postRepository.findConfirmedUsernames(postId)).thenReturn(List.of());
 
         // When
         List<String> responseConfirmedUsers = postService.getConfirmedUsers(postId);
@@ -1214,13 +1739,14 @@ class PostServiceTest {
         // Then
         assertNotNull(responseConfirmedUsers);
         assertEquals(0, responseConfirmedUsers.size());
-        verify(postRepository, times(2)).findById(postId);
+        verify(postRepository, times(1)).findById(postId);
     }
 
     @Test
     public void should_get_null_for_confirmed_users_when_post_does_not_exist() {
         // Mock
         when(postRepository.findById(postId)).thenReturn(Optional.empty());
+        when(postArchiveService.getConfirmedUsers(postId)).thenReturn(null);
 
         // When
         List<String> responseConfirmedUsers = postService.getConfirmedUsers(postId);
@@ -1230,6 +1756,20 @@ class PostServiceTest {
         verify(postRepository, times(1)).findById(postId);
     }
 
+    @Test
+    public void should_get_confirmed_users_of_archived_post() {
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.empty());
+        when(postArchiveService.getConfirmedUsers(postId)).thenReturn(List.of(otherUsername));
+
+        // When
+        List<String> responseConfirmedUsers = postService.getConfirmedUsers(postId);
+
+        // Then
+        assertEquals(List.of(otherUsername), responseConfirmedUsers);
+        verify(postRepository, never()).findConfirmedUsernames(postId);
+    }
+
     // deleteConfirmedUser
 
     @Test
@@ -1262,6 +1802,43 @@ class PostServiceTest {
          assertEquals(0, otherUser.getReminderPosts().size());
          verify(userRepository, times(1)).save(otherUser);
          verify(postRepository, times(1)).save(testPost);
+         verify(eventReminderService, times(1)).cancel(postId, otherUsername);
+         verify(seatReservationService, times(1)).release(testPost);
+    }
+
+    @Test
+    public void should_cancel_reminder_of_deleted_confirmed_user_after_commit() {
+        // Given
+        List<User> confirmedUsers = new ArrayList<>();
+        confirmedUsers.add(otherUser);
+        testPost.setConfirmedUsers(confirmedUsers);
+
+        List<Post> reminderPosts = new ArrayList<>();
+        reminderPosts.add(testPost);
+        otherUser.setReminderPosts(reminderPosts);
+
+        String token = "Bearer mock.jwt.token";
+
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(userRepository.findByUsername(otherUsername)).thenReturn(Optional.of(otherUser));
+        when(jwtService.extractUsername(token.substring(7))).thenReturn(ownerUsername);
+        when(userRepository.findByUsername(ownerUsername)).thenReturn(Optional.of(ownerUser));
+
+        // When
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            int result = postService.deleteConfirmedUser(postId, otherUsername, token);
+
+            // Then
+            assertEquals(1, result);
+            verify(eventReminderService, never()).cancel(anyLong(), anyString());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(eventReminderService, times(1)).cancel(postId, otherUsername);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
     }
 
     @Test
@@ -1374,37 +1951,32 @@ class PostServiceTest {
         // Mock
         when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
         when(jwtService.extractUsername(token.substring(7))).thenReturn(otherUsername);
-        when(postRepository.save(testPost)).thenReturn(testPost);
+        when(postLikeService.like(postId, otherUsername)).thenReturn(1);
 
         // When
         int result = postService.likeAPost(postId, token);
 
         // Then
         assertEquals(1, result);
-        assertEquals(1, testPost.getLikes().length);
-        assertEquals(otherUsername, testPost.getLikes()[0]);
-        verify(postRepository, times(1)).save(testPost);
+        verify(postLikeService, times(1)).like(postId, otherUsername);
+        verify(postRepository, never()).save(testPost);
     }
 
     @Test
     public void should_not_like_post_when_already_liked_by_same_user() {
         // Given
-        String[] likes = {"otherUser"};
-        testPost.setLikes(likes);
-
         String token = "Bearer mock.jwt.token";
 
         // Mock
         when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
         when(jwtService.extractUsername(token.substring(7))).thenReturn(otherUsername);
+        when(postLikeService.like(postId, otherUsername)).thenReturn(0);
 
         // When
         int result = postService.likeAPost(postId, token);
 
         // Then
         assertEquals(0, result);
-        assertEquals(1, testPost.getLikes().length);
-        assertEquals(otherUsername, testPost.getLikes()[0]);
         verify(postRepository, never()).save(testPost);
     }
 
@@ -1422,6 +1994,7 @@ class PostServiceTest {
 
         // Then
         assertEquals(-1, result);
+        verify(postLikeService, never()).like(anyLong(), anyString());
         verify(postRepository, never()).save(testPost);
     }
 
@@ -1430,18 +2003,17 @@ class PostServiceTest {
     @Test
     public void should_get_all_likes() {
         // Given
-        String[] likes = {"otherUser"};
-        testPost.setLikes(likes);
+        List<String> likes = List.of("otherUser");
 
         // Mock
         when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(postLikeService.getLikes(postId, 0, 50)).thenReturn(likes);
 
         // When
-        String[] responseLikes = postService.getAllLikesOnPost(postId);
+        List<String> responseLikes = postService.getAllLikesOnPost(postId, 0, 50);
 
         // Then
         assertNotNull(responseLikes);
-        assertEquals(likes.length, responseLikes.length);
         assertEquals(likes, responseLikes);
     }
 
@@ -1449,27 +2021,69 @@ class PostServiceTest {
     public void should_get_zero_likes_when_no_like_exists() {
         // Mock
         when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(postLikeService.getLikes(postId, 0, 50)).thenReturn(new ArrayList<>());
 
         // When
-        String[] responseLikes = postService.getAllLikesOnPost(postId);
+        List<String> responseLikes = postService.getAllLikesOnPost(postId, 0, 50);
 
         // Then
         assertNotNull(responseLikes);
-        assertEquals(0, responseLikes.length);
-        verify(postRepository, times(2)).findById(postId);
+        assertEquals(0, responseLikes.size());
+        verify(postRepository, times(1)).findById(postId);
     }
 
     @Test
     public void should_get_null_likes_when_post_does_not_exists() {
         // Mock
         when(postRepository.findById(postId)).thenReturn(Optional.empty());
+        when(postArchiveService.getLikes(postId, 0, 50)).thenReturn(null);
 
         // When
-        String[] responseLikes = postService.getAllLikesOnPost(postId);
+        List<String> responseLikes = postService.getAllLikesOnPost(postId, 0, 50);
 
         // Then
         assertNull(responseLikes);
         verify(postRepository, times(1)).findById(postId);
+        verify(postLikeService, never()).getLikes(anyLong(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void should_get_likes_of_archived_post() {
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.empty());
+        when(postArchiveService.getLikes(postId, 0, 50)).thenReturn(List.of(otherUsername));
+
+        // When
+        List<String> responseLikes = postService.getAllLikesOnPost(postId, 0, 50);
+
+        // Then
+        assertEquals(List.of(otherUsername), responseLikes);
+        verify(postLikeService, never()).getLikes(anyLong(), anyInt(), anyInt());
+    }
+
+    // getLikeSummary
+
+    @Test
+    public void should_get_like_summary_for_requesting_user() {
+        // Given
+        String token = "Bearer mock.jwt.token";
+        LikeSummaryDTO summary = LikeSummaryDTO.builder()
+                .postId(postId)
+                .likeCount(3)
+                .likedByMe(true)
+                .build();
+
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(jwtService.extractUsername(token.substring(7))).thenReturn(otherUsername);
+        when(postLikeService.getLikeSummary(postId, otherUsername)).thenReturn(summary);
+
+        // When
+        LikeSummaryDTO responseSummary = postService.getLikeSummary(postId, token);
+
+        // Then
+        assertEquals(3, responseSummary.getLikeCount());
+        assertTrue(responseSummary.isLikedByMe());
     }
 
     // removeAlikeOnPost
@@ -1477,22 +2091,20 @@ class PostServiceTest {
     @Test
     public void should_remove_like_on_post() {
         // Given
-        testPost.setLikes(new String[]{"otherUser"});
-
         String token = "Bearer mock.jwt.token";
 
         // Mock
         when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
         when(jwtService.extractUsername(token.substring(7))).thenReturn(otherUsername);
-        when(postRepository.save(testPost)).thenReturn(testPost);
+        when(postLikeService.unlike(postId, otherUsername)).thenReturn(1);
 
         // When
         int result = postService.removeAlikeOnPost(postId, token);
 
         // Then
         assertEquals(1, result);
-        assertEquals(0, testPost.getLikes().length);
-        verify(postRepository, times(1)).save(testPost);
+        verify(postLikeService, times(1)).unlike(postId, otherUsername);
+        verify(postRepository, never()).save(testPost);
     }
 
     @Test
@@ -1503,13 +2115,13 @@ class PostServiceTest {
         // Mock
         when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
         when(jwtService.extractUsername(token.substring(7))).thenReturn(otherUsername);
+        when(postLikeService.unlike(postId, otherUsername)).thenReturn(0);
 
         // When
         int result = postService.removeAlikeOnPost(postId, token);
 
         // Then
         assertEquals(0, result);
-        assertNull(testPost.getLikes());
         verify(postRepository, never()).save(testPost);
     }
 
@@ -1526,7 +2138,7 @@ class PostServiceTest {
 
         // Then
         assertEquals(-1, result);
-        assertNull(testPost.getLikes());
+        verify(postLikeService, never()).unlike(anyLong(), anyString());
         verify(postRepository, never()).save(testPost);
     }
 
@@ -1549,6 +2161,8 @@ class PostServiceTest {
         assertEquals(hashtags[0], responseAddHashtags[0]);
         verify(postRepository, times(2)).findById(postId);
         verify(postRepository, times(1)).save(testPost);
+        verify(hashtagService, times(1)).reindex(testPost, new String[]{}, responseAddHashtags);
+        verify(postCacheService, times(1)).invalidate(postId);
     }
 
     @Test
@@ -1572,6 +2186,7 @@ class PostServiceTest {
         assertEquals(expectedHashtags[expectedHashtags.length-1], responseAddHashtags[responseAddHashtags.length-1]);
         verify(postRepository, times(2)).findById(postId);
         verify(postRepository, times(1)).save(testPost);
+        verify(hashtagService, times(1)).reindex(testPost, new String[]{"existing", "notNew"}, expectedHashtags);
     }
 
     @Test
@@ -1589,6 +2204,7 @@ class PostServiceTest {
         assertNull(responseAddHashtags);
         verify(postRepository, times(1)).findById(postId);
         verify(postRepository, never()).save(testPost);
+        verify(hashtagService, never()).reindex(any(), any(), any());
     }
 
     // getHashtagsOfPost
@@ -1608,7 +2224,7 @@ class PostServiceTest {
         assertNotNull(responseAddHashtags);
         assertEquals(3, responseAddHashtags.length);
         assertEquals("viru", responseAddHashtags[0]);
-        verify(postRepository, times(2)).findById(postId);
+        verify(postRepository, times(1)).findById(postId);
     }
 
     @Test
@@ -1622,7 +2238,7 @@ class PostServiceTest {
         // Then
         assertNotNull(responseAddHashtags);
         assertEquals(0, responseAddHashtags.length);
-        verify(postRepository, times(2)).findById(postId);
+        verify(postRepository, times(1)).findById(postId);
     }
 
     @Test
@@ -1660,6 +2276,7 @@ class PostServiceTest {
         assertEquals("newHashTag", responseAddHashtags[0]);
         verify(postRepository, times(2)).findById(postId);
         verify(postRepository, times(1)).save(testPost);
+        verify(hashtagService, times(1)).reindex(testPost, new String[]{"viru", "rohirat", "partytime"}, newHashtags);
     }
 
     @Test
@@ -1697,6 +2314,7 @@ class PostServiceTest {
         assertNull(responseAddHashtags);
         verify(postRepository, times(1)).findById(postId);
         verify(postRepository, never()).save(testPost);
+        verify(hashtagService, never()).reindex(any(), any(), any());
     }
 
     // deleteHashtagsOfPost
@@ -1721,6 +2339,7 @@ class PostServiceTest {
         assertEquals("partytime", testPost.getHashtags()[1]);
         verify(postRepository, times(2)).findById(postId);
         verify(postRepository, times(1)).save(testPost);
+        verify(hashtagService, times(1)).reindex(testPost, new String[]{"viru", "rohirat", "partytime"}, new String[]{"viru", "partytime"});
     }
 
     @Test
@@ -1743,6 +2362,7 @@ class PostServiceTest {
         assertEquals("rohirat", testPost.getHashtags()[1]);
         verify(postRepository, times(2)).findById(postId);
         verify(postRepository, never()).save(testPost);
+        verify(hashtagService, never()).reindex(any(), any(), any());
     }
 
     @Test
@@ -1762,4 +2382,128 @@ class PostServiceTest {
         verify(postRepository, never()).save(testPost);
     }
 
-}
\ No newline at end of file
+    // getPostsByHashtag
+
+    @Test
+    public void should_get_posts_by_hashtag() {
+        // Given
+        PostFeedPage page = PostFeedPage.builder()
+                .posts(List.of(PostMapper.entityToDto(testPost)))
+                .nextCursor(null)
+                .build();
+
+        // Mock
+        when(hashtagService.getPostsByHashtag("partytime", null, 20)).thenReturn(page);
+
+        // When
+        PostFeedPage responsePage = postService.getPostsByHashtag("partytime", null, 20);
+
+        // Then
+        assertEquals(1, responsePage.getPosts().size());
+        assertNull(responsePage.getNextCursor());
+    }
+
+    // getTrendingHashtags
+
+    @Test
+    public void should_get_trending_hashtags() {
+        // Given
+        List<HashtagCountDTO> trending = List.of(new HashtagCountDTO("partytime", 12), new HashtagCountDTO("viru", 3));
+
+        // Mock
+        when(hashtagService.getTrendingHashtags(10)).thenReturn(trending);
+
+        // When
+        List<HashtagCountDTO> responseTrending = postService.getTrendingHashtags(10);
+
+        // Then
+        assertEquals(trending, responseTrending);
+    }
+
+    // getUpcomingEvents
+
+    @Test
+    public void should_get_events_starting_in_window() {
+        // Given
+        testPost.setPostType("event");
+        testPost.setPostStartTs(Timestamp.valueOf("2024-07-13 18:00:00"));
+        Timestamp from = Timestamp.valueOf("2024-07-01 00:00:00");
+        Timestamp to = Timestamp.valueOf("2024-08-01 00:00:00");
+
+        // Mock
+        when(postRepository.findEventsStartingBetween(from, to, PageRequest.of(0, 1))).thenReturn(summariesOf(testPost));
+
+        // When
+        PostFeedPage page = postService.getUpcomingEvents("2024-07-01", "2024-08-01T00:00", null, 1);
+
+        // Then
+        assertEquals(1, page.getPosts().size());
+        assertEquals("2024-07-13 18:00:00", page.getPosts().get(0).getPostStartTs());
+        assertEquals(testPost.getPostStartTs().getTime() + "_" + postId, page.getNextCursor());
+    }
+
+    @Test
+    public void should_continue_events_after_cursor_and_default_window_to_thirty_days() {
+        // Given
+        Timestamp from = Timestamp.valueOf("2024-07-01 00:00:00");
+        Timestamp to = Timestamp.valueOf("2024-07-31 00:00:00");
+        Timestamp lastStart = Timestamp.valueOf("2024-07-13 18:00:00");
+
+        // Mock
+        when(postRepository.findEventsStartingAfter(lastStart, postId, to, PageRequest.of(0, 20))).thenReturn(List.of());
+
+        // When
+        PostFeedPage page = postService.getUpcomingEvents("2024-07-01 00:00:00", null, lastStart.getTime() + "_" + postId, 20);
+
+        // Then
+        assertTrue(page.getPosts().isEmpty());
+        assertNull(page.getNextCursor());
+        verify(postRepository, never()).findEventsStartingBetween(any(), any(), any());
+    }
+
+    @Test
+    public void should_throw_when_event_window_is_not_a_date() {
+        assertThrows(IllegalArgumentException.class, () -> postService.getUpcomingEvents("next week", null, null, 20));
+    }
+
+    @Test
+    public void should_store_event_times_as_timestamps_when_adding_post() throws Exception {
+        // Given
+        String mockJwtToken = "Bearer mock.jwt.token";
+
+        // Mock
+        when(jwtService.extractUsername(anyString())).thenReturn(ownerUsername);
+        when(userRepository.findByUsername(ownerUsername)).thenReturn(Optional.of(ownerUser));
+
+        // When
+        PostDTO addedPostDTO = postService.addPost(testPostDTO, mockJwtToken);
+
+        // Then
+        verify(postRepository, times(1)).save(argThat(post -> Timestamp.valueOf("2024-07-13 00:00:00").equals(post.getPostStartTs())
+                && Timestamp.valueOf("2024-08-15 00:00:00").equals(post.getPostEndTs())));
+        assertEquals("2024-07-13 00:00:00", addedPostDTO.getPostStartTs());
+    }
+
+    @Test
+    public void should_not_update_post_with_invalid_event_time() {
+        // Given
+        String mockJwtToken = "Bearer mock.jwt.token";
+        testUpdatePostDTO.setPostStartTs("13/07/2024");
+
+        // Mock
+        when(postRepository.findById(postId)).thenReturn(Optional.of(testPost));
+        when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(ownerUsername);
+
+        // When / Then
+        assertThrows(InvalidDataException.class, () -> postService.updatePost(postId, mockJwtToken, testUpdatePostDTO));
+        verify(postRepository, never()).save(testPost);
+    }
+
+    private static AcceptedUser acceptedUser(String username, boolean newlyConfirmed, boolean seated) {
+        return new AcceptedUser() {
+            public String getUsername() { return username; }
+            public Boolean getNewlyConfirmed() { return newlyConfirmed; }
+            public Boolean getSeated() { return seated; }
+        };
+    }
+}
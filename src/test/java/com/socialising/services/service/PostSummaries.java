@@ -0,0 +1,44 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.PostSummary;
+import com.socialising.services.model.Post;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+// Stand-in for the projections returned by PostRepository, reading through to the given posts
+final class PostSummaries {
+
+    private PostSummaries() {
+    }
+
+    static List<PostSummary> summariesOf(Post... posts) {
+        return summariesOf(List.of(posts));
+    }
+
+    static List<PostSummary> summariesOf(List<Post> posts) {
+        return posts.stream().map(PostSummaries::summaryOf).toList();
+    }
+
+    static PostSummary summaryOf(Post post) {
+        return new PostSummary() {
+            public Long getPostId() { return post.getPostId(); }
+            public String getUsername() { return post.getOwnerUser().getUsername(); }
+            public String getDescription() { return post.getDescription(); }
+            public Timestamp getCreatedTs() { return post.getCreatedTs(); }
+            public String getPostType() { return post.getPostType(); }
+            public String getTimeType() { return post.getTimeType(); }
+            public Timestamp getPostStartTs() { return post.getPostStartTs(); }
+            public Timestamp getPostEndTs() { return post.getPostEndTs(); }
+            public String getLocation() { return post.getLocation(); }
+            public Character getOnlyForWomen() { return post.getOnlyForWomen(); }
+            public String[] getTags() { return post.getTags(); }
+            public String[] getHashtags() { return post.getHashtags(); }
+            public Long getLikeCount() { return post.getLikeCount(); }
+            public Long getCommentCount() { return post.getCommentCount(); }
+            public Long getInterestedCount() { return post.getInterestedCount(); }
+            public Long getConfirmedCount() { return post.getConfirmedCount(); }
+            public Integer getCapacity() { return post.getCapacity(); }
+        };
+    }
+}
@@ -0,0 +1,169 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.PostViewsDTO;
+import com.socialising.services.model.PostViewSketch;
+import com.socialising.services.repository.PostViewSketchRepository;
+import com.socialising.services.util.HyperLogLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class PostViewServiceTest {
+
+    @Mock
+    private PostViewSketchRepository postViewSketchRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PostViewService postViewService;
+
+    private final Long postId = 10L;
+
+    @BeforeEach
+    void setUp() {
+        // 2 posts per flush transaction
+        postViewService = new PostViewService(postViewSketchRepository, transactionManager, 2, 100, 300);
+    }
+
+    @Test
+    public void should_count_each_viewer_once() {
+        // Mock
+        when(postViewSketchRepository.findById(postId)).thenReturn(Optional.empty());
+
+        // When
+        postViewService.recordViews(List.of(postId), "user1");
+        postViewService.recordViews(List.of(postId), "user2");
+        postViewService.recordViews(List.of(postId), "user1");
+        PostViewsDTO views = postViewService.getUniqueViews(postId);
+
+        // Then
+        assertEquals(postId, views.getPostId());
+        assertEquals(2, views.getUniqueViews());
+        assertEquals(0.01625, views.getStandardError(), 0.0001);
+    }
+
+    @Test
+    public void should_add_views_to_persisted_sketch_and_keep_counting_cached_one() {
+        // Given
+        HyperLogLog persisted = new HyperLogLog();
+        persisted.offer(1L);
+        persisted.offer(Long.MIN_VALUE);
+
+        // Mock
+        when(postViewSketchRepository.findById(postId))
+                .thenReturn(Optional.of(PostViewSketch.builder().postId(postId).sketch(persisted.toBytes()).build()));
+
+        // When
+        postViewService.recordViews(List.of(postId), "user1");
+        long loaded = postViewService.getUniqueViews(postId).getUniqueViews();
+        postViewService.recordViews(List.of(postId), "user2");
+        long counted = postViewService.getUniqueViews(postId).getUniqueViews();
+
+        // Then
+        assertEquals(3, loaded);
+        assertEquals(4, counted);
+        verify(postViewSketchRepository, times(1)).findById(postId);
+    }
+
+    @Test
+    public void should_not_count_views_without_viewer() {
+        // When
+        postViewService.recordViews(List.of(postId), "");
+        postViewService.flushViews();
+
+        // Then
+        verify(postViewSketchRepository, never()).insertMissing(any());
+    }
+
+    @Test
+    public void should_merge_pending_views_into_persisted_sketches_in_batches() {
+        // Given
+        HyperLogLog persisted = new HyperLogLog();
+        persisted.offer(1L);
+        List<PostViewSketch> rows = new ArrayList<>();
+
+        // Mock
+        when(postViewSketchRepository.findAllForUpdate(any())).thenAnswer(invocation -> {
+            List<PostViewSketch> batch = new ArrayList<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) {
+                batch.add(PostViewSketch.builder().postId(id).sketch(id.equals(postId) ? persisted.toBytes() : null).build());
+            }
+            rows.addAll(batch);
+            return batch;
+        });
+
+        // When
+        postViewService.recordViews(List.of(postId, 11L, 12L), "user1");
+        postViewService.flushViews();
+
+        // Then
+        verify(postViewSketchRepository, times(2)).insertMissing(any());
+        verify(postViewSketchRepository, times(2)).findAllForUpdate(any());
+        verify(transactionManager, times(2)).commit(any());
+        assertEquals(3, rows.size());
+        for (PostViewSketch row : rows) {
+            long expected = row.getPostId().equals(postId) ? 2 : 1;
+            assertEquals(expected, HyperLogLog.fromBytes(row.getSketch()).estimate());
+            assertNotNull(row.getUpdatedTs());
+        }
+    }
+
+    @Test
+    public void should_keep_views_that_failed_to_flush_for_next_flush() {
+        // Mock
+        when(postViewSketchRepository.insertMissing(any()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(1);
+        when(postViewSketchRepository.findAllForUpdate(any()))
+                .thenReturn(List.of(PostViewSketch.builder().postId(postId).build()));
+
+        // When
+        postViewService.recordViews(List.of(postId), "user1");
+        postViewService.flushViews();
+        postViewService.flushViews();
+
+        // Then
+        ArgumentCaptor<Iterable<PostViewSketch>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(postViewSketchRepository, times(1)).saveAll(saved.capture());
+        PostViewSketch row = saved.getValue().iterator().next();
+        assertEquals(1, HyperLogLog.fromBytes(row.getSketch()).estimate());
+    }
+
+    @Test
+    public void should_count_views_being_flushed_when_cache_is_loaded() {
+        // Mock
+        when(postViewSketchRepository.findById(postId)).thenReturn(Optional.empty());
+        when(postViewSketchRepository.findAllForUpdate(any())).thenAnswer(invocation -> {
+            // Counted while the flush runs, before the merged sketch is persisted
+            assertEquals(1, postViewService.getUniqueViews(postId).getUniqueViews());
+            return List.of();
+        });
+
+        // When
+        postViewService.recordViews(List.of(postId), "user1");
+        postViewService.flushViews();
+
+        // Then
+        verify(postViewSketchRepository, times(1)).findById(postId);
+    }
+}
@@ -0,0 +1,197 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.LookupStatsDTO;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class RequestIdentityMapTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private RequestIdentityMap requestIdentityMap;
+
+    private final String username = "test-user";
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        requestIdentityMap = new RequestIdentityMap(userRepository, entityManagerFactory);
+        user = User.builder().userId(1L).username(username).build();
+        when(userRepository.findByUsername(username)).thenReturn(Optional.of(user));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        if (TransactionSynchronizationManager.hasResource(entityManagerFactory)) {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void should_load_user_once_per_request() {
+        // Given
+        startRequest("/post/acceptInterestedUser/{postId}/{username}");
+
+        // When
+        Optional<User> first = requestIdentityMap.findUserByUsername(username);
+        Optional<User> second = requestIdentityMap.findUserByUsername(username);
+        Optional<User> third = requestIdentityMap.findUserByUsername(username);
+
+        // Then
+        assertSame(user, first.get());
+        assertSame(user, second.get());
+        assertSame(user, third.get());
+        verify(userRepository, times(1)).findByUsername(username);
+    }
+
+    @Test
+    public void should_load_user_again_in_next_request() {
+        // Given
+        startRequest("/user/getFriends");
+        requestIdentityMap.findUserByUsername(username);
+
+        // When
+        startRequest("/user/getFriends");
+        requestIdentityMap.findUserByUsername(username);
+
+        // Then
+        verify(userRepository, times(2)).findByUsername(username);
+    }
+
+    @Test
+    public void should_read_repository_outside_request() {
+        // When
+        requestIdentityMap.findUserByUsername(username);
+        requestIdentityMap.findUserByUsername(username);
+
+        // Then
+        verify(userRepository, times(2)).findByUsername(username);
+        assertTrue(requestIdentityMap.getStats().isEmpty());
+    }
+
+    @Test
+    public void should_read_repository_before_persistence_context_is_open() {
+        // Given
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        // When
+        requestIdentityMap.findUserByUsername(username);
+        requestIdentityMap.findUserByUsername(username);
+
+        // Then
+        verify(userRepository, times(2)).findByUsername(username);
+    }
+
+    @Test
+    public void should_not_keep_users_not_found() {
+        // Given
+        startRequest("/user/detailsByUsername/{username}");
+
+        // Mock
+        when(userRepository.findByUsername("new-user")).thenReturn(Optional.empty());
+
+        // When
+        requestIdentityMap.findUserByUsername("new-user");
+        requestIdentityMap.findUserByUsername("new-user");
+
+        // Then
+        verify(userRepository, times(2)).findByUsername("new-user");
+    }
+
+    @Test
+    public void should_load_users_again_after_rollback() {
+        // Given
+        startRequest("/post/acceptInterestedUser/{postId}/{username}");
+        TransactionSynchronizationManager.initSynchronization();
+        requestIdentityMap.findUserByUsername(username);
+
+        // When
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        requestIdentityMap.findUserByUsername(username);
+
+        // Then
+        verify(userRepository, times(2)).findByUsername(username);
+    }
+
+    @Test
+    public void should_load_user_again_after_eviction() {
+        // Given
+        startRequest("/user/deleteUser/{userId}");
+        requestIdentityMap.findUserByUsername(username);
+
+        // When
+        requestIdentityMap.evict(username);
+        requestIdentityMap.findUserByUsername(username);
+
+        // Then
+        verify(userRepository, times(2)).findByUsername(username);
+    }
+
+    @Test
+    public void should_count_lookups_saved_per_endpoint() {
+        // Given
+        startRequest("/post/acceptInterestedUser/{postId}/{username}");
+
+        // When
+        requestIdentityMap.findUserByUsername(username);
+        requestIdentityMap.findUserByUsername(username);
+        requestIdentityMap.findUserByUsername(username);
+
+        // Then
+        List<LookupStatsDTO> stats = requestIdentityMap.getStats();
+        assertEquals(1, stats.size());
+        assertEquals("POST /post/acceptInterestedUser/{postId}/{username}", stats.get(0).getEndpoint());
+        assertEquals(3, stats.get(0).getLookups());
+        assertEquals(2, stats.get(0).getSaved());
+    }
+
+    // A request whose handler is mapped to the pattern, with the persistence context open as with open-in-view
+    private void startRequest(String pattern) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", pattern);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        if (!TransactionSynchronizationManager.hasResource(entityManagerFactory)) {
+            TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.socialising.services.service;
+
+import com.socialising.services.config.JwtService;
+import com.socialising.services.constants.Role;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.repository.PostWaitlistRepository;
+import com.socialising.services.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Accepts thousands of interested users of one capacity-limited post in parallel and checks it is never overbooked
+// Needs the Postgres database of the application and is skipped when it can not be reached
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.connection-timeout=1000",
+        "application.optimistic-retry.max-attempts=50"
+})
+@RunWith(SpringRunner.class)
+class SeatReservationLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatReservationLoadTest.class);
+
+    private static final int CAPACITY = 50;
+
+    private static final int THREADS = 16;
+
+    private static final int USERS = 2000;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PostWaitlistRepository postWaitlistRepository;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    private User ownerUser;
+
+    private Post post;
+
+    private final List<User> interestedUsers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Assumptions.assumeTrue(databaseReachable(), "Postgres is not reachable");
+
+        long base = System.nanoTime();
+        ownerUser = userRepository.save(User.builder().userId(base).username("seats" + base).role(Role.USER).build());
+        post = postRepository.save(Post.builder()
+                .postId(base)
+                .ownerUser(ownerUser)
+                .description("Seats post")
+                .createdTs(new Timestamp(System.currentTimeMillis()))
+                .postType("event")
+                .onlyForWomen('N')
+                .capacity(CAPACITY)
+                .build());
+        for (int i = 0; i < USERS; i++) {
+            interestedUsers.add(User.builder()
+                    .userId(base + 1 + i)
+                    .username("seats" + (base + 1 + i))
+                    .role(Role.USER)
+                    .requestedPosts(new ArrayList<>(List.of(post)))
+                    .build());
+        }
+        userRepository.saveAll(interestedUsers);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ownerUser == null) {
+            return;
+        }
+        postWaitlistRepository.deleteAllByPostId(post.getPostId());
+        postRepository.deleteInterestedUsersOfPost(post.getPostId());
+        postRepository.deleteConfirmedUsersOfPost(post.getPostId());
+        postRepository.deleteById(post.getPostId());
+        userRepository.deleteAll(interestedUsers);
+        userRepository.deleteById(ownerUser.getUserId());
+    }
+
+    @Test
+    public void should_confirm_exactly_capacity_users_and_waitlist_the_rest() throws Exception {
+        // Given
+        String token = "Bearer " + jwtService.generateToken(ownerUser);
+        AtomicInteger confirmed = new AtomicInteger();
+        AtomicInteger waitlisted = new AtomicInteger();
+
+        // When
+        long nanos = runInParallel(user -> {
+            int result = postService.acceptInterestedUser(post.getPostId(), interestedUsers.get(user).getUsername(), token);
+            (result == 1 ? confirmed : waitlisted).incrementAndGet();
+        });
+
+        // Then
+        assertEquals(CAPACITY, confirmed.get());
+        assertEquals(USERS - CAPACITY, waitlisted.get());
+        assertEquals(CAPACITY, postRepository.findConfirmedUsernames(post.getPostId()).size());
+        assertEquals(USERS - CAPACITY, postWaitlistRepository.findUsernamesByPostId(post.getPostId()).size());
+        assertEquals(0, postRepository.findInterestedUsernames(post.getPostId()).size());
+        assertEquals(CAPACITY, postRepository.findById(post.getPostId()).get().getConfirmedCount());
+        log.info("{} accepts/s for {} seats", USERS * 1_000_000_000L / nanos, CAPACITY);
+
+        // When a confirmed user leaves, the first one waiting takes the seat
+        String leaving = postRepository.findConfirmedUsernames(post.getPostId()).get(0);
+        String first = postWaitlistRepository.findUsernamesByPostId(post.getPostId()).get(0);
+        assertEquals(1, postService.deleteConfirmedUser(post.getPostId(), leaving, token));
+
+        // Then
+        List<String> confirmedUsernames = postRepository.findConfirmedUsernames(post.getPostId());
+        assertEquals(CAPACITY, confirmedUsernames.size());
+        assertTrue(confirmedUsernames.contains(first));
+        assertFalse(confirmedUsernames.contains(leaving));
+        assertEquals(CAPACITY, postRepository.findById(post.getPostId()).get().getConfirmedCount());
+    }
+
+    private long runInParallel(Accept accept) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int user = thread; user < USERS; user += THREADS) {
+                    accept.apply(user);
+                }
+                return null;
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(300, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        executor.shutdown();
+        return Math.max(1, elapsed);
+    }
+
+    private interface Accept {
+        void apply(int user) throws Exception;
+    }
+
+    private boolean databaseReachable() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isValid(1);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
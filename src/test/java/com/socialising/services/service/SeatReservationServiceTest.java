@@ -0,0 +1,179 @@
+package com.socialising.services.service;
+
+import com.socialising.services.model.Post;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.repository.PostWaitlistRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class SeatReservationServiceTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private PostWaitlistRepository postWaitlistRepository;
+
+    @Mock
+    private EngagementCounterService engagementCounterService;
+
+    @Mock
+    private EventReminderService eventReminderService;
+
+    @Mock
+    private PostCacheService postCacheService;
+
+    private SeatReservationService seatReservationService;
+
+    private Post post;
+
+    private final Long postId = 10L;
+
+    @BeforeEach
+    void setUp() {
+        seatReservationService = new SeatReservationService(postRepository, postWaitlistRepository,
+                engagementCounterService, eventReminderService, postCacheService);
+        post = Post.builder().postId(postId).capacity(2).build();
+    }
+
+    @Test
+    public void should_reserve_seat_while_post_is_not_full() {
+        // Mock
+        when(postRepository.reserveSeat(postId)).thenReturn(1);
+
+        // When
+        boolean reserved = seatReservationService.reserve(postId);
+
+        // Then
+        assertTrue(reserved);
+        verify(postCacheService, times(1)).invalidate(postId);
+    }
+
+    @Test
+    public void should_not_reserve_seat_when_post_is_full() {
+        // Mock
+        when(postRepository.reserveSeat(postId)).thenReturn(0);
+
+        // When
+        boolean reserved = seatReservationService.reserve(postId);
+
+        // Then
+        assertFalse(reserved);
+        verify(postCacheService, never()).invalidate(any());
+    }
+
+    @Test
+    public void should_promote_first_waitlisted_user_into_released_seat() {
+        // Mock
+        when(postRepository.reserveSeat(postId)).thenReturn(1, 0);
+        when(postWaitlistRepository.popFirst(postId)).thenReturn("first");
+        when(postRepository.confirmWaitlistedUser(postId, "first")).thenReturn(1L);
+
+        // When
+        seatReservationService.release(post);
+
+        // Then
+        verify(engagementCounterService, times(1)).confirmedUserRemoved(postId);
+        verify(postRepository, times(1)).confirmWaitlistedUser(postId, "first");
+        verify(eventReminderService, times(1)).schedule(post, "first");
+    }
+
+    @Test
+    public void should_schedule_reminder_of_promoted_user_only_after_commit() {
+        // Mock
+        when(postRepository.reserveSeat(postId)).thenReturn(1, 0);
+        when(postWaitlistRepository.popFirst(postId)).thenReturn("first");
+        when(postRepository.confirmWaitlistedUser(postId, "first")).thenReturn(1L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            seatReservationService.promote(post);
+
+            // Then
+            verify(eventReminderService, never()).schedule(any(), anyString());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(eventReminderService, times(1)).schedule(post, "first");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void should_give_seat_back_when_nobody_is_waiting() {
+        // Mock
+        when(postRepository.reserveSeat(postId)).thenReturn(1);
+        when(postWaitlistRepository.popFirst(postId)).thenReturn(null);
+
+        // When
+        int promoted = seatReservationService.promote(post);
+
+        // Then
+        assertEquals(0, promoted);
+        verify(postRepository, times(1)).reserveSeat(postId);
+        verify(engagementCounterService, times(1)).confirmedUserRemoved(postId);
+        verify(postRepository, never()).confirmWaitlistedUser(any(), anyString());
+    }
+
+    @Test
+    public void should_skip_waitlisted_user_who_can_not_be_confirmed() {
+        // Mock
+        // The seat given back for the skipped user is taken again for the next one
+        when(postRepository.reserveSeat(postId)).thenReturn(1, 1, 0);
+        when(postWaitlistRepository.popFirst(postId)).thenReturn("deleted", "second");
+        when(postRepository.confirmWaitlistedUser(postId, "deleted")).thenReturn(0L);
+        when(postRepository.confirmWaitlistedUser(postId, "second")).thenReturn(1L);
+
+        // When
+        int promoted = seatReservationService.promote(post);
+
+        // Then
+        assertEquals(1, promoted);
+        verify(engagementCounterService, times(1)).confirmedUserRemoved(postId);
+        verify(eventReminderService, never()).schedule(post, "deleted");
+        verify(eventReminderService, times(1)).schedule(post, "second");
+    }
+
+    @Test
+    public void should_not_promote_on_release_when_post_has_no_capacity() {
+        // Given
+        post.setCapacity(null);
+
+        // When
+        seatReservationService.release(post);
+
+        // Then
+        verify(engagementCounterService, times(1)).confirmedUserRemoved(postId);
+        verify(postRepository, never()).reserveSeat(any());
+        verify(postWaitlistRepository, never()).popFirst(any());
+    }
+
+    @Test
+    public void should_get_waitlist_in_order() {
+        // Mock
+        when(postWaitlistRepository.findUsernamesByPostId(postId)).thenReturn(List.of("first", "second"));
+
+        // When
+        List<String> waitlist = seatReservationService.getWaitlist(postId);
+
+        // Then
+        assertEquals(List.of("first", "second"), waitlist);
+    }
+}
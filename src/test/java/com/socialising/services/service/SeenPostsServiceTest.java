@@ -0,0 +1,187 @@
+package com.socialising.services.service;
+
+import com.socialising.services.model.UserSeenPosts;
+import com.socialising.services.repository.UserSeenPostsRepository;
+import com.socialising.services.util.ScalableBloomFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class SeenPostsServiceTest {
+
+    private static final long ROTATION_MILLIS = 1000;
+
+    @Mock
+    private UserSeenPostsRepository userSeenPostsRepository;
+
+    private SeenPostsService seenPostsService;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private final String username = "reader";
+
+    @BeforeEach
+    void setUp() {
+        // Generations of up to 10 + 20 posts
+        seenPostsService = new SeenPostsService(userSeenPostsRepository, 10, 0.01, 2, ROTATION_MILLIS, 100, now::get);
+    }
+
+    @Test
+    public void should_report_posts_marked_as_seen() {
+        // Mock
+        when(userSeenPostsRepository.findById(username)).thenReturn(Optional.empty());
+
+        // When
+        seenPostsService.markSeen(username, List.of(1L, 2L));
+        Set<Long> seen = seenPostsService.seen(username, List.of(1L, 2L, 3L));
+
+        // Then
+        assertEquals(Set.of(1L, 2L), seen);
+    }
+
+    @Test
+    public void should_load_persisted_filter() {
+        // Given
+        ScalableBloomFilter filter = new ScalableBloomFilter(10, 0.01, 2);
+        filter.put(7L);
+
+        // Mock
+        when(userSeenPostsRepository.findById(username)).thenReturn(Optional.of(UserSeenPosts.builder()
+                .username(username)
+                .currentFilter(filter.toBytes())
+                .rotatedTs(new Timestamp(now.get()))
+                .build()));
+
+        // When
+        Set<Long> seen = seenPostsService.seen(username, List.of(7L, 8L));
+
+        // Then
+        assertEquals(Set.of(7L), seen);
+    }
+
+    @Test
+    public void should_forget_posts_two_rotations_later() {
+        // Mock
+        when(userSeenPostsRepository.findById(username)).thenReturn(Optional.empty());
+
+        // Given
+        seenPostsService.markSeen(username, List.of(1L));
+
+        // When one rotation later the post is still remembered by the previous generation
+        now.addAndGet(ROTATION_MILLIS);
+
+        // Then
+        assertEquals(Set.of(1L), seenPostsService.seen(username, List.of(1L)));
+
+        // When a second rotation drops the generation it was in
+        now.addAndGet(ROTATION_MILLIS);
+
+        // Then
+        assertTrue(seenPostsService.seen(username, List.of(1L)).isEmpty());
+    }
+
+    @Test
+    public void should_rotate_when_filter_is_full() {
+        // Mock
+        when(userSeenPostsRepository.findById(username)).thenReturn(Optional.empty());
+
+        // When the 30 posts a generation holds are followed by 30 more
+        for (long postId = 0; postId < 60; postId++) {
+            seenPostsService.markSeen(username, List.of(postId));
+        }
+
+        // Then the newest posts are remembered and the first ones are forgotten
+        assertTrue(seenPostsService.seen(username, List.of(59L)).contains(59L));
+        assertTrue(seenPostsService.seen(username, List.of(0L, 1L, 2L, 3L, 4L)).size() < 5);
+    }
+
+    @Test
+    public void should_save_changed_filters_on_flush() {
+        // Mock
+        when(userSeenPostsRepository.findById(username)).thenReturn(Optional.empty());
+
+        // When
+        seenPostsService.markSeen(username, List.of(1L));
+        seenPostsService.flush();
+        seenPostsService.flush();
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<UserSeenPosts>> saved = ArgumentCaptor.forClass(List.class);
+        verify(userSeenPostsRepository, times(1)).saveAll(saved.capture());
+        UserSeenPosts row = saved.getValue().get(0);
+        assertEquals(username, row.getUsername());
+        assertTrue(ScalableBloomFilter.fromBytes(row.getCurrentFilter()).mightContain(1L));
+        assertNull(row.getPreviousFilter());
+    }
+
+    @Test
+    public void should_not_save_when_nothing_changed() {
+        // Mock
+        when(userSeenPostsRepository.findById(username)).thenReturn(Optional.empty());
+
+        // When
+        seenPostsService.markSeen(username, List.of(1L));
+        seenPostsService.flush();
+        seenPostsService.markSeen(username, List.of(1L));
+        seenPostsService.flush();
+
+        // Then
+        verify(userSeenPostsRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    public void should_keep_filters_to_save_again_when_flush_fails() {
+        // Mock
+        when(userSeenPostsRepository.findById(username)).thenReturn(Optional.empty());
+        when(userSeenPostsRepository.saveAll(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("DB down"))
+                .thenReturn(List.of());
+
+        // When
+        seenPostsService.markSeen(username, List.of(1L));
+        seenPostsService.flush();
+        seenPostsService.flush();
+
+        // Then
+        verify(userSeenPostsRepository, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    public void should_forget_removed_user() {
+        // Mock
+        when(userSeenPostsRepository.findById(username)).thenReturn(Optional.empty());
+
+        // Given
+        seenPostsService.markSeen(username, List.of(1L));
+
+        // When
+        seenPostsService.remove(username);
+        seenPostsService.flush();
+
+        // Then
+        verify(userSeenPostsRepository, times(1)).deleteById(username);
+        verify(userSeenPostsRepository, never()).saveAll(any());
+        assertTrue(seenPostsService.seen(username, List.of(1L)).isEmpty());
+    }
+}
@@ -0,0 +1,167 @@
+package com.socialising.services.service;
+
+import com.socialising.services.constants.FriendshipStatus;
+import com.socialising.services.dto.SocialGraphStatsDTO;
+import com.socialising.services.model.Friendship;
+import com.socialising.services.repository.FriendshipRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class SocialGraphServiceTest {
+
+    @Mock
+    private FriendshipRepository friendshipRepository;
+
+    private SocialGraphService socialGraphService;
+
+    @BeforeEach
+    void setUp() {
+        // Pages of 3 friendship rows while building
+        socialGraphService = new SocialGraphService(friendshipRepository, 3);
+    }
+
+    // Both directions of every friendship, in key order
+    private List<Friendship> rowsOf(String[]... friendships) {
+        List<Friendship> rows = new ArrayList<>();
+        for (String[] friendship : friendships) {
+            rows.add(Friendship.builder().username(friendship[0]).friendUsername(friendship[1]).status(FriendshipStatus.FRIEND).build());
+            rows.add(Friendship.builder().username(friendship[1]).friendUsername(friendship[0]).status(FriendshipStatus.FRIEND).build());
+        }
+        rows.sort((a, b) -> a.getUsername().equals(b.getUsername())
+                ? a.getFriendUsername().compareTo(b.getFriendUsername())
+                : a.getUsername().compareTo(b.getUsername()));
+        return rows;
+    }
+
+    private void mockFriendships(String[]... friendships) {
+        List<Friendship> rows = rowsOf(friendships);
+        when(friendshipRepository.findFriendshipsAfter(anyString(), anyString(), eq(3))).thenAnswer(invocation -> {
+            String username = invocation.getArgument(0);
+            String friendUsername = invocation.getArgument(1);
+            return rows.stream()
+                    .filter(row -> row.getUsername().compareTo(username) > 0
+                            || row.getUsername().equals(username) && row.getFriendUsername().compareTo(friendUsername) > 0)
+                    .limit(3)
+                    .toList();
+        });
+    }
+
+    @Test
+    public void should_build_graph_page_by_page() {
+        // Mock
+        mockFriendships(new String[]{"alice", "bob"}, new String[]{"alice", "carol"}, new String[]{"bob", "carol"},
+                new String[]{"bob", "dave"});
+
+        // When
+        socialGraphService.build();
+
+        // Then
+        SocialGraphStatsDTO stats = socialGraphService.getStats();
+        assertTrue(stats.isBuilt());
+        assertEquals(4, stats.getUsers());
+        assertEquals(4, stats.getFriendships());
+        assertEquals(List.of("bob"), socialGraphService.mutualFriends("alice", "carol"));
+        verify(friendshipRepository, times(3)).findFriendshipsAfter(anyString(), anyString(), eq(3));
+    }
+
+    @Test
+    public void should_list_mutual_friends_in_username_order() {
+        // Given
+        socialGraphService.addFriendship("alice", "zoe");
+        socialGraphService.addFriendship("alice", "bob");
+        socialGraphService.addFriendship("carol", "zoe");
+        socialGraphService.addFriendship("carol", "bob");
+        socialGraphService.addFriendship("carol", "dave");
+
+        // Then
+        assertEquals(List.of("bob", "zoe"), socialGraphService.mutualFriends("carol", "alice"));
+        assertEquals(2, socialGraphService.mutualFriendCount("alice", "carol"));
+        assertEquals(List.of(), socialGraphService.mutualFriends("alice", "unknown"));
+    }
+
+    @Test
+    public void should_list_friends_of_friends_with_mutual_friend_counts() {
+        // Given
+        socialGraphService.addFriendship("alice", "bob");
+        socialGraphService.addFriendship("alice", "carol");
+        socialGraphService.addFriendship("bob", "dave");
+        socialGraphService.addFriendship("carol", "dave");
+        socialGraphService.addFriendship("carol", "erin");
+
+        // When
+        Map<String, Integer> friendsOfFriends = socialGraphService.friendsOfFriends("alice");
+
+        // Then
+        assertEquals(Map.of("dave", 2, "erin", 1), friendsOfFriends);
+    }
+
+    @Test
+    public void should_forget_removed_friendships_and_users() {
+        // Given
+        socialGraphService.addFriendship("alice", "bob");
+        socialGraphService.addFriendship("alice", "carol");
+        socialGraphService.addFriendship("bob", "carol");
+
+        // When
+        socialGraphService.removeFriendship("carol", "bob");
+        socialGraphService.removeUser("alice");
+
+        // Then
+        assertEquals(0, socialGraphService.getStats().getFriendships());
+        assertEquals(2, socialGraphService.getStats().getUsers());
+        assertTrue(socialGraphService.friendsOfFriends("bob").isEmpty());
+    }
+
+    @Test
+    public void should_keep_friendships_added_while_building() {
+        // Mock
+        when(friendshipRepository.findFriendshipsAfter(anyString(), anyString(), eq(3))).thenAnswer(invocation -> {
+            socialGraphService.addFriendship("carol", "dave");
+            return rowsOf(new String[]{"alice", "bob"});
+        });
+
+        // When
+        socialGraphService.build();
+
+        // Then
+        assertEquals(2, socialGraphService.getStats().getFriendships());
+        assertEquals(4, socialGraphService.getStats().getUsers());
+    }
+
+    @Test
+    public void should_build_again_when_db_is_unreachable() {
+        // Mock
+        when(friendshipRepository.findFriendshipsAfter(anyString(), anyString(), eq(3)))
+                .thenThrow(new DataAccessResourceFailureException("DB down"))
+                .thenReturn(rowsOf(new String[]{"alice", "bob"}));
+
+        // When
+        socialGraphService.build();
+        boolean builtFirst = socialGraphService.getStats().isBuilt();
+        socialGraphService.build();
+        socialGraphService.build();
+
+        // Then
+        assertFalse(builtFirst);
+        assertTrue(socialGraphService.getStats().isBuilt());
+        assertEquals(1, socialGraphService.getStats().getFriendships());
+        verify(friendshipRepository, times(2)).findFriendshipsAfter(anyString(), anyString(), eq(3));
+    }
+}
@@ -2,6 +2,7 @@ package com.socialising.services.service;
 
 import com.socialising.services.model.Tag;
 import com.socialising.services.repository.TagRepository;
+import com.socialising.services.util.IdGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
@@ -25,6 +26,9 @@ class TagServiceTest {
     @Mock
     private TagRepository tagRepository;
 
+    @Mock
+    private IdGenerator idGenerator;
+
     @InjectMocks
     private TagService tagService;
 
@@ -75,6 +79,7 @@ class TagServiceTest {
     public void should_add_tag_when_not_already_exists() {
         // Mock
         when(tagRepository.findByTagName(testTagName)).thenReturn(null);
+        when(idGenerator.nextId()).thenReturn(42L);
 
         // When
         Tag responseTag = tagService.addTag(testTag);
@@ -82,6 +87,7 @@ class TagServiceTest {
         // Then
         assertNotNull(responseTag);
         assertEquals(testTagName, responseTag.getTag());
+        assertEquals(42L, responseTag.getTagId());
         verify(tagRepository, times(1)).save(testTag);
     }
 
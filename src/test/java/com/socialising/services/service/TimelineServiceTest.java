@@ -0,0 +1,305 @@
+package com.socialising.services.service;
+
+import com.socialising.services.constants.Role;
+import com.socialising.services.dto.PostFeedPage;
+import com.socialising.services.dto.PostKey;
+import com.socialising.services.model.Post;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.FriendshipRepository;
+import com.socialising.services.repository.PostRepository;
+import com.socialising.services.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static com.socialising.services.service.PostSummaries.summariesOf;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class TimelineServiceTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private FriendshipRepository friendshipRepository;
+
+    private TimelineService timelineService;
+
+    private User ownerUser;
+    private User friendUser;
+    private User celebrityUser;
+    private Post oldPost;
+    private Post newPost;
+
+    @BeforeEach
+    void setUp() {
+        // capacity 3, fan-out threshold 2
+        timelineService = new TimelineService(postRepository, userRepository, friendshipRepository, 3, 2, 100, 60);
+
+        ownerUser = User.builder()
+                .userId(1L)
+                .username("ownerUser")
+                .role(Role.USER)
+                .build();
+
+        friendUser = User.builder()
+                .userId(2L)
+                .username("friendUser")
+                .role(Role.USER)
+                .tags(new String[]{"tech"})
+                .build();
+
+        celebrityUser = User.builder()
+                .userId(3L)
+                .username("celebrityUser")
+                .role(Role.USER)
+                .build();
+
+        oldPost = Post.builder()
+                .postId(10L)
+                .ownerUser(ownerUser)
+                .createdTs(new Timestamp(1000))
+                .build();
+
+        newPost = Post.builder()
+                .postId(11L)
+                .ownerUser(ownerUser)
+                .createdTs(new Timestamp(2000))
+                .build();
+
+        when(userRepository.findUsernamesWithAnyTag(any(), anyInt())).thenReturn(new ArrayList<>());
+        when(friendshipRepository.findFriendUsernames(eq("ownerUser"), eq(""), anyInt())).thenReturn(List.of("friendUser"));
+        when(friendshipRepository.findFriendUsernames(eq("friendUser"), eq(""), anyInt())).thenReturn(List.of("celebrityUser", "ownerUser"));
+        when(friendshipRepository.findFriendUsernames(eq("celebrityUser"), eq(""), anyInt())).thenReturn(List.of("a", "b", "friendUser"));
+    }
+
+    private PostKey key(Post post) {
+        return new PostKey() {
+            @Override
+            public Long getPostId() {
+                return post.getPostId();
+            }
+
+            @Override
+            public Timestamp getCreatedTs() {
+                return post.getCreatedTs();
+            }
+        };
+    }
+
+    private void mockPostsLoaded() {
+        when(postRepository.findSummariesByPostIdIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> postIds = invocation.getArgument(0);
+            return summariesOf(List.of(oldPost, newPost).stream().filter(post -> postIds.contains(post.getPostId())).toList());
+        });
+    }
+
+    @Test
+    public void should_build_timeline_from_db_on_first_read() {
+        // Mock
+        when(userRepository.findByUsername("friendUser")).thenReturn(Optional.of(friendUser));
+        when(postRepository.findKeysByOwners(anyCollection(), any(Pageable.class))).thenReturn(List.of(key(newPost), key(oldPost)));
+        mockPostsLoaded();
+
+        // When
+        PostFeedPage page = timelineService.getTimeline("friendUser", null, 10);
+
+        // Then
+        assertEquals(2, page.getPosts().size());
+        assertEquals(11L, page.getPosts().get(0).getPostId());
+        assertEquals(10L, page.getPosts().get(1).getPostId());
+        assertNull(page.getNextCursor());
+        verify(postRepository, times(1)).findKeysWithAnyTag(new String[]{"tech"}, 3);
+    }
+
+    @Test
+    public void should_push_new_post_to_materialized_friend_timeline() {
+        // Given
+        when(userRepository.findByUsername("friendUser")).thenReturn(Optional.of(friendUser));
+        when(postRepository.findKeysByOwners(anyCollection(), any(Pageable.class))).thenReturn(List.of(key(oldPost)));
+        mockPostsLoaded();
+        timelineService.getTimeline("friendUser", null, 10);
+
+        // When
+        timelineService.onPostCreated(newPost);
+        PostFeedPage page = timelineService.getTimeline("friendUser", null, 1);
+
+        // Then
+        assertEquals(1, page.getPosts().size());
+        assertEquals(11L, page.getPosts().get(0).getPostId());
+        assertEquals("2000_11", page.getNextCursor());
+        verify(postRepository, times(1)).findKeysByOwners(anyCollection(), any(Pageable.class));
+
+        // Next page continues after the cursor
+        PostFeedPage nextPage = timelineService.getTimeline("friendUser", page.getNextCursor(), 1);
+        assertEquals(10L, nextPage.getPosts().get(0).getPostId());
+    }
+
+    @Test
+    public void should_pull_posts_of_high_fanout_authors_on_read() {
+        // Given
+        Post celebrityPost = Post.builder()
+                .postId(12L)
+                .ownerUser(celebrityUser)
+                .createdTs(new Timestamp(3000))
+                .build();
+        when(userRepository.findByUsername("friendUser")).thenReturn(Optional.of(friendUser));
+        when(postRepository.findKeysByOwners(anyCollection(), any(Pageable.class)))
+                .thenReturn(new ArrayList<>())
+                .thenReturn(List.of(key(celebrityPost)));
+        when(postRepository.findSummariesByPostIdIn(anyCollection())).thenReturn(summariesOf(celebrityPost));
+
+        // When
+        timelineService.onPostCreated(celebrityPost);
+        PostFeedPage page = timelineService.getTimeline("friendUser", null, 10);
+
+        // Then
+        assertEquals(1, page.getPosts().size());
+        assertEquals(12L, page.getPosts().get(0).getPostId());
+        verify(postRepository, times(1)).findKeysByOwners(eq(List.of("celebrityUser")), any(Pageable.class));
+    }
+
+    @Test
+    public void should_keep_only_newest_posts_when_timeline_is_full() {
+        // Given
+        TimelineService.Timeline timeline = new TimelineService.Timeline(2);
+
+        // When
+        timeline.add(new TimelineService.TimelineEntry(1000, 1));
+        timeline.add(new TimelineService.TimelineEntry(3000, 3));
+        timeline.add(new TimelineService.TimelineEntry(2000, 2));
+        timeline.add(new TimelineService.TimelineEntry(2000, 2));
+
+        // Then
+        assertEquals(2, timeline.size());
+        List<TimelineService.TimelineEntry> page = timeline.page(TimelineService.TimelineEntry.HEAD, 10);
+        assertEquals(3, page.get(0).postId());
+        assertEquals(2, page.get(1).postId());
+    }
+
+    @Test
+    public void should_not_exceed_capacity_when_posts_are_added_concurrently() throws Exception {
+        // Given
+        TimelineService.Timeline timeline = new TimelineService.Timeline(10);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    timeline.add(new TimelineService.TimelineEntry(i * 4L + offset, i * 4L + offset));
+                }
+            }));
+        }
+
+        // When
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        assertEquals(10, timeline.size());
+        assertEquals(10, timeline.page(TimelineService.TimelineEntry.HEAD, 100).size());
+        assertEquals(3999, timeline.page(TimelineService.TimelineEntry.HEAD, 1).get(0).postId());
+    }
+
+    @Test
+    public void should_pull_posts_of_high_fanout_authors_and_tags_loaded_on_startup() {
+        // Given
+        Post celebrityPost = Post.builder()
+                .postId(12L)
+                .ownerUser(celebrityUser)
+                .createdTs(new Timestamp(3000))
+                .build();
+        friendUser.setTags(new String[]{"Tech", "music"});
+
+        // Mock
+        when(friendshipRepository.findUsernamesWithMoreFriendsThan(2)).thenReturn(List.of("celebrityUser"));
+        when(userRepository.findTagsOfMoreUsersThan(2)).thenReturn(List.of("tech"));
+        when(userRepository.findByUsername("friendUser")).thenReturn(Optional.of(friendUser));
+        when(postRepository.findKeysByOwners(anyCollection(), any(Pageable.class)))
+                .thenReturn(new ArrayList<>())
+                .thenReturn(List.of(key(celebrityPost)));
+        when(postRepository.findSummariesByPostIdIn(anyCollection())).thenReturn(summariesOf(celebrityPost));
+
+        // When
+        timelineService.loadHighFanout();
+        timelineService.loadHighFanout();
+        PostFeedPage page = timelineService.getTimeline("friendUser", null, 10);
+
+        // Then
+        assertEquals(12L, page.getPosts().get(0).getPostId());
+        verify(friendshipRepository, times(1)).findUsernamesWithMoreFriendsThan(2);
+        verify(postRepository, times(1)).findKeysByOwners(eq(List.of("ownerUser", "friendUser")), any(Pageable.class));
+        verify(postRepository, times(1)).findKeysByOwners(eq(List.of("celebrityUser")), any(Pageable.class));
+        verify(postRepository, times(1)).findKeysWithAnyTag(new String[]{"music"}, 3);
+        verify(postRepository, times(1)).findKeysWithAnyTag(new String[]{"tech"}, 3);
+    }
+
+    @Test
+    public void should_load_high_fanout_again_when_db_is_unreachable() {
+        // Mock
+        when(friendshipRepository.findUsernamesWithMoreFriendsThan(2))
+                .thenThrow(new DataAccessResourceFailureException("DB down"))
+                .thenReturn(List.of());
+
+        // When
+        timelineService.loadHighFanout();
+        timelineService.loadHighFanout();
+        timelineService.loadHighFanout();
+
+        // Then
+        verify(friendshipRepository, times(2)).findUsernamesWithMoreFriendsThan(2);
+        verify(userRepository, times(1)).findTagsOfMoreUsersThan(2);
+    }
+
+    @Test
+    public void should_rebuild_stale_timeline_on_next_read() {
+        // Given
+        when(userRepository.findByUsername("friendUser")).thenReturn(Optional.of(friendUser));
+        when(postRepository.findKeysByOwners(anyCollection(), any(Pageable.class))).thenReturn(List.of(key(oldPost)));
+        mockPostsLoaded();
+        timelineService.getTimeline("friendUser", null, 10);
+
+        // When
+        timelineService.markStale("friendUser");
+        timelineService.getTimeline("friendUser", null, 10);
+
+        // Then
+        verify(postRepository, times(2)).findKeysByOwners(anyCollection(), any(Pageable.class));
+    }
+
+    @Test
+    public void should_not_get_timeline_when_cursor_is_invalid() {
+        // Mock
+        when(userRepository.findByUsername("friendUser")).thenReturn(Optional.of(friendUser));
+
+        // When
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> timelineService.getTimeline("friendUser", "bad", 10));
+
+        // Then
+        assertEquals("Invalid timeline cursor: bad", exception.getMessage());
+    }
+}
@@ -2,14 +2,21 @@ package com.socialising.services.service;
 
 import com.socialising.services.config.JwtService;
 import com.socialising.services.constants.Role;
+import com.socialising.services.constants.FriendshipStatus;
 import com.socialising.services.constants.Status;
+import com.socialising.services.dto.AutocompleteDTO;
+import com.socialising.services.dto.PostDTO;
 import com.socialising.services.dto.UserDTO;
+import com.socialising.services.dto.UserSuggestionDTO;
+import com.socialising.services.dto.UsernamePage;
 import com.socialising.services.model.ChangePasswordRequest;
+import com.socialising.services.model.Friendship;
 import com.socialising.services.model.Image;
 import com.socialising.services.model.Post;
 import com.socialising.services.model.User;
 import com.socialising.services.model.token.Token;
 import com.socialising.services.repository.*;
+import com.socialising.services.util.IdGenerator;
 import io.jsonwebtoken.ExpiredJwtException;
 import org.apache.commons.lang3.ArrayUtils;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,15 +26,21 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.Timestamp;
 import java.util.*;
+import java.util.function.Supplier;
 
+import static com.socialising.services.service.PostSummaries.summariesOf;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -54,6 +67,51 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private TimelineService timelineService;
+
+    @Mock
+    private EventReminderService eventReminderService;
+
+    @Mock
+    private CascadeJobService cascadeJobService;
+
+    @Mock
+    private IdGenerator idGenerator;
+
+    @Mock
+    private PostCacheService postCacheService;
+
+    @Mock
+    private SeatReservationService seatReservationService;
+
+    @Mock
+    private SeenPostsService seenPostsService;
+
+    @Mock
+    private FriendshipRepository friendshipRepository;
+
+    @Mock
+    private SocialGraphService socialGraphService;
+
+    @Mock
+    private UserSuggestionService userSuggestionService;
+
+    @Mock
+    private AutocompleteService autocompleteService;
+
+    @Mock
+    private RequestIdentityMap requestIdentityMap;
+
+    @Mock
+    private OptimisticRetryService optimisticRetryService;
+
+    @Mock
+    private PostArchiveService postArchiveService;
+
+    @Mock
+    private PostLikeService postLikeService;
+
     @InjectMocks
     private UserService userService;
 
@@ -78,6 +136,13 @@ class UserServiceTest {
 
     @BeforeEach
     void setUp() {
+        // The post cache is disabled, reads go straight to the repository
+        when(postCacheService.get(any())).thenAnswer(invocation -> postRepository.findById(invocation.getArgument(0)));
+        // Mutations run once, as they do when nothing conflicts
+        when(optimisticRetryService.run(anyString(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        // Users are read from the repository on every lookup, as outside a request
+        when(requestIdentityMap.findUserByUsername(any())).thenAnswer(invocation -> userRepository.findByUsername(invocation.getArgument(0)));
+
         testUserId = 1L;
         secondTestUserId = 2L;
         adminTestUserId = 3L;
@@ -120,8 +185,8 @@ class UserServiceTest {
                 .description("This is first test post of first test user")
                 .postType("general")
                 .timeType("later")
-                .postStartTs("2024-07-13")
-                .postEndTs("2024-08-15")
+                .postStartTs(Timestamp.valueOf("2024-07-13 00:00:00"))
+                .postEndTs(Timestamp.valueOf("2024-08-15 00:00:00"))
                 .location("Amity")
                 .onlyForWomen('N')
                 .confirmedUsers(new ArrayList<>())
@@ -136,8 +201,8 @@ class UserServiceTest {
                 .description("This is first test post of second test user")
                 .postType("general")
                 .timeType("later")
-                .postStartTs("2024-06-21")
-                .postEndTs("2024-06-22")
+                .postStartTs(Timestamp.valueOf("2024-06-21 00:00:00"))
+                .postEndTs(Timestamp.valueOf("2024-06-22 00:00:00"))
                 .location("Srinagar")
                 .onlyForWomen('Y')
                 .confirmedUsers(new ArrayList<>())
@@ -150,8 +215,8 @@ class UserServiceTest {
                 .description("This is second test post of second test user")
                 .postType("general")
                 .timeType("later")
-                .postStartTs("2024-05-23")
-                .postEndTs("2024-07-24")
+                .postStartTs(Timestamp.valueOf("2024-05-23 00:00:00"))
+                .postEndTs(Timestamp.valueOf("2024-07-24 00:00:00"))
                 .location("Twang")
                 .onlyForWomen('Y')
                 .confirmedUsers(new ArrayList<>())
@@ -485,6 +550,7 @@ class UserServiceTest {
         assertEquals("This is me....", updatedUser.getBio());
 //        assertEquals(2, updatedUser.getTags().length);
         verify(userRepository, times(1)).save(any());
+        verify(autocompleteService, times(1)).index(testUser);
     }
 
 //    @Test
@@ -510,78 +576,105 @@ class UserServiceTest {
 
     @Test
     public void should_delete_user_when_exist_in_DB() {
-        User friendRequestedUser1 = User.builder()
-                        .userId(6L)
-                        .username("friend-requested-user-1")
-                        .friendRequests(new String[]{testUsername})
-                        .build();
-
-        User friendRequestedUser2 = User.builder()
-                .userId(7L)
-                .username("friend-requested-user-2")
-                .friendRequests(new String[]{testUsername})
-                .build();
+        // Mock
+        when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
+        when(tokenRepository.deleteAllByUserId(testUserId)).thenReturn(2);
+        when(userRepository.findReminderPostIdsOfUser(testUserId)).thenReturn(List.of(thirdPostId));
+        when(friendshipRepository.countAllOfUser(testUsername)).thenReturn(5L);
+        when(userRepository.countPostLinksOfUser(testUserId)).thenReturn(2L);
+        when(friendshipRepository.deleteAllOfUser(testUsername)).thenReturn(5);
+        when(userRepository.deleteRequestedPostsOfUser(testUserId)).thenReturn(1);
+        when(userRepository.deleteReminderPostsOfUser(testUserId)).thenReturn(1);
 
-        User friendUser1 = User.builder()
-                .userId(8L)
-                .username("friend-user-1")
-                .friends(new String[]{testUsername})
-                .build();
+        // When
+        int result = userService.deleteUser(testUserId);
 
-        User friendUser2 = User.builder()
-                .userId(9L)
-                .username("friend-user-2")
-                .friends(new String[]{testUsername})
-                .build();
+        // Then
+        assertEquals(1, result);
+        verify(tokenRepository, times(1)).deleteAllByUserId(testUserId);
+        verify(friendshipRepository, times(1)).deleteAllOfUser(testUsername);
+        verify(userRepository, times(1)).deleteRequestedPostsOfUser(testUserId);
+        verify(userRepository, times(1)).deleteReminderPostsOfUser(testUserId);
+        verify(eventReminderService, times(1)).cancel(thirdPostId, testUsername);
+        verify(socialGraphService, times(1)).removeUser(testUsername);
+        verify(userSuggestionService, times(1)).removeUser(testUsername);
+        verify(autocompleteService, times(1)).remove(testUsername);
+        verify(postLikeService, times(1)).deleteLikesOfUser(testUsername);
+        verify(postArchiveService, times(1)).removeUser(testUserId, testUsername);
+        verify(optimisticRetryService, times(1)).runAfterCommit(eq("promote"), any(Runnable.class));
+        verify(userRepository, times(1)).deleteById(testUserId);
+        verify(userRepository, never()).findByUsername(anyString());
+        verify(userRepository, never()).save(any());
+        verify(postRepository, never()).save(any());
+    }
 
-        testUser.setFriendsRequested(new String[]{"friend-requested-user-1", "friend-requested-user-2"});
-        testUser.setFriends(new String[]{"friend-user-1", "friend-user-2"});
+    @Test
+    public void should_promote_waitlisted_users_into_seats_of_deleted_user() {
+        // Given
+        Post event = Post.builder().postId(thirdPostId).capacity(10).build();
 
-        secondTestUserPost.setInterestedUsers(new ArrayList<>(Collections.singletonList(testUser)));
-        testUser.setRequestedPosts(List.of(secondTestUserPost));
-        secondTestUserSecondPost.setConfirmedUsers(new ArrayList<>(Collections.singletonList(testUser)));
-        testUser.setReminderPosts(List.of(secondTestUserSecondPost));
+        // Mock
+        when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
+        when(userRepository.findReminderPostIdsOfUser(testUserId)).thenReturn(List.of(thirdPostId));
+        when(postRepository.findById(thirdPostId)).thenReturn(Optional.of(event));
+        doAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return null;
+        }).when(optimisticRetryService).runAfterCommit(eq("promote"), any(Runnable.class));
 
-        Token token1 = new Token();
-        token1.setId(1);
-        token1.setUser(testUser);
+        // When
+        int result = userService.deleteUser(testUserId);
 
-        Token token2 = new Token();
-        token2.setId(2);
-        token2.setUser(testUser);
+        // Then
+        assertEquals(1, result);
+        verify(seatReservationService, times(1)).promote(event);
+    }
 
-        List<Token> validUserTokens = List.of(token1, token2);
+    @Test
+    public void should_keep_in_memory_state_until_user_delete_commits() {
+        // Mock
+        when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
+        when(userRepository.findReminderPostIdsOfUser(testUserId)).thenReturn(List.of(thirdPostId));
+
+        // When
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userService.deleteUser(testUserId);
+
+            // Then
+            verify(eventReminderService, never()).cancel(anyLong(), anyString());
+            verify(socialGraphService, never()).removeUser(anyString());
+            verify(userSuggestionService, never()).removeUser(anyString());
+            verify(autocompleteService, never()).remove(anyString());
 
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(eventReminderService, times(1)).cancel(thirdPostId, testUsername);
+            verify(socialGraphService, times(1)).removeUser(testUsername);
+            verify(userSuggestionService, times(1)).removeUser(testUsername);
+            verify(autocompleteService, times(1)).remove(testUsername);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void should_delete_well_connected_user_in_background() {
         // Mock
         when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
-        when(tokenRepository.findAllValidTokens(testUserId)).thenReturn(validUserTokens);
-        when(userRepository.findByUsername("friend-requested-user-1")).thenReturn(Optional.of(friendRequestedUser1));
-        when(userRepository.findByUsername("friend-requested-user-2")).thenReturn(Optional.of(friendRequestedUser2));
-        when(userRepository.findByUsername("friend-user-1")).thenReturn(Optional.of(friendUser1));
-        when(userRepository.findByUsername("friend-user-2")).thenReturn(Optional.of(friendUser2));
-        when(userRepository.save(friendRequestedUser1)).thenReturn(friendRequestedUser1);
-        when(userRepository.save(friendRequestedUser2)).thenReturn(friendRequestedUser2);
-        when(userRepository.save(friendUser1)).thenReturn(friendUser1);
-        when(userRepository.save(friendUser2)).thenReturn(friendUser2);
-        when(postRepository.save(secondTestUserPost)).thenReturn(secondTestUserPost);
-        when(postRepository.save(secondTestUserSecondPost)).thenReturn(secondTestUserSecondPost);
+        when(friendshipRepository.countAllOfUser(testUsername)).thenReturn(2L);
+        when(userRepository.countPostLinksOfUser(testUserId)).thenReturn(10000L);
+        when(cascadeJobService.runInBackground(10002L)).thenReturn(true);
+        when(cascadeJobService.getChunkSize()).thenReturn(1000);
 
         // When
         int result = userService.deleteUser(testUserId);
 
         // Then
         assertEquals(1, result);
-        assertEquals(0, friendRequestedUser1.getFriendRequests().length);
-        assertEquals(0, friendRequestedUser2.getFriendRequests().length);
-        assertEquals(0, friendUser1.getFriends().length);
-        assertEquals(0, friendUser2.getFriends().length);
-        assertEquals(0, secondTestUserPost.getInterestedUsers().size());
-        assertEquals(0, secondTestUserSecondPost.getConfirmedUsers().size());
-
-        verify(tokenRepository, times(2)).deleteById(anyInt());
-        verify(userRepository, times(1)).deleteById(testUserId);
-        verify(userRepository, times(4)).save(any());
-        verify(postRepository, times(2)).save(any());
+        verify(tokenRepository, times(1)).deleteAllByUserId(testUserId);
+        verify(cascadeJobService, times(1)).submit(eq("user"), eq(testUserId), eq(10002L), anyList(), any(Runnable.class));
+        verify(friendshipRepository, never()).deleteAllOfUser(testUsername);
+        verify(userRepository, never()).deleteById(testUserId);
     }
 
     @Test
@@ -644,25 +737,34 @@ class UserServiceTest {
     @Test
     public void should_get_users_matching_tag_passed_as_word() {
         // Given
-        String tagWord = "soccer";
+        String tagWord = " Soccer";
 
         testUser.setTags(new String[]{"soccer", "club-hopping"});
-        secondTestUser.setTags(new String[]{"cafe-hopping", "cricket"});
-        adminTestUser.setTags(new String[]{"cricket", "soccer"});
+        adminTestUser.setTags(new String[]{"cricket", "Soccer"});
+
+        // Mock
+        when(userRepository.findByTagAfter("soccer", "", 20)).thenReturn(List.of(adminTestUser, testUser));
+
+        // When
+        List<User> responseUsers = userService.searchUserByTag(tagWord, null, 20);
 
-        List<User> expectedUsers = List.of(testUser, adminTestUser);
+        // Then
+        assertEquals(2, responseUsers.size());
+        assertEquals(adminTestUser.getUsername(), responseUsers.get(0).getUsername());
+        assertEquals(testUser.getUsername(), responseUsers.get(1).getUsername());
+        verify(userRepository, never()).findAll();
+    }
 
+    @Test
+    public void should_get_next_page_of_users_matching_tag_after_cursor() {
         // Mock
-        when(userRepository.findAll()).thenReturn(List.of(testUser, secondTestUser, adminTestUser));
+        when(userRepository.findByTagAfter("soccer", adminTestUsername, 100)).thenReturn(List.of(testUser));
 
         // When
-        List<User> responseUsers = userService.searchUserByTag(tagWord);
+        List<User> responseUsers = userService.searchUserByTag("soccer", adminTestUsername, 5000);
 
         // Then
-        assertEquals(expectedUsers.size(), responseUsers.size());
-        assertEquals(expectedUsers.get(0).getUsername(), responseUsers.get(0).getUsername());
-        assertEquals(expectedUsers.get(1).getUsername(), responseUsers.get(1).getUsername());
-        verify(userRepository, times(1)).findAll();
+        assertEquals(List.of(testUser), responseUsers);
     }
 
     @Test
@@ -670,19 +772,15 @@ class UserServiceTest {
         // Given
         String tagWord = "tennis";
 
-        testUser.setTags(new String[]{"soccer", "club-hopping"});
-        secondTestUser.setTags(new String[]{"cafe-hopping", "cricket"});
-        adminTestUser.setTags(new String[]{"cricket", "soccer"});
-
         // Mock
-        when(userRepository.findAll()).thenReturn(List.of(testUser, secondTestUser, adminTestUser));
+        when(userRepository.findByTagAfter(tagWord, "", 20)).thenReturn(List.of());
 
         // When
-        List<User> responseUsers = userService.searchUserByTag(tagWord);
+        List<User> responseUsers = userService.searchUserByTag(tagWord, null, 20);
 
         // Then
         assertEquals(0, responseUsers.size());
-        verify(userRepository, times(1)).findAll();
+        verify(userRepository, never()).findAll();
     }
 
     @Test
@@ -691,74 +789,58 @@ class UserServiceTest {
         testUser.setTags(new String[]{"developer", "java"});
         secondTestUser.setTags(new String[]{"designer", "javascript"});
 
-        List<User> users = Arrays.asList(testUser, secondTestUser);
-
         // Mock
-        when(userRepository.findAll()).thenReturn(users);
+        when(userRepository.findDictionaryTagsContaining("java", 100)).thenReturn(List.of("java", "javascript"));
+        when(userRepository.findByAnyTagAfter(new String[]{"java", "javascript"}, "", 20)).thenReturn(List.of(testUser, secondTestUser));
 
         // When
-        List<User> result = userService.searchUsersByTagContaining("java");
+        List<User> result = userService.searchUsersByTagContaining("Java", null, 20);
 
         // Then
         assertEquals(2, result.size());
         assertEquals(testUser, result.get(0));
+        verify(userRepository, never()).findAll();
     }
 
     @Test
     public void should_not_get_users_when_not_MatchingTag() {
-        // Given
-        testUser.setTags(new String[]{"developer", "java"});
-        secondTestUser.setTags(new String[]{"designer", "javascript"});
-
-        List<User> users = Arrays.asList(testUser, secondTestUser);
-
         // Mock
-        when(userRepository.findAll()).thenReturn(users);
+        when(userRepository.findDictionaryTagsContaining("python", 100)).thenReturn(List.of());
 
         // When
-        List<User> result = userService.searchUsersByTagContaining("python");
+        List<User> result = userService.searchUsersByTagContaining("python", null, 20);
 
         // Then
         assertEquals(0, result.size());
+        verify(userRepository, never()).findByAnyTagAfter(any(), anyString(), anyInt());
     }
 
     @Test
-    public void should_get_all_users_when_EmptyTag() {
-        // Given
-        testUser.setTags(new String[]{"developer", "java"});
-        secondTestUser.setTags(new String[]{"designer", "javascript"});
-
-        List<User> users = Arrays.asList(testUser, secondTestUser);
-
+    public void should_escape_like_wildcards_of_keyword() {
         // Mock
-        when(userRepository.findAll()).thenReturn(users);
+        when(userRepository.findDictionaryTagsContaining("100\\%\\_off", 100)).thenReturn(List.of());
 
         // When
-        List<User> result = userService.searchUsersByTagContaining("");
+        List<User> result = userService.searchUsersByTagContaining("100%_off", null, 20);
 
         // Then
-        assertEquals(2, result.size());
-        assertEquals(testUser, result.get(0));
-        assertEquals(secondTestUser, result.get(1));
+        assertEquals(0, result.size());
+        verify(userRepository, times(1)).findDictionaryTagsContaining("100\\%\\_off", 100);
     }
 
     @Test
-    public void testSearchUsersByTagContaining_NoTags() {
-        // Given
-        testUser.setTags(new String[]{"developer", "java"});
-        secondTestUser.setTags(null);
-
-        List<User> users = Arrays.asList(testUser, secondTestUser);
-
+    public void should_get_page_of_all_users_when_EmptyTag() {
         // Mock
-        when(userRepository.findAll()).thenReturn(users);
+        when(userRepository.findUsersAfter("", 20)).thenReturn(List.of(testUser, secondTestUser));
 
         // When
-        List<User> result = userService.searchUsersByTagContaining("java");
+        List<User> result = userService.searchUsersByTagContaining("", null, 20);
 
-        // Assert
-        assertEquals(1, result.size());
+        // Then
+        assertEquals(2, result.size());
         assertEquals(testUser, result.get(0));
+        assertEquals(secondTestUser, result.get(1));
+        verify(userRepository, never()).findAll();
     }
 
     // sendFriendRequest
@@ -781,65 +863,43 @@ class UserServiceTest {
 
         // Then
         assertEquals("User [" + secondTestUsername + "] does not exist in DB", result);
-        verify(userRepository, never()).save(secondTestUser);
+        verify(friendshipRepository, never()).insertRequest(anyString(), anyString());
     }
 
     @Test
     public void should_not_send_request_when_users_are_already_friends() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setFriends(new String[]{secondTestUsername});
-        secondTestUser.setFriends(new String[]{testUsername});
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
         when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
+        when(friendshipRepository.insertRequest(testUsername, secondTestUsername)).thenReturn(0);
+        mockFriendship(testUsername, secondTestUsername, FriendshipStatus.FRIEND);
 
         // When
         String result = userService.sendFriendRequest(secondTestUsername, mockJwtToken);
 
         // Then
         assertEquals("User [" + secondTestUsername + "] is already friends with User [" + testUsername + "]", result);
-        verify(userRepository, never()).save(any(User.class));
     }
 
     @Test
     public void should_not_send_request_when_friend_request_already_sent() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setFriendsRequested(new String[]{secondTestUsername});
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
         when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
+        when(friendshipRepository.insertRequest(testUsername, secondTestUsername)).thenReturn(0);
+        mockFriendship(testUsername, secondTestUsername, FriendshipStatus.REQUESTED);
 
         // When
         String result = userService.sendFriendRequest(secondTestUsername, mockJwtToken);
 
         // Then
         assertEquals("Friend Request Already Sent", result);
-        verify(userRepository, never()).save(any(User.class));
-    }
-
-    @Test
-    public void should_not_send_request_when_friend_request_already_received() {
-        // Given
-        String mockJwtToken = "Bearer mock.jwt.token";
-        secondTestUser.setFriendRequests(new String[]{testUsername});
-
-        // Mock
-        when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
-
-        // When
-        String result = userService.sendFriendRequest(secondTestUsername, mockJwtToken);
-
-        // Then
-        assertEquals("Friend Request Already Sent", result);
-        verify(userRepository, never()).save(any(User.class));
     }
 
     @Test
@@ -849,22 +909,16 @@ class UserServiceTest {
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
         when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
-        when(userRepository.save(testUser)).thenReturn(testUser);
-        when(userRepository.save(secondTestUser)).thenReturn(secondTestUser);
+        when(friendshipRepository.insertRequest(testUsername, secondTestUsername)).thenReturn(1);
 
         // When
         String result = userService.sendFriendRequest(secondTestUsername, mockJwtToken);
 
         // Then
         assertEquals("Friend request Sent", result);
-        assertEquals(1, testUser.getFriendsRequested().length);
-        assertEquals(1, secondTestUser.getFriendRequests().length);
-        assertEquals(secondTestUsername, testUser.getFriendsRequested()[0]);
-        assertEquals(testUsername, secondTestUser.getFriendRequests()[0]);
-        verify(userRepository, times(1)).save(testUser);
-        verify(userRepository, times(1)).save(secondTestUser);
+        verify(friendshipRepository, times(1)).insertRequest(testUsername, secondTestUsername);
+        verify(userRepository, never()).save(any(User.class));
     }
 
     // acceptFriendRequest
@@ -877,18 +931,19 @@ class UserServiceTest {
     public void should_not_accept_request_when_already_friends() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        secondTestUser.setFriends(new String[]{testUsername});
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(secondTestUsername);
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
+        when(friendshipRepository.acceptRequest(testUsername, secondTestUsername)).thenReturn(0);
+        mockFriendship(secondTestUsername, testUsername, FriendshipStatus.FRIEND);
 
         // When
         String result = userService.acceptFriendRequest(testUsername, mockJwtToken);
 
         // Then
         assertEquals("Already Friends", result);
-        verify(userRepository, never()).save(any(User.class));
+        verify(timelineService, never()).markStale(anyString());
+        verify(socialGraphService, never()).addFriendship(anyString(), anyString());
     }
 
     @Test
@@ -898,66 +953,36 @@ class UserServiceTest {
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(secondTestUsername);
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
+        when(friendshipRepository.acceptRequest(testUsername, secondTestUsername)).thenReturn(0);
 
         // When
         String result = userService.acceptFriendRequest(testUsername, mockJwtToken);
 
         // Then
         assertEquals("Friend Request NOT Sent", result);
-        verify(userRepository, never()).save(any(User.class));
-    }
-
-    @Test
-    public void should_not_accept_request_when_fromUser_does_not_exist_anymore() {
-        // Given
-        String mockJwtToken = "Bearer mock.jwt.token";
-        secondTestUser.setFriendRequests(new String[]{testUsername});
-
-        // Mock
-        when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(secondTestUsername);
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.empty());
-        when(userRepository.save(secondTestUser)).thenReturn(secondTestUser);
-
-        // When
-        String result = userService.acceptFriendRequest(testUsername, mockJwtToken);
-
-        // Then
-        assertEquals("User [" + testUsername + "] does not exist in DB", result);
-        verify(userRepository, times(1)).save(secondTestUser);
-        verify(userRepository, never()).save(testUser);
+        verify(timelineService, never()).markStale(anyString());
     }
 
     @Test
     public void should_accept_request_when_request_is_sent() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setFriendsRequested(new String[]{secondTestUsername});
-        secondTestUser.setFriendRequests(new String[]{testUsername});
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(secondTestUsername);
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
-        when(userRepository.save(testUser)).thenReturn(testUser);
-        when(userRepository.save(secondTestUser)).thenReturn(secondTestUser);
+        when(friendshipRepository.acceptRequest(testUsername, secondTestUsername)).thenReturn(1);
 
         // When
         String result = userService.acceptFriendRequest(testUsername, mockJwtToken);
 
         // Then
         assertEquals("Friend request accepted", result);
-        assertEquals(0, testUser.getFriendsRequested().length);
-        assertEquals(0, secondTestUser.getFriendRequests().length);
-        assertFalse(ArrayUtils.contains(testUser.getFriendsRequested(), secondTestUsername));
-        assertFalse(ArrayUtils.contains(secondTestUser.getFriendRequests(), testUsername));
-        assertEquals(1, testUser.getFriends().length);
-        assertEquals(1, secondTestUser.getFriends().length);
-        assertTrue(ArrayUtils.contains(testUser.getFriends(), secondTestUsername));
-        assertTrue(ArrayUtils.contains(secondTestUser.getFriends(), testUsername));
-        verify(userRepository, times(1)).save(secondTestUser);
-        verify(userRepository, times(1)).save(testUser);
+        verify(friendshipRepository, times(1)).acceptRequest(testUsername, secondTestUsername);
+        verify(timelineService, times(1)).markStale(testUsername);
+        verify(timelineService, times(1)).markStale(secondTestUsername);
+        verify(socialGraphService, times(1)).addFriendship(testUsername, secondTestUsername);
+        verify(userSuggestionService, times(1)).friendshipChanged(testUsername, secondTestUsername);
+        verify(userRepository, never()).save(any(User.class));
     }
 
     // rejectFriendRequest
@@ -973,64 +998,31 @@ class UserServiceTest {
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(secondTestUsername);
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
+        when(friendshipRepository.deleteRequest(testUsername, secondTestUsername)).thenReturn(0);
 
         // When
         String result = userService.rejectFriendRequest(testUsername, mockJwtToken);
 
         // Then
         assertEquals("Friend Request NOT Sent", result);
-        verify(userRepository, never()).save(any(User.class));
     }
 
     @Test
-    public void should_reject_request_even_when_fromUser_does_not_exist_anymore_and_delete_the_request() {
+    public void should_reject_request_and_delete_the_request() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        secondTestUser.setFriendRequests(new String[]{testUsername});
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(secondTestUsername);
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.empty());
-        when(userRepository.save(secondTestUser)).thenReturn(secondTestUser);
+        when(friendshipRepository.deleteRequest(testUsername, secondTestUsername)).thenReturn(1);
 
         // When
         String result = userService.rejectFriendRequest(testUsername, mockJwtToken);
 
         // Then
         assertEquals("Friend request Deleted", result);
-        assertEquals(0, secondTestUser.getFriendRequests().length);
-        assertFalse(ArrayUtils.contains(secondTestUser.getFriendRequests(), testUsername));
-        verify(userRepository, times(1)).save(secondTestUser);
-        verify(userRepository, never()).save(testUser);
-    }
-
-    @Test
-    public void should_reject_request_when_fromUser_exist_anymore_and_delete_the_request() {
-        // Given
-        String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setFriendsRequested(new String[]{secondTestUsername});
-        secondTestUser.setFriendRequests(new String[]{testUsername});
-
-        // Mock
-        when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(secondTestUsername);
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
-        when(userRepository.save(testUser)).thenReturn(testUser);
-        when(userRepository.save(secondTestUser)).thenReturn(secondTestUser);
-
-        // When
-        String result = userService.rejectFriendRequest(testUsername, mockJwtToken);
-
-        // Then
-        assertEquals("Friend request Deleted", result);
-        assertEquals(0, testUser.getFriendsRequested().length);
-        assertEquals(0, secondTestUser.getFriendRequests().length);
-        assertFalse(ArrayUtils.contains(testUser.getFriendsRequested(), secondTestUsername));
-        assertFalse(ArrayUtils.contains(secondTestUser.getFriendRequests(), testUsername));
-        verify(userRepository, times(1)).save(secondTestUser);
-        verify(userRepository, times(1)).save(testUser);
+        verify(friendshipRepository, times(1)).deleteRequest(testUsername, secondTestUsername);
+        verify(userRepository, never()).save(any(User.class));
     }
 
     // deleteFriendRequest
@@ -1041,92 +1033,55 @@ class UserServiceTest {
 
     @Test
     public void should_not_delete_friend_request_when_friend_request_not_sent() {
-        // Arrange
-        String mockJwtToken = "Bearer mock.jwt.token";
-        when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
-
-        // Act
-        String result = userService.deleteFriendRequest(secondTestUsername, mockJwtToken);
-
-        // Assert
-        assertEquals("Friend Request NOT Sent", result);
-        assertNull(testUser.getFriendsRequested());
-        assertNull(secondTestUser.getFriendRequests());
-        verify(userRepository, never()).save(any(User.class)); // Verify no save operation was performed
-    }
-
-    @Test
-    public void should_delete_friend_request_when_friend_request_sent_and_to_user_does_not_exist_anymore() {
-        // Arrange
+        // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setFriendsRequested(new String[]{secondTestUsername});
 
+        // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.empty());
-        when(userRepository.save(testUser)).thenReturn(testUser);
+        when(friendshipRepository.deleteRequest(testUsername, secondTestUsername)).thenReturn(0);
 
-        // Act
+        // When
         String result = userService.deleteFriendRequest(secondTestUsername, mockJwtToken);
 
-        // Assert
-        assertEquals("Friend request Deleted", result);
-        assertEquals(0, testUser.getFriendsRequested().length);
-        assertFalse(ArrayUtils.contains(testUser.getFriendsRequested(), secondTestUsername));
-        verify(userRepository, times(1)).save(testUser);
-        verify(userRepository, never()).save(secondTestUser);
+        // Then
+        assertEquals("Friend Request NOT Sent", result);
     }
 
     @Test
-    public void should_delete_friend_request_when_friend_request_sent_and_to_user_also_exist() {
-        // Arrange
+    public void should_delete_friend_request_when_friend_request_sent() {
+        // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setFriendsRequested(new String[]{secondTestUsername});
-        secondTestUser.setFriendRequests(new String[]{testUsername});
 
+        // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
-        when(userRepository.save(testUser)).thenReturn(testUser);
-        when(userRepository.save(secondTestUser)).thenReturn(secondTestUser);
+        when(friendshipRepository.deleteRequest(testUsername, secondTestUsername)).thenReturn(1);
 
-        // Act
+        // When
         String result = userService.deleteFriendRequest(secondTestUsername, mockJwtToken);
 
-        // Assert
+        // Then
         assertEquals("Friend request Deleted", result);
-        assertEquals(0, testUser.getFriendsRequested().length);
-        assertEquals(0, secondTestUser.getFriendRequests().length);
-        assertFalse(ArrayUtils.contains(testUser.getFriendsRequested(), secondTestUsername));
-        assertFalse(ArrayUtils.contains(secondTestUser.getFriendRequests(), testUsername));
-        verify(userRepository, times(1)).save(secondTestUser);
-        verify(userRepository, times(1)).save(testUser);
+        verify(friendshipRepository, times(1)).deleteRequest(testUsername, secondTestUsername);
     }
 
-
-
     // getFriendRequestUsers
 
     @Test
-    public void should_get_usernames_of_friend_request_users() {
+    public void should_get_page_of_friend_request_users_with_next_cursor_when_page_is_full() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setFriendRequests(new String[]{secondTestUsername, adminTestUsername});
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(friendshipRepository.findRequestingUsernames(testUsername, "", 2)).thenReturn(List.of(adminTestUsername, secondTestUsername));
 
         // When
-        String[] responseFriendRequestUsers = userService.getFriendRequestUsers(mockJwtToken);
+        UsernamePage page = userService.getFriendRequestUsers(mockJwtToken, null, 2);
 
         // Then
-        assertNotNull(responseFriendRequestUsers);
-        assertEquals(2, responseFriendRequestUsers.length);
-        assertEquals(secondTestUsername, responseFriendRequestUsers[0]);
-        verify(userRepository, times(1)).findByUsername(testUsername);
+        assertEquals(List.of(adminTestUsername, secondTestUsername), page.getUsernames());
+        assertEquals(secondTestUsername, page.getNextCursor());
+        verify(userRepository, never()).findByUsername(testUsername);
     }
 
     @Test
@@ -1136,167 +1091,172 @@ class UserServiceTest {
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(friendshipRepository.findRequestingUsernames(testUsername, "", 20)).thenReturn(List.of());
 
         // When
-        String[] responseFriendRequestUsers = userService.getFriendRequestUsers(mockJwtToken);
+        UsernamePage page = userService.getFriendRequestUsers(mockJwtToken, null, 20);
 
         // Then
-        assertNotNull(responseFriendRequestUsers);
-        assertEquals(0, responseFriendRequestUsers.length);
-        assertFalse(ArrayUtils.contains(responseFriendRequestUsers, secondTestUsername));
-        verify(userRepository, times(1)).findByUsername(testUsername);
+        assertTrue(page.getUsernames().isEmpty());
+        assertNull(page.getNextCursor());
     }
 
     // getFriendsRequested
 
     @Test
-    public void should_get_usernames_of_friends_requested_users() {
+    public void should_get_page_of_friends_requested_after_cursor() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setFriendsRequested(new String[]{secondTestUsername, adminTestUsername});
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(friendshipRepository.findRequestedUsernames(testUsername, adminTestUsername, 20)).thenReturn(List.of(secondTestUsername));
 
         // When
-        String[] responseFriendsRequestedUsernames = userService.getFriendsRequested(mockJwtToken);
+        UsernamePage page = userService.getFriendsRequested(mockJwtToken, adminTestUsername, 20);
 
         // Then
-        assertNotNull(responseFriendsRequestedUsernames);
-        assertEquals(2, responseFriendsRequestedUsernames.length);
-        assertTrue(ArrayUtils.contains(responseFriendsRequestedUsernames, secondTestUsername));
-        verify(userRepository, times(1)).findByUsername(testUsername);
+        assertEquals(List.of(secondTestUsername), page.getUsernames());
+        assertNull(page.getNextCursor());
     }
 
+    // getFriendsOfUser
+
     @Test
-    public void should_get_zero_usernames_of_friends_requested_users_when_no_friend_is_requested() {
+    public void should_get_page_of_friends() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(friendshipRepository.findFriendUsernames(testUsername, "", 20)).thenReturn(List.of(adminTestUsername, secondTestUsername));
 
         // When
-        String[] responseFriendsRequestedUsernames = userService.getFriendsRequested(mockJwtToken);
+        UsernamePage page = userService.getFriendsOfUser(mockJwtToken, null, 20);
 
         // Then
-        assertNotNull(responseFriendsRequestedUsernames);
-        assertEquals(0, responseFriendsRequestedUsernames.length);
-        assertFalse(ArrayUtils.contains(responseFriendsRequestedUsernames, secondTestUsername));
-        verify(userRepository, times(1)).findByUsername(testUsername);
+        assertEquals(List.of(adminTestUsername, secondTestUsername), page.getUsernames());
+        assertNull(page.getNextCursor());
     }
 
-    // getFriendsOfUser
-
     @Test
-    public void should_get_usernames_of_friends_users() {
+    public void should_cap_friends_page_size() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setFriends(new String[]{secondTestUsername, adminTestUsername});
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(friendshipRepository.findFriendUsernames(testUsername, "", 100)).thenReturn(List.of());
 
         // When
-        String[] responseFriendsUsernames = userService.getFriendsOfUser(mockJwtToken);
+        UsernamePage page = userService.getFriendsOfUser(mockJwtToken, null, 10000);
 
         // Then
-        assertNotNull(responseFriendsUsernames);
-        assertEquals(2, responseFriendsUsernames.length);
-        assertTrue(ArrayUtils.contains(responseFriendsUsernames, secondTestUsername));
-        verify(userRepository, times(1)).findByUsername(testUsername);
+        assertTrue(page.getUsernames().isEmpty());
+        verify(friendshipRepository, times(1)).findFriendUsernames(testUsername, "", 100);
     }
 
+    // deleteFriend
+
     @Test
-    public void should_get_zero_usernames_of_friends_users_when_no_friend_is_present() {
+    public void should_not_delete_friend_when_not_friends() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(friendshipRepository.deleteFriendship(testUsername, secondTestUsername)).thenReturn(0);
 
-        // When
-        String[] responseFriendsUsernames = userService.getFriendsOfUser(mockJwtToken);
+        // when
+        int result = userService.deleteFriend(secondTestUsername, mockJwtToken);
 
         // Then
-        assertNotNull(responseFriendsUsernames);
-        assertEquals(0, responseFriendsUsernames.length);
-        assertFalse(ArrayUtils.contains(responseFriendsUsernames, secondTestUsername));
-        verify(userRepository, times(1)).findByUsername(testUsername);
+        assertEquals(-1, result);
+        verify(timelineService, never()).markStale(anyString());
+        verify(socialGraphService, never()).removeFriendship(anyString(), anyString());
     }
 
-    // deleteFriend
-
     @Test
-    public void should_not_delete_friend_when_not_friends() {
+    public void should_delete_friend_when_friends() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(friendshipRepository.deleteFriendship(testUsername, secondTestUsername)).thenReturn(2);
 
         // when
         int result = userService.deleteFriend(secondTestUsername, mockJwtToken);
 
         // Then
-        assertEquals(-1, result);
+        assertEquals(1, result);
+        verify(friendshipRepository, times(1)).deleteFriendship(testUsername, secondTestUsername);
         verify(userRepository, never()).save(any(User.class));
+        verify(timelineService, times(1)).markStale(testUsername);
+        verify(timelineService, times(1)).markStale(secondTestUsername);
+        verify(socialGraphService, times(1)).removeFriendship(testUsername, secondTestUsername);
+        verify(userSuggestionService, times(1)).friendshipChanged(testUsername, secondTestUsername);
     }
 
+    // getSuggestions
+
     @Test
-    public void test_delete_friend_when_friend_does_not_exist_but_friend_username_exist() {
+    public void should_get_suggestions_of_user() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setFriends(new String[]{secondTestUsername, adminTestUsername});
+        UserSuggestionDTO suggestion = UserSuggestionDTO.builder().username(secondTestUsername).mutualFriends(2).score(2.0).build();
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.empty());
-        when(userRepository.save(testUser)).thenReturn(testUser);
+        when(userSuggestionService.getSuggestions(testUsername, 20)).thenReturn(List.of(suggestion));
 
-        // when
-        int result = userService.deleteFriend(secondTestUsername, mockJwtToken);
+        // When
+        List<UserSuggestionDTO> result = userService.getSuggestions(mockJwtToken, 20);
 
         // Then
-        assertEquals(1, result);
-        assertEquals(1, testUser.getFriends().length);
-        assertFalse(ArrayUtils.contains(testUser.getFriends(), secondTestUsername));
-        verify(userRepository, times(1)).save(testUser);
-        verify(userRepository, never()).save(secondTestUser);
+        assertEquals(List.of(suggestion), result);
     }
 
+    // autocomplete
+
     @Test
-    public void should_delete_friend_when_friends() {
+    public void should_autocomplete_users_from_index() {
+        // Given
+        AutocompleteDTO match = AutocompleteDTO.builder().username(testUsername).firstName("John").lastName("Doe").build();
+
+        // Mock
+        when(autocompleteService.complete("jo", 10)).thenReturn(List.of(match));
+
+        // When
+        List<AutocompleteDTO> result = userService.autocomplete("jo", 10);
+
+        // Then
+        assertEquals(List.of(match), result);
+        verify(userRepository, never()).searchUserByWord(anyString());
+    }
+
+    // getMutualFriends
+
+    @Test
+    public void should_get_mutual_friends_from_social_graph() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setFriends(new String[]{secondTestUsername, adminTestUsername});
-        secondTestUser.setFriends(new String[]{testUsername});
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
-        when(userRepository.save(testUser)).thenReturn(testUser);
-        when(userRepository.save(secondTestUser)).thenReturn(secondTestUser);
+        when(socialGraphService.mutualFriends(testUsername, secondTestUsername)).thenReturn(List.of(adminTestUsername));
 
-        // when
-        int result = userService.deleteFriend(secondTestUsername, mockJwtToken);
+        // When
+        List<String> result = userService.getMutualFriends(secondTestUsername, mockJwtToken);
 
         // Then
-        assertEquals(1, result);
-        assertEquals(1, testUser.getFriends().length);
-        assertEquals(0, secondTestUser.getFriends().length);
-        assertFalse(ArrayUtils.contains(testUser.getFriends(), secondTestUsername));
-        assertFalse(ArrayUtils.contains(secondTestUser.getFriends(), testUsername));
-        verify(userRepository, times(1)).save(testUser);
-        verify(userRepository, times(1)).save(secondTestUser);
+        assertEquals(List.of(adminTestUsername), result);
+        verifyNoInteractions(friendshipRepository);
+    }
+
+    private void mockFriendship(String username, String friendUsername, FriendshipStatus status) {
+        when(friendshipRepository.findById(new Friendship.FriendshipId(username, friendUsername)))
+                .thenReturn(Optional.of(Friendship.builder().username(username).friendUsername(friendUsername).status(status).build()));
     }
 
     // getPostsOfUser
@@ -1308,10 +1268,10 @@ class UserServiceTest {
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(secondTestUsername);
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
+        when(postRepository.findSummariesByOwner(secondTestUsername)).thenReturn(summariesOf(secondTestUser.getPosts()));
 
         // When
-        List<Post> responsePostsOfUser = userService.getPostsOfUser(mockJwtToken);
+        List<PostDTO> responsePostsOfUser = userService.getPostsOfUser(mockJwtToken);
 
         // Then
         assertNotNull(responsePostsOfUser);
@@ -1326,14 +1286,15 @@ class UserServiceTest {
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(adminTestUsername);
-        when(userRepository.findByUsername(adminTestUsername)).thenReturn(Optional.of(adminTestUser));
+        when(postRepository.findSummariesByOwner(adminTestUsername)).thenReturn(List.of());
 
         // When
-        List<Post> responsePostsOfUser = userService.getPostsOfUser(mockJwtToken);
+        List<PostDTO> responsePostsOfUser = userService.getPostsOfUser(mockJwtToken);
 
         // Then
         assertNull(responsePostsOfUser);
-        verify(userRepository, times(1)).findByUsername(adminTestUsername);
+        verify(postRepository, times(1)).findSummariesByOwner(adminTestUsername);
+        verify(userRepository, never()).findByUsername(adminTestUsername);
     }
 
     // getRequestedPostsOfUser
@@ -1342,14 +1303,13 @@ class UserServiceTest {
     public void should_get_all_requested_posts_Of_User() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setRequestedPosts(List.of(secondTestUserPost));
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(postRepository.findRequestedSummariesOf(testUsername)).thenReturn(summariesOf(secondTestUserPost));
 
         // When
-        List<Post> responseRequestedPostsOfUser = userService.getRequestedPostsOfUser(mockJwtToken);
+        List<PostDTO> responseRequestedPostsOfUser = userService.getRequestedPostsOfUser(mockJwtToken);
 
         // Then
         assertNotNull(responseRequestedPostsOfUser);
@@ -1364,14 +1324,14 @@ class UserServiceTest {
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(secondTestUsername);
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
+        when(postRepository.findRequestedSummariesOf(secondTestUsername)).thenReturn(List.of());
 
         // When
-        List<Post> responseRequestedPostsOfUser = userService.getRequestedPostsOfUser(mockJwtToken);
+        List<PostDTO> responseRequestedPostsOfUser = userService.getRequestedPostsOfUser(mockJwtToken);
 
         // Then
         assertNull(responseRequestedPostsOfUser);
-        verify(userRepository, times(1)).findByUsername(secondTestUsername);
+        verify(postRepository, times(1)).findRequestedSummariesOf(secondTestUsername);
     }
 
     // getReminderPosts
@@ -1380,14 +1340,13 @@ class UserServiceTest {
     public void should_get_all_reminder_posts_Of_User() {
         // Given
         String mockJwtToken = "Bearer mock.jwt.token";
-        testUser.setReminderPosts(List.of(secondTestUserSecondPost));
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
-        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(postRepository.findReminderSummariesOf(testUsername)).thenReturn(summariesOf(secondTestUserSecondPost));
 
         // When
-        List<Post> responseReminderPostsOfUser = userService.getReminderPosts(mockJwtToken);
+        List<PostDTO> responseReminderPostsOfUser = userService.getReminderPosts(mockJwtToken);
 
         // Then
         assertNotNull(responseReminderPostsOfUser);
@@ -1402,14 +1361,14 @@ class UserServiceTest {
 
         // Mock
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(secondTestUsername);
-        when(userRepository.findByUsername(secondTestUsername)).thenReturn(Optional.of(secondTestUser));
+        when(postRepository.findReminderSummariesOf(secondTestUsername)).thenReturn(List.of());
 
         // When
-        List<Post> responseReminderPostsOfUser = userService.getReminderPosts(mockJwtToken);
+        List<PostDTO> responseReminderPostsOfUser = userService.getReminderPosts(mockJwtToken);
 
         // Then
         assertNull(responseReminderPostsOfUser);
-        verify(userRepository, times(1)).findByUsername(secondTestUsername);
+        verify(postRepository, times(1)).findReminderSummariesOf(secondTestUsername);
     }
 
     // deleteReminderPostsOfUser
@@ -1509,6 +1468,7 @@ class UserServiceTest {
         verify(postRepository, times(2)).findById(thirdPostId);
         verify(userRepository, times(1)).save(testUser);
         verify(postRepository, times(1)).save(secondTestUserSecondPost);
+        verify(eventReminderService, times(1)).cancel(thirdPostId, testUsername);
     }
 
     // getTagsOfUser
@@ -1574,6 +1534,38 @@ class UserServiceTest {
         assertFalse(ArrayUtils.contains(responseTagsOfUser, "club-hopping"));
         assertTrue(ArrayUtils.contains(responseTagsOfUser, "coffee-hopping"));
         verify(userRepository, times(1)).save(testUser);
+        verify(timelineService, times(1)).markStale(testUsername);
+        verify(userSuggestionService, times(1)).profileChanged(testUser);
+        verify(autocompleteService, times(1)).index(testUser);
+        verify(userRepository, times(1)).insertDictionaryTags(new String[]{"cricket", "coffee-hopping", "book-reading"});
+    }
+
+    @Test
+    public void should_update_suggestion_profile_and_autocomplete_after_tags_commit() {
+        // Given
+        String mockJwtToken = "Bearer mock.jwt.token";
+        String[] newTags = {"cricket"};
+
+        // Mock
+        when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
+        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(userRepository.save(testUser)).thenReturn(testUser);
+
+        // When
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userService.updateTagsOfUser(newTags, mockJwtToken);
+
+            // Then
+            verify(userSuggestionService, never()).profileChanged(any());
+            verify(autocompleteService, never()).index(any(User.class));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(userSuggestionService, times(1)).profileChanged(testUser);
+            verify(autocompleteService, times(1)).index(testUser);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
     }
 
     @Test
@@ -1660,6 +1652,7 @@ class UserServiceTest {
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
         when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
         when(imageRepository.save(any(Image.class))).thenReturn(expectedImage);
+        when(idGenerator.nextId()).thenReturn(654321L);
         when(userRepository.save(testUser)).thenReturn(testUser);
 
         // When
@@ -1693,6 +1686,7 @@ class UserServiceTest {
         when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
         when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
         when(imageRepository.save(any(Image.class))).thenReturn(expectedImage);
+        when(idGenerator.nextId()).thenReturn(654321L);
         when(userRepository.save(testUser)).thenReturn(testUser);
         when(imageRepository.findById(123456L)).thenReturn(Optional.of(new Image(123456L, "old.jpg", "image/jpeg", new byte[0])));
 
@@ -1990,4 +1984,72 @@ class UserServiceTest {
         assertFalse(responseConnectedUsers.contains(secondTestUser));
         verify(userRepository, times(1)).findAllByStatus(Status.ONLINE);
     }
-}
\ No newline at end of file
+
+    // getUpcomingEvents
+
+    @Test
+    public void should_get_upcoming_events_of_own_and_confirmed_posts_soonest_first() {
+        // Given
+        String mockJwtToken = "Bearer mock.jwt.token";
+        testUserPost.setPostType("event");
+        testUserPost.setPostStartTs(Timestamp.valueOf("2099-07-13 10:00:00"));
+        secondTestUserPost.setPostStartTs(Timestamp.valueOf("2099-06-21 18:30:00"));
+
+        // Mock
+        when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
+        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(postRepository.findUpcomingEventsOwnedBy(eq(testUsername), any(Timestamp.class), any())).thenReturn(summariesOf(testUserPost));
+        when(postRepository.findUpcomingRemindersOf(eq(testUserId), any(Timestamp.class), any())).thenReturn(summariesOf(secondTestUserPost));
+
+        // When
+        ArrayList<PostDTO> responseEvents = userService.getUpcomingEvents(mockJwtToken, 20);
+
+        // Then
+        assertEquals(2, responseEvents.size());
+        assertEquals(secondPostId, responseEvents.get(0).getPostId());
+        assertEquals("2099-06-21 18:30:00", responseEvents.get(0).getPostStartTs());
+        assertEquals(postId, responseEvents.get(1).getPostId());
+    }
+
+    @Test
+    public void should_limit_upcoming_events_and_not_repeat_own_confirmed_posts() {
+        // Given
+        String mockJwtToken = "Bearer mock.jwt.token";
+        testUserPost.setPostType("event");
+        testUserPost.setPostStartTs(Timestamp.valueOf("2099-07-13 10:00:00"));
+        secondTestUserPost.setPostStartTs(Timestamp.valueOf("2099-06-21 18:30:00"));
+        secondTestUserSecondPost.setPostStartTs(Timestamp.valueOf("2099-08-01 09:00:00"));
+
+        // Mock
+        when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
+        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+        when(postRepository.findUpcomingEventsOwnedBy(eq(testUsername), any(Timestamp.class), any())).thenReturn(summariesOf(testUserPost));
+        when(postRepository.findUpcomingRemindersOf(eq(testUserId), any(Timestamp.class), any()))
+                .thenReturn(summariesOf(secondTestUserPost, testUserPost, secondTestUserSecondPost));
+
+        // When
+        ArrayList<PostDTO> responseEvents = userService.getUpcomingEvents(mockJwtToken, 2);
+
+        // Then
+        assertEquals(2, responseEvents.size());
+        assertEquals(secondPostId, responseEvents.get(0).getPostId());
+        assertEquals(postId, responseEvents.get(1).getPostId());
+        verify(postRepository, times(1)).findUpcomingEventsOwnedBy(eq(testUsername), any(Timestamp.class), eq(PageRequest.of(0, 2)));
+    }
+
+    @Test
+    public void should_get_no_upcoming_events() {
+        // Given
+        String mockJwtToken = "Bearer mock.jwt.token";
+
+        // Mock
+        when(jwtService.extractUsername(mockJwtToken.substring(7))).thenReturn(testUsername);
+        when(userRepository.findByUsername(testUsername)).thenReturn(Optional.of(testUser));
+
+        // When
+        ArrayList<PostDTO> responseEvents = userService.getUpcomingEvents(mockJwtToken, 20);
+
+        // Then
+        assertTrue(responseEvents.isEmpty());
+    }
+}
@@ -0,0 +1,229 @@
+package com.socialising.services.service;
+
+import com.socialising.services.dto.UserProfile;
+import com.socialising.services.dto.UserSuggestionDTO;
+import com.socialising.services.model.User;
+import com.socialising.services.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@RunWith(SpringRunner.class)
+class UserSuggestionServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private SocialGraphService socialGraphService;
+
+    private ForkJoinPool pool;
+
+    private UserSuggestionService userSuggestionService;
+
+    private final List<UserProfile> profiles = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // 2 threads, top 2 suggestions, leaf tasks of 1 user, pages of 2 profiles, 10 users per tag
+        // Weights: 1 per mutual friend, 4 for identical tags, 0.5 per detail in common
+        pool = new ForkJoinPool(2);
+        userSuggestionService = new UserSuggestionService(userRepository, socialGraphService, pool, Runnable::run,
+                2, 1, 2, 10, 1.0, 4.0, 0.5);
+
+        when(socialGraphService.isBuilt()).thenReturn(true);
+        when(socialGraphService.friendsOfFriends(anyString())).thenReturn(Map.of());
+        when(userRepository.findProfilesAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            return profiles.stream().filter(profile -> profile.getUserId() > after).limit(2).toList();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private void addProfile(Long userId, String username, String[] tags, String city) {
+        profiles.add(new UserProfile() {
+            public Long getUserId() { return userId; }
+            public String getUsername() { return username; }
+            public String[] getTags() { return tags; }
+            public String getCity() { return city; }
+            public String getHomeCity() { return null; }
+            public String getEducation() { return null; }
+            public String getOccupation() { return null; }
+        });
+    }
+
+    @Test
+    public void should_rank_friends_of_friends_by_mutual_friends_tags_and_details() {
+        // Given
+        addProfile(1L, "alice", new String[]{"football", "music"}, "Pune");
+        addProfile(2L, "bob", new String[]{"chess"}, "Delhi");
+        addProfile(3L, "carol", new String[]{"Football", "music"}, "pune");
+        addProfile(4L, "dave", new String[]{}, null);
+
+        // Mock
+        when(socialGraphService.friendsOfFriends("alice")).thenReturn(Map.of("bob", 3, "carol", 1, "dave", 1));
+
+        // When
+        userSuggestionService.refreshAll();
+        List<UserSuggestionDTO> suggestions = userSuggestionService.getSuggestions("alice", 10);
+
+        // Then carol scores 1 + 4 + 0.5, bob 3, and dave with 1 is beyond the top 2
+        assertEquals(List.of("carol", "bob"), suggestions.stream().map(UserSuggestionDTO::getUsername).toList());
+        assertEquals(5.5, suggestions.get(0).getScore(), 1e-9);
+        assertEquals(2, suggestions.get(0).getSharedTags());
+        assertEquals(1, suggestions.get(0).getSharedDetails());
+        assertEquals(3, suggestions.get(1).getMutualFriends());
+    }
+
+    @Test
+    public void should_suggest_users_sharing_tags_who_are_not_friends() {
+        // Given
+        addProfile(1L, "alice", new String[]{"football"}, null);
+        addProfile(2L, "bob", new String[]{"football", "chess"}, null);
+        addProfile(3L, "carol", new String[]{"football"}, null);
+
+        // Mock
+        when(socialGraphService.areFriends("alice", "carol")).thenReturn(true);
+
+        // When
+        userSuggestionService.refreshAll();
+
+        // Then
+        List<UserSuggestionDTO> suggestions = userSuggestionService.getSuggestions("alice", 10);
+        assertEquals(1, suggestions.size());
+        assertEquals("bob", suggestions.get(0).getUsername());
+        assertEquals(2.0, suggestions.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    public void should_not_compute_suggestions_before_social_graph_is_built() {
+        // Mock
+        when(socialGraphService.isBuilt()).thenReturn(false);
+
+        // When
+        userSuggestionService.refreshAll();
+
+        // Then
+        verify(userRepository, never()).findProfilesAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void should_keep_previous_suggestions_when_profiles_cannot_be_read() {
+        // Given
+        addProfile(1L, "alice", new String[]{"football"}, null);
+        addProfile(2L, "bob", new String[]{"football"}, null);
+        userSuggestionService.refreshAll();
+
+        // Mock
+        when(userRepository.findProfilesAfter(anyLong(), any(Pageable.class))).thenThrow(new DataAccessResourceFailureException("DB down"));
+
+        // When
+        userSuggestionService.refreshAll();
+
+        // Then
+        assertEquals("bob", userSuggestionService.getSuggestions("alice", 10).get(0).getUsername());
+    }
+
+    @Test
+    public void should_compute_suggestions_again_when_friendship_changes() {
+        // Given
+        addProfile(1L, "alice", new String[]{}, null);
+        addProfile(2L, "bob", new String[]{}, null);
+        addProfile(3L, "carol", new String[]{}, null);
+        userSuggestionService.refreshAll();
+        assertTrue(userSuggestionService.getSuggestions("alice", 10).isEmpty());
+
+        // Mock
+        when(socialGraphService.friendsOfFriends("alice")).thenReturn(Map.of("carol", 1));
+
+        // When
+        userSuggestionService.friendshipChanged("alice", "bob");
+
+        // Then
+        assertEquals("carol", userSuggestionService.getSuggestions("alice", 10).get(0).getUsername());
+    }
+
+    @Test
+    public void should_compute_suggestions_again_when_tags_change() {
+        // Given
+        addProfile(1L, "alice", new String[]{}, null);
+        addProfile(2L, "bob", new String[]{"chess"}, null);
+        userSuggestionService.refreshAll();
+
+        // Mock
+        when(socialGraphService.friendsOfFriends("alice")).thenReturn(Map.of("bob", 0));
+
+        // When
+        userSuggestionService.profileChanged(User.builder().username("alice").tags(new String[]{"chess"}).build());
+
+        // Then
+        UserSuggestionDTO suggestion = userSuggestionService.getSuggestions("alice", 10).get(0);
+        assertEquals("bob", suggestion.getUsername());
+        assertEquals(1, suggestion.getSharedTags());
+    }
+
+    @Test
+    public void should_keep_profiles_changed_while_refreshing() {
+        // Given
+        addProfile(1L, "alice", new String[]{}, null);
+        addProfile(2L, "bob", new String[]{"chess"}, null);
+        addProfile(3L, "carol", new String[]{"chess"}, null);
+
+        // Mock
+        // alice changes tags and dave registers after the first page is read
+        when(userRepository.findProfilesAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            if (after == 2L) {
+                userSuggestionService.profileChanged(User.builder().username("alice").tags(new String[]{"chess"}).build());
+                userSuggestionService.profileChanged(User.builder().username("dave").tags(new String[]{"chess"}).build());
+            }
+            return profiles.stream().filter(profile -> profile.getUserId() > after).limit(2).toList();
+        });
+
+        // When
+        userSuggestionService.refreshAll();
+
+        // Then
+        List<UserSuggestionDTO> suggestions = userSuggestionService.getSuggestions("alice", 10);
+        assertFalse(suggestions.isEmpty());
+        assertEquals(1, suggestions.get(0).getSharedTags());
+        assertFalse(userSuggestionService.getSuggestions("dave", 10).isEmpty());
+    }
+
+    @Test
+    public void should_leave_out_deleted_users() {
+        // Given
+        addProfile(1L, "alice", new String[]{"football"}, null);
+        addProfile(2L, "bob", new String[]{"football"}, null);
+        userSuggestionService.refreshAll();
+
+        // When
+        userSuggestionService.removeUser("bob");
+
+        // Then
+        assertTrue(userSuggestionService.getSuggestions("alice", 10).isEmpty());
+        assertTrue(userSuggestionService.getSuggestions("bob", 10).isEmpty());
+    }
+}
@@ -0,0 +1,139 @@
+package com.socialising.services.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedBitmapTest {
+
+    private static CompressedBitmap bitmapOf(int... values) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    @Test
+    public void should_add_remove_and_find_values_across_chunks() {
+        // Given
+        CompressedBitmap bitmap = bitmapOf(5, 70000, 3, 5, 1 << 30);
+
+        // When
+        bitmap.remove(3);
+        bitmap.remove(42);
+
+        // Then
+        assertArrayEquals(new int[]{5, 70000, 1 << 30}, bitmap.toArray());
+        assertTrue(bitmap.contains(70000));
+        assertFalse(bitmap.contains(3));
+        assertFalse(bitmap.contains(-1));
+        assertEquals(3, bitmap.getCardinality());
+    }
+
+    @Test
+    public void should_switch_chunk_to_bitmap_when_full_and_back_when_emptied() {
+        // Given
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value = 0; value < 4096; value++) {
+            bitmap.add(value);
+        }
+        long arrayBytes = bitmap.sizeInBytes();
+
+        // When
+        bitmap.add(4096);
+        long bitmapBytes = bitmap.sizeInBytes();
+        bitmap.remove(0);
+        bitmap.remove(1);
+
+        // Then
+        assertTrue(arrayBytes >= 8192);
+        assertTrue(bitmapBytes >= 8192);
+        assertEquals(4095, bitmap.getCardinality());
+        assertFalse(bitmap.contains(0));
+        assertTrue(bitmap.contains(4096));
+    }
+
+    @Test
+    public void should_keep_sparse_chunks_small() {
+        // When
+        CompressedBitmap bitmap = bitmapOf(1, 100, 1000);
+
+        // Then
+        assertTrue(bitmap.sizeInBytes() < 100);
+    }
+
+    @Test
+    public void should_drop_empty_chunks() {
+        // Given
+        CompressedBitmap bitmap = bitmapOf(70000);
+
+        // When
+        bitmap.remove(70000);
+
+        // Then
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.toArray().length);
+    }
+
+    @Test
+    public void should_not_accept_negative_values() {
+        assertThrows(IllegalArgumentException.class, () -> new CompressedBitmap().add(-1));
+    }
+
+    @Test
+    public void should_and_and_or_like_bitset_on_sparse_and_dense_chunks() {
+        // Given
+        Random random = new Random(42);
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        CompressedBitmap a = new CompressedBitmap();
+        CompressedBitmap b = new CompressedBitmap();
+        // a is dense in the first chunk, b in the second, both are sparse in the third
+        for (int i = 0; i < 30000; i++) {
+            int dense = random.nextInt(1 << 16);
+            int sparse = (2 << 16) + random.nextInt(1 << 16);
+            int valueA = i % 10 == 0 ? sparse : dense;
+            int valueB = i % 10 == 0 ? sparse + 1 : dense + (1 << 16);
+            if (i % 3 == 0) {
+                valueB = valueA;
+            }
+            a.add(valueA);
+            expectedA.set(valueA);
+            b.add(valueB);
+            expectedB.set(valueB);
+        }
+
+        // When
+        CompressedBitmap and = CompressedBitmap.and(a, b);
+        CompressedBitmap or = CompressedBitmap.or(a, b);
+
+        // Then
+        BitSet expectedAnd = (BitSet) expectedA.clone();
+        expectedAnd.and(expectedB);
+        BitSet expectedOr = (BitSet) expectedA.clone();
+        expectedOr.or(expectedB);
+        assertArrayEquals(expectedAnd.stream().toArray(), and.toArray());
+        assertArrayEquals(expectedOr.stream().toArray(), or.toArray());
+        assertEquals(expectedAnd.cardinality(), CompressedBitmap.andCardinality(a, b));
+        assertArrayEquals(expectedA.stream().toArray(), a.toArray());
+    }
+
+    @Test
+    public void should_copy_independently() {
+        // Given
+        CompressedBitmap bitmap = bitmapOf(1, 2);
+
+        // When
+        CompressedBitmap copy = bitmap.copy();
+        copy.add(3);
+        bitmap.remove(1);
+
+        // Then
+        assertArrayEquals(new int[]{1, 2, 3}, copy.toArray());
+        assertArrayEquals(new int[]{2}, bitmap.toArray());
+    }
+}
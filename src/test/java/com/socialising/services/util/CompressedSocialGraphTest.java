@@ -0,0 +1,168 @@
+package com.socialising.services.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedSocialGraphTest {
+
+    private static CompressedSocialGraph graphOf(int vertexCount, int[]... edges) {
+        int[] sources = new int[edges.length];
+        int[] targets = new int[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            sources[i] = edges[i][0];
+            targets[i] = edges[i][1];
+        }
+        return CompressedSocialGraph.fromEdges(vertexCount, sources, targets, edges.length);
+    }
+
+    @Test
+    public void should_build_sorted_rows_without_duplicates_or_loops() {
+        // When
+        CompressedSocialGraph graph = graphOf(5, new int[]{0, 3}, new int[]{3, 0}, new int[]{0, 1}, new int[]{2, 2}, new int[]{1, 3});
+
+        // Then
+        assertEquals(5, graph.vertexCount());
+        assertEquals(3, graph.edgeCount());
+        assertArrayEquals(new int[]{1, 3}, graph.neighbors(0));
+        assertArrayEquals(new int[]{0, 1}, graph.neighbors(3));
+        assertArrayEquals(new int[]{}, graph.neighbors(2));
+        assertTrue(graph.hasEdge(3, 1));
+        assertFalse(graph.hasEdge(2, 4));
+    }
+
+    @Test
+    public void should_add_and_remove_edges_of_new_vertices() {
+        // Given
+        CompressedSocialGraph graph = graphOf(3, new int[]{0, 1}, new int[]{1, 2});
+
+        // When
+        assertTrue(graph.addEdge(5, 1));
+        assertFalse(graph.addEdge(1, 5));
+        assertFalse(graph.addEdge(4, 4));
+        assertTrue(graph.removeEdge(2, 1));
+        assertFalse(graph.removeEdge(2, 1));
+
+        // Then
+        assertEquals(6, graph.vertexCount());
+        assertEquals(2, graph.edgeCount());
+        assertArrayEquals(new int[]{0, 5}, graph.neighbors(1));
+        assertArrayEquals(new int[]{1}, graph.neighbors(5));
+        assertEquals(0, graph.degree(2));
+    }
+
+    @Test
+    public void should_remove_every_edge_of_a_vertex() {
+        // Given
+        CompressedSocialGraph graph = graphOf(4, new int[]{0, 1}, new int[]{0, 2}, new int[]{0, 3}, new int[]{1, 2});
+
+        // When
+        int removed = graph.removeVertex(0);
+
+        // Then
+        assertEquals(3, removed);
+        assertEquals(1, graph.edgeCount());
+        assertArrayEquals(new int[]{2}, graph.neighbors(1));
+        assertFalse(graph.hasEdge(3, 0));
+    }
+
+    @Test
+    public void should_find_common_neighbors_by_merging_and_galloping() {
+        // Given vertex 0 linked to every even vertex up to 2000, vertex 1 to a few of them and some others
+        CompressedSocialGraph graph = new CompressedSocialGraph();
+        for (int v = 2; v <= 2000; v += 2) {
+            graph.addEdge(0, v);
+        }
+        for (int v : new int[]{3, 4, 100, 101, 1998}) {
+            graph.addEdge(1, v);
+        }
+        graph.addEdge(2, 4);
+        graph.addEdge(2, 100);
+
+        // Then
+        assertArrayEquals(new int[]{4, 100, 1998}, graph.commonNeighbors(0, 1));
+        assertEquals(3, graph.commonNeighborCount(1, 0));
+        assertArrayEquals(new int[]{4, 100}, graph.commonNeighbors(2, 1));
+        assertEquals(0, graph.commonNeighborCount(0, 9999));
+    }
+
+    @Test
+    public void should_count_common_neighbors_of_vertices_two_hops_away() {
+        // Given 0 - 1, 0 - 2, 1 - 3, 2 - 3, 2 - 4, 1 - 2
+        CompressedSocialGraph graph = graphOf(5, new int[]{0, 1}, new int[]{0, 2}, new int[]{1, 3}, new int[]{2, 3},
+                new int[]{2, 4}, new int[]{1, 2});
+
+        // When
+        CompressedSocialGraph.TwoHop twoHop = graph.twoHop(0);
+
+        // Then neighbors 1 and 2 are left out
+        assertEquals(2, twoHop.size());
+        assertEquals(3, twoHop.vertex(0));
+        assertEquals(2, twoHop.commonNeighbors(0));
+        assertEquals(4, twoHop.vertex(1));
+        assertEquals(1, twoHop.commonNeighbors(1));
+        assertEquals(0, graph.twoHop(42).size());
+    }
+
+    @Test
+    public void should_match_adjacency_sets_through_random_changes_and_compactions() {
+        // Given
+        Random random = new Random(7);
+        int vertices = 300;
+        List<Set<Integer>> expected = new ArrayList<>();
+        for (int v = 0; v < vertices; v++) {
+            expected.add(new TreeSet<>());
+        }
+        CompressedSocialGraph graph = new CompressedSocialGraph();
+
+        // When
+        for (int i = 0; i < 20000; i++) {
+            int a = random.nextInt(vertices);
+            int b = random.nextInt(vertices);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.get(a).remove(b), graph.removeEdge(a, b));
+                expected.get(b).remove(a);
+            } else if (a != b) {
+                assertEquals(expected.get(a).add(b), graph.addEdge(a, b));
+                expected.get(b).add(a);
+            }
+        }
+
+        // Then
+        long edges = 0;
+        for (int v = 0; v < vertices; v++) {
+            assertArrayEquals(expected.get(v).stream().mapToInt(Integer::intValue).toArray(), graph.neighbors(v));
+            edges += expected.get(v).size();
+        }
+        assertEquals(edges / 2, graph.edgeCount());
+        Set<Integer> common = new TreeSet<>(expected.get(0));
+        common.retainAll(expected.get(1));
+        assertArrayEquals(common.stream().mapToInt(Integer::intValue).toArray(), graph.commonNeighbors(0, 1));
+    }
+
+    @Test
+    public void should_take_less_than_16_bytes_per_edge_once_compacted() {
+        // Given
+        Random random = new Random(11);
+        int vertices = 10000;
+        int edges = 200000;
+        int[] sources = new int[edges];
+        int[] targets = new int[edges];
+        for (int i = 0; i < edges; i++) {
+            sources[i] = random.nextInt(vertices);
+            targets[i] = random.nextInt(vertices);
+        }
+        CompressedSocialGraph graph = CompressedSocialGraph.fromEdges(vertices, sources, targets, edges);
+
+        // When
+        for (int i = 0; i < 5000; i++) {
+            graph.addEdge(random.nextInt(vertices), random.nextInt(vertices));
+        }
+        graph.compact();
+
+        // Then
+        assertTrue(graph.sizeInBytes() < 16 * graph.edgeCount(), graph.sizeInBytes() + " bytes for " + graph.edgeCount() + " edges");
+    }
+}
@@ -0,0 +1,124 @@
+package com.socialising.services.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedTrieTest {
+
+    @Test
+    public void should_match_keys_by_prefix_shortest_first() {
+        // Given
+        CompressedTrie<String> trie = new CompressedTrie<>();
+        trie.add("johnathan", "a");
+        trie.add("john", "b");
+        trie.add("johnny", "c");
+        trie.add("jane", "d");
+
+        // Then
+        assertEquals(List.of("b", "c", "a"), trie.prefixMatches("jo", 10));
+        assertEquals(List.of("d", "b", "c", "a"), trie.prefixMatches("j", 10));
+        assertEquals(List.of("c"), trie.prefixMatches("johnn", 10));
+        assertEquals(List.of("d", "b", "c", "a"), trie.prefixMatches("", 10));
+        assertEquals(4, trie.keyCount());
+    }
+
+    @Test
+    public void should_not_match_missing_prefixes() {
+        // Given
+        CompressedTrie<String> trie = new CompressedTrie<>();
+        trie.add("johnny", "a");
+
+        // Then
+        assertTrue(trie.prefixMatches("jon", 10).isEmpty());
+        assertTrue(trie.prefixMatches("johnnys", 10).isEmpty());
+        assertTrue(trie.prefixMatches("x", 10).isEmpty());
+        assertTrue(trie.prefixMatches("jo", 0).isEmpty());
+    }
+
+    @Test
+    public void should_return_each_value_once_up_to_limit() {
+        // Given
+        CompressedTrie<String> trie = new CompressedTrie<>();
+        trie.add("club", "alice");
+        trie.add("club-hopping", "alice");
+        trie.add("clubbing", "bob");
+        trie.add("clu", "carol");
+
+        // Then
+        assertEquals(List.of("carol", "alice"), trie.prefixMatches("cl", 2));
+        assertEquals(List.of("carol", "alice", "bob"), trie.prefixMatches("cl", 10));
+    }
+
+    @Test
+    public void should_remove_values_and_prune_empty_keys() {
+        // Given
+        CompressedTrie<String> trie = new CompressedTrie<>();
+        trie.add("john", "a");
+        trie.add("john", "b");
+        trie.add("johnny", "c");
+        trie.add("jo", "d");
+
+        // When
+        boolean removedA = trie.remove("john", "a");
+        boolean removedB = trie.remove("john", "b");
+        boolean removedMissing = trie.remove("joh", "c");
+        boolean removedD = trie.remove("jo", "d");
+
+        // Then
+        assertTrue(removedA);
+        assertTrue(removedB);
+        assertFalse(removedMissing);
+        assertTrue(removedD);
+        assertEquals(1, trie.keyCount());
+        assertEquals(List.of("c"), trie.prefixMatches("j", 10));
+        assertEquals(List.of("c"), trie.prefixMatches("johnny", 10));
+
+        // Keys added after merging the nodes back are still found
+        trie.add("joe", "e");
+        assertEquals(List.of("e", "c"), trie.prefixMatches("jo", 10));
+    }
+
+    @Test
+    public void should_match_same_values_as_linear_scan() {
+        // Given
+        Random random = new Random(42);
+        CompressedTrie<Integer> trie = new CompressedTrie<>();
+        Map<String, Set<Integer>> keys = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            String key = randomWord(random);
+            int value = random.nextInt(500);
+            if (random.nextInt(4) == 0 && keys.containsKey(key) && !keys.get(key).isEmpty()) {
+                Integer removed = keys.get(key).iterator().next();
+                keys.get(key).remove(removed);
+                assertTrue(trie.remove(key, removed));
+            } else {
+                keys.computeIfAbsent(key, k -> new HashSet<>()).add(value);
+                trie.add(key, value);
+            }
+        }
+
+        // Then
+        for (String prefix : List.of("", "a", "ab", "ba", "cab", "acb")) {
+            Set<Integer> expected = new HashSet<>();
+            keys.forEach((key, values) -> {
+                if (key.startsWith(prefix)) {
+                    expected.addAll(values);
+                }
+            });
+            assertEquals(expected, new HashSet<>(trie.prefixMatches(prefix, Integer.MAX_VALUE)));
+        }
+        assertEquals(keys.values().stream().filter(values -> !values.isEmpty()).count(), trie.keyCount());
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 1 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(3)));
+        }
+        return word.toString();
+    }
+}
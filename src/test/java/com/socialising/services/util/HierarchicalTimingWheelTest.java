@@ -0,0 +1,166 @@
+package com.socialising.services.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    // 1 second ticks, 8 slots per level, 3 levels: 512 seconds span
+    private final HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1_000, 8, 3, START);
+
+    @Test
+    public void should_fire_at_deadline_and_not_before() {
+        // Given
+        wheel.schedule("a", START + 5_000);
+
+        // When
+        List<String> early = wheel.advance(START + 4_999);
+        List<String> onTime = wheel.advance(START + 5_000);
+
+        // Then
+        assertTrue(early.isEmpty());
+        assertEquals(List.of("a"), onTime);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void should_round_deadline_up_to_next_tick() {
+        // Given
+        wheel.schedule("a", START + 2_500);
+
+        // Then
+        assertTrue(wheel.advance(START + 2_999).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(START + 3_000));
+    }
+
+    @Test
+    public void should_not_fire_cancelled_timer() {
+        // Given
+        wheel.schedule("a", START + 3_000);
+        wheel.schedule("b", START + 3_000);
+
+        // When
+        boolean cancelled = wheel.cancel("a");
+
+        // Then
+        assertTrue(cancelled);
+        assertFalse(wheel.cancel("a"));
+        assertFalse(wheel.contains("a"));
+        assertEquals(List.of("b"), wheel.advance(START + 10_000));
+    }
+
+    @Test
+    public void should_cancel_timers_matching_filter() {
+        // Given
+        wheel.schedule("post1:alice", START + 3_000);
+        wheel.schedule("post1:bob", START + 200_000);
+        wheel.schedule("post2:alice", START + 3_000);
+
+        // When
+        int cancelled = wheel.cancelIf(key -> key.startsWith("post1:"));
+
+        // Then
+        assertEquals(2, cancelled);
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("post2:alice"), wheel.advance(START + 300_000));
+    }
+
+    @Test
+    public void should_move_timer_when_scheduled_again() {
+        // Given
+        wheel.schedule("a", START + 3_000);
+
+        // When
+        wheel.schedule("a", START + 100_000);
+
+        // Then
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.advance(START + 99_000).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(START + 100_000));
+    }
+
+    @Test
+    public void should_cascade_timers_from_higher_levels() {
+        // Given: level 2 covers deadlines of 64 ticks and more
+        wheel.schedule("a", START + (8 * 8 * 3 + 5) * 1_000L);
+        wheel.schedule("b", START + 20_000);
+
+        // When
+        List<String> fired = new ArrayList<>();
+        long firedAtA = -1;
+        for (long now = START; now <= START + 300_000; now += 1_000) {
+            List<String> due = wheel.advance(now);
+            if (due.contains("a")) {
+                firedAtA = now;
+            }
+            fired.addAll(due);
+        }
+
+        // Then
+        assertEquals(List.of("b", "a"), fired);
+        assertEquals(START + 197_000, firedAtA);
+    }
+
+    @Test
+    public void should_fire_deadline_beyond_span_of_top_level() {
+        // Given: past the 512 second span of the wheel
+        wheel.schedule("a", START + 1_300_000);
+
+        // Then
+        assertTrue(wheel.advance(START + 1_299_000).isEmpty());
+        assertTrue(wheel.contains("a"));
+        assertEquals(List.of("a"), wheel.advance(START + 1_300_000));
+    }
+
+    @Test
+    public void should_fire_past_deadline_on_next_advance() {
+        // Given
+        wheel.advance(START + 10_000);
+
+        // When
+        wheel.schedule("a", START);
+
+        // Then
+        assertEquals(List.of("a"), wheel.advance(START + 10_000));
+    }
+
+    @Test
+    public void should_fire_every_timer_once_in_deadline_order() {
+        // Given
+        for (int i = 0; i < 1_000; i++) {
+            wheel.schedule("t" + i, START + ((i * 7_919L) % 600 + 1) * 1_000);
+        }
+        assertEquals(1_000, wheel.size());
+
+        // When
+        List<Long> deadlines = new ArrayList<>();
+        int fired = 0;
+        for (long now = START; now <= START + 601_000; now += 1_000) {
+            for (String key : wheel.advance(now)) {
+                int i = Integer.parseInt(key.substring(1));
+                long deadline = START + ((i * 7_919L) % 600 + 1) * 1_000;
+                assertEquals(deadline, now);
+                deadlines.add(deadline);
+                fired++;
+            }
+        }
+
+        // Then
+        assertEquals(1_000, fired);
+        assertEquals(0, wheel.size());
+        List<Long> sorted = new ArrayList<>(deadlines);
+        sorted.sort(null);
+        assertEquals(sorted, deadlines);
+    }
+
+    @Test
+    public void should_reject_wheel_size_not_power_of_two() {
+        assertThrows(IllegalArgumentException.class, () -> new HierarchicalTimingWheel<String>(1_000, 10, 3, START));
+    }
+}
@@ -0,0 +1,111 @@
+package com.socialising.services.util;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    @Test
+    public void should_count_small_sets_almost_exactly() {
+        // Given
+        HyperLogLog sketch = new HyperLogLog();
+
+        // When
+        offer(sketch, 0, 100);
+
+        // Then
+        assertTrue(Math.abs(sketch.estimate() - 100) <= 2, "estimate " + sketch.estimate());
+    }
+
+    @Test
+    public void should_not_count_the_same_viewer_twice() {
+        // Given
+        HyperLogLog sketch = new HyperLogLog();
+        offer(sketch, 0, 1000);
+        long estimate = sketch.estimate();
+
+        // When
+        boolean changed = false;
+        for (int i = 0; i < 1000; i++) {
+            changed |= sketch.offer(hash(i));
+        }
+
+        // Then
+        assertFalse(changed);
+        assertEquals(estimate, sketch.estimate());
+    }
+
+    @Test
+    public void should_estimate_large_counts_within_three_standard_errors() {
+        // Given
+        HyperLogLog sketch = new HyperLogLog();
+        int viewers = 1_000_000;
+
+        // When
+        offer(sketch, 0, viewers);
+
+        // Then
+        double error = Math.abs(sketch.estimate() - viewers) / (double) viewers;
+        assertEquals(0.01625, sketch.standardError(), 0.0001);
+        assertTrue(error < 3 * sketch.standardError(), "relative error " + error);
+    }
+
+    @Test
+    public void should_merge_into_the_sketch_of_the_union() {
+        // Given
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        offer(first, 0, 60_000);
+        offer(second, 40_000, 100_000);
+        offer(union, 0, 100_000);
+
+        // When
+        first.merge(second);
+
+        // Then
+        assertEquals(union, first);
+        assertEquals(union.estimate(), first.estimate());
+    }
+
+    @Test
+    public void should_restore_the_same_sketch_from_its_bytes() {
+        // Given
+        HyperLogLog sketch = new HyperLogLog();
+        offer(sketch, 0, 50_000);
+
+        // When
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        // Then
+        assertEquals(1 + 4096 * 6 / 8, bytes.length);
+        assertEquals(sketch, restored);
+        assertEquals(sketch.estimate(), restored.estimate());
+    }
+
+    @Test
+    public void should_not_merge_sketches_of_different_precision() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    public void should_reject_bytes_of_wrong_length() {
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[]{12, 0, 0}));
+    }
+
+    private static void offer(HyperLogLog sketch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            sketch.offer(hash(i));
+        }
+    }
+
+    private static long hash(int viewer) {
+        return HASH.hashLong(viewer).asLong();
+    }
+}
@@ -0,0 +1,86 @@
+package com.socialising.services.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexBuildTest {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final IndexBuild indexBuild = new IndexBuild(lock);
+
+    private List<String> index = new ArrayList<>();
+
+    @Test
+    public void should_replay_changes_made_while_building_after_install() {
+        // Given
+        assertTrue(indexBuild.start());
+        indexBuild.change(() -> index.add("alice"));
+        List<String> read = new ArrayList<>(List.of("bob"));
+
+        // When
+        indexBuild.finish(true, () -> index = read);
+
+        // Then
+        assertEquals(List.of("bob", "alice"), index);
+        assertTrue(indexBuild.isBuilt());
+        assertFalse(indexBuild.start());
+    }
+
+    @Test
+    public void should_run_changes_under_write_lock() {
+        // When
+        indexBuild.change(() -> assertTrue(lock.isWriteLockedByCurrentThread()));
+
+        // Then
+        assertFalse(lock.isWriteLocked());
+    }
+
+    @Test
+    public void should_not_record_changes_outside_a_build() {
+        // Given
+        indexBuild.change(() -> index.add("alice"));
+        indexBuild.start();
+
+        // When
+        indexBuild.finish(true);
+
+        // Then
+        assertEquals(List.of("alice"), index);
+    }
+
+    @Test
+    public void should_build_again_after_incomplete_build() {
+        // Given
+        indexBuild.start();
+        indexBuild.change(() -> index.add("alice"));
+
+        // When
+        indexBuild.finish(false);
+
+        // Then
+        assertEquals(List.of("alice", "alice"), index);
+        assertFalse(indexBuild.isBuilt());
+        assertTrue(indexBuild.start());
+    }
+
+    @Test
+    public void should_not_replay_abandoned_build() {
+        // Given
+        indexBuild.start();
+        indexBuild.change(() -> index.add("alice"));
+
+        // When
+        indexBuild.abandon();
+        indexBuild.start();
+        indexBuild.finish(true);
+
+        // Then
+        assertEquals(List.of("alice"), index);
+    }
+}
@@ -0,0 +1,114 @@
+package com.socialising.services.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    public void should_contain_every_key_put() {
+        // Given
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01, 4);
+
+        // When
+        for (long key = 0; key < 1000; key++) {
+            filter.put(key);
+        }
+
+        // Then
+        for (long key = 0; key < 1000; key++) {
+            assertTrue(filter.mightContain(key), "missing " + key);
+        }
+    }
+
+    @Test
+    public void should_add_slices_as_it_grows() {
+        // Given
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01, 4);
+
+        // When
+        for (long key = 0; key < 1000; key++) {
+            filter.put(key);
+        }
+
+        // Then
+        assertEquals(4, filter.sliceCount());
+        assertFalse(filter.isFull());
+        assertTrue(Math.abs(filter.approximateElementCount() - 1000) <= 50, "count " + filter.approximateElementCount());
+    }
+
+    @Test
+    public void should_keep_false_positive_rate_bounded_across_slices() {
+        // Given
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01, 4);
+        for (long key = 0; key < 1500; key++) {
+            filter.put(key);
+        }
+
+        // When
+        int falsePositives = 0;
+        for (long key = 1_000_000; key < 1_100_000; key++) {
+            if (filter.mightContain(key)) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        assertTrue(falsePositives < 1000, "false positives " + falsePositives);
+    }
+
+    @Test
+    public void should_report_a_key_put_twice_as_present() {
+        // Given
+        ScalableBloomFilter filter = new ScalableBloomFilter(10, 0.01, 2);
+
+        // When
+        boolean first = filter.put(42L);
+        boolean second = filter.put(42L);
+
+        // Then
+        assertTrue(first);
+        assertFalse(second);
+    }
+
+    @Test
+    public void should_be_full_once_last_slice_is_used_up() {
+        // Given
+        ScalableBloomFilter filter = new ScalableBloomFilter(10, 0.01, 2);
+
+        // When
+        for (long key = 0; key < 100; key++) {
+            filter.put(key);
+        }
+
+        // Then
+        assertEquals(2, filter.sliceCount());
+        assertTrue(filter.isFull());
+    }
+
+    @Test
+    public void should_round_trip_through_bytes() {
+        // Given
+        ScalableBloomFilter filter = new ScalableBloomFilter(50, 0.01, 3);
+        for (long key = 0; key < 120; key++) {
+            filter.put(key);
+        }
+
+        // When
+        ScalableBloomFilter restored = ScalableBloomFilter.fromBytes(filter.toBytes());
+
+        // Then
+        assertEquals(filter.sliceCount(), restored.sliceCount());
+        for (long key = 0; key < 120; key++) {
+            assertTrue(restored.mightContain(key));
+        }
+        assertTrue(restored.put(1_000_000L));
+    }
+
+    @Test
+    public void should_reject_invalid_bytes() {
+        // Then
+        assertThrows(IllegalArgumentException.class, () -> ScalableBloomFilter.fromBytes(new byte[]{1, 2, 3}));
+    }
+}
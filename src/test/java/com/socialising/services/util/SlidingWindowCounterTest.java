@@ -0,0 +1,92 @@
+package com.socialising.services.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowCounterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    // 10 second window in 10 buckets of 1 second
+    private final SlidingWindowCounter counter = new SlidingWindowCounter(10_000, 10, 100, clock::get);
+
+    @Test
+    public void should_count_within_window() {
+        // When
+        counter.add("soccer", 1);
+        clock.addAndGet(3_000);
+        counter.add("soccer", 2);
+
+        // Then
+        assertEquals(3, counter.count("soccer"));
+        assertEquals(0, counter.count("music"));
+    }
+
+    @Test
+    public void should_drop_counts_older_than_window() {
+        // Given
+        counter.add("soccer", 5);
+        clock.addAndGet(4_000);
+        counter.add("soccer", 1);
+
+        // When
+        clock.addAndGet(7_000);
+
+        // Then
+        assertEquals(1, counter.count("soccer"));
+    }
+
+    @Test
+    public void should_reset_reused_bucket() {
+        // Given
+        counter.add("soccer", 5);
+
+        // When, same bucket of the ring one full window later
+        clock.addAndGet(10_000);
+        counter.add("soccer", 1);
+
+        // Then
+        assertEquals(1, counter.count("soccer"));
+    }
+
+    @Test
+    public void should_return_top_keys_highest_first() {
+        // Given
+        counter.add("soccer", 6);
+        counter.add("music", 3);
+        counter.add("fun", 1);
+        clock.addAndGet(2_000);
+        counter.add("fun", 4);
+
+        // When
+        List<Map.Entry<String, Long>> top = counter.top(2);
+
+        // Then
+        assertEquals(2, top.size());
+        assertEquals("soccer", top.get(0).getKey());
+        assertEquals(6L, top.get(0).getValue());
+        assertEquals("fun", top.get(1).getKey());
+        assertEquals(5L, top.get(1).getValue());
+    }
+
+    @Test
+    public void should_ignore_new_keys_when_bucket_is_full() {
+        // Given
+        SlidingWindowCounter small = new SlidingWindowCounter(10_000, 10, 2, clock::get);
+        small.add("a", 1);
+        small.add("b", 1);
+
+        // When
+        small.add("c", 1);
+        small.add("a", 1);
+
+        // Then
+        assertEquals(0, small.count("c"));
+        assertEquals(2, small.count("a"));
+    }
+}
@@ -0,0 +1,161 @@
+package com.socialising.services.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeIdGeneratorTest {
+
+    private final long now = SnowflakeIdGenerator.EPOCH + 1_000_000L;
+
+    @Test
+    public void should_encode_timestamp_and_node_id() {
+        // Given
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7, () -> now);
+
+        // When
+        long id = generator.nextId();
+
+        // Then
+        assertEquals(now, SnowflakeIdGenerator.timestampOf(id));
+        assertEquals(7, SnowflakeIdGenerator.nodeIdOf(id));
+    }
+
+    @Test
+    public void should_generate_increasing_ids_within_same_millisecond() {
+        // Given
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, () -> now);
+
+        // When
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        // Then
+        assertTrue(second > first);
+        assertEquals(SnowflakeIdGenerator.timestampOf(first), SnowflakeIdGenerator.timestampOf(second));
+    }
+
+    @Test
+    public void should_move_to_next_millisecond_when_sequence_is_exhausted() {
+        // Given
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, () -> now);
+
+        // When
+        long last = 0;
+        for (int i = 0; i <= 4096; i++) {
+            long id = generator.nextId();
+            assertTrue(id > last);
+            last = id;
+        }
+
+        // Then
+        assertEquals(now + 1, SnowflakeIdGenerator.timestampOf(last));
+        assertEquals(1, SnowflakeIdGenerator.nodeIdOf(last));
+    }
+
+    @Test
+    public void should_keep_ids_increasing_when_clock_moves_backwards() {
+        // Given
+        AtomicLong clock = new AtomicLong(now);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+
+        // When
+        long before = generator.nextId();
+        clock.set(now - 5000);
+        long after = generator.nextId();
+
+        // Then
+        assertTrue(after > before);
+    }
+
+    @Test
+    public void should_not_issue_ids_again_after_restart_when_seeded() {
+        // Given IDs issued ahead of the clock before a restart
+        AtomicLong clock = new AtomicLong(now);
+        SnowflakeIdGenerator beforeRestart = new SnowflakeIdGenerator(1, clock::get);
+        long last = 0;
+        for (int i = 0; i < 3 * 4096; i++) {
+            last = beforeRestart.nextId();
+        }
+
+        // When the generator restarts with the clock stepped back
+        clock.set(now - 5000);
+        SnowflakeIdGenerator afterRestart = new SnowflakeIdGenerator(1, clock::get);
+        afterRestart.seed(last);
+        long next = afterRestart.nextId();
+
+        // Then
+        assertTrue(next > last);
+        assertEquals(SnowflakeIdGenerator.timestampOf(last) + 1, SnowflakeIdGenerator.timestampOf(next));
+    }
+
+    @Test
+    public void should_keep_following_clock_when_seeded_with_older_id() {
+        // Given
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, () -> now);
+
+        // When
+        generator.seed(12345678L);
+        long id = generator.nextId();
+
+        // Then
+        assertEquals(now, SnowflakeIdGenerator.timestampOf(id));
+    }
+
+    @Test
+    public void should_sort_ids_from_different_nodes_by_time() {
+        // Given
+        AtomicLong clock = new AtomicLong(now);
+        SnowflakeIdGenerator highNode = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID, clock::get);
+        SnowflakeIdGenerator lowNode = new SnowflakeIdGenerator(0, clock::get);
+
+        // When
+        long earlier = highNode.nextId();
+        clock.incrementAndGet();
+        long later = lowNode.nextId();
+
+        // Then
+        assertTrue(later > earlier);
+    }
+
+    @Test
+    public void should_reject_node_id_out_of_range() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1));
+    }
+
+    @Test
+    public void should_not_generate_duplicates_across_threads() throws Exception {
+        // Given
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        int idsPerThread = 50_000;
+
+        // When
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < idsPerThread; i++) {
+                    ids.add(generator.nextId());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Then
+        assertEquals(8 * idsPerThread, ids.size());
+    }
+}